@@ -0,0 +1,129 @@
+package com.dws.challenge;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.config.ImportProperties;
+import com.dws.challenge.domain.ImportFormat;
+import com.dws.challenge.domain.ImportSummary;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.OffHeapAccountsRepository;
+import com.dws.challenge.service.AccountImportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to import {@code rows} accounts from a body that is generated while it is read, so the input never exists
+ * in memory as a whole. Rows per second is {@code rows} divided by the reported time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx16g", "-XX:MaxDirectMemorySize=8g"})
+public class AccountImportBenchmark {
+
+    @Param({"ndjson", "csv"})
+    public String format;
+
+    @Param({"memory", "offheap"})
+    public String repositoryType;
+
+    @Param({"10000000"})
+    public int rows;
+
+    private AccountsRepository repository;
+    private AccountImportService importService;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        repository = "offheap".equals(repositoryType)
+            ? new OffHeapAccountsRepository(rows)
+            : new AccountsRepositoryInMemory();
+        importService = new AccountImportService(repository, new ObjectMapper(), new ImportProperties());
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        importService.shutdown();
+    }
+
+    @Benchmark
+    public ImportSummary importAccounts() throws IOException {
+        ImportFormat importFormat = "csv".equals(format) ? ImportFormat.CSV : ImportFormat.NDJSON;
+        ImportSummary summary = importService.importAccounts(new GeneratedRows(rows, importFormat), importFormat);
+        if (summary.created() != rows) {
+            throw new IllegalStateException("Imported " + summary.created() + " of " + rows + " rows");
+        }
+        return summary;
+    }
+
+    // Renders one row at a time into a small buffer
+    private static final class GeneratedRows extends InputStream {
+        private final int rows;
+        private final ImportFormat format;
+        private int next;
+        private byte[] line = new byte[0];
+        private int position;
+
+        GeneratedRows(int rows, ImportFormat format) {
+            this.rows = rows;
+            this.format = format;
+        }
+
+        @Override
+        public int read() {
+            if (!fill()) {
+                return -1;
+            }
+            return line[position++];
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            int read = 0;
+            while (read < length && fill()) {
+                int count = Math.min(length - read, line.length - position);
+                System.arraycopy(line, position, buffer, offset + read, count);
+                position += count;
+                read += count;
+            }
+            return read == 0 ? -1 : read;
+        }
+
+        private boolean fill() {
+            if (position < line.length) {
+                return true;
+            }
+            if (next == rows) {
+                return false;
+            }
+            String row = format == ImportFormat.CSV
+                ? "Id-" + next + ",1000.00\n"
+                : "{\"accountId\":\"Id-" + next + "\",\"balance\":1000.00}\n";
+            line = row.getBytes(StandardCharsets.US_ASCII);
+            position = 0;
+            next++;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.dws.challenge;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.OffHeapAccountsRepository;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Heap and direct memory retained per account once a repository holds {@code accounts} of them, measured after
+ * a full GC. Run with a large heap, e.g. -PjmhIncludes=AccountsFootprint and jvmArgs -Xmx16g for 10^7 accounts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx16g", "-XX:MaxDirectMemorySize=16g"})
+public class AccountsFootprintBenchmark {
+
+    @Param({"memory", "offheap"})
+    public String repositoryType;
+
+    @Param({"1000000", "10000000"})
+    public int accounts;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long heapBytesPerAccount;
+        public long directBytesPerAccount;
+    }
+
+    @Benchmark
+    public AccountsRepository fill(Footprint footprint) {
+        long heapBefore = usedHeap();
+        long directBefore = usedDirect();
+        AccountsRepository repository = "offheap".equals(repositoryType)
+            ? new OffHeapAccountsRepository(accounts)
+            : new AccountsRepositoryInMemory();
+        for (int i = 0; i < accounts; i++) {
+            repository.createAccount(new Account("Id-" + i, BigDecimal.TEN));
+        }
+        footprint.heapBytesPerAccount = Math.max(0, usedHeap() - heapBefore) / accounts;
+        footprint.directBytesPerAccount = Math.max(0, usedDirect() - directBefore) / accounts;
+        return repository;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirect() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+            .filter(pool -> "direct".equals(pool.getName()))
+            .mapToLong(BufferPoolMXBean::getMemoryUsed)
+            .sum();
+    }
+}
@@ -0,0 +1,90 @@
+package com.dws.challenge;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.JournaledAccountsRepository;
+import com.dws.challenge.repository.OffHeapAccountsRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * {@link AccountsRepository#getAccount} and {@link AccountsRepository#createAccount} per repository type.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class AccountsRepositoryBenchmark {
+
+    @Param({"memory", "journaled", "offheap"})
+    public String repositoryType;
+
+    @Param({"1000000"})
+    public int accounts;
+
+    private AccountsRepository repository;
+    private Path directory;
+    private String[] accountIds;
+    private final AtomicLong nextId = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if ("journaled".equals(repositoryType)) {
+            directory = Files.createTempDirectory("repository-benchmark");
+            repository = new JournaledAccountsRepository(directory, false, 64L << 20, 1 << 20);
+        } else if ("offheap".equals(repositoryType)) {
+            repository = new OffHeapAccountsRepository(accounts);
+        } else {
+            repository = new AccountsRepositoryInMemory();
+        }
+
+        accountIds = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountIds[i] = "Id-" + i;
+            repository.createAccount(new Account(accountIds[i], BigDecimal.TEN));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (repository instanceof JournaledAccountsRepository journaled) {
+            journaled.close();
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    @Benchmark
+    public Account getAccount() {
+        return repository.getAccount(accountIds[ThreadLocalRandom.current().nextInt(accounts)]);
+    }
+
+    @Benchmark
+    public void createAccount() {
+        repository.createAccount(new Account("New-" + nextId.getAndIncrement(), BigDecimal.TEN));
+    }
+}
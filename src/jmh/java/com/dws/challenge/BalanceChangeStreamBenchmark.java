@@ -0,0 +1,140 @@
+package com.dws.challenge;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.ChangesUnavailableException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.BalanceChangeStream;
+import com.dws.challenge.service.LockingTransferStrategy;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Transfers published to the {@link BalanceChangeStream} while {@code subscribers} threads follow it, as the threads
+ * writing server-sent events do. The score is the transfer throughput, which consumers must not hold up; at the end
+ * of the trial the time from publishing a change to a subscriber reading it is printed, along with how many
+ * changes were read and how often a subscriber fell a whole ring behind.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BalanceChangeStreamBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+
+    @Param({"0", "1", "4"})
+    public int subscribers;
+
+    private SimpleMeterRegistry meterRegistry;
+    private BalanceChangeStream stream;
+    private AccountsService accountsService;
+    private String[] accountIds;
+    private final List<Thread> consumers = new ArrayList<>();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+    private volatile boolean running;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        stream = new BalanceChangeStream(1 << 20, Clock.systemUTC(), meterRegistry);
+        accountsService = new AccountsService(new AccountsRepositoryInMemory(), (account, description) -> {
+        });
+        accountsService.setTransferStrategy(new LockingTransferStrategy(stream));
+        accountsService.setBalanceChangeStream(stream);
+
+        accountIds = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountIds[i] = "Id-" + i;
+            accountsService.createAccount(new Account(accountIds[i], new BigDecimal("1000000000")));
+        }
+
+        running = true;
+        for (int i = 0; i < subscribers; i++) {
+            Thread consumer = new Thread(this::consume, "balance-changes-" + i);
+            consumer.setDaemon(true);
+            consumer.start();
+            consumers.add(consumer);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        running = false;
+        for (Thread consumer : consumers) {
+            consumer.join();
+        }
+
+        Timer delivery = meterRegistry.get("balance.changes.delivery").timer();
+        StringBuilder percentiles = new StringBuilder();
+        for (ValueAtPercentile value : delivery.takeSnapshot().percentileValues()) {
+            percentiles.append(String.format(" p%.0f=%.1fus", value.percentile() * 100,
+                    value.value(TimeUnit.MICROSECONDS)));
+        }
+        System.out.printf("%n%d changes published, %d read by %d subscribers, %d overruns, delivery%s%n",
+                stream.claimed(), delivered.get(), subscribers, overruns.get(), percentiles);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void transfer_1thread() {
+        transfer();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void transfer_4threads() {
+        transfer();
+    }
+
+    private void transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        accountsService.transferMoney(accountIds[random.nextInt(ACCOUNTS)], accountIds[random.nextInt(ACCOUNTS)], 1);
+    }
+
+    // Follows the stream like a client that reconnects from the current sequence after an overrun
+    private void consume() {
+        BalanceChangeStream.Subscription subscription = stream.subscribe(stream.committed(), null);
+        try {
+            while (running) {
+                try {
+                    delivered.addAndGet(subscription.poll(256, TimeUnit.MILLISECONDS.toNanos(100)).size());
+                } catch (ChangesUnavailableException e) {
+                    overruns.incrementAndGet();
+                    subscription.close();
+                    subscription = stream.subscribe(stream.committed(), null);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            subscription.close();
+        }
+    }
+}
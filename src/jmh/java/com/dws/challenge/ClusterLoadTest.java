@@ -0,0 +1,209 @@
+package com.dws.challenge;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transfer throughput of a cluster as nodes are added: for every node count, starts that many JVMs on localhost in
+ * cluster mode, creates the accounts and has {@code connections} clients, spread evenly over the nodes, each keep one
+ * transfer in flight. With n nodes, about (n-1)/n of the transfers cross nodes and a request reaches the node owning
+ * its paying account only 1/n of the time, so the numbers include forwarding and two-phase commits.
+ * <p>
+ * All nodes share the machine, so past its core count adding nodes only adds coordination. Not a JMH benchmark, run
+ * it with {@code ./gradlew clusterLoadTest -PclusterLoadTestArgs='--nodes=1,2,4 --seconds=20'}. Other
+ * {@code --key=value} arguments are passed to every node, e.g. {@code --dws.cluster.fsync=false}.
+ */
+public class ClusterLoadTest {
+
+    private static final int ACCOUNTS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        int[] nodeCounts = {1, 2, 3, 4};
+        int connections = 64;
+        int seconds = 20;
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--nodes=")) {
+                nodeCounts = Arrays.stream(arg.substring("--nodes=".length()).split(","))
+                        .mapToInt(Integer::parseInt).toArray();
+            } else if (arg.startsWith("--connections=")) {
+                connections = Integer.parseInt(arg.substring("--connections=".length()));
+            } else if (arg.startsWith("--seconds=")) {
+                seconds = Integer.parseInt(arg.substring("--seconds=".length()));
+            } else {
+                applicationArgs.add(arg);
+            }
+        }
+
+        System.out.printf("%5s %6s %10s %9s %9s %9s %8s%n", "nodes", "conns", "req/s", "p50 ms", "p99 ms", "max ms",
+                "errors");
+        for (int nodes : nodeCounts) {
+            run(nodes, connections, seconds, applicationArgs);
+        }
+    }
+
+    private static void run(int nodes, int connections, int seconds, List<String> applicationArgs) throws Exception {
+        Path directory = Files.createTempDirectory("cluster-load");
+        List<Process> processes = new ArrayList<>();
+        int[] ports = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            ports[i] = freePort();
+        }
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        try {
+            for (int i = 0; i < nodes; i++) {
+                processes.add(start(i, ports, directory, applicationArgs));
+            }
+            for (int i = 0; i < nodes; i++) {
+                awaitHealthy(client, ports[i], processes.get(i));
+            }
+            for (int i = 0; i < ACCOUNTS; i++) {
+                HttpResponse<Void> response = client.send(HttpRequest.newBuilder(
+                                URI.create("http://localhost:" + ports[i % nodes] + "/v1/accounts"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                "{\"accountId\":\"Load-" + i + "\",\"balance\":1000000}"))
+                        .build(), HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() != 201) {
+                    throw new IllegalStateException("Creating account Load-" + i + " got " + response.statusCode());
+                }
+            }
+
+            // A short warm-up, then the measured run
+            drive(client, ports, connections, Math.min(5, seconds), new AtomicLong());
+            AtomicLong errors = new AtomicLong();
+            long start = System.nanoTime();
+            long[] latencies = drive(client, ports, connections, seconds, errors);
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            Arrays.sort(latencies);
+            System.out.printf("%5d %6d %10.0f %9.2f %9.2f %9.2f %8d%n", nodes, connections,
+                    latencies.length / elapsed, percentile(latencies, 0.50), percentile(latencies, 0.99),
+                    percentile(latencies, 1.0), errors.get());
+        } finally {
+            for (Process process : processes) {
+                process.destroy();
+            }
+            for (Process process : processes) {
+                process.waitFor();
+            }
+        }
+    }
+
+    // Client c sends to node c % nodes, so every node gets the same share of the requests
+    private static long[] drive(HttpClient client, int[] ports, int connections, int seconds, AtomicLong errors)
+            throws Exception {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        List<Future<long[]>> clients = new ArrayList<>();
+        for (int c = 0; c < connections; c++) {
+            URI uri = URI.create("http://localhost:" + ports[c % ports.length] + "/v1/accounts/transfer");
+            clients.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long[] latencies = new long[1024];
+                int count = 0;
+                while (System.nanoTime() - deadline < 0) {
+                    String body = "{\"accountFromId\":\"Load-" + random.nextInt(ACCOUNTS) + "\",\"accountToId\":\"Load-"
+                            + random.nextInt(ACCOUNTS) + "\",\"amount\":1.00}";
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri)
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(body))
+                                .build(), HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    }
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - sent;
+                }
+                return Arrays.copyOf(latencies, count);
+            }));
+        }
+        List<long[]> all = new ArrayList<>();
+        for (Future<long[]> result : clients) {
+            all.add(result.get());
+        }
+        executor.shutdown();
+        return all.stream().flatMapToLong(Arrays::stream).toArray();
+    }
+
+    private static Process start(int node, int[] ports, Path directory, List<String> applicationArgs)
+            throws IOException {
+        Path nodeDirectory = Files.createDirectories(directory.resolve("node-" + node));
+        List<String> command = new ArrayList<>(List.of(
+                ProcessHandle.current().info().command().orElse("java"),
+                "-cp", System.getProperty("java.class.path"),
+                ChallengeApplication.class.getName(),
+                "--server.port=" + ports[node],
+                "--logging.level.root=warn",
+                "--dws.cluster.enabled=true",
+                "--dws.cluster.node-id=node-" + node,
+                "--dws.cluster.journal-directory=" + nodeDirectory.resolve("cluster")));
+        for (int i = 0; i < ports.length; i++) {
+            command.add("--dws.cluster.nodes.node-" + i + "=http://localhost:" + ports[i]);
+        }
+        command.addAll(applicationArgs);
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(nodeDirectory.resolve("output.log").toFile())
+                .start();
+    }
+
+    private static void awaitHealthy(HttpClient client, int port, Process process) throws Exception {
+        URI health = URI.create("http://localhost:" + port + "/actuator/health");
+        long deadline = System.nanoTime() + Duration.ofSeconds(120).toNanos();
+        while (System.nanoTime() - deadline < 0) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Node on port " + port + " exited with " + process.exitValue());
+            }
+            try {
+                if (client.send(HttpRequest.newBuilder(health).build(), HttpResponse.BodyHandlers.discarding())
+                        .statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException("Node on port " + port + " did not start");
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
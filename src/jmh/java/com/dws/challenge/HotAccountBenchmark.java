@@ -0,0 +1,104 @@
+package com.dws.challenge;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.LockingTransferStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link LockingTransferStrategy} with and without striped balances for hot accounts:
+ * <ul>
+ *   <li>zipfian: both accounts drawn from a Zipf distribution, the most popular ones are listed as hot</li>
+ *   <li>fees: every transfer goes from a random account to one fee account, the only hot one</li>
+ * </ul>
+ * {@code hotAccounts} is how many accounts are striped, 0 being plain per-account locking. Contention based
+ * detection is off so that both variants keep their layout for the whole run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class HotAccountBenchmark {
+
+    @Param({"zipfian", "fees"})
+    public String workload;
+
+    @Param({"0", "16"})
+    public int hotAccounts;
+
+    @Param({"10000"})
+    public int accounts;
+
+    private AccountsService accountsService;
+    private String[] accountIds;
+    private ZipfianGenerator zipfian;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        accountIds = new String[accounts];
+        List<String> hot = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            accountIds[i] = "Id-" + i;
+            if (i < hotAccounts) {
+                hot.add(accountIds[i]);
+            }
+        }
+
+        TransferProperties properties = new TransferProperties();
+        properties.setHotAccounts(hot);
+        properties.setHotAccountContentions(0);
+        LockingTransferStrategy transferStrategy = new LockingTransferStrategy();
+        transferStrategy.setHotAccounts(properties);
+        accountsService = new AccountsService(new AccountsRepositoryInMemory(), (account, description) -> {
+        });
+        accountsService.setTransferStrategy(transferStrategy);
+        for (String accountId : accountIds) {
+            accountsService.createAccount(new Account(accountId, new BigDecimal("1000000000")));
+        }
+        zipfian = new ZipfianGenerator(accounts, 0.99);
+    }
+
+    @Benchmark
+    public void transferMoney() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (workload.equals("fees")) {
+            accountsService.transferMoney(accountIds[1 + random.nextInt(accounts - 1)], accountIds[0], 1L);
+        } else {
+            accountsService.transferMoney(accountIds[zipfian.next(random)], accountIds[zipfian.next(random)], 1L);
+        }
+    }
+
+    @Threads(1)
+    public static class Threads1 extends HotAccountBenchmark {
+    }
+
+    @Threads(4)
+    public static class Threads4 extends HotAccountBenchmark {
+    }
+
+    @Threads(Threads.MAX)
+    public static class ThreadsMax extends HotAccountBenchmark {
+    }
+}
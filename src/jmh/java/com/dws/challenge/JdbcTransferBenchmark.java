@@ -0,0 +1,120 @@
+package com.dws.challenge;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.config.AccountCacheProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.CachingAccountsRepository;
+import com.dws.challenge.repository.JdbcAccountsRepository;
+import com.dws.challenge.repository.TransferListener;
+import com.dws.challenge.service.JdbcTransferStrategy;
+import com.dws.challenge.service.LockingTransferStrategy;
+import com.dws.challenge.service.TransferStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Transfers committed to an H2 database, one transaction per transfer (the locking strategy writing through
+ * {@link CachingAccountsRepository}) against the micro-batches of {@link JdbcTransferStrategy}. With more threads,
+ * more transfers share each batch; a single thread only measures the extra hop to the committer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JdbcTransferBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+
+    @Param({"per-transfer", "batched"})
+    public String commit;
+
+    @Param({"mem", "file"})
+    public String storage;
+
+    private Path directory;
+    private JdbcTemplate jdbcTemplate;
+    private TransferStrategy transferStrategy;
+    private Account[] accounts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("jdbc-benchmark");
+        String url = storage.equals("file") ? "jdbc:h2:file:" + directory.resolve("accounts")
+                : "jdbc:h2:mem:jdbc-benchmark";
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(url + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        JdbcAccountsRepository jdbcRepository = new JdbcAccountsRepository(jdbcTemplate);
+        CachingAccountsRepository repository = new CachingAccountsRepository(jdbcRepository,
+                new AccountCacheProperties(), new SimpleMeterRegistry());
+        transferStrategy = commit.equals("batched")
+                ? new JdbcTransferStrategy(jdbcRepository, 2, 1_000, TransferListener.NONE)
+                : new LockingTransferStrategy(repository);
+
+        accounts = new Account[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            repository.createAccount(new Account("Id-" + i, new BigDecimal("1000000000")));
+            accounts[i] = repository.getAccount("Id-" + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (transferStrategy instanceof JdbcTransferStrategy batched) {
+            batched.shutdown();
+        }
+        jdbcTemplate.execute("SHUTDOWN");
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void transfer_1thread() {
+        transfer();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void transfer_4threads() {
+        transfer();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void transfer_16threads() {
+        transfer();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void transfer_64threads() {
+        transfer();
+    }
+
+    private void transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        transferStrategy.transfer(accounts[random.nextInt(ACCOUNTS)], accounts[random.nextInt(ACCOUNTS)], 1);
+    }
+}
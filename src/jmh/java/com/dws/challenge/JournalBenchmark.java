@@ -0,0 +1,99 @@
+package com.dws.challenge;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.JournaledAccountsRepository;
+import com.dws.challenge.service.LockingTransferStrategy;
+import com.dws.challenge.service.TransferStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Durable transfer throughput: every operation applies a transfer and waits for its group commit. With more
+ * threads, more transfers share each flush.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JournalBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+
+    @Param({"true", "false"})
+    public boolean fsync;
+
+    private Path directory;
+    private JournaledAccountsRepository repository;
+    private TransferStrategy transferStrategy;
+    private Account[] accounts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal-benchmark");
+        repository = new JournaledAccountsRepository(directory, fsync, 64L << 20, 1 << 20);
+        transferStrategy = new LockingTransferStrategy(repository);
+        accounts = new Account[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = new Account("Id-" + i, new BigDecimal("1000000000"));
+            repository.createAccount(accounts[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repository.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void transfer_1thread() {
+        transfer();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void transfer_4threads() {
+        transfer();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void transfer_16threads() {
+        transfer();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void transfer_64threads() {
+        transfer();
+    }
+
+    private void transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        transferStrategy.transfer(accounts[random.nextInt(ACCOUNTS)], accounts[random.nextInt(ACCOUNTS)], 1);
+        repository.sync();
+    }
+}
@@ -0,0 +1,85 @@
+package com.dws.challenge;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.repository.JournaledAccountsRepository;
+import com.dws.challenge.repository.WriteAheadLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Time to start a journaled repository: load the latest snapshot and replay the segments written after it.
+ * The journal holds one creation and one transfer per account; most of it ends up compacted into a snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class JournalRecoveryBenchmark {
+
+    private static final long SEGMENT_SIZE = 64L << 20;
+
+    @Param({"1000000", "10000000"})
+    public int accounts;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void writeJournal() throws IOException {
+        directory = Files.createTempDirectory("journal-recovery-benchmark");
+        WriteAheadLog.Replayer nothing = new WriteAheadLog.Replayer() {
+            @Override
+            public void create(String accountId, long balance) {
+            }
+
+            @Override
+            public void transfer(String accountFromId, String accountToId, long amount) {
+            }
+
+            @Override
+            public void clear() {
+            }
+        };
+
+        try (WriteAheadLog journal = new WriteAheadLog(directory, false, SEGMENT_SIZE, 1 << 20, nothing)) {
+            for (int i = 0; i < accounts; i++) {
+                journal.appendCreate("Id-" + i, 100_000, () -> true);
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < accounts; i++) {
+                journal.appendTransfer("Id-" + i, "Id-" + random.nextInt(accounts), 100);
+            }
+            journal.sync();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteJournal() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public JournaledAccountsRepository recover() throws IOException {
+        JournaledAccountsRepository repository = new JournaledAccountsRepository(directory, false, SEGMENT_SIZE, 1 << 20);
+        repository.close();
+        return repository;
+    }
+}
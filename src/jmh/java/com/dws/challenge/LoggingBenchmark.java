@@ -0,0 +1,94 @@
+package com.dws.challenge;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.config.IdempotencyProperties;
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.EmailNotificationService;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.web.AccountsController;
+import com.dws.challenge.web.IdempotencyCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * {@link AccountsController#transferMoney} including its own log line and the two lines of
+ * {@link EmailNotificationService}, which is called synchronously here, under different logging setups:
+ * <ul>
+ *   <li>Sync: classic synchronous loggers flushing every line, the behaviour before Log4j2 async loggers</li>
+ *   <li>Async: ring-buffer backed async loggers with garbage-free formatting, the application default</li>
+ *   <li>AsyncLimited: async loggers plus the per-request BurstFilter of log4j2-spring.xml</li>
+ * </ul>
+ * Compare the p99 of the sampled latency and the allocation rate reported by the gc profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+public abstract class LoggingBenchmark {
+
+    private static final int ACCOUNTS = 1_000;
+
+    private AccountsController controller;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AccountsService accountsService = new AccountsService(new AccountsRepositoryInMemory(),
+                new EmailNotificationService());
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountsService.createAccount(new Account("Id-" + i, new BigDecimal("1000000000")));
+        }
+        controller = new AccountsController(accountsService, new ObjectMapper(), new TransferProperties(),
+                new IdempotencyCache(new IdempotencyProperties()), TransferMetrics.NONE);
+    }
+
+    @Benchmark
+    public ResponseEntity<Object> transferMoney() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<String, Object> transferDetails = Map.of(
+                "accountFromId", "Id-" + random.nextInt(ACCOUNTS),
+                "accountToId", "Id-" + random.nextInt(ACCOUNTS),
+                "amount", "0.01");
+        return controller.transferMoney(null, transferDetails);
+    }
+
+    @Fork(value = 1, jvmArgsAppend = {
+            "-Dlog4j2.configurationFile=log4j2-benchmark.xml",
+            "-Dlog4j2.contextSelector=org.apache.logging.log4j.core.selector.ClassLoaderContextSelector",
+            "-Dlog4j2.enableThreadlocals=false",
+            "-Ddws.log.immediateFlush=true"})
+    public static class Sync extends LoggingBenchmark {
+    }
+
+    @Fork(value = 1, jvmArgsAppend = {
+            "-Dlog4j2.configurationFile=log4j2-benchmark.xml"})
+    public static class Async extends LoggingBenchmark {
+    }
+
+    @Fork(value = 1, jvmArgsAppend = {
+            "-Dlog4j2.configurationFile=log4j2-benchmark.xml",
+            "-Ddws.log.rate=100",
+            "-Ddws.log.maxBurst=1000"})
+    public static class AsyncLimited extends LoggingBenchmark {
+    }
+}
@@ -0,0 +1,132 @@
+package com.dws.challenge;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.config.NotificationProperties;
+import com.dws.challenge.config.NotificationProperties.OverflowPolicy;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.AsyncNotificationService;
+import com.dws.challenge.service.NotificationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+/**
+ * Load test for in-flight transfers against a notification sink that takes {@code sinkDelayMillis} per call.
+ * One operation submits {@code inFlight} transfers at once and waits for all of them, like a burst of HTTP
+ * requests would:
+ * <ul>
+ *   <li>platform: a pool of 200 platform threads, the Tomcat default</li>
+ *   <li>virtual: one virtual thread per transfer, what the virtual-threads profile gives Tomcat</li>
+ * </ul>
+ * With sync notifications every request thread sleeps in the sink, with async they are queued. The virtual
+ * variants need Java 21: {@code ./gradlew jmh -PjavaVersion=21 -PjmhIncludes=SlowNotificationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SlowNotificationBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"sync", "async"})
+    public String notifications;
+
+    @Param({"2000"})
+    public int inFlight;
+
+    @Param({"10"})
+    public long sinkDelayMillis;
+
+    private static final int ACCOUNTS = 10_000;
+
+    private AccountsService accountsService;
+    private AsyncNotificationService asyncNotificationService;
+    private Executor executor;
+    private ExecutorService platformPool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        NotificationService slowSink = (account, description) -> {
+            try {
+                Thread.sleep(sinkDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        NotificationService notificationService = slowSink;
+        if ("async".equals(notifications)) {
+            NotificationProperties properties = new NotificationProperties();
+            properties.setQueueCapacity(1_000_000);
+            properties.setOverflowPolicy(OverflowPolicy.DROP_OLDEST);
+            properties.setShutdownTimeout(Duration.ofSeconds(1));
+            properties.setVirtualThreads("virtual".equals(threads));
+            asyncNotificationService = new AsyncNotificationService(slowSink, properties, new SimpleMeterRegistry());
+            notificationService = asyncNotificationService;
+        }
+
+        accountsService = new AccountsService(new AccountsRepositoryInMemory(), notificationService);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountsService.createAccount(new Account("Id-" + i, new BigDecimal("1000000000")));
+        }
+
+        if ("virtual".equals(threads)) {
+            executor = new VirtualThreadTaskExecutor("transfer-");
+        } else {
+            platformPool = Executors.newFixedThreadPool(200);
+            executor = platformPool;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        if (platformPool != null) {
+            platformPool.shutdownNow();
+        }
+        if (asyncNotificationService != null) {
+            asyncNotificationService.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void concurrentTransfers() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(inFlight);
+        for (int i = 0; i < inFlight; i++) {
+            executor.execute(() -> {
+                try {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    accountsService.transferMoney("Id-" + random.nextInt(ACCOUNTS), "Id-" + random.nextInt(ACCOUNTS), 1L);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,144 @@
+package com.dws.challenge;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.LockingTransferStrategy;
+import com.dws.challenge.service.OptimisticTransferStrategy;
+import com.dws.challenge.service.ShardedTransferStrategy;
+import com.dws.challenge.service.TransferStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * {@link AccountsService#transferMoney} under different access patterns:
+ * <ul>
+ *   <li>uniform: both accounts drawn uniformly, contention only grows with the thread count</li>
+ *   <li>zipfian: both accounts drawn from a Zipf distribution, a few hot accounts take most transfers</li>
+ *   <li>reversed: threads work on shared pairs of accounts, alternating the direction per thread, which is
+ *   the pattern that deadlocks without a global lock order</li>
+ * </ul>
+ * Each subclass runs the same benchmark at a different thread count. Throughput and the sampled latency
+ * distribution (p99) are reported per mode; run with {@code -prof gc} (the default in build.gradle) for the
+ * allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class TransferBenchmark {
+
+    @Param({"locking", "optimistic", "sharded"})
+    public String strategy;
+
+    @Param({"uniform", "zipfian", "reversed"})
+    public String workload;
+
+    @Param({"10000"})
+    public int accounts;
+
+    private AccountsService accountsService;
+    private TransferStrategy transferStrategy;
+    private String[] accountIds;
+    private ZipfianGenerator zipfian;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        accountsService = new AccountsService(new AccountsRepositoryInMemory(), (account, description) -> {
+        });
+        transferStrategy = switch (strategy) {
+            case "optimistic" -> new OptimisticTransferStrategy();
+            case "sharded" -> new ShardedTransferStrategy(Runtime.getRuntime().availableProcessors());
+            default -> new LockingTransferStrategy();
+        };
+        accountsService.setTransferStrategy(transferStrategy);
+
+        accountIds = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountIds[i] = "Id-" + i;
+            accountsService.createAccount(new Account(accountIds[i], new BigDecimal("1000000000")));
+        }
+        zipfian = new ZipfianGenerator(accounts, 0.99);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        if (transferStrategy instanceof ShardedTransferStrategy sharded) {
+            sharded.shutdown();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Worker {
+
+        int index;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams threadParams) {
+            index = threadParams.getThreadIndex();
+        }
+    }
+
+    @Benchmark
+    public void transferMoney(Worker worker) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from;
+        int to;
+        switch (workload) {
+            case "zipfian" -> {
+                from = zipfian.next(random);
+                to = zipfian.next(random);
+            }
+            case "reversed" -> {
+                // Pairs (0,1), (2,3), ... shared by all threads, odd threads pay in the opposite direction
+                int pair = random.nextInt(Math.min(accounts / 2, 8)) * 2;
+                from = pair + (worker.index & 1);
+                to = pair + 1 - (worker.index & 1);
+            }
+            default -> {
+                from = random.nextInt(accounts);
+                to = random.nextInt(accounts);
+            }
+        }
+        accountsService.transferMoney(accountIds[from], accountIds[to], 1L);
+    }
+
+    @Threads(1)
+    public static class Threads1 extends TransferBenchmark {
+    }
+
+    @Threads(2)
+    public static class Threads2 extends TransferBenchmark {
+    }
+
+    @Threads(4)
+    public static class Threads4 extends TransferBenchmark {
+    }
+
+    @Threads(8)
+    public static class Threads8 extends TransferBenchmark {
+    }
+
+    @Threads(Threads.MAX)
+    public static class ThreadsMax extends TransferBenchmark {
+    }
+}
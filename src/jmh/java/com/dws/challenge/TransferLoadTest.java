@@ -0,0 +1,181 @@
+package com.dws.challenge;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Closed-loop HTTP load against {@code POST /v1/accounts/transfer}, once on Spring MVC (Tomcat) and once with the
+ * reactive profile (WebFlux on Netty). Each of {@code connections} clients keeps exactly one request in flight, so
+ * the number of open connections equals the concurrency. Reports throughput, latency percentiles, error responses
+ * and the peak number of live threads in the JVM, which for Tomcat grows with the connections it serves at once.
+ * <p>
+ * Not a JMH benchmark, run it with {@code ./gradlew loadTest -PloadTestArgs='--connections=64,512 --seconds=20'}.
+ * Other {@code --key=value} arguments are passed to the application, e.g. {@code --dws.transfer.strategy=sharded}.
+ */
+public class TransferLoadTest {
+
+    private static final int ACCOUNTS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        int[] connections = {64, 512, 2048};
+        int seconds = 20;
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--connections=")) {
+                connections = Arrays.stream(arg.substring("--connections=".length()).split(","))
+                        .mapToInt(Integer::parseInt).toArray();
+            } else if (arg.startsWith("--seconds=")) {
+                seconds = Integer.parseInt(arg.substring("--seconds=".length()));
+            } else {
+                applicationArgs.add(arg);
+            }
+        }
+
+        System.out.printf("%-9s %6s %10s %9s %9s %9s %9s %8s %8s%n",
+                "stack", "conns", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors", "threads");
+        for (String stack : new String[] {"mvc", "reactive"}) {
+            for (int count : connections) {
+                run(stack, count, seconds, applicationArgs);
+            }
+        }
+    }
+
+    private static void run(String stack, int connections, int seconds, List<String> applicationArgs)
+            throws Exception {
+        List<String> arguments = new ArrayList<>(applicationArgs);
+        arguments.add("--server.port=0");
+        arguments.add("--server.tomcat.max-connections=" + Math.max(8192, connections * 2));
+        arguments.add("--logging.level.root=warn");
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(ChallengeApplication.class);
+        if ("reactive".equals(stack)) {
+            builder.profiles("reactive");
+        }
+
+        try (ConfigurableApplicationContext context = builder.run(arguments.toArray(String[]::new))) {
+            AccountsService accountsService = context.getBean(AccountsService.class);
+            for (int i = 0; i < ACCOUNTS; i++) {
+                accountsService.createAccount(new Account("Load-" + i, new BigDecimal("1000000")));
+            }
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI uri = URI.create("http://localhost:" + port + "/v1/accounts/transfer");
+
+            ExecutorService clientExecutor = Executors.newFixedThreadPool(4);
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clientExecutor)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+
+            // A short warm-up, then the measured run
+            drive(client, uri, connections, Math.min(5, seconds), new long[0][]);
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            threads.resetPeakThreadCount();
+
+            long[][] latencies = new long[connections][];
+            long start = System.nanoTime();
+            long errors = drive(client, uri, connections, seconds, latencies);
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+            System.out.printf("%-9s %6d %10.0f %9.2f %9.2f %9.2f %9.2f %8d %8d%n", stack, connections,
+                    all.length / elapsed, percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999),
+                    percentile(all, 1.0), errors, threads.getPeakThreadCount());
+            clientExecutor.shutdownNow();
+        }
+    }
+
+    // Every connection sends its next request as soon as the previous response arrived
+    private static long drive(HttpClient client, URI uri, int connections, int seconds, long[][] latencies) {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicLong errors = new AtomicLong();
+        CompletableFuture<?>[] loops = new CompletableFuture<?>[connections];
+        for (int i = 0; i < connections; i++) {
+            long[][] sink = latencies.length == 0 ? null : latencies;
+            int connection = i;
+            loops[i] = loop(client, uri, deadline, errors, new LatencyRecorder())
+                    .thenAccept(recorder -> {
+                        if (sink != null) {
+                            sink[connection] = recorder.toArray();
+                        }
+                    });
+        }
+        CompletableFuture.allOf(loops).join();
+        return errors.get();
+    }
+
+    // Sends from the callback of the previous response instead of chaining futures, which would nest one per request
+    private static CompletableFuture<LatencyRecorder> loop(HttpClient client, URI uri, long deadline,
+            AtomicLong errors, LatencyRecorder recorder) {
+        CompletableFuture<LatencyRecorder> done = new CompletableFuture<>();
+        send(client, uri, deadline, errors, recorder, done);
+        return done;
+    }
+
+    private static void send(HttpClient client, URI uri, long deadline, AtomicLong errors, LatencyRecorder recorder,
+            CompletableFuture<LatencyRecorder> done) {
+        if (System.nanoTime() - deadline >= 0) {
+            done.complete(recorder);
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String body = "{\"accountFromId\":\"Load-" + random.nextInt(ACCOUNTS) + "\",\"accountToId\":\"Load-"
+                + random.nextInt(ACCOUNTS) + "\",\"amount\":1.00}";
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        long sent = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, failure) -> {
+                    recorder.add(System.nanoTime() - sent);
+                    if (failure != null || response.statusCode() != 200) {
+                        errors.incrementAndGet();
+                    }
+                    send(client, uri, deadline, errors, recorder, done);
+                });
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static final class LatencyRecorder {
+        private long[] nanos = new long[1024];
+        private int size;
+
+        void add(long latency) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = latency;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(nanos, size);
+        }
+    }
+}
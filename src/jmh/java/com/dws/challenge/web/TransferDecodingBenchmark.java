@@ -0,0 +1,105 @@
+package com.dws.challenge.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Money;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+/**
+ * What POST /v1/accounts/transfer does with a body before calling the service: the message converter reads it and
+ * TransferCommand validates it.
+ * <ul>
+ *   <li>map: the former binding to a Map, with the amount reparsed from its toString</li>
+ *   <li>databind: Jackson data binding straight into TransferBody</li>
+ *   <li>streaming: TransferBodyHttpMessageConverter, the default</li>
+ * </ul>
+ * Run with {@code -prof gc} (the default in build.gradle) for the bytes allocated per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferDecodingBenchmark {
+
+    private static final ParameterizedTypeReference<Map<String, Object>> MAP =
+            new ParameterizedTypeReference<>() {
+            };
+
+    @Param({"map", "databind", "streaming"})
+    public String decoder;
+
+    private final byte[] body = "{\"accountFromId\":\"Id-123456\",\"accountToId\":\"Id-654321\",\"amount\":1234.56}"
+            .getBytes(StandardCharsets.UTF_8);
+    private final HttpHeaders headers = new HttpHeaders();
+    private MappingJackson2HttpMessageConverter jackson;
+    private TransferBodyHttpMessageConverter streaming;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        jackson = new MappingJackson2HttpMessageConverter(objectMapper);
+        streaming = new TransferBodyHttpMessageConverter(objectMapper.getFactory());
+        headers.setContentType(MediaType.APPLICATION_JSON);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object decode() throws IOException {
+        HttpInputMessage message = new HttpInputMessage() {
+            @Override
+            public InputStream getBody() {
+                return new ByteArrayInputStream(body);
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+        return switch (decoder) {
+            case "map" -> ofMap((Map<String, Object>) jackson.read(MAP.getType(), null, message));
+            case "databind" -> TransferCommand.of((TransferBody) jackson.read(TransferBody.class, message));
+            default -> TransferCommand.of(streaming.read(TransferBody.class, message));
+        };
+    }
+
+    // TransferCommand.of as it was when the body was bound to a Map, minus the messages
+    private static TransferCommand ofMap(Map<String, Object> transferDetails) {
+        String accountFromId = (String) transferDetails.get("accountFromId");
+        String accountToId = (String) transferDetails.get("accountToId");
+        if (accountFromId == null || accountFromId.trim().isEmpty() || accountToId == null
+                || accountToId.trim().isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        BigDecimal amount = new BigDecimal(transferDetails.get("amount").toString());
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException();
+        }
+        return new TransferCommand(accountFromId, accountToId, amount, Money.toMinorUnits(amount));
+    }
+}
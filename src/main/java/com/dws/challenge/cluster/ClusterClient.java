@@ -0,0 +1,40 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.cluster.ClusterTransactions.Outcome;
+import com.dws.challenge.domain.Account;
+
+/**
+ * Calls to the other nodes of the cluster. Every call throws
+ * {@link com.dws.challenge.exception.NodeUnavailableException} if the node did not answer in time, and rethrows
+ * the exceptions the other node refused the call with.
+ */
+public interface ClusterClient {
+
+  /**
+   * @throws com.dws.challenge.exception.DuplicateAccountIdException if the account exists on that node
+   */
+  void createAccount(String nodeId, Account account);
+
+  // Null if the node has no such account
+  Account getAccount(String nodeId, String accountId);
+
+  /**
+   * Runs a transfer on the node owning its paying account.
+   *
+   * @throws IllegalArgumentException if the transfer was rejected
+   */
+  void transfer(String nodeId, String accountFromId, String accountToId, long amount);
+
+  /**
+   * Asks the participant to hold on to a transfer until it is told the outcome.
+   *
+   * @throws IllegalArgumentException if the participant cannot take it, e.g. the receiving account does not exist
+   */
+  void prepare(String nodeId, CrossNodeTransfer transfer);
+
+  void commit(String nodeId, String transferId);
+
+  void abort(String nodeId, String transferId);
+
+  Outcome outcome(String nodeId, String transferId);
+}
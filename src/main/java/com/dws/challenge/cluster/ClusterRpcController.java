@@ -0,0 +1,104 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.cluster.ClusterTransactions.Outcome;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.NodeUnavailableException;
+import com.dws.challenge.exception.TransferRejectedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Calls between the nodes of a cluster, see {@link HttpClusterClient}. Nothing here checks who calls, so these
+ * endpoints must only be reachable from the other nodes.
+ */
+@RestController
+@RequestMapping(HttpClusterClient.PATH)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "dws.cluster", name = "enabled", havingValue = "true")
+public class ClusterRpcController {
+
+  private final ClusteredAccountsService accountsService;
+  private final ClusterTransactions clusterTransactions;
+
+  @Autowired
+  public ClusterRpcController(ClusteredAccountsService accountsService, ClusterTransactions clusterTransactions) {
+    this.accountsService = accountsService;
+    this.clusterTransactions = clusterTransactions;
+  }
+
+  @PostMapping("/accounts")
+  public ResponseEntity<Object> createAccount(@RequestBody Account account) {
+    try {
+      accountsService.createLocalAccount(account);
+    } catch (DuplicateAccountIdException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+    }
+    return new ResponseEntity<>(HttpStatus.CREATED);
+  }
+
+  @GetMapping("/accounts")
+  public ResponseEntity<Account> getAccount(@RequestParam String id) {
+    Account account = accountsService.getLocalAccount(id);
+    return account == null ? new ResponseEntity<>(HttpStatus.NOT_FOUND) : new ResponseEntity<>(account, HttpStatus.OK);
+  }
+
+  @PostMapping("/transfers")
+  public ResponseEntity<Object> transfer(@RequestBody ForwardedTransfer transfer) {
+    try {
+      accountsService.transferFromLocalAccount(transfer.accountFromId(), transfer.accountToId(), transfer.amount());
+    } catch (IllegalArgumentException e) {
+      return rejected(e);
+    }
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  @PostMapping("/transactions/prepare")
+  public ResponseEntity<Object> prepare(@RequestBody CrossNodeTransfer transfer) {
+    try {
+      clusterTransactions.prepare(transfer);
+    } catch (IllegalArgumentException e) {
+      return rejected(e);
+    }
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  @PostMapping("/transactions/commit")
+  public ResponseEntity<Object> commit(@RequestParam String id) {
+    clusterTransactions.commit(id);
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  @PostMapping("/transactions/abort")
+  public ResponseEntity<Object> abort(@RequestParam String id) {
+    clusterTransactions.abort(id);
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  @GetMapping("/transactions/outcome")
+  public Outcome outcome(@RequestParam String id) {
+    return clusterTransactions.outcome(id);
+  }
+
+  // A third node this one needed did not answer, the caller sees it as this node being unavailable
+  @ExceptionHandler(NodeUnavailableException.class)
+  public ResponseEntity<Object> nodeUnavailable(NodeUnavailableException e) {
+    return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+  }
+
+  private static ResponseEntity<Object> rejected(IllegalArgumentException e) {
+    TransferRejectedException.Reason reason = e instanceof TransferRejectedException rejection
+      ? rejection.getReason() : null;
+    return new ResponseEntity<>(new RpcRejection(reason, e.getMessage()), HttpStatus.BAD_REQUEST);
+  }
+}
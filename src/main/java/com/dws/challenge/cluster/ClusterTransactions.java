@@ -0,0 +1,370 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.config.ClusterProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.exception.NodeUnavailableException;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.exception.TransferRejectedException.Reason;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.CachingAccountsRepository;
+import com.dws.challenge.repository.JdbcAccountsRepository;
+import com.dws.challenge.service.LockingTransferStrategy;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransferStrategy;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Two-phase transfers between accounts of different nodes, with presumed abort:
+ * <ol>
+ *   <li>the coordinator, owning the paying account, withdraws the amount and journals the transfer as prepared</li>
+ *   <li>the participant journals it as prepared too, once it checked the receiving account can take it</li>
+ *   <li>the coordinator journals the decision to commit, which is the moment the transfer happens, and tells the
+ *   participant, which deposits the amount and journals the commit before it acknowledges</li>
+ * </ol>
+ * If anything fails before the decision the coordinator refunds the withdrawal. A transfer the coordinator has no
+ * decision for, or has forgotten, counts as aborted. A participant left waiting asks the coordinator for the outcome
+ * once the transfer is older than the RPC timeout, and the coordinator keeps resending commits until they are
+ * acknowledged. Both happen on a background thread every {@code dws.cluster.recovery-interval}.
+ * <p>
+ * On startup the journal is replayed on top of the recovered repository: committed legs are applied to their
+ * accounts, and transfers prepared by this node as coordinator without a decision are aborted. That takes a repository
+ * that never stores the legs itself, so the JDBC repository, which reloads evicted accounts from the database and
+ * would lose or double the legs, is refused.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "dws.cluster", name = "enabled", havingValue = "true")
+public class ClusterTransactions {
+
+  public enum Outcome {
+    PENDING,
+    COMMITTED,
+    ABORTED
+  }
+
+  private final String nodeId;
+  private final AccountsRepository accountsRepository;
+  private final ClusterClient clusterClient;
+  private final TransactionJournal journal;
+  private final long inDoubtNanos;
+  private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+  private ScheduledExecutorService recovery;
+  // Defaults to per-account locking when constructed outside of Spring
+  private TransferStrategy transferStrategy = new LockingTransferStrategy();
+  private NotificationService notificationService = (account, description) -> {
+  };
+
+  @Autowired
+  public ClusterTransactions(ClusterProperties properties, AccountsRepository accountsRepository,
+    ClusterClient clusterClient) throws IOException {
+    this(properties.getNodeId(), accountsRepository, clusterClient, Path.of(properties.getJournalDirectory()),
+      properties.isFsync(), properties.getRpcTimeout());
+    long interval = properties.getRecoveryInterval().toMillis();
+    recovery = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "cluster-recovery");
+      thread.setDaemon(true);
+      return thread;
+    });
+    recovery.scheduleWithFixedDelay(this::resolvePending, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  // Without a background thread, resolvePending has to be called by the owner
+  public ClusterTransactions(String nodeId, AccountsRepository accountsRepository, ClusterClient clusterClient,
+    Path journalDirectory, boolean fsync, Duration inDoubtAfter) throws IOException {
+    if (accountsRepository instanceof CachingAccountsRepository
+      || accountsRepository instanceof JdbcAccountsRepository) {
+      throw new IllegalStateException("Cluster mode does not support dws.repository.type=jdbc, use memory, "
+        + "journaled or offheap");
+    }
+    this.nodeId = nodeId;
+    this.accountsRepository = accountsRepository;
+    this.clusterClient = clusterClient;
+    this.journal = new TransactionJournal(journalDirectory, fsync);
+    this.inDoubtNanos = inDoubtAfter.toNanos();
+    recover();
+  }
+
+  @Autowired
+  public void setTransferStrategy(TransferStrategy transferStrategy) {
+    this.transferStrategy = transferStrategy;
+  }
+
+  @Autowired
+  public void setNotificationService(NotificationService notificationService) {
+    this.notificationService = notificationService;
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    if (recovery != null) {
+      recovery.shutdownNow();
+    }
+    journal.close();
+  }
+
+  /**
+   * Moves {@code amount} from a local account to {@code accountToId} on {@code participant}. Returns once the
+   * transfer is committed, even if the participant was not told yet.
+   *
+   * @throws IllegalArgumentException if the paying account lacks funds or the participant refused the transfer
+   * @throws NodeUnavailableException if the participant did not answer, in which case the transfer was aborted
+   */
+  public void transfer(Account accountFrom, String accountToId, String participant, long amount) {
+    CrossNodeTransfer transfer = new CrossNodeTransfer(nodeId + "-" + UUID.randomUUID(), accountFrom.getAccountId(),
+      accountToId, amount, nodeId, participant);
+    transferStrategy.withdraw(accountFrom, amount);
+    Pending coordinated = new Pending(transfer);
+    pending.put(transfer.id(), coordinated);
+
+    try {
+      journal.appendPrepared(transfer, true);
+      clusterClient.prepare(participant, transfer);
+    } catch (RuntimeException e) {
+      coordinated.outcome = Outcome.ABORTED;
+      pending.remove(transfer.id());
+      journal.appendAborted(transfer.id());
+      transferStrategy.deposit(accountFrom, amount);
+      throw e;
+    }
+
+    // Journaled before outcome queries can see it, so an answer never outlives a crash
+    journal.appendCommitted(transfer.id(), true);
+    coordinated.outcome = Outcome.COMMITTED;
+    sendCommit(coordinated);
+  }
+
+  /**
+   * Participant side of {@link #transfer}: holds the transfer until the coordinator decides. Preparing the same
+   * transfer again does nothing.
+   */
+  public void prepare(CrossNodeTransfer transfer) {
+    Account accountTo = accountsRepository.getAccount(transfer.accountToId());
+    if (accountTo == null) {
+      throw new TransferRejectedException(Reason.ACCOUNT_NOT_FOUND, "Both accounts must exist.");
+    }
+    // Fails early on overflow, a committed deposit cannot be refused anymore
+    Money.add(accountTo.balanceMinorUnits(), transfer.amount());
+
+    if (pending.putIfAbsent(transfer.id(), new Pending(transfer)) == null) {
+      journal.appendPrepared(transfer, true);
+    }
+  }
+
+  // Committing a transfer this node does not hold anymore does nothing, it was committed before
+  public void commit(String transferId) {
+    Pending participated = pending.get(transferId);
+    if (participated == null) {
+      return;
+    }
+    CrossNodeTransfer transfer = participated.transfer;
+    participated.lock.lock();
+    try {
+      if (participated.outcome != Outcome.PENDING) {
+        return;
+      }
+      Account accountTo = accountsRepository.getAccount(transfer.accountToId());
+      if (accountTo != null) {
+        transferStrategy.deposit(accountTo, transfer.amount());
+      }
+      // The coordinator forgets the transfer once this returns, so the deposit has to be on disk first
+      journal.appendCommitted(transferId, true);
+      participated.outcome = Outcome.COMMITTED;
+      pending.remove(transferId);
+      if (accountTo != null) {
+        notificationService.notifyAboutTransfer(accountTo,
+          "Received " + Money.toBigDecimal(transfer.amount()) + " from account " + transfer.accountFromId());
+      }
+    } finally {
+      participated.lock.unlock();
+    }
+  }
+
+  public void abort(String transferId) {
+    Pending participated = pending.get(transferId);
+    if (participated == null) {
+      return;
+    }
+    participated.lock.lock();
+    try {
+      if (participated.outcome == Outcome.PENDING) {
+        journal.appendAborted(transferId);
+        participated.outcome = Outcome.ABORTED;
+        pending.remove(transferId);
+      }
+    } finally {
+      participated.lock.unlock();
+    }
+  }
+
+  // Coordinator side: what became of a transfer it started, anything it does not know was aborted
+  public Outcome outcome(String transferId) {
+    Pending coordinated = pending.get(transferId);
+    return coordinated == null ? Outcome.ABORTED : coordinated.outcome;
+  }
+
+  // Transfers this node still has to settle with another node
+  public int pendingCount() {
+    return pending.size();
+  }
+
+  /**
+   * Resends the commits the participants have not acknowledged, and asks the coordinators of transfers this node
+   * has been waiting on for longer than the RPC timeout. Nodes that still do not answer are tried again next time.
+   */
+  public void resolvePending() {
+    for (Pending transfer : pending.values()) {
+      try {
+        if (transfer.isCoordinator() && transfer.outcome == Outcome.COMMITTED) {
+          sendCommit(transfer);
+        } else if (!transfer.isCoordinator() && System.nanoTime() - transfer.since > inDoubtNanos) {
+          switch (clusterClient.outcome(transfer.transfer.coordinator(), transfer.transfer.id())) {
+            case COMMITTED -> commit(transfer.transfer.id());
+            case ABORTED -> abort(transfer.transfer.id());
+            case PENDING -> {
+            }
+          }
+        }
+      } catch (NodeUnavailableException e) {
+        log.debug("Cannot settle transfer {} yet: {}", transfer.transfer.id(), e.getMessage());
+      } catch (RuntimeException e) {
+        log.error("Settling transfer {} failed", transfer.transfer.id(), e);
+      }
+    }
+  }
+
+  private void sendCommit(Pending coordinated) {
+    CrossNodeTransfer transfer = coordinated.transfer;
+    try {
+      clusterClient.commit(transfer.participant(), transfer.id());
+    } catch (NodeUnavailableException e) {
+      log.warn("Participant {} did not acknowledge transfer {}, retrying in the background", transfer.participant(),
+        transfer.id());
+      return;
+    }
+    if (pending.remove(transfer.id()) != null) {
+      journal.appendDone(transfer.id());
+    }
+  }
+
+  private void recover() throws IOException {
+    Map<String, Long> adjustments = new LinkedHashMap<>();
+    Map<String, Pending> replayed = new LinkedHashMap<>();
+    Set<String> done = new HashSet<>();
+    journal.replay(new TransactionJournal.Replayer() {
+      @Override
+      public void prepared(CrossNodeTransfer transfer) {
+        replayed.put(transfer.id(), new Pending(transfer));
+      }
+
+      @Override
+      public void committed(String transferId) {
+        decided(transferId, Outcome.COMMITTED);
+      }
+
+      @Override
+      public void aborted(String transferId) {
+        decided(transferId, Outcome.ABORTED);
+      }
+
+      private void decided(String transferId, Outcome outcome) {
+        Pending transfer = replayed.get(transferId);
+        if (transfer != null) {
+          transfer.outcome = outcome;
+        }
+      }
+
+      @Override
+      public void done(String transferId) {
+        done.add(transferId);
+      }
+
+      @Override
+      public void adjusted(String accountId, long amount) {
+        adjustments.merge(accountId, amount, Long::sum);
+      }
+    });
+
+    // Resolved transfers fold into the adjustments, the others stay pending and are journaled again
+    Map<String, Long> balanceChanges = new HashMap<>(adjustments);
+    List<CrossNodeTransfer> unresolved = new ArrayList<>();
+    List<String> unresolvedCommits = new ArrayList<>();
+    for (Pending transfer : replayed.values()) {
+      CrossNodeTransfer leg = transfer.transfer;
+      String accountId = transfer.isCoordinator() ? leg.accountFromId() : leg.accountToId();
+      long amount = transfer.isCoordinator() ? -leg.amount() : leg.amount();
+      if (transfer.outcome == Outcome.COMMITTED) {
+        balanceChanges.merge(accountId, amount, Long::sum);
+        if (transfer.isCoordinator() && !done.contains(leg.id())) {
+          unresolved.add(leg);
+          unresolvedCommits.add(leg.id());
+          pending.put(leg.id(), transfer);
+        } else {
+          adjustments.merge(accountId, amount, Long::sum);
+        }
+      } else if (transfer.outcome == Outcome.PENDING && !transfer.isCoordinator()) {
+        unresolved.add(leg);
+        pending.put(leg.id(), transfer);
+      }
+      // Prepared by this node as coordinator without a decision: presumed aborted, the withdrawal was never kept
+    }
+
+    int missing = 0;
+    for (Map.Entry<String, Long> change : balanceChanges.entrySet()) {
+      Account account = accountsRepository.getAccount(change.getKey());
+      if (account == null) {
+        adjustments.remove(change.getKey());
+        missing++;
+      } else {
+        account.storeBalance(account.balanceMinorUnits() + change.getValue());
+      }
+    }
+    if (missing > 0) {
+      log.warn("Dropped cross-node transfers of {} accounts that do not exist anymore", missing);
+    }
+    adjustments.values().removeIf(amount -> amount == 0);
+
+    journal.rewrite(adjustments, unresolved, unresolvedCommits);
+    if (!replayed.isEmpty()) {
+      log.info("Recovered {} cross-node transfers, {} still pending", replayed.size(), pending.size());
+    }
+  }
+
+  private final class Pending {
+
+    final CrossNodeTransfer transfer;
+    final long since = System.nanoTime();
+    // Serializes commit and abort of the same transfer on the participant
+    final ReentrantLock lock = new ReentrantLock();
+    volatile Outcome outcome = Outcome.PENDING;
+
+    Pending(CrossNodeTransfer transfer) {
+      this.transfer = transfer;
+    }
+
+    boolean isCoordinator() {
+      return transfer.coordinator().equals(nodeId);
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.config.ClusterProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountBalances;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.exception.AccountNotLocalException;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.exception.TransferRejectedException.Reason;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.NotificationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * The accounts service of one node of a cluster. Every account lives on the node the {@link ConsistentHashRing}
+ * assigns it to, and creating, reading or paying from an account of another node is forwarded to that node. A
+ * transfer runs on the node owning the paying account; if the receiving account lives elsewhere it becomes a
+ * two-phase transfer between the two nodes, see {@link ClusterTransactions}.
+ * <p>
+ * Batches, imports, scheduled transfers, snapshots and transaction histories only take accounts of the node they are
+ * sent to: an account of another node is refused with an {@link AccountNotLocalException} naming its node, an import
+ * rejects its row. The balance change stream only carries the changes of its own node, and the two legs of a
+ * cross-node transfer show up in neither node's stream. The nodes call each other through
+ * {@link ClusterRpcController}, so a cluster runs on the servlet stack.
+ */
+@Primary
+@Service
+@ConditionalOnProperty(prefix = "dws.cluster", name = "enabled", havingValue = "true")
+public class ClusteredAccountsService extends AccountsService {
+
+  private final String nodeId;
+  private final ConsistentHashRing ring;
+  private final ClusterClient clusterClient;
+  private final ClusterTransactions clusterTransactions;
+
+  @Autowired
+  public ClusteredAccountsService(AccountsRepository accountsRepository, NotificationService notificationService,
+    ClusterProperties properties, ClusterClient clusterClient, ClusterTransactions clusterTransactions) {
+    super(accountsRepository, notificationService);
+    if (!properties.getNodes().containsKey(properties.getNodeId())) {
+      throw new IllegalStateException("dws.cluster.node-id must be one of the dws.cluster.nodes, got "
+        + properties.getNodeId());
+    }
+    this.nodeId = properties.getNodeId();
+    this.ring = new ConsistentHashRing(properties.getNodes().keySet(), properties.getVirtualNodes());
+    this.clusterClient = clusterClient;
+    this.clusterTransactions = clusterTransactions;
+  }
+
+  public String ownerOf(String accountId) {
+    return ring.owner(accountId);
+  }
+
+  @Override
+  public String remoteOwner(String accountId) {
+    String owner = ring.owner(accountId);
+    return owner.equals(nodeId) ? null : owner;
+  }
+
+  @Override
+  public void createAccount(Account account) {
+    String owner = ring.owner(account.getAccountId());
+    if (owner.equals(nodeId)) {
+      super.createAccount(account);
+    } else {
+      clusterClient.createAccount(owner, account);
+    }
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    String owner = ring.owner(accountId);
+    return owner.equals(nodeId) ? super.getAccount(accountId) : clusterClient.getAccount(owner, accountId);
+  }
+
+  // One call per account of another node
+  @Override
+  public AccountBalances getAccounts(List<String> accountIds) {
+    List<Account> accounts = new ArrayList<>();
+    List<String> missing = new ArrayList<>();
+    for (String accountId : new LinkedHashSet<>(accountIds)) {
+      Account account = getAccount(accountId);
+      if (account == null) {
+        missing.add(accountId);
+      } else {
+        accounts.add(account);
+      }
+    }
+    return new AccountBalances(accounts, missing);
+  }
+
+  // Only the accounts of one node can be read as of one moment
+  @Override
+  public AccountBalances getAccountsSnapshot(List<String> accountIds, Duration maxWait) {
+    accountIds.forEach(this::requireLocal);
+    return super.getAccountsSnapshot(accountIds, maxWait);
+  }
+
+  @Override
+  public void transferMoney(String accountFromId, String accountToId, long amount) {
+    String owner = ring.owner(accountFromId);
+    if (owner.equals(nodeId)) {
+      transferFromLocalAccount(accountFromId, accountToId, amount);
+    } else {
+      clusterClient.transfer(owner, accountFromId, accountToId, amount);
+    }
+  }
+
+  // The calls other nodes forward here, never forwarded again even if this node's ring disagrees
+
+  public void createLocalAccount(Account account) {
+    super.createAccount(account);
+  }
+
+  public Account getLocalAccount(String accountId) {
+    return super.getAccount(accountId);
+  }
+
+  public void transferFromLocalAccount(String accountFromId, String accountToId, long amount) {
+    String participant = ring.owner(accountToId);
+    if (participant.equals(nodeId)) {
+      super.transferMoney(accountFromId, accountToId, amount);
+      return;
+    }
+
+    long start = System.nanoTime();
+    Account accountFrom;
+    try {
+      if (amount <= 0) {
+        throw new TransferRejectedException(Reason.INVALID_AMOUNT, "Transfer amount must be positive.");
+      }
+      accountFrom = getAccountsRepository().getAccount(accountFromId);
+      if (accountFrom == null) {
+        throw new TransferRejectedException(Reason.ACCOUNT_NOT_FOUND, "Both accounts must exist.");
+      }
+      clusterTransactions.transfer(accountFrom, accountToId, participant, amount);
+    } catch (IllegalArgumentException e) {
+      getTransferMetrics().rejected(start, e);
+      throw e;
+    }
+    getTransferMetrics().completed(start);
+
+    // The participant notifies the receiving account once it committed
+    getNotificationService().notifyAboutTransfer(accountFrom,
+      "Transferred " + Money.toBigDecimal(amount) + " to account " + accountToId);
+  }
+}
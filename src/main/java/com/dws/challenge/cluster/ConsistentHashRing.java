@@ -0,0 +1,46 @@
+package com.dws.challenge.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Assigns account ids to nodes: every node is hashed onto a 64-bit ring at {@code virtualNodes} points, and an
+ * account belongs to the first node point at or after its own hash. Adding a node only moves the accounts that
+ * now hash to its points, about 1/n of them, instead of reshuffling everything as a modulo would.
+ */
+public final class ConsistentHashRing {
+
+  private final TreeMap<Long, String> ring = new TreeMap<>();
+
+  public ConsistentHashRing(Collection<String> nodeIds, int virtualNodes) {
+    if (nodeIds.isEmpty()) {
+      throw new IllegalArgumentException("A hash ring needs at least one node.");
+    }
+    for (String nodeId : nodeIds) {
+      for (int i = 0; i < virtualNodes; i++) {
+        // On the unlikely collision the smaller node id wins, so every node builds the same ring
+        ring.merge(hash(nodeId + "#" + i), nodeId, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+      }
+    }
+  }
+
+  public String owner(String accountId) {
+    Map.Entry<Long, String> point = ring.ceilingEntry(hash(accountId));
+    return point != null ? point.getValue() : ring.firstEntry().getValue();
+  }
+
+  // FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer so that similar ids land far apart
+  static long hash(String key) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+      hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    return hash ^ (hash >>> 33);
+  }
+}
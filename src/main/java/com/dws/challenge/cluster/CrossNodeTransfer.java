@@ -0,0 +1,9 @@
+package com.dws.challenge.cluster;
+
+/**
+ * A transfer between accounts of two nodes, in minor units. The coordinator owns the paying account and decides the
+ * outcome, the participant owns the receiving one.
+ */
+public record CrossNodeTransfer(String id, String accountFromId, String accountToId, long amount, String coordinator,
+  String participant) {
+}
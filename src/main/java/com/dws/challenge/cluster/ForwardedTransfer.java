@@ -0,0 +1,5 @@
+package com.dws.challenge.cluster;
+
+// A transfer sent to the node owning the paying account, in minor units
+record ForwardedTransfer(String accountFromId, String accountToId, long amount) {
+}
@@ -0,0 +1,159 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.cluster.ClusterTransactions.Outcome;
+import com.dws.challenge.config.ClusterProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.NodeUnavailableException;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * JSON over HTTP/1.1 to {@code /internal/cluster} of the other nodes, on connections the JDK client keeps open.
+ * Ids travel as query parameters, since servlet containers reject encoded slashes in paths.
+ */
+@Component
+@ConditionalOnProperty(prefix = "dws.cluster", name = "enabled", havingValue = "true")
+public class HttpClusterClient implements ClusterClient {
+
+  static final String PATH = "/internal/cluster";
+
+  private final Map<String, String> nodes;
+  private final Duration rpcTimeout;
+  private final ObjectMapper objectMapper;
+  private final HttpClient httpClient;
+
+  @Autowired
+  public HttpClusterClient(ClusterProperties properties, ObjectMapper objectMapper) {
+    this.nodes = Map.copyOf(properties.getNodes());
+    this.rpcTimeout = properties.getRpcTimeout();
+    this.objectMapper = objectMapper;
+    this.httpClient = HttpClient.newBuilder()
+      .version(HttpClient.Version.HTTP_1_1)
+      .connectTimeout(rpcTimeout)
+      .build();
+  }
+
+  @Override
+  public void createAccount(String nodeId, Account account) {
+    HttpResponse<byte[]> response = call(nodeId, "POST", "/accounts", account);
+    if (response.statusCode() == HttpStatus.CONFLICT.value()) {
+      throw new DuplicateAccountIdException(new String(response.body(), StandardCharsets.UTF_8));
+    }
+    checkRejection(nodeId, response);
+  }
+
+  @Override
+  public Account getAccount(String nodeId, String accountId) {
+    HttpResponse<byte[]> response = call(nodeId, "GET", "/accounts?id=" + encode(accountId), null);
+    if (response.statusCode() == HttpStatus.NOT_FOUND.value()) {
+      return null;
+    }
+    checkSuccess(nodeId, response);
+    return read(nodeId, response, Account.class);
+  }
+
+  @Override
+  public void transfer(String nodeId, String accountFromId, String accountToId, long amount) {
+    checkRejection(nodeId, call(nodeId, "POST", "/transfers",
+      new ForwardedTransfer(accountFromId, accountToId, amount)));
+  }
+
+  @Override
+  public void prepare(String nodeId, CrossNodeTransfer transfer) {
+    checkRejection(nodeId, call(nodeId, "POST", "/transactions/prepare", transfer));
+  }
+
+  @Override
+  public void commit(String nodeId, String transferId) {
+    checkRejection(nodeId, call(nodeId, "POST", "/transactions/commit?id=" + encode(transferId), null));
+  }
+
+  @Override
+  public void abort(String nodeId, String transferId) {
+    checkRejection(nodeId, call(nodeId, "POST", "/transactions/abort?id=" + encode(transferId), null));
+  }
+
+  @Override
+  public Outcome outcome(String nodeId, String transferId) {
+    HttpResponse<byte[]> response = call(nodeId, "GET", "/transactions/outcome?id=" + encode(transferId), null);
+    checkSuccess(nodeId, response);
+    return read(nodeId, response, Outcome.class);
+  }
+
+  private HttpResponse<byte[]> call(String nodeId, String method, String path, Object body) {
+    String baseUrl = nodes.get(nodeId);
+    if (baseUrl == null) {
+      throw new IllegalStateException("Unknown cluster node " + nodeId);
+    }
+    try {
+      HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + PATH + path)).timeout(rpcTimeout);
+      if (body == null) {
+        request.method(method, HttpRequest.BodyPublishers.noBody());
+      } else {
+        request.header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+          .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+      }
+      HttpResponse<byte[]> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+      if (response.statusCode() >= 500) {
+        throw new NodeUnavailableException("Node " + nodeId + " answered " + response.statusCode() + ".", null);
+      }
+      return response;
+    } catch (IOException e) {
+      throw unavailable(nodeId, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw unavailable(nodeId, e);
+    }
+  }
+
+  // Rethrows what the other node refused the call with
+  private void checkRejection(String nodeId, HttpResponse<byte[]> response) {
+    if (response.statusCode() != HttpStatus.BAD_REQUEST.value()) {
+      checkSuccess(nodeId, response);
+      return;
+    }
+    RpcRejection rejection = read(nodeId, response, RpcRejection.class);
+    throw rejection.reason() == null
+      ? new IllegalArgumentException(rejection.message())
+      : new TransferRejectedException(rejection.reason(), rejection.message());
+  }
+
+  private <T> T read(String nodeId, HttpResponse<byte[]> response, Class<T> type) {
+    try {
+      return objectMapper.readValue(response.body(), type);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unreadable answer from node " + nodeId, e);
+    }
+  }
+
+  private static void checkSuccess(String nodeId, HttpResponse<byte[]> response) {
+    if (response.statusCode() >= 300) {
+      throw new IllegalStateException("Node " + nodeId + " answered " + response.statusCode() + " to "
+        + response.request().method() + " " + response.request().uri().getPath());
+    }
+  }
+
+  private static NodeUnavailableException unavailable(String nodeId, Exception cause) {
+    return new NodeUnavailableException("Node " + nodeId + " is unavailable.", cause);
+  }
+
+  private static String encode(String value) {
+    return URLEncoder.encode(value, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,7 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.exception.TransferRejectedException.Reason;
+
+// Body of a 400 from another node; the reason is null for rejections without one, such as an amount overflow
+record RpcRejection(Reason reason, String message) {
+}
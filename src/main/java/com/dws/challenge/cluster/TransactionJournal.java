@@ -0,0 +1,278 @@
+package com.dws.challenge.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead state of the cross-node transfers of one node, in a single file framed like the
+ * {@link com.dws.challenge.repository.WriteAheadLog}: {@code [int length][int crc32][payload]}, a torn record at the
+ * tail is cut off on recovery.
+ * <p>
+ * The repository journal never sees the legs of cross-node transfers, this journal is where they live. On startup
+ * the resolved transfers are folded into one balance adjustment per account and the file is rewritten with those
+ * plus the transfers still unresolved, so it only grows with the transfers of one run.
+ * <p>
+ * Appends are written right away; {@code durable} ones also wait for a {@code force}, which concurrent appenders
+ * share: whoever gets to force covers everything written so far.
+ */
+@Slf4j
+class TransactionJournal implements Closeable {
+
+  private static final byte PREPARED = 1;
+  private static final byte COMMITTED = 2;
+  private static final byte ABORTED = 3;
+  private static final byte DONE = 4;
+  private static final byte ADJUSTED = 5;
+
+  private static final int FRAME_BYTES = 8;
+  private static final String FILE_NAME = "transactions.log";
+
+  interface Replayer {
+
+    void prepared(CrossNodeTransfer transfer);
+
+    void committed(String transferId);
+
+    void aborted(String transferId);
+
+    // The other node acknowledged the decision, the coordinator can forget the transfer
+    void done(String transferId);
+
+    void adjusted(String accountId, long amount);
+  }
+
+  private final Path file;
+  private final boolean fsync;
+  private final ReentrantLock appendLock = new ReentrantLock();
+  private final ReentrantLock forceLock = new ReentrantLock();
+  private FileChannel channel;
+  private volatile long writtenOffset;
+  private volatile long durableOffset;
+
+  TransactionJournal(Path directory, boolean fsync) throws IOException {
+    Files.createDirectories(directory);
+    this.file = directory.resolve(FILE_NAME);
+    this.fsync = fsync;
+  }
+
+  void replay(Replayer replayer) throws IOException {
+    if (!Files.exists(file)) {
+      return;
+    }
+    try (FileChannel input = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer buffer = input.map(FileChannel.MapMode.READ_ONLY, 0, input.size());
+      CRC32 check = new CRC32();
+      long validBytes = 0;
+      while (buffer.remaining() >= FRAME_BYTES) {
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+          break;
+        }
+        int payloadStart = buffer.position();
+        check.reset();
+        check.update(buffer.slice(payloadStart, length));
+        if ((int) check.getValue() != checksum) {
+          break;
+        }
+
+        byte type = buffer.get();
+        switch (type) {
+          case PREPARED -> replayer.prepared(new CrossNodeTransfer(getString(buffer), getString(buffer),
+            getString(buffer), buffer.getLong(), getString(buffer), getString(buffer)));
+          case COMMITTED -> replayer.committed(getString(buffer));
+          case ABORTED -> replayer.aborted(getString(buffer));
+          case DONE -> replayer.done(getString(buffer));
+          case ADJUSTED -> replayer.adjusted(getString(buffer), buffer.getLong());
+          default -> throw new IOException("Unknown transaction journal record type " + type + " in " + file);
+        }
+        buffer.position(payloadStart + length);
+        validBytes = buffer.position();
+      }
+      if (validBytes < input.size()) {
+        log.warn("Ignoring {} bytes of incomplete records at the end of {}", input.size() - validBytes, file);
+      }
+    }
+  }
+
+  /**
+   * Replaces the journal with the given adjustments and unresolved transfers, and opens it for appending. The new
+   * content is forced to disk before it atomically takes the place of the old one.
+   */
+  void rewrite(Map<String, Long> adjustments, Collection<CrossNodeTransfer> prepared,
+    Collection<String> committed) throws IOException {
+    Path temporary = file.resolveSibling(FILE_NAME + ".tmp");
+    try (FileChannel output = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+      StandardOpenOption.TRUNCATE_EXISTING)) {
+      for (Map.Entry<String, Long> adjustment : adjustments.entrySet()) {
+        writeFully(output, adjusted(adjustment.getKey(), adjustment.getValue()));
+      }
+      for (CrossNodeTransfer transfer : prepared) {
+        writeFully(output, prepared(transfer));
+      }
+      for (String transferId : committed) {
+        writeFully(output, decision(COMMITTED, transferId));
+      }
+      output.force(true);
+    }
+    Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+    channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    writtenOffset = channel.size();
+    durableOffset = writtenOffset;
+  }
+
+  void appendPrepared(CrossNodeTransfer transfer, boolean durable) {
+    append(prepared(transfer), durable);
+  }
+
+  void appendCommitted(String transferId, boolean durable) {
+    append(decision(COMMITTED, transferId), durable);
+  }
+
+  void appendAborted(String transferId) {
+    // Never forced: an undecided transfer is aborted on recovery anyway
+    append(decision(ABORTED, transferId), false);
+  }
+
+  void appendDone(String transferId) {
+    append(decision(DONE, transferId), false);
+  }
+
+  @Override
+  public void close() throws IOException {
+    appendLock.lock();
+    try {
+      if (channel != null) {
+        channel.close();
+      }
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  private void append(ByteBuffer record, boolean durable) {
+    long end;
+    appendLock.lock();
+    try {
+      writeFully(channel, record);
+      end = writtenOffset + record.limit();
+      writtenOffset = end;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Writing the transaction journal failed", e);
+    } finally {
+      appendLock.unlock();
+    }
+    if (durable && fsync) {
+      force(end);
+    }
+  }
+
+  private void force(long offset) {
+    forceLock.lock();
+    try {
+      if (durableOffset >= offset) {
+        return;
+      }
+      long written = writtenOffset;
+      channel.force(false);
+      durableOffset = written;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Forcing the transaction journal failed", e);
+    } finally {
+      forceLock.unlock();
+    }
+  }
+
+  private static ByteBuffer prepared(CrossNodeTransfer transfer) {
+    byte[][] strings = {bytes(transfer.id()), bytes(transfer.accountFromId()), bytes(transfer.accountToId()),
+      bytes(transfer.coordinator()), bytes(transfer.participant())};
+    ByteBuffer buffer = frame(1 + 5 * 2 + Long.BYTES + length(strings));
+    buffer.put(PREPARED);
+    putString(buffer, strings[0]);
+    putString(buffer, strings[1]);
+    putString(buffer, strings[2]);
+    buffer.putLong(transfer.amount());
+    putString(buffer, strings[3]);
+    putString(buffer, strings[4]);
+    return seal(buffer);
+  }
+
+  private static ByteBuffer decision(byte type, String transferId) {
+    byte[] id = bytes(transferId);
+    ByteBuffer buffer = frame(1 + 2 + id.length);
+    buffer.put(type);
+    putString(buffer, id);
+    return seal(buffer);
+  }
+
+  private static ByteBuffer adjusted(String accountId, long amount) {
+    byte[] id = bytes(accountId);
+    ByteBuffer buffer = frame(1 + 2 + id.length + Long.BYTES);
+    buffer.put(ADJUSTED);
+    putString(buffer, id);
+    buffer.putLong(amount);
+    return seal(buffer);
+  }
+
+  private static ByteBuffer frame(int payloadBytes) {
+    ByteBuffer buffer = ByteBuffer.allocate(FRAME_BYTES + payloadBytes);
+    buffer.putInt(payloadBytes);
+    buffer.putInt(0);
+    return buffer;
+  }
+
+  private static ByteBuffer seal(ByteBuffer buffer) {
+    CRC32 crc = new CRC32();
+    crc.update(buffer.array(), FRAME_BYTES, buffer.position() - FRAME_BYTES);
+    buffer.putInt(Integer.BYTES, (int) crc.getValue());
+    return buffer.flip();
+  }
+
+  private static void writeFully(FileChannel output, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      output.write(buffer);
+    }
+  }
+
+  private static byte[] bytes(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > 0xFFFF) {
+      throw new IllegalArgumentException("Identifier too long for the transaction journal.");
+    }
+    return bytes;
+  }
+
+  private static int length(byte[][] strings) {
+    int length = 0;
+    for (byte[] string : strings) {
+      length += string.length;
+    }
+    return length;
+  }
+
+  private static void putString(ByteBuffer buffer, byte[] bytes) {
+    buffer.putShort((short) bytes.length);
+    buffer.put(bytes);
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,15 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "dws.repository.cache")
+public class AccountCacheProperties {
+
+  // Accounts kept in memory in front of the jdbc repository; accounts a transfer still holds are kept beyond it
+  private int maximumSize = 100_000;
+
+  // Share of the cache, in percent, for accounts seen only recently; the rest is admitted by access frequency
+  private int windowPercent = 1;
+}
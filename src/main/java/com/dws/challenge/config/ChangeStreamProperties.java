@@ -0,0 +1,23 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "dws.changes")
+public class ChangeStreamProperties {
+
+  // Events kept in the ring, rounded up to a power of two; a consumer further behind has to start over
+  private int capacity = 1 << 20;
+
+  // Streams open at once, each is served by a thread of its own
+  private int maxSubscribers = 64;
+
+  // Most events written to a stream per flush
+  private int batchSize = 256;
+
+  // A comment is sent on idle streams this often, so dead connections are noticed
+  private Duration heartbeat = Duration.ofSeconds(15);
+}
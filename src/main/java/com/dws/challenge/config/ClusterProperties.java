@@ -0,0 +1,35 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "dws.cluster")
+public class ClusterProperties {
+
+  private boolean enabled;
+
+  // This node's key in nodes
+  private String nodeId;
+
+  // Base URL of every node including this one, by node id; all nodes must be given the same map
+  private Map<String, String> nodes = new LinkedHashMap<>();
+
+  // Points per node on the hash ring, more of them spread the accounts more evenly
+  private int virtualNodes = 128;
+
+  // How long a call to another node may take before it counts as unavailable
+  private Duration rpcTimeout = Duration.ofSeconds(2);
+
+  // State of the cross-node transfers this node takes part in, replayed on restart
+  private String journalDirectory = "data/cluster";
+
+  private boolean fsync = true;
+
+  // How often undecided cross-node transfers are followed up with the other node
+  private Duration recoveryInterval = Duration.ofSeconds(1);
+}
@@ -0,0 +1,23 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "dws.idempotency")
+public class IdempotencyProperties {
+
+  // Upper bound on remembered keys, the least recently used ones are evicted first
+  private int maxEntries = 100_000;
+
+  // Rounded up to a power of two; each shard has its own lock
+  private int shards = 64;
+
+  // How long the outcome of a request is replayed for retries with the same key
+  private Duration ttl = Duration.ofHours(1);
+
+  // How long a retry waits for the original request to finish before it gets a 409
+  private Duration inFlightTimeout = Duration.ofSeconds(5);
+}
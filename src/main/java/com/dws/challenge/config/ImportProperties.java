@@ -0,0 +1,18 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "dws.import")
+public class ImportProperties {
+
+  // Rows handed to the repository at once, the journaled repository syncs once per chunk
+  private int chunkSize = 10_000;
+
+  // Chunks inserted concurrently; parsing waits when all of them are busy, so memory stays bounded
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+
+  // Rejected rows listed in the summary, all of them are counted
+  private int maxReportedErrors = 1_000;
+}
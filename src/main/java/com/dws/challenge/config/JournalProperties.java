@@ -0,0 +1,21 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties(prefix = "dws.repository.journal")
+public class JournalProperties {
+
+  private String directory = "data/journal";
+
+  // Force every group commit to disk; turning it off only survives process crashes, not power loss
+  private boolean fsync = true;
+
+  // Once a segment grows past this size a new one is started and the closed ones are compacted into a snapshot
+  private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+  // Records appended while the previous group is being written wait in a buffer of this size
+  private DataSize bufferSize = DataSize.ofMegabytes(1);
+}
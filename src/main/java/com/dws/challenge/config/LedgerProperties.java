@@ -0,0 +1,16 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "dws.ledger")
+public class LedgerProperties {
+
+  // Without the ledger, transfer histories are always empty
+  private boolean enabled = true;
+
+  // Transactions kept, rounded up to whole chunks of 65536 (about 2.6 MB each); older ones are dropped from every
+  // history
+  private int capacity = 1 << 18;
+}
@@ -0,0 +1,23 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "dws.metrics")
+public class MetricsProperties {
+
+  // Lock hold times are recorded for one in this many transfers, rounded up to a power of two
+  private int lockHoldSampleRate = 16;
+
+  // Accounts tracked by the contention tracker; counts are exact for accounts that never drop out
+  private int hotAccountsCapacity = 256;
+
+  // Contention counts halve this often, so an account's count reflects recent waits rather than its whole history
+  private Duration hotAccountsWindow = Duration.ofMinutes(1);
+
+  // How many accounts the hotaccounts endpoint reports
+  private int hotAccountsReported = 10;
+}
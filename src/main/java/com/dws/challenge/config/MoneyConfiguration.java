@@ -0,0 +1,19 @@
+package com.dws.challenge.config;
+
+import com.dws.challenge.domain.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+
+@Slf4j
+@Configuration
+public class MoneyConfiguration {
+
+  @Autowired
+  public MoneyConfiguration(MoneyProperties properties) {
+    String currency = properties.getCurrency();
+    int scale = properties.scaleOf(currency);
+    Money.configure(currency, scale);
+    log.info("Keeping balances in {} with {} decimals", currency, scale);
+  }
+}
@@ -0,0 +1,24 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "dws.money")
+public class MoneyProperties {
+
+  // ISO 4217 code of the currency all accounts are kept in
+  private String currency = "EUR";
+
+  // Overrides the ISO 4217 number of decimals per currency, e.g. dws.money.scales.JPY=0
+  private Map<String, Integer> scales = new HashMap<>();
+
+  public int scaleOf(String currencyCode) {
+    Integer scale = scales.get(currencyCode);
+    return scale != null ? scale : Currency.getInstance(currencyCode).getDefaultFractionDigits();
+  }
+}
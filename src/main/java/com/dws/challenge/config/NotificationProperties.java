@@ -0,0 +1,39 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "dws.notifications")
+public class NotificationProperties {
+
+  // Send notifications from a dedicated dispatcher instead of the transferring thread
+  private boolean async = true;
+
+  // Deliver each account's notifications of a batch on its own virtual thread, requires Java 21
+  private boolean virtualThreads = false;
+
+  private int queueCapacity = 10_000;
+
+  private int batchSize = 256;
+
+  private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+  // How long BLOCK waits for queue space before the notification is dropped
+  private Duration offerTimeout = Duration.ofMillis(50);
+
+  private int maxAttempts = 3;
+
+  private Duration retryBackoff = Duration.ofMillis(100);
+
+  private Duration shutdownTimeout = Duration.ofSeconds(5);
+
+  public enum OverflowPolicy {
+    BLOCK,
+    DROP_NEWEST,
+    DROP_OLDEST,
+    CALLER_RUNS
+  }
+}
@@ -0,0 +1,12 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "dws.repository.offheap")
+public class OffHeapProperties {
+
+  // Sizes the index up front; it doubles when full, which blocks account creation and lookups while it rehashes
+  private int expectedAccounts = 1_000_000;
+}
@@ -0,0 +1,15 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "dws.reactive")
+public class ReactiveProperties {
+
+  // Transfers wait for account locks and the journal on these threads, never on the event loop
+  private int transferThreads = Runtime.getRuntime().availableProcessors() * 2;
+
+  // Transfers queued for a thread before new ones are refused with 503
+  private int transferQueueCapacity = 10_000;
+}
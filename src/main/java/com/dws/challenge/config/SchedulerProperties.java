@@ -0,0 +1,17 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "dws.scheduler")
+public class SchedulerProperties {
+
+  // Resolution of the timer wheel, a scheduled transfer runs at most this much after its time plus the batch ahead
+  private Duration tick = Duration.ofMillis(10);
+
+  // Due transfers are executed as best-effort batches of at most this many
+  private int batchSize = 1_000;
+}
@@ -0,0 +1,17 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "dws.snapshot")
+public class SnapshotProperties {
+
+  // Accounts a single multi-get may ask for
+  private int maxAccounts = 1_000;
+
+  // How long a snapshot read retries while transfers keep touching its accounts, before answering 503
+  private Duration maxWait = Duration.ofMillis(200);
+}
@@ -0,0 +1,41 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "dws.transfer")
+public class TransferProperties {
+
+  // locking, optimistic, sharded or jdbc, see TransferStrategy implementations
+  private String strategy = "locking";
+
+  // Single-threaded shards of the sharded strategy
+  private int shards = Runtime.getRuntime().availableProcessors();
+
+  // Reads POST /v1/accounts/transfer bodies token by token instead of through Jackson data binding, servlet stack only
+  private boolean streamingRequestParser = true;
+
+  private int batchMaxSize = 100_000;
+
+  // Atomic batches hold every involved account locked while they are applied
+  private int atomicBatchMaxAccounts = 1_000;
+
+  // Locking strategy only: accounts whose balance is split over stripes from their first transfer on
+  private List<String> hotAccounts = new ArrayList<>();
+
+  // Locking strategy only: accounts are striped once transfers waited this often for their lock within about one
+  // dws.metrics.hot-accounts-window, 0 never does
+  private long hotAccountContentions = 0;
+
+  private int hotAccountStripes = Runtime.getRuntime().availableProcessors();
+
+  // Jdbc strategy only: threads committing batches of queued transfers, one database transaction per batch
+  private int jdbcCommitters = 2;
+
+  // Jdbc strategy only: most transfers committed in one batch
+  private int jdbcBatchMaxSize = 1_000;
+}
@@ -1,10 +1,19 @@
 package com.dws.challenge.domain;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.math.BigDecimal;
+import java.util.concurrent.locks.ReentrantLock;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
@@ -13,23 +22,154 @@ import jakarta.validation.constraints.NotNull;
 @Data
 public class Account {
 
+  private static final VarHandle BALANCE;
+  private static final VarHandle UPDATES;
+
+  // Update stamps count completed updates from this bit up and updates in progress below it
+  protected static final long COMPLETED_UPDATE = 1L << 20;
+
+  static {
+    try {
+      BALANCE = MethodHandles.lookup().findVarHandle(Account.class, "balance", long.class);
+      UPDATES = MethodHandles.lookup().findVarHandle(Account.class, "updates", long.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
   @NotNull
   @NotEmpty
   private final String accountId;
 
-  @NotNull
-  @Min(value = 0, message = "Initial balance must be positive.")
-  private BigDecimal balance;
+  // Minor units of the configured currency, see Money
+  @ToString.Exclude
+  @EqualsAndHashCode.Exclude
+  private volatile long balance;
+
+  @JsonIgnore
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @ToString.Exclude
+  @EqualsAndHashCode.Exclude
+  private volatile long updates;
+
+  // Set once the account turned hot, its balance then lives in the stripes instead of the balance field until a
+  // balance is stored again
+  @JsonIgnore
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @ToString.Exclude
+  @EqualsAndHashCode.Exclude
+  private volatile StripedBalance stripes;
+
+  // Guards balance updates in LockingTransferStrategy; unlike a monitor it does not pin virtual threads
+  @JsonIgnore
+  @Getter(AccessLevel.NONE)
+  @ToString.Exclude
+  @EqualsAndHashCode.Exclude
+  private final ReentrantLock lock;
 
   public Account(String accountId) {
+    this(accountId, new ReentrantLock());
+  }
+
+  // For views over balances kept elsewhere, which may share their lock with other accounts
+  protected Account(String accountId, ReentrantLock lock) {
     this.accountId = accountId;
-    this.balance = BigDecimal.ZERO;
+    this.lock = lock;
   }
 
   @JsonCreator
   public Account(@JsonProperty("accountId") String accountId,
     @JsonProperty("balance") BigDecimal balance) {
+    if (balance == null) {
+      throw new IllegalArgumentException("Balance must not be null.");
+    }
     this.accountId = accountId;
-    this.balance = balance;
+    this.lock = new ReentrantLock();
+    this.balance = Money.toMinorUnits(balance);
+  }
+
+  @Min(value = 0, message = "Initial balance must be positive.")
+  @ToString.Include(name = "balance")
+  public BigDecimal getBalance() {
+    return Money.toBigDecimal(balanceMinorUnits());
+  }
+
+  public void setBalance(BigDecimal balance) {
+    storeBalance(Money.toMinorUnits(balance));
+  }
+
+  public long balanceMinorUnits() {
+    StripedBalance stripes = this.stripes;
+    return stripes == null ? balance : stripes.sum();
+  }
+
+  /**
+   * Sets the balance. A striped balance is collapsed back into a plain one, which is only safe while no transfer
+   * touches the account, as during recovery; transfers themselves never store into a striped account.
+   */
+  public void storeBalance(long minorUnits) {
+    this.balance = minorUnits;
+    if (stripes != null) {
+      stripes = null;
+    }
+  }
+
+  public StripedBalance stripedBalance() {
+    return stripes;
+  }
+
+  /**
+   * Moves the balance into {@code count} stripes, see {@link StripedBalance}, until {@link #storeBalance} collapses
+   * them again. The caller must hold {@link #lock()}, and only LockingTransferStrategy updates striped balances.
+   * Views over balances kept elsewhere cannot be striped and return false.
+   */
+  public boolean stripeBalance(int count) {
+    if (stripes == null) {
+      beginUpdate();
+      stripes = new StripedBalance(count, balance);
+      endUpdate();
+    }
+    return true;
+  }
+
+  public ReentrantLock lock() {
+    return lock;
+  }
+
+  /**
+   * Accounts are locked by ascending rank, then by id. All accounts owning their lock have rank 0; accounts sharing
+   * striped locks rank by stripe, so that every thread takes the stripes in the same order.
+   */
+  public int lockRank() {
+    return 0;
+  }
+
+  public boolean compareAndSetBalance(long expected, long minorUnits) {
+    return BALANCE.compareAndSet(this, expected, minorUnits);
+  }
+
+  /**
+   * Transfers call this on every account they touch before writing the first balance, and {@link #endUpdate} after
+   * writing the last one, so that snapshot reads can tell they raced with a transfer without taking its locks.
+   * Optimistic transfers may overlap on an account, hence a count of updates in progress rather than a flag.
+   */
+  public void beginUpdate() {
+    UPDATES.getAndAdd(this, 1L);
+  }
+
+  public void endUpdate() {
+    UPDATES.getAndAdd(this, COMPLETED_UPDATE - 1);
+  }
+
+  // Changes whenever an update begins or ends, on the account or any of its stripes
+  public long updateStamp() {
+    StripedBalance stripes = this.stripes;
+    return stripes == null ? updates : updates + stripes.updateStamp();
+  }
+
+  public static boolean isSettled(long updateStamp) {
+    return (updateStamp & (COMPLETED_UPDATE - 1)) == 0;
   }
 }
@@ -0,0 +1,10 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+// Requested accounts in request order; ids that do not exist are listed in missing
+public record AccountBalances(List<Account> accounts,
+  @JsonInclude(JsonInclude.Include.NON_EMPTY) List<String> missing) {
+}
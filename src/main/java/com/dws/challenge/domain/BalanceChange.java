@@ -0,0 +1,17 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+// One change of one account's balance; a transfer makes two, numbered one after the other, payer first
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BalanceChange(long sequence, Type type, String accountId, String counterpartyId, BigDecimal change,
+  BigDecimal balance, Instant timestamp) {
+
+  public enum Type {
+    CREATED,
+    TRANSFER
+  }
+}
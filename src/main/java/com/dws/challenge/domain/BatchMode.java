@@ -0,0 +1,18 @@
+package com.dws.challenge.domain;
+
+public enum BatchMode {
+
+  // Every transfer of the batch is applied, or none is
+  ATOMIC,
+
+  // Transfers are applied independently and each one reports its own outcome
+  BEST_EFFORT;
+
+  public static BatchMode fromParameter(String mode) {
+    return switch (mode) {
+      case "atomic" -> ATOMIC;
+      case "best-effort" -> BEST_EFFORT;
+      default -> throw new IllegalArgumentException("Unknown batch mode " + mode + ", use atomic or best-effort.");
+    };
+  }
+}
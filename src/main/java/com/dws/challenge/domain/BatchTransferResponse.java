@@ -0,0 +1,10 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchTransferResponse(BatchMode mode, boolean applied, int completed, int failed, String error,
+  List<TransferResult> results) {
+}
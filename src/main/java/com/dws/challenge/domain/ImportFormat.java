@@ -0,0 +1,10 @@
+package com.dws.challenge.domain;
+
+public enum ImportFormat {
+
+  // One {"accountId": ..., "balance": ...} object per line
+  NDJSON,
+
+  // accountId,balance per line, optionally preceded by that header
+  CSV
+}
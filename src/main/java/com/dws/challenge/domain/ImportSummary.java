@@ -0,0 +1,16 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk import. Rows are numbered by their line in the body; only the first rejected rows are listed
+ * in {@code errors}, ordered by row.
+ */
+public record ImportSummary(long rows, long created, long duplicates, long invalid, List<RowError> errors) {
+
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public record RowError(long row, String accountId, String error) {
+  }
+}
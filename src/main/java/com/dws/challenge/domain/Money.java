@@ -0,0 +1,62 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+
+/**
+ * Amounts are kept as a {@code long} number of minor units (e.g. cents) of the configured
+ * currency. {@link BigDecimal} is only used when amounts cross the JSON boundary.
+ */
+public final class Money {
+
+  private static volatile String currency = "EUR";
+  private static volatile int scale = 2;
+
+  private Money() {
+  }
+
+  public static void configure(String currencyCode, int fractionDigits) {
+    if (fractionDigits < 0 || fractionDigits > 18) {
+      throw new IllegalArgumentException("Unsupported scale " + fractionDigits + " for currency " + currencyCode);
+    }
+    currency = currencyCode;
+    scale = fractionDigits;
+  }
+
+  public static String currency() {
+    return currency;
+  }
+
+  public static int scale() {
+    return scale;
+  }
+
+  public static long toMinorUnits(BigDecimal amount) {
+    try {
+      return amount.movePointRight(scale).longValueExact();
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException(
+        "Amount " + amount.toPlainString() + " cannot be represented in " + currency + " with " + scale + " decimals.");
+    }
+  }
+
+  public static BigDecimal toBigDecimal(long minorUnits) {
+    return BigDecimal.valueOf(minorUnits, scale);
+  }
+
+  public static long add(long minorUnits, long addend) {
+    long result = minorUnits + addend;
+    // Overflow iff both operands have the same sign and the result has the opposite one
+    if (((minorUnits ^ result) & (addend ^ result)) < 0) {
+      throw new IllegalArgumentException("Amount overflow.");
+    }
+    return result;
+  }
+
+  public static long subtract(long minorUnits, long subtrahend) {
+    long result = minorUnits - subtrahend;
+    if (((minorUnits ^ subtrahend) & (minorUnits ^ result)) < 0) {
+      throw new IllegalArgumentException("Amount overflow.");
+    }
+    return result;
+  }
+}
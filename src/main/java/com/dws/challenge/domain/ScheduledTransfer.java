@@ -0,0 +1,9 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+// A transfer waiting for its execution time; the id cancels it
+public record ScheduledTransfer(long id, String accountFromId, String accountToId, BigDecimal amount,
+  Instant executeAt) {
+}
@@ -0,0 +1,142 @@
+package com.dws.challenge.domain;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Balance of a hot account split over a power-of-two number of stripes, in the spirit of {@code LongAdder}, so that
+ * concurrent transfers touching the account mostly write different stripes instead of queueing on one lock. Credits
+ * go to the calling thread's stripe; a debit takes the whole amount from one stripe holding enough, or gathers all
+ * stripes into one when none does. No stripe ever goes below zero, so neither does the balance.
+ *
+ * <p>Every stripe counts its updates in progress like {@link Account#beginUpdate} does, so that snapshot reads can
+ * tell they raced with a transfer. {@link #credit} and {@link #debit} leave the update of the stripe they wrote open
+ * and return its index, to be passed to {@link #settle} once the other side of the transfer is written too.
+ */
+public final class StripedBalance {
+
+  // Each stripe keeps its balance and update count in 128 bytes of its own, the first block only pads the array header
+  private static final int STRIDE = 16;
+  private static final int UPDATES = 1;
+
+  private final AtomicLongArray stripes;
+  private final int mask;
+  private final ReentrantLock consolidation = new ReentrantLock();
+
+  StripedBalance(int count, long balance) {
+    int size = count <= 1 ? 1 : Integer.highestOneBit(count - 1) << 1;
+    this.stripes = new AtomicLongArray((size + 1) * STRIDE);
+    this.mask = size - 1;
+    stripes.set(value(0), balance);
+  }
+
+  public int count() {
+    return mask + 1;
+  }
+
+  // Not an atomic read of all stripes, see updateStamp
+  public long sum() {
+    long sum = 0;
+    for (int stripe = 0; stripe <= mask; stripe++) {
+      sum += stripes.get(value(stripe));
+    }
+    return sum;
+  }
+
+  /**
+   * Sum of the stripes' update counts. They only ever grow, so an unchanged sum means no stripe changed, and its low
+   * bits are the updates in progress over all stripes.
+   */
+  public long updateStamp() {
+    long stamp = 0;
+    for (int stripe = 0; stripe <= mask; stripe++) {
+      stamp += stripes.get(updates(stripe));
+    }
+    return stamp;
+  }
+
+  // Unlike Money.add this does not check for overflow, which would take a balance of over 2^63 minor units
+  public int credit(long amount) {
+    int stripe = home();
+    begin(stripe);
+    stripes.getAndAdd(value(stripe), amount);
+    return stripe;
+  }
+
+  /**
+   * Takes {@code amount} from the first stripe holding enough, starting at the calling thread's own.
+   *
+   * @return the stripe to settle, or -1 if the account does not hold enough funds, in which case nothing is left open
+   */
+  public int debit(long amount) {
+    int home = home();
+    for (int i = 0; i <= mask; i++) {
+      int stripe = (home + i) & mask;
+      if (stripes.get(value(stripe)) < amount) {
+        continue;
+      }
+      begin(stripe);
+      if (take(stripe, amount)) {
+        return stripe;
+      }
+      settle(stripe);
+    }
+    return consolidate(home, amount);
+  }
+
+  public void settle(int stripe) {
+    stripes.getAndAdd(updates(stripe), Account.COMPLETED_UPDATE - 1);
+  }
+
+  private boolean take(int stripe, long amount) {
+    int index = value(stripe);
+    long current;
+    while ((current = stripes.get(index)) >= amount) {
+      if (stripes.compareAndSet(index, current, current - amount)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Drains every stripe into home; serialized so that two large debits do not keep draining each other's stripes
+  private int consolidate(int home, long amount) {
+    consolidation.lock();
+    try {
+      for (int stripe = 0; stripe <= mask; stripe++) {
+        begin(stripe);
+      }
+      long total = 0;
+      for (int stripe = 0; stripe <= mask; stripe++) {
+        total += stripes.getAndSet(value(stripe), 0);
+      }
+      boolean enough = total >= amount;
+      stripes.getAndAdd(value(home), enough ? total - amount : total);
+      for (int stripe = 0; stripe <= mask; stripe++) {
+        if (!enough || stripe != home) {
+          settle(stripe);
+        }
+      }
+      return enough ? home : -1;
+    } finally {
+      consolidation.unlock();
+    }
+  }
+
+  private void begin(int stripe) {
+    stripes.getAndAdd(updates(stripe), 1L);
+  }
+
+  // Fibonacci hashing spreads consecutive thread ids over the stripes
+  private int home() {
+    return (int) ((Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+  }
+
+  private static int value(int stripe) {
+    return (stripe + 1) * STRIDE;
+  }
+
+  private static int updates(int stripe) {
+    return (stripe + 1) * STRIDE + UPDATES;
+  }
+}
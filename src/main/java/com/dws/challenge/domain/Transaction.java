@@ -0,0 +1,9 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+// One ledger entry, balances are the ones the transfer left behind
+public record Transaction(long id, String accountFromId, String accountToId, BigDecimal amount, Instant timestamp,
+  BigDecimal accountFromBalance, BigDecimal accountToBalance) {
+}
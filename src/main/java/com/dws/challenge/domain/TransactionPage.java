@@ -0,0 +1,10 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+// Newest first; pass nextCursor back to get the next, older page. Absent on the last page.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TransactionPage(List<Transaction> transactions, String nextCursor) {
+}
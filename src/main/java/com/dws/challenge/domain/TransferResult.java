@@ -0,0 +1,25 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TransferResult(int index, Status status, String error) {
+
+  public enum Status {
+    COMPLETED,
+    FAILED,
+    REJECTED
+  }
+
+  public static TransferResult completed(int index) {
+    return new TransferResult(index, Status.COMPLETED, null);
+  }
+
+  public static TransferResult failed(int index, String error) {
+    return new TransferResult(index, Status.FAILED, error);
+  }
+
+  public static TransferResult rejected(int index, String error) {
+    return new TransferResult(index, Status.REJECTED, error);
+  }
+}
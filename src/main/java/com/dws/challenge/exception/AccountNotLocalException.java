@@ -0,0 +1,16 @@
+package com.dws.challenge.exception;
+
+// Cluster mode only: the request takes accounts of the node it is sent to, and this one lives on another node
+public class AccountNotLocalException extends IllegalArgumentException {
+
+  private final String nodeId;
+
+  public AccountNotLocalException(String accountId, String nodeId) {
+    super("Account " + accountId + " lives on node " + nodeId + ", send this request there.");
+    this.nodeId = nodeId;
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+}
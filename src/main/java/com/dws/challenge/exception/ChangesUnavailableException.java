@@ -0,0 +1,16 @@
+package com.dws.challenge.exception;
+
+// The requested balance changes were overwritten in the ring, or their sequence was never reached
+public class ChangesUnavailableException extends RuntimeException {
+
+  private final long oldestSequence;
+
+  public ChangesUnavailableException(String message, long oldestSequence) {
+    super(message);
+    this.oldestSequence = oldestSequence;
+  }
+
+  public long getOldestSequence() {
+    return oldestSequence;
+  }
+}
@@ -0,0 +1,9 @@
+package com.dws.challenge.exception;
+
+// Another node of the cluster did not answer in time, so whatever it was asked to do may or may not have happened
+public class NodeUnavailableException extends RuntimeException {
+
+  public NodeUnavailableException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,9 @@
+package com.dws.challenge.exception;
+
+// Transfers kept touching the requested accounts for longer than a snapshot may wait
+public class SnapshotUnavailableException extends RuntimeException {
+
+  public SnapshotUnavailableException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,23 @@
+package com.dws.challenge.exception;
+
+// A transfer refused for a known business reason; still an IllegalArgumentException for existing callers
+public class TransferRejectedException extends IllegalArgumentException {
+
+  private final Reason reason;
+
+  public TransferRejectedException(Reason reason, String message) {
+    super(message);
+    this.reason = reason;
+  }
+
+  public Reason getReason() {
+    return reason;
+  }
+
+  public enum Reason {
+    INSUFFICIENT_FUNDS,
+    ACCOUNT_NOT_FOUND,
+    INVALID_AMOUNT,
+    INVALID_ACCOUNT_ID
+  }
+}
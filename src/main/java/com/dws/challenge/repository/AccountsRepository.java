@@ -3,11 +3,34 @@ package com.dws.challenge.repository;
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 
+import java.util.BitSet;
+import java.util.List;
+
 public interface AccountsRepository {
 
   void createAccount(Account account) throws DuplicateAccountIdException;
 
+  /**
+   * Creates every account whose id is still free, for bulk imports. Returns the positions of the accounts that were
+   * not created because their id already exists. Durable repositories sync once for the whole list.
+   */
+  default BitSet createAccounts(List<Account> accounts) {
+    BitSet duplicates = new BitSet();
+    for (int i = 0; i < accounts.size(); i++) {
+      try {
+        createAccount(accounts.get(i));
+      } catch (DuplicateAccountIdException e) {
+        duplicates.set(i);
+      }
+    }
+    return duplicates;
+  }
+
   Account getAccount(String accountId);
 
   void clearAccounts();
+
+  // Blocks until every change applied so far is durable, a no-op for volatile repositories
+  default void sync() {
+  }
 }
@@ -0,0 +1,408 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.config.AccountCacheProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.StripedBalance;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Repository;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded cache of accounts in front of {@link JdbcAccountsRepository}, which also serves as its identity map:
+ * every lookup of an account returns the same object for as long as anyone holds it, so transfers keep locking and
+ * updating one object per account. The balance changes of every transfer are written through to the database
+ * before the transfer returns; with the locking strategy that happens while the account locks are held. A transfer
+ * the database rejects is taken back from the accounts in memory too, and both are invalidated.
+ * <p>
+ * Eviction follows W-TinyLFU. New accounts enter a small LRU window. An account leaving the window only takes the
+ * place of the main region's next victim if a frequency sketch says it was used more often, and accounts used again
+ * while in the main region move to its protected segment. Hits are recorded in a lossy buffer and replayed under the
+ * eviction lock by whoever gets it, so reads never wait for the policy.
+ * <p>
+ * Evicted or invalidated accounts stay weakly referenced. A transfer still holding one keeps it reachable and the
+ * next lookup revives that object instead of loading a second copy from the database. Once nothing holds it, every
+ * transfer that touched it has been written through, so the database has its balance.
+ */
+@Primary
+@Repository
+// Ahead of the other listeners, the balance change stream relies on transfers being recorded first
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "dws.repository", name = "type", havingValue = "jdbc")
+public class CachingAccountsRepository implements AccountsRepository, TransferListener {
+
+  private static final int READ_BUFFER_SIZE = 128;
+  // Roughly one hit in this many tries to replay the read buffer
+  private static final int DRAIN_INTERVAL_MASK = 63;
+
+  private final JdbcAccountsRepository repository;
+  private final Map<String, Node> cached = new ConcurrentHashMap<>();
+  private final Map<String, Retired> retired = new ConcurrentHashMap<>();
+  private final ReferenceQueue<Account> collected = new ReferenceQueue<>();
+  private final AtomicReferenceArray<Node> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+
+  // The policy, only touched under the eviction lock
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private final FrequencySketch sketch;
+  private final AccessOrder window = new AccessOrder();
+  private final AccessOrder probation = new AccessOrder();
+  private final AccessOrder protectedSegment = new AccessOrder();
+  private final int windowMaximum;
+  private final int mainMaximum;
+  private final int protectedMaximum;
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter revivals;
+  private final Counter evictions;
+  private final Timer loads;
+
+  @Autowired
+  public CachingAccountsRepository(JdbcAccountsRepository repository, AccountCacheProperties properties,
+    MeterRegistry meterRegistry) {
+    this.repository = repository;
+    int maximumSize = Math.max(1, properties.getMaximumSize());
+    this.windowMaximum = Math.max(1, (int) ((long) maximumSize * properties.getWindowPercent() / 100));
+    this.mainMaximum = Math.max(0, maximumSize - windowMaximum);
+    this.protectedMaximum = (int) (mainMaximum * 8L / 10);
+    this.sketch = new FrequencySketch(maximumSize);
+
+    this.hits = gets(meterRegistry, "hit");
+    this.misses = gets(meterRegistry, "miss");
+    this.revivals = Counter.builder("accounts.cache.revivals")
+      .description("Misses served by an evicted account a transfer still held, instead of the database")
+      .register(meterRegistry);
+    this.evictions = Counter.builder("accounts.cache.evictions")
+      .register(meterRegistry);
+    this.loads = Timer.builder("accounts.cache.loads")
+      .description("Time to load an account from the database on a miss, missing accounts included")
+      .publishPercentiles(0.5, 0.99)
+      .register(meterRegistry);
+    Gauge.builder("accounts.cache.hit.ratio", this, CachingAccountsRepository::hitRatio)
+      .register(meterRegistry);
+    Gauge.builder("accounts.cache.size", cached, Map::size)
+      .register(meterRegistry);
+  }
+
+  private static Counter gets(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("accounts.cache.gets")
+      .tag("result", result)
+      .register(meterRegistry);
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    String accountId = account.getAccountId();
+    if (cached.containsKey(accountId)) {
+      throw new DuplicateAccountIdException("Account id " + accountId + " already exists!");
+    }
+    // Inserted before the account is cached, so the map's lock is never held across a database call. A lookup that
+    // loads the new row in between caches its own copy, which has the same balance, and that copy stays the one
+    repository.createAccount(account);
+    Node created = new Node(accountId, account);
+    if (cached.putIfAbsent(accountId, created) == null) {
+      admit(created);
+    }
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    Node node = cached.get(accountId);
+    if (node != null) {
+      hits.increment();
+      recordRead(node);
+      return node.account;
+    }
+    misses.increment();
+    Node[] loaded = new Node[1];
+    node = cached.computeIfAbsent(accountId, id -> loaded[0] = load(id));
+    if (loaded[0] != null) {
+      admit(loaded[0]);
+    }
+    return node == null ? null : node.account;
+  }
+
+  @Override
+  public void clearAccounts() {
+    evictionLock.lock();
+    try {
+      repository.clearAccounts();
+      cached.clear();
+      retired.clear();
+      for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+        readBuffer.set(i, null);
+      }
+      window.clear();
+      probation.clear();
+      protectedSegment.clear();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public void onTransfer(Account accountFrom, Account accountTo, long amount, long fromBalance, long toBalance) {
+    if (accountFrom != accountTo) {
+      try {
+        repository.addToBalances(accountFrom.getAccountId(), accountTo.getAccountId(), amount);
+      } catch (RuntimeException e) {
+        // The database did not take the transfer, so the accounts must not keep it either
+        restore(accountFrom, amount);
+        restore(accountTo, -amount);
+        invalidate(accountFrom.getAccountId());
+        invalidate(accountTo.getAccountId());
+        throw e;
+      }
+    }
+    // An evicted account must not be collected, and then reloaded, before its change reached the database
+    Reference.reachabilityFence(accountFrom);
+    Reference.reachabilityFence(accountTo);
+  }
+
+  /**
+   * Drops the account from the cache, so the next lookup reads it from the database again. An account object still
+   * held by a transfer stays the one every lookup returns until it is released.
+   */
+  public void invalidate(String accountId) {
+    evictionLock.lock();
+    try {
+      Node node = cached.get(accountId);
+      if (node != null) {
+        retire(node);
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  public int estimatedSize() {
+    return cached.size();
+  }
+
+  public double hitRatio() {
+    double lookups = hits.count() + misses.count();
+    return lookups == 0 ? 0 : hits.count() / lookups;
+  }
+
+  private Node load(String accountId) {
+    Retired reference = retired.remove(accountId);
+    Account account = reference == null ? null : reference.get();
+    if (account != null) {
+      revivals.increment();
+      return new Node(accountId, account);
+    }
+    long start = System.nanoTime();
+    account = repository.getAccount(accountId);
+    loads.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    return account == null ? null : new Node(accountId, account);
+  }
+
+  // Optimistic transfers and striped accounts change balances without holding the lock, hence no plain store
+  private static void restore(Account account, long amount) {
+    StripedBalance stripes = account.stripedBalance();
+    if (stripes != null) {
+      // Only fails if a concurrent transfer spent the credit already, which then stays
+      int stripe = amount < 0 ? stripes.debit(-amount) : stripes.credit(amount);
+      if (stripe >= 0) {
+        stripes.settle(stripe);
+      }
+      return;
+    }
+    account.beginUpdate();
+    long balance;
+    do {
+      balance = account.balanceMinorUnits();
+    } while (!account.compareAndSetBalance(balance, balance + amount));
+    account.endUpdate();
+  }
+
+  // Lossy on purpose: a hit overwritten before it was replayed only costs the policy a little accuracy
+  private void recordRead(Node node) {
+    int random = ThreadLocalRandom.current().nextInt();
+    readBuffer.lazySet(random & (READ_BUFFER_SIZE - 1), node);
+    if ((random >>> 24 & DRAIN_INTERVAL_MASK) == 0 && evictionLock.tryLock()) {
+      try {
+        drainReads();
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+  }
+
+  private void admit(Node node) {
+    evictionLock.lock();
+    try {
+      drainReads();
+      // Skipped if the account was invalidated or cleared since it was put in the map
+      if (node.queue == null && cached.get(node.accountId) == node) {
+        sketch.increment(node.accountId);
+        window.add(node);
+        evict();
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  private void drainReads() {
+    for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+      Node node = readBuffer.getAndSet(i, null);
+      if (node != null) {
+        onRead(node);
+      }
+    }
+    for (Reference<? extends Account> reference; (reference = collected.poll()) != null; ) {
+      Retired gone = (Retired) reference;
+      retired.remove(gone.accountId, gone);
+    }
+  }
+
+  private void onRead(Node node) {
+    if (node.queue == null) {
+      return;
+    }
+    sketch.increment(node.accountId);
+    if (node.queue == probation) {
+      probation.remove(node);
+      protectedSegment.add(node);
+      if (protectedSegment.size > protectedMaximum) {
+        Node demoted = protectedSegment.head;
+        protectedSegment.remove(demoted);
+        probation.add(demoted);
+      }
+    } else {
+      node.queue.moveToTail(node);
+    }
+  }
+
+  // Accounts leaving the window are admitted to the main region while it has room, then only if more frequent
+  // than the account it would evict
+  private void evict() {
+    while (window.size > windowMaximum) {
+      Node candidate = window.head;
+      window.remove(candidate);
+      if (probation.size + protectedSegment.size < mainMaximum) {
+        probation.add(candidate);
+        continue;
+      }
+      Node victim = probation.size > 0 ? probation.head : protectedSegment.head;
+      if (victim != null && sketch.frequency(candidate.accountId) > sketch.frequency(victim.accountId)) {
+        retire(victim);
+        probation.add(candidate);
+      } else {
+        retire(candidate);
+      }
+      evictions.increment();
+    }
+  }
+
+  // Made weakly reachable before it leaves the map, so a lookup in between still finds the same object
+  private void retire(Node node) {
+    if (node.queue != null) {
+      node.queue.remove(node);
+    }
+    retired.put(node.accountId, new Retired(node.accountId, node.account, collected));
+    cached.remove(node.accountId, node);
+  }
+
+  private static final class Retired extends WeakReference<Account> {
+
+    final String accountId;
+
+    Retired(String accountId, Account account, ReferenceQueue<Account> queue) {
+      super(account, queue);
+      this.accountId = accountId;
+    }
+  }
+
+  private static final class Node {
+
+    final String accountId;
+    final Account account;
+
+    // Guarded by the eviction lock; the queue is null while the node is not part of the policy
+    AccessOrder queue;
+    Node prev;
+    Node next;
+
+    Node(String accountId, Account account) {
+      this.accountId = accountId;
+      this.account = account;
+    }
+  }
+
+  // Doubly linked list from least to most recently used
+  private static final class AccessOrder {
+
+    Node head;
+    Node tail;
+    int size;
+
+    void add(Node node) {
+      node.queue = this;
+      node.prev = tail;
+      node.next = null;
+      if (tail == null) {
+        head = node;
+      } else {
+        tail.next = node;
+      }
+      tail = node;
+      size++;
+    }
+
+    void remove(Node node) {
+      if (node.prev == null) {
+        head = node.next;
+      } else {
+        node.prev.next = node.next;
+      }
+      if (node.next == null) {
+        tail = node.prev;
+      } else {
+        node.next.prev = node.prev;
+      }
+      node.queue = null;
+      node.prev = null;
+      node.next = null;
+      size--;
+    }
+
+    void moveToTail(Node node) {
+      if (node != tail) {
+        remove(node);
+        add(node);
+      }
+    }
+
+    void clear() {
+      for (Node node = head; node != null; ) {
+        Node next = node.next;
+        node.queue = null;
+        node.prev = null;
+        node.next = null;
+        node = next;
+      }
+      head = null;
+      tail = null;
+      size = 0;
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package com.dws.challenge.repository;
+
+/**
+ * Approximate access counts for {@link CachingAccountsRepository}'s admission policy: a count-min sketch of 4-bit
+ * counters, sixteen to a long, four per key. Once the sampled accesses reach ten times the cache size every counter
+ * is halved, so frequencies follow recent use rather than all time. Not thread-safe, the cache only calls it under
+ * its eviction lock.
+ */
+final class FrequencySketch {
+
+  private static final long[] SEEDS = {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+  private static final int MAX_COUNT = 15;
+
+  private final long[] table;
+  private final int tableMask;
+  private final int sampleSize;
+  private int size;
+
+  FrequencySketch(int maximumSize) {
+    int capacity = Math.max(8, Integer.highestOneBit(Math.max(1, maximumSize) - 1) << 1);
+    this.table = new long[Math.min(capacity, 1 << 30)];
+    this.tableMask = table.length - 1;
+    this.sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * Math.max(1, maximumSize));
+  }
+
+  int frequency(String key) {
+    int hash = spread(key.hashCode());
+    int frequency = MAX_COUNT;
+    for (int i = 0; i < SEEDS.length; i++) {
+      int offset = counterOffset(hash, i);
+      frequency = Math.min(frequency, (int) ((table[indexOf(hash, i)] >>> offset) & MAX_COUNT));
+    }
+    return frequency;
+  }
+
+  void increment(String key) {
+    int hash = spread(key.hashCode());
+    boolean added = false;
+    for (int i = 0; i < SEEDS.length; i++) {
+      int index = indexOf(hash, i);
+      int offset = counterOffset(hash, i);
+      if (((table[index] >>> offset) & MAX_COUNT) != MAX_COUNT) {
+        table[index] += 1L << offset;
+        added = true;
+      }
+    }
+    if (added && ++size == sampleSize) {
+      reset();
+    }
+  }
+
+  // Halves every counter; counters that were odd lose half an access each, which comes off the sample size
+  private void reset() {
+    int odd = 0;
+    for (int i = 0; i < table.length; i++) {
+      odd += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size = (size - (odd >>> 2)) >>> 1;
+  }
+
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return (int) h & tableMask;
+  }
+
+  // Each of the four counters of a key sits in its own quarter of the sixteen in a long
+  private static int counterOffset(int hash, int i) {
+    return (((hash >>> (i << 3)) & 3) + (i << 2)) << 2;
+  }
+
+  private static int spread(int hash) {
+    hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+    hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+    return (hash >>> 16) ^ hash;
+  }
+}
@@ -0,0 +1,150 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.function.UnaryOperator;
+
+/**
+ * Keeps accounts in a table of the configured data source, an embedded H2 database unless
+ * {@code spring.datasource.url} says otherwise. The table is created on startup if missing.
+ * <p>
+ * Every {@link #getAccount} reads the row into a new {@link Account}, so two callers never lock the same object.
+ * Transfers are therefore only correct behind {@link CachingAccountsRepository}, which keeps one live object per
+ * account and writes their balance changes through with {@link #addToBalances}, unless the jdbc transfer strategy
+ * writes them in batches with {@link #updateBalances}.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "dws.repository", name = "type", havingValue = "jdbc")
+public class JdbcAccountsRepository implements AccountsRepository {
+
+  private final JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  public JdbcAccountsRepository(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+    jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS accounts ("
+      + "account_id VARCHAR(1024) NOT NULL PRIMARY KEY, "
+      + "balance BIGINT NOT NULL)");
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    try {
+      jdbcTemplate.update("INSERT INTO accounts (account_id, balance) VALUES (?, ?)", account.getAccountId(),
+        account.balanceMinorUnits());
+    } catch (DuplicateKeyException e) {
+      throw new DuplicateAccountIdException(
+        "Account id " + account.getAccountId() + " already exists!");
+    }
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    List<Account> accounts = jdbcTemplate.query("SELECT balance FROM accounts WHERE account_id = ?", (rs, row) -> {
+      Account account = new Account(accountId);
+      account.storeBalance(rs.getLong(1));
+      return account;
+    }, accountId);
+    return accounts.isEmpty() ? null : accounts.get(0);
+  }
+
+  @Override
+  public void clearAccounts() {
+    jdbcTemplate.update("DELETE FROM accounts");
+  }
+
+  /**
+   * Moves the amount between the stored balances in one transaction. Adding instead of storing the new balances
+   * keeps the result right whatever order concurrent transfers reach the database in, and the rows are updated in
+   * id order so that two transfers between the same accounts cannot deadlock.
+   */
+  public void addToBalances(String accountFromId, String accountToId, long amount) {
+    boolean fromFirst = accountFromId.compareTo(accountToId) < 0;
+    inTransaction(connection -> {
+      try (PreparedStatement update = connection.prepareStatement(
+        "UPDATE accounts SET balance = balance + ? WHERE account_id = ?")) {
+        add(update, fromFirst ? accountFromId : accountToId, fromFirst ? -amount : amount);
+        add(update, fromFirst ? accountToId : accountFromId, fromFirst ? amount : -amount);
+      }
+    });
+  }
+
+  /**
+   * Locks the rows of the accounts with {@code SELECT ... FOR UPDATE}, in the id order of the sorted set so that
+   * concurrent calls cannot deadlock, and hands their balances to {@code update}. The balances it returns are
+   * written with one batched {@code UPDATE} and committed together. Accounts without a row are left out of the
+   * balances {@code update} gets.
+   */
+  public void updateBalances(SortedSet<String> accountIds, UnaryOperator<Map<String, Long>> update) {
+    inTransaction(connection -> {
+      Map<String, Long> balances = new HashMap<>();
+      try (PreparedStatement select = connection.prepareStatement(
+        "SELECT balance FROM accounts WHERE account_id = ? FOR UPDATE")) {
+        for (String accountId : accountIds) {
+          select.setString(1, accountId);
+          try (ResultSet row = select.executeQuery()) {
+            if (row.next()) {
+              balances.put(accountId, row.getLong(1));
+            }
+          }
+        }
+      }
+
+      Map<String, Long> updated = update.apply(balances);
+      if (!updated.isEmpty()) {
+        try (PreparedStatement store = connection.prepareStatement(
+          "UPDATE accounts SET balance = ? WHERE account_id = ?")) {
+          for (Map.Entry<String, Long> balance : updated.entrySet()) {
+            store.setLong(1, balance.getValue());
+            store.setString(2, balance.getKey());
+            store.addBatch();
+          }
+          store.executeBatch();
+        }
+      }
+    });
+  }
+
+  private void inTransaction(Work work) {
+    jdbcTemplate.execute((Connection connection) -> {
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try {
+        work.run(connection);
+        connection.commit();
+      } catch (SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+      return null;
+    });
+  }
+
+  private static void add(PreparedStatement update, String accountId, long amount) throws SQLException {
+    update.setLong(1, amount);
+    update.setString(2, accountId);
+    update.executeUpdate();
+  }
+
+  @FunctionalInterface
+  private interface Work {
+
+    void run(Connection connection) throws SQLException;
+  }
+}
@@ -0,0 +1,148 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.config.JournalProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Accounts held in memory and recovered from a {@link WriteAheadLog} on start.
+ * <p>
+ * Transfers are journaled by {@link #onTransfer}, after the balances moved. If that fails, the accounts are ahead of
+ * the journal for good, so the repository turns read-only: every later change and {@link #sync()} fails, nothing
+ * that is not journaled gets acknowledged, and a restart recovers the journaled balances.
+ */
+@Slf4j
+@Repository
+// Ahead of the other listeners, the balance change stream relies on transfers being recorded first
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "dws.repository", name = "type", havingValue = "journaled")
+public class JournaledAccountsRepository implements AccountsRepository, TransferListener {
+
+  private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+  private final WriteAheadLog journal;
+  // Why the accounts are ahead of the journal, null while they are not
+  private volatile RuntimeException failure;
+
+  @Autowired
+  public JournaledAccountsRepository(JournalProperties properties) throws IOException {
+    this(Path.of(properties.getDirectory()), properties.isFsync(), properties.getSegmentSize().toBytes(),
+      (int) properties.getBufferSize().toBytes());
+  }
+
+  public JournaledAccountsRepository(Path directory, boolean fsync, long segmentSize, int bufferSize)
+    throws IOException {
+    long start = System.nanoTime();
+    this.journal = new WriteAheadLog(directory, fsync, segmentSize, bufferSize, new Recovery());
+    log.info("Recovered {} accounts from {} in {} ms", accounts.size(), directory,
+      (System.nanoTime() - start) / 1_000_000);
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    checkFailure();
+    boolean created = journal.appendCreate(account.getAccountId(), account.balanceMinorUnits(),
+      () -> accounts.putIfAbsent(account.getAccountId(), account) == null);
+    if (!created) {
+      throw new DuplicateAccountIdException(
+        "Account id " + account.getAccountId() + " already exists!");
+    }
+    journal.sync();
+  }
+
+  @Override
+  public BitSet createAccounts(List<Account> accounts) {
+    checkFailure();
+    BitSet duplicates = new BitSet();
+    for (int i = 0; i < accounts.size(); i++) {
+      Account account = accounts.get(i);
+      if (!journal.appendCreate(account.getAccountId(), account.balanceMinorUnits(),
+        () -> this.accounts.putIfAbsent(account.getAccountId(), account) == null)) {
+        duplicates.set(i);
+      }
+    }
+    journal.sync();
+    return duplicates;
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    return accounts.get(accountId);
+  }
+
+  @Override
+  public void clearAccounts() {
+    checkFailure();
+    journal.appendClear(accounts::clear);
+    journal.sync();
+  }
+
+  @Override
+  public void sync() {
+    checkFailure();
+    journal.sync();
+  }
+
+  @Override
+  public void onTransfer(Account accountFrom, Account accountTo, long amount, long fromBalance, long toBalance) {
+    checkFailure();
+    try {
+      journal.appendTransfer(accountFrom.getAccountId(), accountTo.getAccountId(), amount);
+    } catch (RuntimeException e) {
+      if (failure == null) {
+        log.error("Journaling a transfer failed, no further changes will be accepted", e);
+        failure = e;
+      }
+      // Not an IllegalArgumentException, which would pass for the transfer being refused while it was applied
+      throw new IllegalStateException("The transfer was applied but could not be journaled", e);
+    }
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    journal.close();
+  }
+
+  private void checkFailure() {
+    RuntimeException cause = failure;
+    if (cause != null) {
+      throw new IllegalStateException("Accounts are ahead of the journal, no further changes are accepted", cause);
+    }
+  }
+
+  private class Recovery implements WriteAheadLog.Replayer {
+
+    @Override
+    public void create(String accountId, long balance) {
+      Account account = accounts.computeIfAbsent(accountId, Account::new);
+      account.storeBalance(Money.add(account.balanceMinorUnits(), balance));
+    }
+
+    @Override
+    public void transfer(String accountFromId, String accountToId, long amount) {
+      Account accountFrom = accounts.computeIfAbsent(accountFromId, Account::new);
+      accountFrom.storeBalance(accountFrom.balanceMinorUnits() - amount);
+      Account accountTo = accounts.computeIfAbsent(accountToId, Account::new);
+      accountTo.storeBalance(accountTo.balanceMinorUnits() + amount);
+    }
+
+    @Override
+    public void clear() {
+      accounts.clear();
+    }
+  }
+}
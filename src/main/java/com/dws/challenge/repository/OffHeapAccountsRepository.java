@@ -0,0 +1,333 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.config.OffHeapProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Keeps every account in direct memory, so the heap only holds a handful of buffers however many accounts exist.
+ * <ul>
+ *   <li>slots: 24 bytes per account, the balance, a reference to the account id and the update stamp, in chunks
+ *   that never move</li>
+ *   <li>ids: length-prefixed Latin-1, or UTF-16 if needed, appended to an arena</li>
+ *   <li>index: open addressing with linear probing, one long per entry holding the id hash and the slot</li>
+ * </ul>
+ * {@link Account} objects are short-lived views over a slot, created by {@link #getAccount}. They share striped
+ * locks, ranked by stripe so that the locking strategy still takes them in a global order.
+ * <p>
+ * Creating accounts and growing the index take a write lock; lookups read the index optimistically and only fall
+ * back to the read lock when they raced with a writer. Balances are read and written with volatile semantics
+ * directly in their slot.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "dws.repository", name = "type", havingValue = "offheap")
+public class OffHeapAccountsRepository implements AccountsRepository {
+
+  private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  private static final int SLOT_BYTES = 24;
+  private static final int BALANCE_OFFSET = 0;
+  private static final int ID_OFFSET = 8;
+  private static final int UPDATES_OFFSET = 16;
+  private static final int SLOT_CHUNK_BITS = 20;
+  private static final int SLOT_CHUNK_MASK = (1 << SLOT_CHUNK_BITS) - 1;
+  private static final int ID_CHUNK_BYTES = 1 << 26;
+  private static final int MAX_INDEX_CAPACITY = 1 << 27;
+  private static final int MAX_ID_LENGTH = Short.MAX_VALUE;
+  private static final int UTF16_FLAG = 0x8000;
+  private static final int LOCK_STRIPES = 4096;
+
+  private final int initialIndexCapacity;
+  private final StampedLock indexLock = new StampedLock();
+  private final ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+
+  // Replaced under the write lock, read optimistically
+  private volatile ByteBuffer index;
+  private volatile ByteBuffer[] slotChunks;
+  private volatile ByteBuffer[] idChunks;
+  private volatile int size;
+
+  // Only touched under the write lock
+  private int idPosition;
+
+  public OffHeapAccountsRepository() {
+    this(1 << 16);
+  }
+
+  @Autowired
+  public OffHeapAccountsRepository(OffHeapProperties properties) {
+    this(properties.getExpectedAccounts());
+  }
+
+  public OffHeapAccountsRepository(int expectedAccounts) {
+    this.initialIndexCapacity = indexCapacityFor(expectedAccounts);
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+    reset();
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    String accountId = account.getAccountId();
+    if (accountId.length() > MAX_ID_LENGTH) {
+      throw new IllegalArgumentException("Account id is too long.");
+    }
+    int hash = hash(accountId);
+
+    long stamp = indexLock.writeLock();
+    try {
+      if (find(accountId, hash) >= 0) {
+        throw new DuplicateAccountIdException("Account id " + accountId + " already exists!");
+      }
+      int slot = size;
+      if ((long) slot + 1 > (long) indexCapacity(index) * 3 / 4) {
+        growIndex();
+      }
+      if ((slot >>> SLOT_CHUNK_BITS) == slotChunks.length) {
+        ByteBuffer[] chunks = Arrays.copyOf(slotChunks, slotChunks.length + 1);
+        chunks[chunks.length - 1] = ByteBuffer.allocateDirect(SLOT_BYTES << SLOT_CHUNK_BITS).order(ByteOrder.nativeOrder());
+        slotChunks = chunks;
+      }
+
+      ByteBuffer chunk = slotChunks[slot >>> SLOT_CHUNK_BITS];
+      int offset = (slot & SLOT_CHUNK_MASK) * SLOT_BYTES;
+      chunk.putLong(offset + ID_OFFSET, storeId(accountId));
+      LONGS.setVolatile(chunk, offset + BALANCE_OFFSET, account.balanceMinorUnits());
+      insert(index, hash, slot);
+      size = slot + 1;
+    } finally {
+      indexLock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    int hash = hash(accountId);
+    int slot = -1;
+    long stamp = indexLock.tryOptimisticRead();
+    try {
+      slot = find(accountId, hash);
+    } catch (RuntimeException e) {
+      // Saw a half-written index or arena, the read lock below settles it
+      stamp = 0;
+    }
+    if (!indexLock.validate(stamp)) {
+      stamp = indexLock.readLock();
+      try {
+        slot = find(accountId, hash);
+      } finally {
+        indexLock.unlockRead(stamp);
+      }
+    }
+    return slot < 0 ? null : new SlotAccount(accountId, slot);
+  }
+
+  @Override
+  public void clearAccounts() {
+    long stamp = indexLock.writeLock();
+    try {
+      reset();
+    } finally {
+      indexLock.unlockWrite(stamp);
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  // Direct memory held by the store, for footprint measurements
+  public long offHeapBytes() {
+    long bytes = index.capacity();
+    for (ByteBuffer chunk : slotChunks) {
+      bytes += chunk.capacity();
+    }
+    for (ByteBuffer chunk : idChunks) {
+      bytes += chunk.capacity();
+    }
+    return bytes;
+  }
+
+  private void reset() {
+    index = ByteBuffer.allocateDirect(initialIndexCapacity * Long.BYTES).order(ByteOrder.nativeOrder());
+    slotChunks = new ByteBuffer[0];
+    idChunks = new ByteBuffer[] {ByteBuffer.allocateDirect(ID_CHUNK_BYTES)};
+    idPosition = 0;
+    size = 0;
+  }
+
+  private int find(String accountId, int hash) {
+    ByteBuffer index = this.index;
+    int mask = indexCapacity(index) - 1;
+    for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+      long entry = index.getLong(i * Long.BYTES);
+      if (entry == 0) {
+        return -1;
+      }
+      if ((int) (entry >>> 32) == hash) {
+        int slot = (int) entry - 1;
+        if (idEquals(slot, accountId)) {
+          return slot;
+        }
+      }
+    }
+    return -1;
+  }
+
+  // Entries pack the hash into the upper half and slot + 1 into the lower one, so that 0 means empty
+  private static void insert(ByteBuffer index, int hash, int slot) {
+    int mask = indexCapacity(index) - 1;
+    int i = hash & mask;
+    while (index.getLong(i * Long.BYTES) != 0) {
+      i = (i + 1) & mask;
+    }
+    index.putLong(i * Long.BYTES, ((long) hash << 32) | (slot + 1L));
+  }
+
+  private void growIndex() {
+    ByteBuffer previous = index;
+    int capacity = indexCapacity(previous);
+    if (capacity >= MAX_INDEX_CAPACITY) {
+      throw new IllegalStateException("Off-heap account store is full.");
+    }
+    ByteBuffer grown = ByteBuffer.allocateDirect(capacity * 2 * Long.BYTES).order(ByteOrder.nativeOrder());
+    for (int i = 0; i < capacity; i++) {
+      long entry = previous.getLong(i * Long.BYTES);
+      if (entry != 0) {
+        insert(grown, (int) (entry >>> 32), (int) entry - 1);
+      }
+    }
+    index = grown;
+  }
+
+  // Returns a reference to the stored id: chunk number in the upper half, position in the lower one
+  private long storeId(String accountId) {
+    boolean latin1 = accountId.chars().allMatch(c -> c < 0x100);
+    int length = accountId.length();
+    int bytes = 2 + (latin1 ? length : length * 2);
+    if (idPosition + bytes > ID_CHUNK_BYTES) {
+      ByteBuffer[] chunks = Arrays.copyOf(idChunks, idChunks.length + 1);
+      chunks[chunks.length - 1] = ByteBuffer.allocateDirect(ID_CHUNK_BYTES);
+      idChunks = chunks;
+      idPosition = 0;
+    }
+
+    ByteBuffer chunk = idChunks[idChunks.length - 1];
+    int position = idPosition;
+    chunk.putShort(position, (short) (latin1 ? length : length | UTF16_FLAG));
+    int at = position + 2;
+    for (int i = 0; i < length; i++) {
+      char c = accountId.charAt(i);
+      if (latin1) {
+        chunk.put(at++, (byte) c);
+      } else {
+        chunk.putChar(at, c);
+        at += 2;
+      }
+    }
+    idPosition = at;
+    return ((long) (idChunks.length - 1) << 32) | position;
+  }
+
+  private boolean idEquals(int slot, String accountId) {
+    long reference = slotChunks[slot >>> SLOT_CHUNK_BITS].getLong((slot & SLOT_CHUNK_MASK) * SLOT_BYTES + ID_OFFSET);
+    ByteBuffer chunk = idChunks[(int) (reference >>> 32)];
+    int position = (int) reference;
+    int header = chunk.getShort(position) & 0xFFFF;
+    boolean latin1 = (header & UTF16_FLAG) == 0;
+    int length = header & ~UTF16_FLAG;
+    if (length != accountId.length()) {
+      return false;
+    }
+    int at = position + 2;
+    for (int i = 0; i < length; i++) {
+      char stored = latin1 ? (char) (chunk.get(at + i) & 0xFF) : chunk.getChar(at + i * 2);
+      if (stored != accountId.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int indexCapacity(ByteBuffer index) {
+    return index.capacity() / Long.BYTES;
+  }
+
+  private static int indexCapacityFor(int expectedAccounts) {
+    long needed = Math.max(16, (long) expectedAccounts * 4 / 3 + 1);
+    return (int) Math.min(MAX_INDEX_CAPACITY, Long.highestOneBit(needed - 1) << 1);
+  }
+
+  private static int hash(String accountId) {
+    // String hashes of similar ids are close together, spread them before they pick a bucket
+    int hash = accountId.hashCode() * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  private final class SlotAccount extends Account {
+
+    private final ByteBuffer chunk;
+    private final int offset;
+    private final int stripe;
+
+    SlotAccount(String accountId, int slot) {
+      super(accountId, stripes[slot & (LOCK_STRIPES - 1)]);
+      this.chunk = slotChunks[slot >>> SLOT_CHUNK_BITS];
+      this.offset = (slot & SLOT_CHUNK_MASK) * SLOT_BYTES;
+      this.stripe = slot & (LOCK_STRIPES - 1);
+    }
+
+    @Override
+    public long balanceMinorUnits() {
+      return (long) LONGS.getVolatile(chunk, offset + BALANCE_OFFSET);
+    }
+
+    @Override
+    public void storeBalance(long minorUnits) {
+      LONGS.setVolatile(chunk, offset + BALANCE_OFFSET, minorUnits);
+    }
+
+    @Override
+    public boolean compareAndSetBalance(long expected, long minorUnits) {
+      return LONGS.compareAndSet(chunk, offset + BALANCE_OFFSET, expected, minorUnits);
+    }
+
+    @Override
+    public void beginUpdate() {
+      LONGS.getAndAdd(chunk, offset + UPDATES_OFFSET, 1L);
+    }
+
+    @Override
+    public void endUpdate() {
+      LONGS.getAndAdd(chunk, offset + UPDATES_OFFSET, COMPLETED_UPDATE - 1);
+    }
+
+    @Override
+    public long updateStamp() {
+      return (long) LONGS.getVolatile(chunk, offset + UPDATES_OFFSET);
+    }
+
+    // Views are created per lookup, a striped balance would not outlive this one
+    @Override
+    public boolean stripeBalance(int count) {
+      return false;
+    }
+
+    @Override
+    public int lockRank() {
+      return stripe + 1;
+    }
+  }
+}
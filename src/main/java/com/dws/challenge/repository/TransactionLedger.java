@@ -0,0 +1,337 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.config.LedgerProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.domain.Transaction;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * History of the most recent applied transfers.
+ * <p>
+ * Entries are stored column-wise in fixed-size chunks of primitive arrays, 40 bytes per entry, and accounts are
+ * referenced by a dense number instead of their id. Chunks are kept in a ring, so once it is full every new chunk
+ * replaces the oldest one and its transactions drop out of the histories. Every account keeps a sorted array of the
+ * entry ids it took part in, which is what queries walk, and sheds the dropped ones as it grows. Entry ids start at 1
+ * and double as paging cursors.
+ */
+@Component
+@ConditionalOnProperty(prefix = "dws.ledger", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class TransactionLedger implements TransferListener {
+
+  private static final int CHUNK_BITS = 16;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int MAX_CHUNKS = 1 << 15;
+  private static final int STREAM_PAGE_SIZE = 1024;
+
+  private final Clock clock;
+  private final AtomicLong lastId = new AtomicLong();
+  private final AtomicReferenceArray<Chunk> chunks;
+  private final int chunkMask;
+  // Entries whose chunk had already been replaced when they were written, only a thread held up for a whole ring
+  private final AtomicLong dropped = new AtomicLong();
+
+  private final ConcurrentHashMap<String, AccountHistory> histories = new ConcurrentHashMap<>();
+  private final ReentrantLock registrationLock = new ReentrantLock();
+  // Account number -> account id, only grows while holding the registration lock
+  private volatile String[] accountIds = new String[1024];
+  private int accountCount;
+
+  public TransactionLedger() {
+    this(Clock.systemUTC());
+  }
+
+  public TransactionLedger(Clock clock) {
+    this(new LedgerProperties().getCapacity(), clock, new CompositeMeterRegistry());
+  }
+
+  @Autowired
+  public TransactionLedger(LedgerProperties properties, MeterRegistry meterRegistry) {
+    this(properties.getCapacity(), Clock.systemUTC(), meterRegistry);
+  }
+
+  public TransactionLedger(int capacity, Clock clock, MeterRegistry meterRegistry) {
+    int count = 2;
+    while ((long) count * CHUNK_SIZE < capacity && count < MAX_CHUNKS) {
+      count <<= 1;
+    }
+    this.chunks = new AtomicReferenceArray<>(count);
+    this.chunkMask = count - 1;
+    this.clock = clock;
+
+    FunctionCounter.builder("ledger.transactions", lastId, AtomicLong::get)
+      .description("Transfers recorded in the ledger")
+      .register(meterRegistry);
+    FunctionCounter.builder("ledger.transactions.dropped", dropped, AtomicLong::get)
+      .description("Transfers recorded too late to be kept, their chunk had already been replaced")
+      .register(meterRegistry);
+  }
+
+  // Runs after the transfer was applied, so an entry that cannot be kept is counted rather than failing it
+  @Override
+  public void onTransfer(Account accountFrom, Account accountTo, long amount, long fromBalance, long toBalance) {
+    AccountHistory from = history(accountFrom.getAccountId());
+    AccountHistory to = history(accountTo.getAccountId());
+
+    long id = lastId.incrementAndGet();
+    long index = id - 1;
+    Chunk chunk = chunk(index >>> CHUNK_BITS);
+    if (chunk == null) {
+      dropped.incrementAndGet();
+      return;
+    }
+    int slot = (int) (index & (CHUNK_SIZE - 1));
+    chunk.timestamps[slot] = clock.millis();
+    chunk.amounts[slot] = amount;
+    chunk.fromAccounts[slot] = from.number;
+    chunk.toAccounts[slot] = to.number;
+    chunk.fromBalances[slot] = fromBalance;
+    chunk.toBalances[slot] = toBalance;
+
+    // Adding the id publishes the entry to readers of either account
+    long oldest = oldestId();
+    from.add(id, oldest);
+    if (to != from) {
+      to.add(id, oldest);
+    }
+  }
+
+  // Transactions recorded so far, including the ones dropped since
+  public long size() {
+    return lastId.get();
+  }
+
+  public long dropped() {
+    return dropped.get();
+  }
+
+  /**
+   * Up to {@code limit} transactions of the account with an id below {@code before}, newest first. Dropped ones
+   * are left out.
+   */
+  public List<Transaction> transactions(String accountId, long before, int limit) {
+    AccountHistory history = histories.get(accountId);
+    if (history == null) {
+      return List.of();
+    }
+    return read(history, before, new long[limit]);
+  }
+
+  /**
+   * All transactions of the account with an id below {@code before}, newest first. Ids are fetched page by page,
+   * so the history is never copied as a whole; transfers applied while the stream is consumed are not included.
+   */
+  public Stream<Transaction> stream(String accountId, long before) {
+    AccountHistory history = histories.get(accountId);
+    if (history == null) {
+      return Stream.empty();
+    }
+    Iterator<Transaction> iterator = new Iterator<>() {
+      private final long[] ids = new long[STREAM_PAGE_SIZE];
+      private List<Transaction> page = List.of();
+      private int position;
+      private boolean last;
+
+      @Override
+      public boolean hasNext() {
+        if (position == page.size() && !last) {
+          long next = page.isEmpty() ? before : page.get(page.size() - 1).id();
+          page = read(history, next, ids);
+          position = 0;
+          // A short page reached the oldest transaction still kept
+          last = page.size() < ids.length;
+        }
+        return position < page.size();
+      }
+
+      @Override
+      public Transaction next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return page.get(position++);
+      }
+    };
+    return StreamSupport.stream(
+      Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  // Newest first, up to the first one that was dropped, as are all older ones
+  private List<Transaction> read(AccountHistory history, long before, long[] ids) {
+    int count = history.before(before, ids);
+    List<Transaction> transactions = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      Transaction transaction = read(ids[i]);
+      if (transaction == null) {
+        break;
+      }
+      transactions.add(transaction);
+    }
+    return transactions;
+  }
+
+  private Transaction read(long id) {
+    long index = id - 1;
+    long chunkIndex = index >>> CHUNK_BITS;
+    Chunk chunk = chunks.get((int) chunkIndex & chunkMask);
+    if (chunk == null || chunk.index != chunkIndex) {
+      return null;
+    }
+    int slot = (int) (index & (CHUNK_SIZE - 1));
+    String[] names = accountIds;
+    return new Transaction(id, names[chunk.fromAccounts[slot]], names[chunk.toAccounts[slot]],
+      Money.toBigDecimal(chunk.amounts[slot]), Instant.ofEpochMilli(chunk.timestamps[slot]),
+      Money.toBigDecimal(chunk.fromBalances[slot]), Money.toBigDecimal(chunk.toBalances[slot]));
+  }
+
+  // The chunk, replacing the older one in its place of the ring, or null if a newer one took that place already
+  private Chunk chunk(long chunkIndex) {
+    int position = (int) chunkIndex & chunkMask;
+    Chunk chunk;
+    // Allocated at most once, a failed attempt retries with the same chunk while the accounts are still locked
+    Chunk fresh = null;
+    while ((chunk = chunks.get(position)) == null || chunk.index < chunkIndex) {
+      if (fresh == null) {
+        fresh = new Chunk(chunkIndex);
+      }
+      chunks.compareAndSet(position, chunk, fresh);
+    }
+    return chunk.index == chunkIndex ? chunk : null;
+  }
+
+  /**
+   * Forgets every account's history, so an account created again under an old id starts with an empty one. The
+   * transactions themselves stay in the ring until replaced, but no history refers to them anymore.
+   */
+  public void clear() {
+    histories.clear();
+  }
+
+  // Ids below it are in chunks the ring no longer holds, or soon will not
+  private long oldestId() {
+    long newestChunk = Math.max(0, lastId.get() - 1) >>> CHUNK_BITS;
+    return (Math.max(0, newestChunk - chunkMask) << CHUNK_BITS) + 1;
+  }
+
+  private AccountHistory history(String accountId) {
+    AccountHistory history = histories.get(accountId);
+    if (history != null) {
+      return history;
+    }
+    return histories.computeIfAbsent(accountId, this::register);
+  }
+
+  private AccountHistory register(String accountId) {
+    registrationLock.lock();
+    try {
+      String[] names = accountIds;
+      if (accountCount == names.length) {
+        names = Arrays.copyOf(names, names.length * 2);
+      }
+      int number = accountCount++;
+      names[number] = accountId;
+      accountIds = names;
+      return new AccountHistory(number);
+    } finally {
+      registrationLock.unlock();
+    }
+  }
+
+  private static final class Chunk {
+    final long index;
+    final long[] timestamps = new long[CHUNK_SIZE];
+    final long[] amounts = new long[CHUNK_SIZE];
+    final int[] fromAccounts = new int[CHUNK_SIZE];
+    final int[] toAccounts = new int[CHUNK_SIZE];
+    final long[] fromBalances = new long[CHUNK_SIZE];
+    final long[] toBalances = new long[CHUNK_SIZE];
+
+    Chunk(long index) {
+      this.index = index;
+    }
+  }
+
+  private static final class AccountHistory {
+    final int number;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long[] ids = new long[4];
+    private int size;
+
+    AccountHistory(int number) {
+      this.number = number;
+    }
+
+    void add(long id, long oldest) {
+      lock.lock();
+      try {
+        if (size == ids.length) {
+          shed(oldest);
+        }
+        if (size == ids.length) {
+          ids = Arrays.copyOf(ids, size * 2);
+        }
+        // Ids are handed out before this lock is taken, so concurrent transfers may arrive slightly out of order
+        int i = size;
+        while (i > 0 && ids[i - 1] > id) {
+          ids[i] = ids[i - 1];
+          i--;
+        }
+        ids[i] = id;
+        size++;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    // Drops the ids of transactions the ledger no longer holds
+    private void shed(long oldest) {
+      int kept = Arrays.binarySearch(ids, 0, size, oldest);
+      if (kept < 0) {
+        kept = -kept - 1;
+      }
+      if (kept > 0) {
+        System.arraycopy(ids, kept, ids, 0, size - kept);
+        size -= kept;
+      }
+    }
+
+    // Copies the ids below the given one into the array, newest first, and returns how many were copied
+    int before(long before, long[] into) {
+      lock.lock();
+      try {
+        int end = Arrays.binarySearch(ids, 0, size, before);
+        if (end < 0) {
+          end = -end - 1;
+        }
+        int count = Math.min(end, into.length);
+        for (int i = 0; i < count; i++) {
+          into[i] = ids[end - 1 - i];
+        }
+        return count;
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
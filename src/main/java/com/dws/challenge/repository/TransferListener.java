@@ -0,0 +1,37 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+
+import java.util.List;
+
+/**
+ * Observes every transfer once it has been applied to the account balances.
+ */
+public interface TransferListener {
+
+  TransferListener NONE = (accountFrom, accountTo, amount, fromBalance, toBalance) -> {
+  };
+
+  /**
+   * Called right after the balances were updated, while the locking strategy still holds both accounts, so
+   * implementations must be quick and must not block. Listeners therefore see the transfers of an account in the
+   * order they were applied, except on striped hot accounts, which transfers update without locking them. Balances
+   * are the ones the transfer left behind, in minor units; for a striped account as read right after the transfer.
+   */
+  void onTransfer(Account accountFrom, Account accountTo, long amount, long fromBalance, long toBalance);
+
+  static TransferListener of(List<TransferListener> listeners) {
+    if (listeners.isEmpty()) {
+      return NONE;
+    }
+    if (listeners.size() == 1) {
+      return listeners.get(0);
+    }
+    TransferListener[] all = listeners.toArray(new TransferListener[0]);
+    return (accountFrom, accountTo, amount, fromBalance, toBalance) -> {
+      for (TransferListener listener : all) {
+        listener.onTransfer(accountFrom, accountTo, amount, fromBalance, toBalance);
+      }
+    };
+  }
+}
@@ -0,0 +1,548 @@
+package com.dws.challenge.repository;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Append-only journal of account changes with group commit.
+ * <p>
+ * Appenders copy their record into an in-memory buffer and return immediately. A single flusher thread
+ * swaps buffers, writes the whole group with one {@code write} and one {@code force}, and then wakes every
+ * thread waiting in {@link #sync()}, so concurrent transfers share the cost of a disk flush.
+ * <p>
+ * The journal is split into numbered segments. Whenever a segment is full, the closed segments are folded
+ * into a snapshot of all balances by a background thread, which never touches the live accounts: a snapshot
+ * is the previous snapshot plus the closed segments replayed on top of it. Recovery loads the newest snapshot
+ * and replays the segments written after it.
+ * <p>
+ * Each record is framed as {@code [int length][int crc32][payload]}, a torn record at the tail of the last
+ * segment is cut off on recovery.
+ * <p>
+ * Once writing fails, the journal accepts no further records: every append and {@link #sync()} throws from then on.
+ */
+@Slf4j
+public class WriteAheadLog implements Closeable {
+
+  private static final byte CREATE = 1;
+  private static final byte TRANSFER = 2;
+  private static final byte CLEAR = 3;
+
+  private static final int FRAME_BYTES = 8;
+  private static final int MAX_ID_BYTES = 0xFFFF;
+  // A transfer record without its two ids: frame, type, two id lengths and the amount
+  private static final int TRANSFER_BYTES = FRAME_BYTES + 1 + 2 + 2 + 8;
+  private static final int SNAPSHOT_MAGIC = 0x44575353;
+
+  private static final String SEGMENT_PREFIX = "wal-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final String SNAPSHOT_PREFIX = "snapshot-";
+  private static final String SNAPSHOT_SUFFIX = ".bin";
+
+  private static final boolean WINDOWS = System.getProperty("os.name", "").startsWith("Windows");
+
+  /**
+   * Receives the journal content on recovery. Records replay additively: a transfer may reference an account
+   * whose creation follows it, in which case the account starts from zero and the creation adds its balance.
+   */
+  public interface Replayer {
+
+    void create(String accountId, long balance);
+
+    void transfer(String accountFromId, String accountToId, long amount);
+
+    void clear();
+  }
+
+  private final Path directory;
+  private final boolean fsync;
+  private final long segmentSize;
+  // Accounts are only created with ids this short, so a transfer between any two of them fits in the buffer
+  private final int maxIdBytes;
+
+  private final ReentrantLock appendLock = new ReentrantLock();
+  private final Condition hasData = appendLock.newCondition();
+  private final Condition hasSpace = appendLock.newCondition();
+  private final CRC32 appendCrc = new CRC32();
+  private ByteBuffer pending;
+  private ByteBuffer flushing;
+
+  private volatile long appendedOffset;
+  private volatile long durableOffset;
+  private volatile IOException failure;
+  private volatile boolean running = true;
+  // Not a monitor: request threads park here and must not pin their carrier when they are virtual
+  private final ReentrantLock durableLock = new ReentrantLock();
+  private final Condition isDurable = durableLock.newCondition();
+
+  // Owned by the flusher thread once recovery is done
+  private FileChannel segment;
+  private long segmentIndex;
+
+  // Owned by the compactor thread once recovery is done
+  private long snapshotIndex;
+
+  private final Thread flusher;
+  private final ExecutorService compactor;
+
+  public WriteAheadLog(Path directory, boolean fsync, long segmentSize, int bufferSize, Replayer replayer)
+    throws IOException {
+    this.directory = directory;
+    this.fsync = fsync;
+    this.segmentSize = segmentSize;
+    this.maxIdBytes = Math.min(MAX_ID_BYTES, (bufferSize - TRANSFER_BYTES) / 2);
+    this.pending = ByteBuffer.allocate(bufferSize);
+    this.flushing = ByteBuffer.allocate(bufferSize);
+
+    Files.createDirectories(directory);
+    recover(replayer);
+
+    this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "journal-compactor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.flusher = new Thread(this::flushLoop, "journal-flusher");
+    this.flusher.setDaemon(true);
+    this.flusher.start();
+  }
+
+  /**
+   * Appends an account creation if {@code register} succeeds. Both happen under the append lock, so the
+   * creation is journaled before any transfer that could only have seen the account after it was registered.
+   *
+   * @throws IllegalArgumentException if the id is too long for a transfer record of the account to fit in the buffer
+   */
+  public boolean appendCreate(String accountId, long balance, BooleanSupplier register) {
+    byte[] id = encode(accountId);
+    appendLock.lock();
+    try {
+      checkFailure();
+      // Room for the record is made first, so an account is only registered once its creation is sure to be journaled
+      int start = frame(1 + 2 + id.length + 8);
+      if (!register.getAsBoolean()) {
+        pending.position(start);
+        return false;
+      }
+      pending.put(CREATE);
+      putId(id);
+      pending.putLong(balance);
+      seal(start);
+      return true;
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  // Cannot be too big for the buffer, unless an account was created while the journal had a larger one
+  public void appendTransfer(String accountFromId, String accountToId, long amount) {
+    byte[] from = encode(accountFromId);
+    byte[] to = encode(accountToId);
+    appendLock.lock();
+    try {
+      checkFailure();
+      int start = frame(1 + 2 + from.length + 2 + to.length + 8);
+      pending.put(TRANSFER);
+      putId(from);
+      putId(to);
+      pending.putLong(amount);
+      seal(start);
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  public void appendClear(Runnable clear) {
+    appendLock.lock();
+    try {
+      checkFailure();
+      clear.run();
+      int start = frame(1);
+      pending.put(CLEAR);
+      seal(start);
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  /**
+   * Waits until everything appended before this call is on disk.
+   */
+  public void sync() {
+    long target = appendedOffset;
+    if (durableOffset >= target) {
+      return;
+    }
+    durableLock.lock();
+    try {
+      while (durableOffset < target) {
+        checkFailure();
+        try {
+          isDurable.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted while waiting for the journal", e);
+        }
+      }
+    } finally {
+      durableLock.unlock();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    running = false;
+    appendLock.lock();
+    try {
+      hasData.signalAll();
+    } finally {
+      appendLock.unlock();
+    }
+    try {
+      flusher.join();
+      compactor.shutdown();
+      compactor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    segment.close();
+  }
+
+  private int frame(int payloadBytes) {
+    int recordBytes = FRAME_BYTES + payloadBytes;
+    if (recordBytes > pending.capacity()) {
+      throw new IllegalArgumentException("Journal record of " + recordBytes + " bytes exceeds the buffer size");
+    }
+    while (pending.remaining() < recordBytes) {
+      hasData.signal();
+      hasSpace.awaitUninterruptibly();
+      checkFailure();
+    }
+    int start = pending.position();
+    pending.putInt(payloadBytes);
+    pending.putInt(0);
+    return start;
+  }
+
+  private void seal(int start) {
+    int payloadBytes = pending.position() - start - FRAME_BYTES;
+    appendCrc.reset();
+    appendCrc.update(pending.array(), start + FRAME_BYTES, payloadBytes);
+    pending.putInt(start + 4, (int) appendCrc.getValue());
+    appendedOffset += FRAME_BYTES + payloadBytes;
+    hasData.signal();
+  }
+
+  private void putId(byte[] id) {
+    pending.putShort((short) id.length);
+    pending.put(id);
+  }
+
+  private byte[] encode(String accountId) {
+    byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+    if (id.length > maxIdBytes) {
+      throw new IllegalArgumentException("Account id is too long to be journaled.");
+    }
+    return id;
+  }
+
+  private void checkFailure() {
+    if (failure != null) {
+      throw new UncheckedIOException("Journal is unavailable", failure);
+    }
+  }
+
+  private void flushLoop() {
+    while (true) {
+      long target;
+      appendLock.lock();
+      try {
+        while (pending.position() == 0) {
+          if (!running) {
+            return;
+          }
+          hasData.awaitUninterruptibly();
+        }
+        ByteBuffer group = pending;
+        pending = flushing;
+        flushing = group;
+        target = appendedOffset;
+        hasSpace.signalAll();
+      } finally {
+        appendLock.unlock();
+      }
+
+      try {
+        flushing.flip();
+        while (flushing.hasRemaining()) {
+          segment.write(flushing);
+        }
+        if (fsync) {
+          segment.force(false);
+        }
+        flushing.clear();
+        if (segment.position() >= segmentSize) {
+          rollSegment();
+        }
+        durableOffset = target;
+      } catch (IOException e) {
+        log.error("Writing the journal failed, no further changes will be accepted", e);
+        failure = e;
+        appendLock.lock();
+        try {
+          hasSpace.signalAll();
+        } finally {
+          appendLock.unlock();
+        }
+      }
+
+      durableLock.lock();
+      try {
+        isDurable.signalAll();
+      } finally {
+        durableLock.unlock();
+      }
+      if (failure != null) {
+        return;
+      }
+    }
+  }
+
+  private void rollSegment() throws IOException {
+    segment.close();
+    segmentIndex++;
+    segment = openSegment(segmentIndex);
+    if (fsync) {
+      // Records forced into the new segment are only durable once its directory entry is
+      syncDirectory();
+    }
+    long upTo = segmentIndex;
+    compactor.execute(() -> compact(upTo));
+  }
+
+  private FileChannel openSegment(long index) throws IOException {
+    FileChannel channel = FileChannel.open(segmentPath(index),
+      StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+    channel.position(channel.size());
+    return channel;
+  }
+
+  private void recover(Replayer replayer) throws IOException {
+    List<Long> snapshots = indexes(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+    snapshotIndex = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+    if (snapshotIndex > 0) {
+      readSnapshot(snapshotPath(snapshotIndex), replayer);
+    }
+
+    List<Long> segments = indexes(SEGMENT_PREFIX, SEGMENT_SUFFIX).stream()
+      .filter(index -> index >= snapshotIndex)
+      .toList();
+    for (Long index : segments) {
+      long validBytes = replaySegment(segmentPath(index), replayer);
+      long size = Files.size(segmentPath(index));
+      if (validBytes < size) {
+        log.warn("Cutting {} bytes of incomplete records off journal segment {}", size - validBytes, index);
+        try (FileChannel channel = FileChannel.open(segmentPath(index), StandardOpenOption.WRITE)) {
+          channel.truncate(validBytes);
+        }
+      }
+    }
+
+    segmentIndex = segments.isEmpty() ? Math.max(snapshotIndex, 1) : segments.get(segments.size() - 1);
+    boolean created = !Files.exists(segmentPath(segmentIndex));
+    segment = openSegment(segmentIndex);
+    if (created && fsync) {
+      syncDirectory();
+    }
+    deleteObsolete(snapshotIndex);
+  }
+
+  private void compact(long upToSegment) {
+    try {
+      Map<String, long[]> balances = new HashMap<>();
+      Replayer folder = new Replayer() {
+        @Override
+        public void create(String accountId, long balance) {
+          balances.computeIfAbsent(accountId, id -> new long[1])[0] += balance;
+        }
+
+        @Override
+        public void transfer(String accountFromId, String accountToId, long amount) {
+          balances.computeIfAbsent(accountFromId, id -> new long[1])[0] -= amount;
+          balances.computeIfAbsent(accountToId, id -> new long[1])[0] += amount;
+        }
+
+        @Override
+        public void clear() {
+          balances.clear();
+        }
+      };
+
+      if (snapshotIndex > 0) {
+        readSnapshot(snapshotPath(snapshotIndex), folder);
+      }
+      for (long index = Math.max(snapshotIndex, 1); index < upToSegment; index++) {
+        if (Files.exists(segmentPath(index))) {
+          replaySegment(segmentPath(index), folder);
+        }
+      }
+
+      writeSnapshot(snapshotPath(upToSegment), balances);
+      snapshotIndex = upToSegment;
+      deleteObsolete(upToSegment);
+      log.info("Compacted journal into snapshot {} with {} accounts", upToSegment, balances.size());
+    } catch (IOException | RuntimeException e) {
+      // The segments are still there, the next compaction will pick them up again
+      log.error("Compacting the journal failed", e);
+    }
+  }
+
+  private long replaySegment(Path path, Replayer replayer) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      CRC32 crc = new CRC32();
+      long validBytes = 0;
+      while (buffer.remaining() >= FRAME_BYTES) {
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+          break;
+        }
+        int payloadStart = buffer.position();
+        crc.reset();
+        crc.update(buffer.slice(payloadStart, length));
+        if ((int) crc.getValue() != checksum) {
+          break;
+        }
+
+        byte type = buffer.get();
+        switch (type) {
+          case CREATE -> replayer.create(getId(buffer), buffer.getLong());
+          case TRANSFER -> replayer.transfer(getId(buffer), getId(buffer), buffer.getLong());
+          case CLEAR -> replayer.clear();
+          default -> throw new IOException("Unknown journal record type " + type + " in " + path);
+        }
+        buffer.position(payloadStart + length);
+        validBytes = buffer.position();
+      }
+      return validBytes;
+    }
+  }
+
+  private static String getId(ByteBuffer buffer) {
+    byte[] id = new byte[Short.toUnsignedInt(buffer.getShort())];
+    buffer.get(id);
+    return new String(id, StandardCharsets.UTF_8);
+  }
+
+  private void writeSnapshot(Path path, Map<String, long[]> balances) throws IOException {
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    CheckedOutputStream checked = new CheckedOutputStream(
+      new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16), new CRC32());
+    try (DataOutputStream out = new DataOutputStream(checked)) {
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeLong(balances.size());
+      for (Map.Entry<String, long[]> entry : balances.entrySet()) {
+        byte[] id = entry.getKey().getBytes(StandardCharsets.UTF_8);
+        out.writeShort(id.length);
+        out.write(id);
+        out.writeLong(entry.getValue()[0]);
+      }
+      out.writeLong(checked.getChecksum().getValue());
+    }
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+      channel.force(true);
+    }
+    Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+    // The rename must be on disk before the segments it replaces are deleted
+    syncDirectory();
+  }
+
+  private void syncDirectory() throws IOException {
+    // Windows cannot open a directory to force it, NTFS journals directory changes on its own
+    if (WINDOWS) {
+      return;
+    }
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    }
+  }
+
+  private static void readSnapshot(Path path, Replayer replayer) throws IOException {
+    CheckedInputStream checked = new CheckedInputStream(
+      new BufferedInputStream(Files.newInputStream(path), 1 << 16), new CRC32());
+    try (DataInputStream in = new DataInputStream(checked)) {
+      if (in.readInt() != SNAPSHOT_MAGIC) {
+        throw new IOException("Not a journal snapshot: " + path);
+      }
+      long count = in.readLong();
+      for (long i = 0; i < count; i++) {
+        byte[] id = new byte[in.readUnsignedShort()];
+        in.readFully(id);
+        replayer.create(new String(id, StandardCharsets.UTF_8), in.readLong());
+      }
+      long expected = checked.getChecksum().getValue();
+      if (in.readLong() != expected) {
+        throw new IOException("Corrupt journal snapshot: " + path);
+      }
+    }
+  }
+
+  private void deleteObsolete(long snapshot) throws IOException {
+    for (Long index : indexes(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+      if (index < snapshot) {
+        Files.deleteIfExists(snapshotPath(index));
+      }
+    }
+    for (Long index : indexes(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+      if (index < snapshot) {
+        Files.deleteIfExists(segmentPath(index));
+      }
+    }
+  }
+
+  private List<Long> indexes(String prefix, String suffix) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.map(path -> path.getFileName().toString())
+        .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+        .map(name -> Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())))
+        .sorted()
+        .toList();
+    }
+  }
+
+  private Path segmentPath(long index) {
+    return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+  }
+
+  private Path snapshotPath(long index) {
+    return directory.resolve(String.format("%s%016d%s", SNAPSHOT_PREFIX, index, SNAPSHOT_SUFFIX));
+  }
+}
@@ -0,0 +1,74 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.repository.TransferListener;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Net effect of a list of transfers on each account involved, applied in list order.
+ */
+final class AccountDeltas {
+
+  private final Map<String, Delta> deltas = new LinkedHashMap<>();
+
+  AccountDeltas(List<Transfer> transfers) {
+    for (Transfer transfer : transfers) {
+      Delta from = delta(transfer.accountFrom());
+      from.net = Money.subtract(from.net, transfer.amount());
+      from.drawdown = Math.min(from.drawdown, from.net);
+
+      Delta to = delta(transfer.accountTo());
+      to.net = Money.add(to.net, transfer.amount());
+    }
+  }
+
+  Collection<Delta> values() {
+    return deltas.values();
+  }
+
+  int size() {
+    return deltas.size();
+  }
+
+  /**
+   * Reports every transfer to {@code listener} with the balances it left behind, replaying them in order on top
+   * of each account's {@link Delta#balance} as it was before the batch.
+   */
+  void publish(List<Transfer> transfers, TransferListener listener) {
+    for (Transfer transfer : transfers) {
+      Delta from = deltas.get(transfer.accountFrom().getAccountId());
+      from.balance -= transfer.amount();
+      Delta to = deltas.get(transfer.accountTo().getAccountId());
+      to.balance += transfer.amount();
+      listener.onTransfer(transfer.accountFrom(), transfer.accountTo(), transfer.amount(), from.balance, to.balance);
+    }
+  }
+
+  private Delta delta(Account account) {
+    return deltas.computeIfAbsent(account.getAccountId(), id -> new Delta(account));
+  }
+
+  static final class Delta {
+
+    final Account account;
+
+    // Balance change once every transfer is applied
+    long net;
+
+    // Lowest running balance change while the transfers are applied in order, never positive.
+    // The account needs at least -drawdown in funds for the whole list to go through.
+    long drawdown;
+
+    // Balance before the batch, filled in by the strategy applying it
+    long balance;
+
+    private Delta(Account account) {
+      this.account = account;
+    }
+  }
+}
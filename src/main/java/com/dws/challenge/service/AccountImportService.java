@@ -0,0 +1,278 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.ImportProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ImportFormat;
+import com.dws.challenge.domain.ImportSummary;
+import com.dws.challenge.domain.ImportSummary.RowError;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.repository.AccountsRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Creates accounts from a streamed body. Lines are parsed and validated one at a time on the calling thread and
+ * collected into chunks, which are inserted by a pool of {@code parallelism} threads while parsing goes on. At most
+ * that many chunks exist at once, so an import of any size holds only a few chunks in memory.
+ * <p>
+ * In cluster mode only the accounts this node owns are created; rows of accounts owned by other nodes are rejected
+ * like invalid ones, naming the node to import them on.
+ */
+@Slf4j
+@Service
+public class AccountImportService {
+
+  private static final String CSV_HEADER = "accountId,balance";
+
+  private final AccountsRepository accountsRepository;
+  private final ObjectReader rowReader;
+  private final int chunkSize;
+  private final int parallelism;
+  private final int maxReportedErrors;
+  private final ExecutorService inserters;
+  // Replaced by the stream the accounts service publishes to, as it is in Spring
+  private BalanceChangeStream balanceChangeStream = new BalanceChangeStream();
+  // The node owning an account if it is not this one, see AccountsService#remoteOwner
+  private UnaryOperator<String> remoteOwner = accountId -> null;
+
+  @Autowired
+  public AccountImportService(AccountsRepository accountsRepository, ObjectMapper objectMapper,
+    ImportProperties properties) {
+    this.accountsRepository = accountsRepository;
+    this.rowReader = objectMapper.readerFor(Row.class);
+    this.chunkSize = properties.getChunkSize();
+    this.parallelism = properties.getParallelism();
+    this.maxReportedErrors = properties.getMaxReportedErrors();
+    AtomicInteger threads = new AtomicInteger();
+    this.inserters = Executors.newFixedThreadPool(parallelism, runnable -> {
+      Thread thread = new Thread(runnable, "account-import-" + threads.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @Autowired
+  public void setBalanceChangeStream(BalanceChangeStream balanceChangeStream) {
+    this.balanceChangeStream = balanceChangeStream;
+  }
+
+  @Autowired
+  public void setAccountsService(AccountsService accountsService) {
+    this.remoteOwner = accountsService::remoteOwner;
+  }
+
+  public ImportSummary importAccounts(InputStream body, ImportFormat format) throws IOException {
+    long start = System.nanoTime();
+    Summary summary = new Summary();
+    Semaphore freeChunks = new Semaphore(parallelism);
+    AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), 1 << 16);
+    Chunk chunk = new Chunk(chunkSize);
+    long line = 0;
+    try {
+      String text;
+      while ((text = reader.readLine()) != null && failure.get() == null) {
+        line++;
+        if (text.isBlank() || (line == 1 && format == ImportFormat.CSV && text.trim().equalsIgnoreCase(CSV_HEADER))) {
+          continue;
+        }
+        summary.rows++;
+        Row row = null;
+        try {
+          row = format == ImportFormat.CSV ? parseCsv(text) : parseJson(text);
+          Account account = validate(row);
+          String owner = remoteOwner.apply(account.getAccountId());
+          if (owner != null) {
+            throw new IllegalArgumentException("Account lives on node " + owner + ", import it there.");
+          }
+          chunk.add(line, account);
+        } catch (IllegalArgumentException e) {
+          summary.invalid(line, row == null ? null : row.accountId(), e.getMessage());
+          continue;
+        }
+        if (chunk.size() == chunkSize) {
+          submit(chunk, summary, freeChunks, failure);
+          chunk = new Chunk(chunkSize);
+        }
+      }
+      if (chunk.size() > 0) {
+        submit(chunk, summary, freeChunks, failure);
+      }
+    } finally {
+      // Wait for the chunks still being inserted
+      freeChunks.acquireUninterruptibly(parallelism);
+      freeChunks.release(parallelism);
+    }
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+
+    ImportSummary result = summary.toImportSummary();
+    log.info("Imported {} of {} accounts ({} duplicates, {} invalid) in {} ms", result.created(), result.rows(),
+      result.duplicates(), result.invalid(), (System.nanoTime() - start) / 1_000_000);
+    return result;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    inserters.shutdown();
+  }
+
+  private void submit(Chunk chunk, Summary summary, Semaphore freeChunks, AtomicReference<RuntimeException> failure) {
+    freeChunks.acquireUninterruptibly();
+    inserters.execute(() -> {
+      try {
+        BitSet duplicates = accountsRepository.createAccounts(chunk.accounts);
+        summary.created.addAndGet(chunk.size() - duplicates.cardinality());
+        for (int i = duplicates.nextClearBit(0); i < chunk.size(); i = duplicates.nextClearBit(i + 1)) {
+          balanceChangeStream.onCreate(chunk.accounts.get(i));
+        }
+        // Transfers claimed changes meanwhile too, which are only durable once synced
+        long claimed = balanceChangeStream.claimed();
+        accountsRepository.sync();
+        balanceChangeStream.commit(claimed);
+        for (int i = duplicates.nextSetBit(0); i >= 0; i = duplicates.nextSetBit(i + 1)) {
+          String accountId = chunk.accounts.get(i).getAccountId();
+          summary.duplicate(chunk.lines[i], accountId, "Account id " + accountId + " already exists!");
+        }
+      } catch (RuntimeException e) {
+        failure.compareAndSet(null, e);
+      } finally {
+        freeChunks.release();
+      }
+    });
+  }
+
+  private Row parseJson(String text) {
+    try {
+      return rowReader.readValue(text);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Malformed row.");
+    }
+  }
+
+  private static Row parseCsv(String text) {
+    int comma = text.indexOf(',');
+    if (comma < 0 || text.indexOf(',', comma + 1) >= 0) {
+      throw new IllegalArgumentException("Malformed row, expected " + CSV_HEADER + ".");
+    }
+    String balance = unquote(text.substring(comma + 1));
+    try {
+      return new Row(unquote(text.substring(0, comma)), balance.isEmpty() ? null : new BigDecimal(balance));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid balance.");
+    }
+  }
+
+  private static String unquote(String field) {
+    String trimmed = field.trim();
+    if (trimmed.length() >= 2 && trimmed.charAt(0) == '"' && trimmed.charAt(trimmed.length() - 1) == '"') {
+      return trimmed.substring(1, trimmed.length() - 1);
+    }
+    return trimmed;
+  }
+
+  // Same rules as the validation of a single POST /v1/accounts
+  private static Account validate(Row row) {
+    if (row.accountId() == null || row.accountId().trim().isEmpty()) {
+      throw new IllegalArgumentException("Account id cannot be empty or null.");
+    }
+    if (row.balance() == null) {
+      throw new IllegalArgumentException("Balance must not be null.");
+    }
+    if (row.balance().signum() < 0) {
+      throw new IllegalArgumentException("Initial balance must be positive.");
+    }
+    Account account = new Account(row.accountId());
+    account.storeBalance(Money.toMinorUnits(row.balance()));
+    return account;
+  }
+
+  private record Row(String accountId, BigDecimal balance) {
+  }
+
+  private static final class Chunk {
+    final List<Account> accounts;
+    final long[] lines;
+
+    Chunk(int capacity) {
+      this.accounts = new ArrayList<>(capacity);
+      this.lines = new long[capacity];
+    }
+
+    void add(long line, Account account) {
+      lines[accounts.size()] = line;
+      accounts.add(account);
+    }
+
+    int size() {
+      return accounts.size();
+    }
+  }
+
+  private final class Summary {
+    // Only touched by the parsing thread
+    long rows;
+    long invalid;
+    final AtomicLong created = new AtomicLong();
+    final AtomicLong duplicates = new AtomicLong();
+    private final List<RowError> errors = new ArrayList<>();
+    private final ReentrantLock errorsLock = new ReentrantLock();
+
+    void invalid(long line, String accountId, String error) {
+      invalid++;
+      report(line, accountId, error);
+    }
+
+    void duplicate(long line, String accountId, String error) {
+      duplicates.incrementAndGet();
+      report(line, accountId, error);
+    }
+
+    private void report(long line, String accountId, String error) {
+      errorsLock.lock();
+      try {
+        if (errors.size() < maxReportedErrors) {
+          errors.add(new RowError(line, accountId, error));
+        }
+      } finally {
+        errorsLock.unlock();
+      }
+    }
+
+    ImportSummary toImportSummary() {
+      errorsLock.lock();
+      try {
+        errors.sort(Comparator.comparingLong(RowError::row));
+        return new ImportSummary(rows, created.get(), duplicates.get(), invalid, List.copyOf(errors));
+      } finally {
+        errorsLock.unlock();
+      }
+    }
+  }
+}
@@ -1,7 +1,21 @@
 package com.dws.challenge.service;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountBalances;
+import com.dws.challenge.domain.BatchMode;
+import com.dws.challenge.domain.BatchTransferResponse;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.domain.Transaction;
+import com.dws.challenge.domain.TransactionPage;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.exception.AccountNotLocalException;
+import com.dws.challenge.exception.SnapshotUnavailableException;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.exception.TransferRejectedException.Reason;
 import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.TransactionLedger;
+import jakarta.annotation.PreDestroy;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -9,6 +23,19 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 @Service
 public class AccountsService {
@@ -17,47 +44,388 @@ public class AccountsService {
   private final AccountsRepository accountsRepository;
   @Getter
   private final NotificationService notificationService;
+  // Defaults to per-account locking when the service is constructed outside of Spring
+  @Getter
+  private TransferStrategy transferStrategy = new LockingTransferStrategy();
+  // Only records transfers when it is registered as a TransferListener, as it is in Spring
+  @Getter
+  private TransactionLedger transactionLedger = new TransactionLedger();
+  @Getter
+  private TransferMetrics transferMetrics = TransferMetrics.NONE;
+  // Like the ledger, only sees transfers when it is registered as a TransferListener
+  @Getter
+  private BalanceChangeStream balanceChangeStream = new BalanceChangeStream();
+  // Finishes async transfers; syncing blocks on the repository, which must hold up neither shards nor the common pool
+  private final ExecutorService completions;
+  // Helps the calling thread through the groups of best-effort batches, shared by all batches
+  private final ExecutorService batchWorkers;
+  private final int batchParallelism;
 
   @Autowired
   public AccountsService(AccountsRepository accountsRepository, NotificationService notificationService) {
     this.accountsRepository = accountsRepository;
     this.notificationService = notificationService;
+    this.batchParallelism = Runtime.getRuntime().availableProcessors();
+    this.completions = pool("transfer-completion-", Math.max(2, batchParallelism));
+    this.batchWorkers = pool("transfer-batch-", batchParallelism);
+  }
+
+  // Threads are started on demand and end once idle, services that never need them cost nothing
+  private static ExecutorService pool(String name, int threadCount) {
+    AtomicInteger threads = new AtomicInteger();
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(threadCount, threadCount, 60, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, name + threads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  @Autowired
+  public void setTransferStrategy(TransferStrategy transferStrategy) {
+    this.transferStrategy = transferStrategy;
+  }
+
+  // Not a bean with dws.ledger.enabled=false, histories then stay empty
+  @Autowired(required = false)
+  public void setTransactionLedger(TransactionLedger transactionLedger) {
+    this.transactionLedger = transactionLedger;
+  }
+
+  @Autowired
+  public void setTransferMetrics(TransferMetrics transferMetrics) {
+    this.transferMetrics = transferMetrics;
+  }
+
+  @Autowired
+  public void setBalanceChangeStream(BalanceChangeStream balanceChangeStream) {
+    this.balanceChangeStream = balanceChangeStream;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    completions.shutdown();
+    batchWorkers.shutdown();
   }
 
   public void createAccount(Account account) {
     this.accountsRepository.createAccount(account);
+    balanceChangeStream.onCreate(account);
+    sync();
+  }
+
+  // Removes every account along with its history, ids may then be used again for new accounts
+  public void clearAccounts() {
+    this.accountsRepository.clearAccounts();
+    transactionLedger.clear();
   }
 
   public Account getAccount(String accountId) {
     return this.accountsRepository.getAccount(accountId);
   }
 
-  public synchronized void transferMoney(String accountFromId, String accountToId, BigDecimal amount) {
+  // Cluster mode only: the node holding the account if that is not this one; null here, where every account is local
+  public String remoteOwner(String accountId) {
+    return null;
+  }
+
+  /**
+   * For requests that only take accounts of the node they are sent to.
+   *
+   * @throws AccountNotLocalException if the account lives on another node of the cluster
+   */
+  public void requireLocal(String accountId) {
+    String owner = remoteOwner(accountId);
+    if (owner != null) {
+      throw new AccountNotLocalException(accountId, owner);
+    }
+  }
+
+  // Each balance is current as of its own read, money moving between the accounts meanwhile may be seen twice or not
+  public AccountBalances getAccounts(List<String> accountIds) {
+    List<Account> accounts = new ArrayList<>();
+    List<String> missing = new ArrayList<>();
+    for (String accountId : new LinkedHashSet<>(accountIds)) {
+      Account account = accountsRepository.getAccount(accountId);
+      if (account == null) {
+        missing.add(accountId);
+      } else {
+        accounts.add(account);
+      }
+    }
+    return new AccountBalances(accounts, missing);
+  }
+
+  /**
+   * Balances of all the accounts as of one moment, so no money is seen in flight between them. Does not block
+   * transfers; waits up to {@code maxWait} for transfers touching the accounts to settle.
+   *
+   * @throws SnapshotUnavailableException if they did not
+   */
+  public AccountBalances getAccountsSnapshot(List<String> accountIds, Duration maxWait) {
+    AccountBalances current = getAccounts(accountIds);
+    long[] balances = BalanceSnapshot.read(current.accounts(), maxWait.toNanos());
+
+    List<Account> snapshot = new ArrayList<>(balances.length);
+    for (int i = 0; i < balances.length; i++) {
+      Account copy = new Account(current.accounts().get(i).getAccountId());
+      copy.storeBalance(balances[i]);
+      snapshot.add(copy);
+    }
+    return new AccountBalances(snapshot, current.missing());
+  }
+
+  public TransactionPage getTransactions(String accountId, Long cursor, int limit) {
+    requireLocal(accountId);
+    // One extra entry tells whether there is a next page
+    List<Transaction> transactions = transactionLedger.transactions(accountId, before(cursor), limit + 1);
+    if (transactions.size() <= limit) {
+      return new TransactionPage(transactions, null);
+    }
+    transactions = transactions.subList(0, limit);
+    return new TransactionPage(transactions, Long.toString(transactions.get(limit - 1).id()));
+  }
+
+  public Stream<Transaction> streamTransactions(String accountId, Long cursor) {
+    requireLocal(accountId);
+    return transactionLedger.stream(accountId, before(cursor));
+  }
+
+  public void transferMoney(String accountFromId, String accountToId, BigDecimal amount) {
 
     // Check for non-positive amount
     if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-      throw new IllegalArgumentException("Transfer amount must be positive.");
+      TransferRejectedException rejection = new TransferRejectedException(Reason.INVALID_AMOUNT,
+        "Transfer amount must be positive.");
+      transferMetrics.rejected(rejection);
+      throw rejection;
+    }
+
+    // Check the amount fits the currency, from here on it is handled as minor units
+    long minorUnits;
+    try {
+      minorUnits = Money.toMinorUnits(amount);
+    } catch (IllegalArgumentException e) {
+      TransferRejectedException rejection = new TransferRejectedException(Reason.INVALID_AMOUNT,
+        "Invalid transfer amount.");
+      transferMetrics.rejected(rejection);
+      throw rejection;
+    }
+
+    transferMoney(accountFromId, accountToId, minorUnits);
+  }
+
+  public void transferMoney(String accountFromId, String accountToId, long amount) {
+    long start = System.nanoTime();
+    try {
+      transfer(accountFromId, accountToId, amount);
+    } catch (IllegalArgumentException e) {
+      transferMetrics.rejected(start, e);
+      throw e;
+    }
+    transferMetrics.completed(start);
+  }
+
+  /**
+   * Like {@link #transferMoney(String, String, long)}, but does not wait for the strategy: with the sharded strategy
+   * the transfer is queued to the shards and the future completes once it was applied, synced and notified.
+   */
+  public CompletableFuture<Void> transferMoneyAsync(String accountFromId, String accountToId, long amount) {
+    long start = System.nanoTime();
+    Transfer transfer;
+    try {
+      transfer = lookup(accountFromId, accountToId, amount);
+    } catch (IllegalArgumentException e) {
+      transferMetrics.rejected(start, e);
+      return CompletableFuture.failedFuture(e);
+    }
+
+    // Continue off the shard thread, syncing the journal must not stall a shard
+    return transferStrategy.transferAsync(transfer.accountFrom(), transfer.accountTo(), amount)
+      .whenComplete((ignored, failure) -> {
+        if (failure instanceof IllegalArgumentException rejection) {
+          transferMetrics.rejected(start, rejection);
+        }
+      })
+      .thenRunAsync(() -> {
+        sync();
+        notifyAboutTransfer(transfer);
+        transferMetrics.completed(start);
+      }, completions);
+  }
+
+  private void transfer(String accountFromId, String accountToId, long amount) {
+    Transfer transfer = lookup(accountFromId, accountToId, amount);
+
+    transferStrategy.transfer(transfer.accountFrom(), transfer.accountTo(), amount);
+    sync();
+
+    notifyAboutTransfer(transfer);
+  }
+
+  // Balance changes claimed before the repository was synced are durable, so consumers of the stream may see them
+  private void sync() {
+    long claimed = balanceChangeStream.claimed();
+    accountsRepository.sync();
+    balanceChangeStream.commit(claimed);
+  }
+
+  private Transfer lookup(String accountFromId, String accountToId, long amount) {
+
+    // Check for non-positive amount
+    if (amount <= 0) {
+      throw new TransferRejectedException(Reason.INVALID_AMOUNT, "Transfer amount must be positive.");
     }
 
     Account accountFrom = accountsRepository.getAccount(accountFromId);
     Account accountTo = accountsRepository.getAccount(accountToId);
 
     if (accountFrom == null || accountTo == null) {
-      throw new IllegalArgumentException("Both accounts must exist.");
+      throw new TransferRejectedException(Reason.ACCOUNT_NOT_FOUND, "Both accounts must exist.");
+    }
+    return new Transfer(accountFrom, accountTo, amount);
+  }
+
+  public BatchTransferResponse transferBatch(List<TransferRequest> requests, BatchMode mode) {
+    return mode == BatchMode.ATOMIC ? transferAtomically(requests) : transferBestEffort(requests);
+  }
+
+  private BatchTransferResponse transferAtomically(List<TransferRequest> requests) {
+    long start = System.nanoTime();
+    List<Transfer> transfers = new ArrayList<>(requests.size());
+    for (int i = 0; i < requests.size(); i++) {
+      try {
+        transfers.add(resolve(requests.get(i)));
+      } catch (IllegalArgumentException e) {
+        transferMetrics.rejected(start, e);
+        return rejected(requests.size(), i, e.getMessage());
+      }
+    }
+
+    try {
+      transferStrategy.transferAll(transfers);
+    } catch (IllegalArgumentException e) {
+      transferMetrics.rejected(start, e);
+      return rejected(requests.size(), -1, e.getMessage());
     }
+    sync();
+
+    transfers.forEach(this::notifyAboutTransfer);
+    // Every transfer of the batch took as long as the whole batch
+    transferMetrics.completed(start, transfers.size());
+    List<TransferResult> results = new ArrayList<>(requests.size());
+    for (int i = 0; i < requests.size(); i++) {
+      results.add(TransferResult.completed(i));
+    }
+    return new BatchTransferResponse(BatchMode.ATOMIC, true, requests.size(), 0, null, results);
+  }
 
-    synchronized (accountFrom) {
-      synchronized (accountTo) {
-        if (accountFrom.getBalance().compareTo(amount) < 0) {
-          throw new IllegalArgumentException("Insufficient funds in account " + accountFromId);
+  private BatchTransferResponse transferBestEffort(List<TransferRequest> requests) {
+    TransferResult[] results = new TransferResult[requests.size()];
+    Transfer[] resolved = new Transfer[requests.size()];
+    long[] starts = new long[requests.size()];
+
+    // Groups share no account with each other, so they can run in parallel without contending. The calling thread
+    // takes groups as well, so a batch goes ahead even while other batches keep every worker busy
+    List<List<Integer>> groups = new ArrayList<>(TransferGroups.of(requests));
+    AtomicInteger nextGroup = new AtomicInteger();
+    Runnable applyGroups = () -> {
+      for (int g = nextGroup.getAndIncrement(); g < groups.size(); g = nextGroup.getAndIncrement()) {
+        for (int index : groups.get(g)) {
+          starts[index] = System.nanoTime();
+          try {
+            Transfer transfer = resolve(requests.get(index));
+            resolved[index] = transfer;
+            transferStrategy.transfer(transfer.accountFrom(), transfer.accountTo(), transfer.amount());
+            results[index] = TransferResult.completed(index);
+          } catch (IllegalArgumentException e) {
+            transferMetrics.rejected(starts[index], e);
+            results[index] = TransferResult.failed(index, e.getMessage());
+          }
         }
+      }
+    };
+    List<CompletableFuture<Void>> helpers = new ArrayList<>();
+    for (int i = 1; i < Math.min(batchParallelism, groups.size()); i++) {
+      helpers.add(CompletableFuture.runAsync(applyGroups, batchWorkers));
+    }
+    applyGroups.run();
+    try {
+      CompletableFuture.allOf(helpers.toArray(CompletableFuture[]::new)).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
 
-        accountFrom.setBalance(accountFrom.getBalance().subtract(amount));
-        accountTo.setBalance(accountTo.getBalance().add(amount));
+    // One wait for the journal covers the whole batch
+    sync();
 
-        notificationService.notifyAboutTransfer(accountFrom, "Transferred " + amount + " to account " + accountToId);
-        notificationService.notifyAboutTransfer(accountTo, "Received " + amount + " from account " + accountFromId);
+    int completed = 0;
+    for (int i = 0; i < results.length; i++) {
+      if (results[i].status() == TransferResult.Status.COMPLETED) {
+        notifyAboutTransfer(resolved[i]);
+        transferMetrics.completed(starts[i]);
+        completed++;
       }
     }
+    return new BatchTransferResponse(BatchMode.BEST_EFFORT, completed == results.length, completed,
+      results.length - completed, null, Arrays.asList(results));
+  }
+
+  private Transfer resolve(TransferRequest request) {
+    if (request.accountFromId() == null || request.accountFromId().trim().isEmpty()) {
+      throw new TransferRejectedException(Reason.INVALID_ACCOUNT_ID, "AccountFromId cannot be empty or null.");
+    }
+    if (request.accountToId() == null || request.accountToId().trim().isEmpty()) {
+      throw new TransferRejectedException(Reason.INVALID_ACCOUNT_ID, "AccountToId cannot be empty or null.");
+    }
+    // Batches are applied by one node, under its own locks
+    requireLocal(request.accountFromId());
+    requireLocal(request.accountToId());
+    if (request.amount() == null) {
+      throw new TransferRejectedException(Reason.INVALID_AMOUNT, "Invalid transfer amount.");
+    }
+    if (request.amount().compareTo(BigDecimal.ZERO) <= 0) {
+      throw new TransferRejectedException(Reason.INVALID_AMOUNT, "Transfer amount must be positive.");
+    }
+
+    long amount;
+    try {
+      amount = Money.toMinorUnits(request.amount());
+    } catch (IllegalArgumentException e) {
+      throw new TransferRejectedException(Reason.INVALID_AMOUNT, "Invalid transfer amount.");
+    }
+
+    Account accountFrom = accountsRepository.getAccount(request.accountFromId());
+    Account accountTo = accountsRepository.getAccount(request.accountToId());
+    if (accountFrom == null || accountTo == null) {
+      throw new TransferRejectedException(Reason.ACCOUNT_NOT_FOUND, "Both accounts must exist.");
+    }
+    return new Transfer(accountFrom, accountTo, amount);
+  }
+
+  private static BatchTransferResponse rejected(int size, int failedIndex, String error) {
+    List<TransferResult> results = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      results.add(TransferResult.rejected(i, i == failedIndex ? error : null));
+    }
+    String reason = failedIndex >= 0 ? "Transfer " + failedIndex + ": " + error : error;
+    return new BatchTransferResponse(BatchMode.ATOMIC, false, 0, size, reason, results);
+  }
+
+  private void notifyAboutTransfer(Transfer transfer) {
+    String accountFromId = transfer.accountFrom().getAccountId();
+    String accountToId = transfer.accountTo().getAccountId();
+    BigDecimal transferred = Money.toBigDecimal(transfer.amount());
+    notificationService.notifyAboutTransfer(transfer.accountFrom(), "Transferred " + transferred + " to account " + accountToId);
+    notificationService.notifyAboutTransfer(transfer.accountTo(), "Received " + transferred + " from account " + accountFromId);
+  }
+
+  private static long before(Long cursor) {
+    return cursor == null ? Long.MAX_VALUE : cursor;
   }
 }
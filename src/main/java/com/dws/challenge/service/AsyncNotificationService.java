@@ -0,0 +1,253 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.NotificationProperties;
+import com.dws.challenge.domain.Account;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+@Primary
+@Component
+@ConditionalOnProperty(prefix = "dws.notifications", name = "async", havingValue = "true", matchIfMissing = true)
+public class AsyncNotificationService implements NotificationService {
+
+  private final NotificationService sink;
+  private final NotificationProperties properties;
+  private final BlockingQueue<PendingNotification> queue;
+  private final ExecutorService dispatcher;
+  // Null unless virtual threads are enabled, then accounts of a batch are delivered concurrently
+  private final Executor deliveryExecutor;
+  // Failed sends wait here for their next attempt, so the backoff holds up neither the dispatcher nor other accounts
+  private final ScheduledExecutorService retries;
+  private final AtomicInteger pendingRetries = new AtomicInteger();
+
+  private final Timer sendLatency;
+  private final Timer deliveryDelay;
+  private final Counter dropped;
+  private final Counter failed;
+
+  private volatile boolean running = true;
+
+  @Autowired
+  public AsyncNotificationService(@Qualifier("emailNotificationService") NotificationService sink,
+    NotificationProperties properties, MeterRegistry meterRegistry) {
+    this.sink = sink;
+    this.properties = properties;
+    this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+
+    Gauge.builder("notifications.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+    this.sendLatency = Timer.builder("notifications.send.latency")
+      .description("Time spent in the notification sink per notification")
+      .register(meterRegistry);
+    this.deliveryDelay = Timer.builder("notifications.delivery.delay")
+      .description("Time from enqueueing a notification until it was handed to the sink")
+      .register(meterRegistry);
+    this.dropped = Counter.builder("notifications.dropped").register(meterRegistry);
+    this.failed = Counter.builder("notifications.failed").register(meterRegistry);
+
+    this.deliveryExecutor = properties.isVirtualThreads() ? new VirtualThreadTaskExecutor("notification-") : null;
+    this.dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "notification-dispatcher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.retries = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "notification-retry");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.dispatcher.execute(this::dispatchLoop);
+  }
+
+  @Override
+  public void notifyAboutTransfer(Account account, String transferDescription) {
+    PendingNotification notification = new PendingNotification(account, transferDescription, System.nanoTime());
+    if (queue.offer(notification)) {
+      return;
+    }
+
+    switch (properties.getOverflowPolicy()) {
+      case BLOCK -> {
+        try {
+          if (!queue.offer(notification, properties.getOfferTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+            drop(notification);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          drop(notification);
+        }
+      }
+      case DROP_NEWEST -> drop(notification);
+      case DROP_OLDEST -> {
+        PendingNotification oldest = queue.poll();
+        if (oldest != null) {
+          drop(oldest);
+        }
+        if (!queue.offer(notification)) {
+          drop(notification);
+        }
+      }
+      case CALLER_RUNS -> {
+        try {
+          send(notification);
+        } catch (RuntimeException e) {
+          failed.increment();
+          log.warn("Notification for account {} failed", account.getAccountId(), e);
+        }
+      }
+    }
+  }
+
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    running = false;
+    long deadline = System.nanoTime() + properties.getShutdownTimeout().toNanos();
+    dispatcher.shutdown();
+    boolean drained = dispatcher.awaitTermination(properties.getShutdownTimeout().toNanos(), TimeUnit.NANOSECONDS);
+    // A retry that fails again schedules the next one, so retries are only done once none is pending
+    while (drained && pendingRetries.get() > 0) {
+      if (deadline - System.nanoTime() <= 0) {
+        drained = false;
+      } else {
+        Thread.sleep(10);
+      }
+    }
+    if (!drained) {
+      log.warn("Notification dispatcher did not drain within {}, {} notifications and {} retries left",
+        properties.getShutdownTimeout(), queue.size(), pendingRetries.get());
+      dispatcher.shutdownNow();
+    }
+    retries.shutdownNow();
+  }
+
+  private void dispatchLoop() {
+    List<PendingNotification> batch = new ArrayList<>(properties.getBatchSize());
+    while (running || !queue.isEmpty()) {
+      try {
+        PendingNotification first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch, properties.getBatchSize() - 1);
+        dispatch(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException e) {
+        log.error("Unexpected error while dispatching notifications", e);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void dispatch(List<PendingNotification> batch) {
+    // Group by account so each owner's notifications go out together and in submission order
+    Map<String, List<PendingNotification>> byAccount = new LinkedHashMap<>();
+    for (PendingNotification notification : batch) {
+      byAccount.computeIfAbsent(notification.account().getAccountId(), id -> new ArrayList<>()).add(notification);
+    }
+    if (deliveryExecutor == null) {
+      for (List<PendingNotification> notifications : byAccount.values()) {
+        sendAll(notifications, 0, 1);
+      }
+      return;
+    }
+
+    // A slow sink only holds up the account it is slow for; order within an account is kept
+    CompletableFuture<?>[] deliveries = byAccount.values().stream()
+      .map(notifications -> CompletableFuture.runAsync(() -> sendAll(notifications, 0, 1), deliveryExecutor))
+      .toArray(CompletableFuture[]::new);
+    CompletableFuture.allOf(deliveries).join();
+  }
+
+  /**
+   * Sends the account's notifications from index {@code from} on, the first of them for the {@code attempt}th time.
+   * When one fails, it and the ones behind it wait for its retry, so they still go out in order; notifications of
+   * later batches may overtake them meanwhile.
+   */
+  private void sendAll(List<PendingNotification> notifications, int from, int attempt) {
+    for (int i = from; i < notifications.size(); i++) {
+      PendingNotification notification = notifications.get(i);
+      int attempts = i == from ? attempt : 1;
+      try {
+        send(notification);
+      } catch (RuntimeException e) {
+        if (attempts >= properties.getMaxAttempts()) {
+          failed.increment();
+          log.warn("Giving up on notification for account {} after {} attempts",
+            notification.account().getAccountId(), attempts, e);
+          continue;
+        }
+        scheduleRetry(notifications, i, attempts + 1);
+        return;
+      }
+    }
+  }
+
+  private void scheduleRetry(List<PendingNotification> notifications, int from, int attempt) {
+    Runnable retry = () -> {
+      try {
+        sendAll(notifications, from, attempt);
+      } finally {
+        pendingRetries.decrementAndGet();
+      }
+    };
+    pendingRetries.incrementAndGet();
+    try {
+      retries.schedule(deliveryExecutor == null ? retry : () -> deliveryExecutor.execute(retry),
+        properties.getRetryBackoff().toMillis() * (attempt - 1), TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      pendingRetries.decrementAndGet();
+      failed.increment(notifications.size() - from);
+      log.warn("Shut down before {} notifications for account {} could be retried", notifications.size() - from,
+        notifications.get(from).account().getAccountId());
+    }
+  }
+
+  private void send(PendingNotification notification) {
+    long start = System.nanoTime();
+    sink.notifyAboutTransfer(notification.account(), notification.description());
+    long end = System.nanoTime();
+    sendLatency.record(end - start, TimeUnit.NANOSECONDS);
+    deliveryDelay.record(end - notification.enqueuedAt(), TimeUnit.NANOSECONDS);
+  }
+
+  private void drop(PendingNotification notification) {
+    dropped.increment();
+    log.debug("Notification queue full, dropping notification for account {}", notification.account().getAccountId());
+  }
+
+  private record PendingNotification(Account account, String description, long enqueuedAt) {
+  }
+}
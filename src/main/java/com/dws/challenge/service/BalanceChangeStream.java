@@ -0,0 +1,300 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.ChangeStreamProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BalanceChange;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.exception.ChangesUnavailableException;
+import com.dws.challenge.repository.TransferListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Numbered stream of every balance change, for consumers outside the service to follow.
+ * <p>
+ * Changes are kept in a ring of a fixed capacity. A transfer claims two consecutive sequence numbers with one atomic
+ * add and stores its changes in their slots, overwriting whatever the ring held there; producers never wait for
+ * consumers, so a consumer that falls a whole ring behind loses its place and has to start over. Consumers read up to
+ * the committed sequence only, which {@link AccountsService} moves forward once the changes below it were synced to
+ * the repository, so a change that was seen is never lost by a restart. Sequence numbers start at 0 with each start
+ * of the service, so they are only meaningful together with the {@link #epoch()} of the run that handed them out.
+ * <p>
+ * Runs after the repositories' own listeners, so a change is recorded by them before its sequence is claimed.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class BalanceChangeStream implements TransferListener {
+
+  private static final int MAX_CAPACITY = 1 << 30;
+
+  private final AtomicReferenceArray<Entry> ring;
+  private final int mask;
+  private final Clock clock;
+  private final String epoch;
+  // The next sequence to claim, and the one below which changes may be read
+  private final AtomicLong next = new AtomicLong();
+  private final AtomicLong committed = new AtomicLong();
+  // Subscribers parked until more changes are committed
+  private final Set<Thread> waiting = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger subscribers = new AtomicInteger();
+
+  private final Timer delivery;
+  private final Counter overruns;
+
+  public BalanceChangeStream() {
+    this(1024, Clock.systemUTC(), new CompositeMeterRegistry());
+  }
+
+  @Autowired
+  public BalanceChangeStream(ChangeStreamProperties properties, MeterRegistry meterRegistry) {
+    this(properties.getCapacity(), Clock.systemUTC(), meterRegistry);
+  }
+
+  public BalanceChangeStream(int capacity, Clock clock, MeterRegistry meterRegistry) {
+    int size = 2;
+    while (size < capacity && size < MAX_CAPACITY) {
+      size <<= 1;
+    }
+    this.ring = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+    this.clock = clock;
+    this.epoch = Long.toString(clock.millis(), Character.MAX_RADIX);
+
+    FunctionCounter.builder("balance.changes.published", next, AtomicLong::get)
+      .description("Balance changes added to the stream")
+      .register(meterRegistry);
+    Gauge.builder("balance.changes.subscribers", subscribers, AtomicInteger::get)
+      .description("Open subscriptions to the stream")
+      .register(meterRegistry);
+    this.overruns = Counter.builder("balance.changes.overruns")
+      .description("Subscriptions that fell a whole ring behind")
+      .register(meterRegistry);
+    this.delivery = Timer.builder("balance.changes.delivery")
+      .description("Time from adding a balance change to the stream to handing it to a subscriber")
+      .publishPercentiles(0.5, 0.99)
+      .register(meterRegistry);
+  }
+
+  @Override
+  public void onTransfer(Account accountFrom, Account accountTo, long amount, long fromBalance, long toBalance) {
+    String fromId = accountFrom.getAccountId();
+    String toId = accountTo.getAccountId();
+    // Money sent to the account itself changes no balance
+    if (fromId.equals(toId)) {
+      return;
+    }
+    long timestamp = clock.millis();
+    long sequence = next.getAndAdd(2);
+    long published = System.nanoTime();
+    publish(new Entry(sequence, BalanceChange.Type.TRANSFER, fromId, toId, -amount, fromBalance, timestamp,
+      published));
+    publish(new Entry(sequence + 1, BalanceChange.Type.TRANSFER, toId, fromId, amount, toBalance, timestamp,
+      published));
+  }
+
+  // Called for every account created, once the repository holds it
+  public void onCreate(Account account) {
+    long balance = account.balanceMinorUnits();
+    publish(new Entry(next.getAndIncrement(), BalanceChange.Type.CREATED, account.getAccountId(), null, balance,
+      balance, clock.millis(), System.nanoTime()));
+  }
+
+  /**
+   * The sequence the next change will get. Committing it once the repository was synced makes every change claimed
+   * before the sync readable.
+   */
+  public long claimed() {
+    return next.get();
+  }
+
+  public void commit(long upTo) {
+    long current;
+    do {
+      current = committed.get();
+      if (current >= upTo) {
+        return;
+      }
+    } while (!committed.compareAndSet(current, upTo));
+
+    if (!waiting.isEmpty()) {
+      for (Thread thread : waiting) {
+        LockSupport.unpark(thread);
+      }
+    }
+  }
+
+  // Tells this run's sequences from the ones of earlier runs, which started at 0 as well
+  public String epoch() {
+    return epoch;
+  }
+
+  public long committed() {
+    return committed.get();
+  }
+
+  // Changes that may not have been overwritten yet; a change being stored right now may still overwrite the oldest
+  public long oldestSequence() {
+    return Math.max(0, next.get() - ring.length());
+  }
+
+  /**
+   * Follows the changes from sequence {@code from} on, of the account only if {@code accountId} is given.
+   *
+   * @throws ChangesUnavailableException if they were overwritten already, or the sequence was not reached yet
+   */
+  public Subscription subscribe(long from, String accountId) {
+    long oldest = oldestSequence();
+    if (from < oldest) {
+      throw new ChangesUnavailableException(
+        "Changes from sequence " + from + " are no longer available, the oldest is " + oldest + ".", oldest);
+    }
+    if (from > committed.get()) {
+      throw new ChangesUnavailableException(
+        "Sequence " + from + " was not reached, the next is " + committed.get() + ".", oldest);
+    }
+    subscribers.incrementAndGet();
+    return new Subscription(from, accountId);
+  }
+
+  private void publish(Entry entry) {
+    int slot = (int) entry.sequence & mask;
+    Entry current;
+    do {
+      current = ring.get(slot);
+      // A producer held up for a whole ring must not put its change back over a later one
+      if (current != null && current.sequence > entry.sequence) {
+        return;
+      }
+    } while (!ring.compareAndSet(slot, current, entry));
+  }
+
+  /**
+   * One consumer's position in the stream. Meant for a single thread, except for {@link #close()}.
+   */
+  public final class Subscription implements AutoCloseable {
+
+    private final String accountId;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private long position;
+
+    private Subscription(long from, String accountId) {
+      this.position = from;
+      this.accountId = accountId;
+    }
+
+    // The sequence of the next change this subscription reads
+    public long nextSequence() {
+      return position;
+    }
+
+    /**
+     * Up to {@code max} changes, waiting up to {@code timeoutNanos} for the first one. Returns no changes if none
+     * came, or the subscription was closed meanwhile.
+     *
+     * @throws ChangesUnavailableException if the subscription fell a whole ring behind
+     */
+    public List<BalanceChange> poll(int max, long timeoutNanos) throws InterruptedException {
+      long deadline = System.nanoTime() + timeoutNanos;
+      List<BalanceChange> changes = new ArrayList<>(Math.min(max, 64));
+      while (true) {
+        boolean complete = read(changes, max);
+        if (!changes.isEmpty() || closed.get()) {
+          return changes;
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return changes;
+        }
+        if (!complete) {
+          // A change below the committed sequence is being stored right now
+          Thread.onSpinWait();
+          continue;
+        }
+        Thread thread = Thread.currentThread();
+        waiting.add(thread);
+        try {
+          // Checked again once registered, so a commit in between is not missed
+          if (position >= committed.get() && !closed.get()) {
+            LockSupport.parkNanos(this, remaining);
+          }
+        } finally {
+          waiting.remove(thread);
+        }
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+      }
+    }
+
+    // Whether everything committed was read
+    private boolean read(List<BalanceChange> into, int max) {
+      long limit = committed.get();
+      while (position < limit && into.size() < max) {
+        Entry entry = ring.getAcquire((int) position & mask);
+        if (entry == null || entry.sequence < position) {
+          return false;
+        }
+        if (entry.sequence > position) {
+          // What was read so far is still handed out, the next poll fails
+          if (!into.isEmpty()) {
+            return true;
+          }
+          overruns.increment();
+          long oldest = oldestSequence();
+          throw new ChangesUnavailableException(
+            "Changes from sequence " + position + " were overwritten, the oldest is " + oldest + ".", oldest);
+        }
+        position++;
+        if (accountId == null || accountId.equals(entry.accountId)) {
+          into.add(entry.toBalanceChange());
+          delivery.record(System.nanoTime() - entry.published, TimeUnit.NANOSECONDS);
+        }
+      }
+      return position >= limit;
+    }
+
+    public boolean isClosed() {
+      return closed.get();
+    }
+
+    @Override
+    public void close() {
+      if (closed.compareAndSet(false, true)) {
+        subscribers.decrementAndGet();
+        // Wakes the subscription's reader, along with any other, which simply waits again
+        waiting.forEach(LockSupport::unpark);
+      }
+    }
+  }
+
+  // Immutable, so a slot overwritten while it is read leaves the reader with a consistent change
+  private record Entry(long sequence, BalanceChange.Type type, String accountId, String counterpartyId, long change,
+    long balance, long timestamp, long published) {
+
+    BalanceChange toBalanceChange() {
+      return new BalanceChange(sequence, type, accountId, counterpartyId, Money.toBigDecimal(change),
+        Money.toBigDecimal(balance), Instant.ofEpochMilli(timestamp));
+    }
+  }
+}
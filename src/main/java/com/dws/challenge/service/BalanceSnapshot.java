@@ -0,0 +1,70 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.SnapshotUnavailableException;
+
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads the balances of several accounts as of a single moment without taking any transfer lock, by collecting them
+ * twice. Every transfer marks the accounts it touches before its first balance write and unmarks them after its
+ * last (see {@link Account#beginUpdate}), which changes their update stamps. If no account was marked during the
+ * first pass and no stamp changed by the second, no transfer wrote to them in between, so the balances of the first
+ * pass all held at once. Writers never wait for readers; a reader that keeps losing the race backs off and
+ * eventually gives up.
+ */
+final class BalanceSnapshot {
+
+  private static final int SPINS = 16;
+  private static final long MAX_BACKOFF_NANOS = 1_000_000;
+
+  private BalanceSnapshot() {
+  }
+
+  static long[] read(List<Account> accounts, long maxWaitNanos) {
+    int size = accounts.size();
+    long[] stamps = new long[size];
+    long[] balances = new long[size];
+    long deadline = System.nanoTime() + maxWaitNanos;
+    long backoff = 1_000;
+
+    for (int attempt = 0; ; attempt++) {
+      if (collect(accounts, stamps, balances) && validate(accounts, stamps)) {
+        return balances;
+      }
+      if (System.nanoTime() - deadline >= 0) {
+        throw new SnapshotUnavailableException(
+          "Transfers on these accounts did not settle in time for a consistent snapshot, please retry.");
+      }
+      if (attempt < SPINS) {
+        Thread.onSpinWait();
+      } else {
+        LockSupport.parkNanos(backoff);
+        backoff = Math.min(backoff * 2, MAX_BACKOFF_NANOS);
+      }
+    }
+  }
+
+  private static boolean collect(List<Account> accounts, long[] stamps, long[] balances) {
+    for (int i = 0; i < stamps.length; i++) {
+      Account account = accounts.get(i);
+      long stamp = account.updateStamp();
+      if (!Account.isSettled(stamp)) {
+        return false;
+      }
+      stamps[i] = stamp;
+      balances[i] = account.balanceMinorUnits();
+    }
+    return true;
+  }
+
+  private static boolean validate(List<Account> accounts, long[] stamps) {
+    for (int i = 0; i < stamps.length; i++) {
+      if (accounts.get(i).updateStamp() != stamps[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,123 @@
+package com.dws.challenge.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Approximate top-K of the accounts transfers had to wait for, using the Space-Saving algorithm: a fixed number of
+ * counters, where a new account takes over the counter with the smallest count. Only contended lock acquisitions
+ * and failed compare-and-sets are recorded, so the uncontended path never gets here.
+ * <p>
+ * Counts halve every {@code window}, so an account only stays near the top while transfers keep waiting for it.
+ */
+public class HotAccountTracker {
+
+  private final int capacity;
+  private final long windowNanos;
+  private final LongSupplier nanoTime;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Map<String, Entry> entries = new HashMap<>();
+  private long windowStart;
+
+  public HotAccountTracker(int capacity) {
+    this(capacity, Long.MAX_VALUE, System::nanoTime);
+  }
+
+  public HotAccountTracker(int capacity, long windowNanos, LongSupplier nanoTime) {
+    this.capacity = capacity;
+    this.windowNanos = windowNanos;
+    this.nanoTime = nanoTime;
+    this.windowStart = nanoTime.getAsLong();
+  }
+
+  // Returns how many contentions the account had at least, counting this one, or 0 if the sample was dropped
+  public long record(String accountId, long waitNanos) {
+    // Contention is when this is called, so rather lose a sample than become another point of contention
+    if (!lock.tryLock()) {
+      return 0;
+    }
+    try {
+      age();
+      Entry entry = entries.get(accountId);
+      if (entry == null) {
+        if (entries.size() < capacity) {
+          entry = new Entry();
+        } else {
+          // Evict the smallest counter; its count carries over as the newcomer's possible overestimate
+          Map.Entry<String, Entry> smallest = null;
+          for (Map.Entry<String, Entry> candidate : entries.entrySet()) {
+            if (smallest == null || candidate.getValue().contentions < smallest.getValue().contentions) {
+              smallest = candidate;
+            }
+          }
+          entry = entries.remove(smallest.getKey());
+          entry.overestimate = entry.contentions;
+          entry.waitNanos = 0;
+        }
+        entries.put(accountId, entry);
+      }
+      entry.contentions++;
+      entry.waitNanos += waitNanos;
+      return entry.contentions - entry.overestimate;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public List<HotAccount> top(int count) {
+    List<HotAccount> top = new ArrayList<>();
+    lock.lock();
+    try {
+      age();
+      entries.forEach((accountId, entry) -> top.add(new HotAccount(accountId, entry.contentions, entry.overestimate,
+        TimeUnit.NANOSECONDS.toMicros(entry.waitNanos) / 1000.0)));
+    } finally {
+      lock.unlock();
+    }
+    top.sort(Comparator.comparingLong(HotAccount::contentions).reversed());
+    return top.subList(0, Math.min(count, top.size()));
+  }
+
+  public void reset() {
+    lock.lock();
+    try {
+      entries.clear();
+      windowStart = nanoTime.getAsLong();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Halves every count once per window passed, dropping accounts that were not waited for since
+  private void age() {
+    long now = nanoTime.getAsLong();
+    long windows = (now - windowStart) / windowNanos;
+    if (windows <= 0) {
+      return;
+    }
+    windowStart += windows * windowNanos;
+    int shift = (int) Math.min(windows, 63);
+    entries.values().removeIf(entry -> {
+      entry.contentions >>>= shift;
+      entry.overestimate >>>= shift;
+      entry.waitNanos >>>= shift;
+      return entry.contentions == 0;
+    });
+  }
+
+  // contentions may be too high by at most overestimate; waitMillis only covers the time since it was tracked
+  public record HotAccount(String accountId, long contentions, long overestimate, double waitMillis) {
+  }
+
+  private static final class Entry {
+    long contentions;
+    long overestimate;
+    long waitNanos;
+  }
+}
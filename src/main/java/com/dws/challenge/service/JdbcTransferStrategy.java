@@ -0,0 +1,301 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.exception.TransferRejectedException.Reason;
+import com.dws.challenge.repository.CachingAccountsRepository;
+import com.dws.challenge.repository.JdbcAccountsRepository;
+import com.dws.challenge.repository.TransferListener;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Balances are owned by the database of {@link JdbcAccountsRepository}, and transfers are committed there in groups
+ * instead of one transaction each. A caller queues its transfer and waits on a future. A committer thread takes
+ * everything that piled up while its previous batch was committing, up to a maximum, and runs it as one transaction:
+ * <ol>
+ *   <li>lock the rows of every account in the batch with {@code SELECT ... FOR UPDATE}, in id order</li>
+ *   <li>check the transfers in the order they were queued against the running balances; a transfer that would
+ *   overdraw an account is refused on its own and the rest of the batch goes ahead</li>
+ *   <li>write the final balances with one batched {@code UPDATE} and commit</li>
+ * </ol>
+ * Only after the commit do the accounts in memory get the changes and the callers their results. Transfers go to the
+ * committer of their paying account, so transfers from one account are applied in the order they were made;
+ * committers only wait for each other on rows their batches share.
+ * <p>
+ * Requires {@code dws.repository.type=jdbc}. The cache's own write-through is left out of the listeners since the
+ * batches already wrote the balances.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "dws.transfer", name = "strategy", havingValue = "jdbc")
+public class JdbcTransferStrategy implements TransferStrategy {
+
+  private final JdbcAccountsRepository repository;
+  private final TransferListener transferListener;
+  private final int batchMaxSize;
+  private final Committer[] committers;
+
+  @Autowired
+  public JdbcTransferStrategy(JdbcAccountsRepository repository, TransferProperties properties,
+    ObjectProvider<TransferListener> transferListeners) {
+    this(repository, properties.getJdbcCommitters(), properties.getJdbcBatchMaxSize(),
+      TransferListener.of(transferListeners.orderedStream()
+        .filter(listener -> !(listener instanceof CachingAccountsRepository))
+        .toList()));
+  }
+
+  public JdbcTransferStrategy(JdbcAccountsRepository repository, int committerCount, int batchMaxSize,
+    TransferListener transferListener) {
+    this.repository = repository;
+    this.transferListener = transferListener;
+    this.batchMaxSize = Math.max(1, batchMaxSize);
+    this.committers = new Committer[Math.max(1, committerCount)];
+    for (int i = 0; i < committers.length; i++) {
+      committers[i] = new Committer("transfer-committer-" + i);
+      committers[i].start();
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    for (Committer committer : committers) {
+      committer.stop();
+    }
+    for (Committer committer : committers) {
+      committer.join();
+    }
+  }
+
+  @Override
+  public void transfer(Account accountFrom, Account accountTo, long amount) {
+    join(transferAsync(accountFrom, accountTo, amount));
+  }
+
+  @Override
+  public CompletableFuture<Void> transferAsync(Account accountFrom, Account accountTo, long amount) {
+    return submit(accountFrom, List.of(new Movement(accountFrom, accountTo, amount)));
+  }
+
+  // Queued as one entry, so the whole list is checked and committed together
+  @Override
+  public void transferAll(List<Transfer> transfers) {
+    if (transfers.isEmpty()) {
+      return;
+    }
+    List<Movement> movements = new ArrayList<>(transfers.size());
+    for (Transfer transfer : transfers) {
+      movements.add(new Movement(transfer.accountFrom(), transfer.accountTo(), transfer.amount()));
+    }
+    join(submit(transfers.get(0).accountFrom(), movements));
+  }
+
+  @Override
+  public void withdraw(Account account, long amount) {
+    join(submit(account, List.of(new Movement(account, null, amount))));
+  }
+
+  @Override
+  public void deposit(Account account, long amount) {
+    join(submit(account, List.of(new Movement(null, account, amount))));
+  }
+
+  private CompletableFuture<Void> submit(Account payer, List<Movement> movements) {
+    Pending pending = new Pending(movements);
+    int hash = payer.getAccountId().hashCode();
+    committers[Math.floorMod(hash ^ (hash >>> 16), committers.length)].offer(pending);
+    return pending.result;
+  }
+
+  private void commit(List<Pending> batch) {
+    SortedSet<String> accountIds = new TreeSet<>();
+    // The repository's cache hands out one object per account, the first one seen stands for it otherwise
+    Map<String, Account> accounts = new HashMap<>();
+    for (Pending pending : batch) {
+      for (Movement movement : pending.movements) {
+        for (Account account : new Account[] {movement.accountFrom(), movement.accountTo()}) {
+          if (account != null && accounts.putIfAbsent(account.getAccountId(), account) == null) {
+            accountIds.add(account.getAccountId());
+          }
+        }
+      }
+    }
+
+    Map<String, Long> changes = new HashMap<>();
+    try {
+      repository.updateBalances(accountIds, stored -> {
+        Map<String, Long> running = new HashMap<>(stored);
+        for (Pending pending : batch) {
+          pending.check(running);
+        }
+        Map<String, Long> updated = new HashMap<>();
+        running.forEach((accountId, balance) -> {
+          long change = balance - stored.get(accountId);
+          if (change != 0) {
+            changes.put(accountId, change);
+            updated.put(accountId, balance);
+          }
+        });
+        return updated;
+      });
+    } catch (RuntimeException e) {
+      for (Pending pending : batch) {
+        pending.result.completeExceptionally(e);
+      }
+      return;
+    }
+
+    // Committers may share accounts, so their changes are added rather than stored
+    for (String accountId : changes.keySet()) {
+      accounts.get(accountId).beginUpdate();
+    }
+    changes.forEach((accountId, change) -> add(accounts.get(accountId), change));
+    for (String accountId : changes.keySet()) {
+      accounts.get(accountId).endUpdate();
+    }
+
+    for (Pending pending : batch) {
+      if (pending.failure != null) {
+        pending.result.completeExceptionally(pending.failure);
+      } else {
+        pending.publish(transferListener);
+        pending.result.complete(null);
+      }
+    }
+  }
+
+  private static void add(Account account, long change) {
+    long balance;
+    do {
+      balance = account.balanceMinorUnits();
+    } while (!account.compareAndSetBalance(balance, balance + change));
+  }
+
+  private static TransferRejectedException insufficientFunds(Account account) {
+    return new TransferRejectedException(Reason.INSUFFICIENT_FUNDS,
+      "Insufficient funds in account " + account.getAccountId());
+  }
+
+  private static void join(CompletableFuture<?> future) {
+    try {
+      future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  // A withdrawal or deposit, the legs of cross-node transfers, has no account on the other side
+  private record Movement(Account accountFrom, Account accountTo, long amount) {
+  }
+
+  private static final class Pending {
+
+    final List<Movement> movements;
+    final CompletableFuture<Void> result = new CompletableFuture<>();
+
+    // Set by check: the reason the movements were refused, or the balances each of them left behind
+    IllegalArgumentException failure;
+    long[] balances;
+
+    Pending(List<Movement> movements) {
+      this.movements = movements;
+    }
+
+    // Applies the movements to the running balances of the batch, all of them or none
+    void check(Map<String, Long> running) {
+      Map<String, Long> changed = new HashMap<>();
+      long[] balances = new long[movements.size() * 2];
+      try {
+        for (int i = 0; i < movements.size(); i++) {
+          Movement movement = movements.get(i);
+          if (movement.accountFrom() != null) {
+            long balance = balance(movement.accountFrom(), changed, running);
+            if (balance < movement.amount()) {
+              throw insufficientFunds(movement.accountFrom());
+            }
+            balances[2 * i] = balance - movement.amount();
+            changed.put(movement.accountFrom().getAccountId(), balances[2 * i]);
+          }
+          if (movement.accountTo() != null) {
+            balances[2 * i + 1] = Money.add(balance(movement.accountTo(), changed, running), movement.amount());
+            changed.put(movement.accountTo().getAccountId(), balances[2 * i + 1]);
+          }
+        }
+      } catch (IllegalArgumentException e) {
+        failure = e;
+        return;
+      }
+      running.putAll(changed);
+      this.balances = balances;
+    }
+
+    void publish(TransferListener listener) {
+      for (int i = 0; i < movements.size(); i++) {
+        Movement movement = movements.get(i);
+        if (movement.accountFrom() != null && movement.accountTo() != null
+          && !movement.accountFrom().equals(movement.accountTo())) {
+          listener.onTransfer(movement.accountFrom(), movement.accountTo(), movement.amount(), balances[2 * i],
+            balances[2 * i + 1]);
+        }
+      }
+    }
+
+    // Accounts deleted from the database since they were looked up have no row to lock
+    private static long balance(Account account, Map<String, Long> changed, Map<String, Long> running) {
+      Long balance = changed.get(account.getAccountId());
+      if (balance == null) {
+        balance = running.get(account.getAccountId());
+      }
+      if (balance == null) {
+        throw new TransferRejectedException(Reason.ACCOUNT_NOT_FOUND, "Both accounts must exist.");
+      }
+      return balance;
+    }
+  }
+
+  private final class Committer extends QueueWorker<Pending> {
+
+    private final List<Pending> batch = new ArrayList<>();
+
+    Committer(String name) {
+      super(name);
+    }
+
+    @Override
+    void process(Pending pending) {
+      // Whatever queued up while the previous batch was committing goes into this one
+      batch.add(pending);
+      while (batch.size() < batchMaxSize && (pending = poll()) != null) {
+        batch.add(pending);
+      }
+      try {
+        commit(batch);
+      } catch (Throwable e) {
+        log.error("Committing a batch of transfers failed", e);
+        for (Pending failed : batch) {
+          failed.result.completeExceptionally(e);
+        }
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+}
@@ -0,0 +1,362 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.domain.StripedBalance;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.exception.TransferRejectedException.Reason;
+import com.dws.challenge.repository.TransferListener;
+import com.dws.challenge.service.AccountDeltas.Delta;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Locks the accounts of a transfer in a global order. Hot accounts, listed in the configuration or found waited for
+ * too often, get a {@link StripedBalance} instead: transfers touching one only lock the other account, if any.
+ */
+@Component
+@ConditionalOnProperty(prefix = "dws.transfer", name = "strategy", havingValue = "locking", matchIfMissing = true)
+public class LockingTransferStrategy implements TransferStrategy {
+
+  private final TransferListener transferListener;
+  private TransferMetrics transferMetrics = TransferMetrics.NONE;
+  // No account is ever striped unless configured, see setHotAccounts
+  private Set<String> hotAccounts = Set.of();
+  private long hotAccountContentions;
+  private int hotAccountStripes = Runtime.getRuntime().availableProcessors();
+
+  public LockingTransferStrategy() {
+    this(TransferListener.NONE);
+  }
+
+  @Autowired
+  public LockingTransferStrategy(ObjectProvider<TransferListener> transferListeners) {
+    this(TransferListener.of(transferListeners.orderedStream().toList()));
+  }
+
+  public LockingTransferStrategy(TransferListener transferListener) {
+    this.transferListener = transferListener;
+  }
+
+  @Autowired
+  public void setTransferMetrics(TransferMetrics transferMetrics) {
+    this.transferMetrics = transferMetrics;
+  }
+
+  @Autowired
+  public void setHotAccounts(TransferProperties properties) {
+    this.hotAccounts = Set.copyOf(properties.getHotAccounts());
+    this.hotAccountContentions = properties.getHotAccountContentions();
+    this.hotAccountStripes = properties.getHotAccountStripes();
+  }
+
+  private static final Comparator<Account> LOCK_ORDER = Comparator.comparingInt(Account::lockRank)
+    .thenComparing(Account::getAccountId);
+
+  @Override
+  public void transfer(Account accountFrom, Account accountTo, long amount) {
+    // An account can turn hot while a transfer waits for its lock, the transfer then starts over on the striped path
+    boolean done;
+    do {
+      done = accountFrom.stripedBalance() == null && accountTo.stripedBalance() == null
+        ? transferLocked(accountFrom, accountTo, amount)
+        : transferStriped(accountFrom, accountTo, amount);
+    } while (!done);
+  }
+
+  private boolean transferLocked(Account accountFrom, Account accountTo, long amount) {
+    // Always lock in the global order (by id unless locks are striped), so that A->B and B->A cannot deadlock
+    Account first = accountFrom;
+    Account second = accountTo;
+    if (LOCK_ORDER.compare(accountFrom, accountTo) > 0) {
+      first = accountTo;
+      second = accountFrom;
+    }
+
+    lock(first);
+    try {
+      lock(second);
+      long heldSince = transferMetrics.sampleLockHold() ? System.nanoTime() : 0;
+      try {
+        if (accountFrom.stripedBalance() != null || accountTo.stripedBalance() != null) {
+          return false;
+        }
+        long fromBalance = accountFrom.balanceMinorUnits();
+        if (fromBalance < amount) {
+          throw insufficientFunds(accountFrom);
+        }
+        if (accountFrom.equals(accountTo)) {
+          return true;
+        }
+
+        long toBalance = Money.add(accountTo.balanceMinorUnits(), amount);
+        accountFrom.beginUpdate();
+        accountTo.beginUpdate();
+        accountFrom.storeBalance(fromBalance - amount);
+        accountTo.storeBalance(toBalance);
+        accountFrom.endUpdate();
+        accountTo.endUpdate();
+        transferListener.onTransfer(accountFrom, accountTo, amount, fromBalance - amount, toBalance);
+        return true;
+      } finally {
+        if (heldSince != 0) {
+          transferMetrics.lockHeld(System.nanoTime() - heldSince);
+        }
+        second.lock().unlock();
+      }
+    } finally {
+      first.lock().unlock();
+    }
+  }
+
+  // Listeners get the striped balances as read right after the transfer, which may include concurrent ones
+  private boolean transferStriped(Account accountFrom, Account accountTo, long amount) {
+    StripedBalance fromStripes = accountFrom.stripedBalance();
+    StripedBalance toStripes = accountTo.stripedBalance();
+    if (accountFrom.equals(accountTo)) {
+      if (accountFrom.balanceMinorUnits() < amount) {
+        throw insufficientFunds(accountFrom);
+      }
+      return true;
+    }
+
+    Account locked = fromStripes == null ? accountFrom : toStripes == null ? accountTo : null;
+    if (locked != null) {
+      lock(locked);
+      if (locked.stripedBalance() != null) {
+        locked.lock().unlock();
+        return false;
+      }
+    }
+    try {
+      long toBalance = toStripes == null ? Money.add(accountTo.balanceMinorUnits(), amount) : 0;
+      long fromBalance = 0;
+      int fromStripe = -1;
+      if (fromStripes == null) {
+        fromBalance = accountFrom.balanceMinorUnits();
+        if (fromBalance < amount) {
+          throw insufficientFunds(accountFrom);
+        }
+        accountFrom.beginUpdate();
+        accountFrom.storeBalance(fromBalance - amount);
+      } else {
+        fromStripe = fromStripes.debit(amount);
+        if (fromStripe < 0) {
+          throw insufficientFunds(accountFrom);
+        }
+      }
+
+      // The update opened by the debit stays open until the credit is written too, as on the locked path
+      int toStripe = -1;
+      if (toStripes == null) {
+        accountTo.beginUpdate();
+        accountTo.storeBalance(toBalance);
+      } else {
+        toStripe = toStripes.credit(amount);
+      }
+      if (fromStripes == null) {
+        accountFrom.endUpdate();
+      } else {
+        fromStripes.settle(fromStripe);
+      }
+      if (toStripes == null) {
+        accountTo.endUpdate();
+      } else {
+        toStripes.settle(toStripe);
+      }
+
+      transferListener.onTransfer(accountFrom, accountTo, amount,
+        fromStripes == null ? fromBalance - amount : fromStripes.sum(),
+        toStripes == null ? toBalance : toStripes.sum());
+      return true;
+    } finally {
+      if (locked != null) {
+        locked.lock().unlock();
+      }
+    }
+  }
+
+  @Override
+  public void withdraw(Account account, long amount) {
+    while (!adjust(account, -amount)) {
+      Thread.onSpinWait();
+    }
+  }
+
+  @Override
+  public void deposit(Account account, long amount) {
+    while (!adjust(account, amount)) {
+      Thread.onSpinWait();
+    }
+  }
+
+  // A single leg, see TransferStrategy#withdraw; returns false if the account turned hot while being locked
+  private boolean adjust(Account account, long amount) {
+    StripedBalance stripes = account.stripedBalance();
+    if (stripes != null) {
+      int stripe = amount < 0 ? stripes.debit(-amount) : stripes.credit(amount);
+      if (stripe < 0) {
+        throw insufficientFunds(account);
+      }
+      stripes.settle(stripe);
+      return true;
+    }
+
+    lock(account);
+    try {
+      if (account.stripedBalance() != null) {
+        return false;
+      }
+      long balance = Money.add(account.balanceMinorUnits(), amount);
+      if (balance < 0) {
+        throw insufficientFunds(account);
+      }
+      account.beginUpdate();
+      account.storeBalance(balance);
+      account.endUpdate();
+      return true;
+    } finally {
+      account.lock().unlock();
+    }
+  }
+
+  @Override
+  public void transferAll(List<Transfer> transfers) {
+    AccountDeltas deltas = new AccountDeltas(transfers);
+    // Accounts that turn hot while being locked stay locked, apply treats them as striped all the same
+    Account[] accounts = deltas.values().stream()
+      .map(delta -> delta.account)
+      .filter(account -> account.stripedBalance() == null)
+      .sorted(LOCK_ORDER)
+      .toArray(Account[]::new);
+
+    int locked = 0;
+    long heldSince = 0;
+    try {
+      for (Account account : accounts) {
+        lock(account);
+        locked++;
+      }
+      heldSince = transferMetrics.sampleLockHold() ? System.nanoTime() : 0;
+      apply(deltas);
+      deltas.publish(transfers, transferListener);
+    } finally {
+      if (heldSince != 0) {
+        transferMetrics.lockHeld(System.nanoTime() - heldSince);
+      }
+      while (locked > 0) {
+        accounts[--locked].lock().unlock();
+      }
+    }
+  }
+
+  // Only an acquisition that has to wait is timed and may turn the account hot, the uncontended path is a tryLock
+  private void lock(Account account) {
+    ReentrantLock lock = account.lock();
+    if (!lock.tryLock()) {
+      long start = System.nanoTime();
+      lock.lock();
+      long contentions = transferMetrics.lockContended(account, System.nanoTime() - start);
+      if (hotAccountContentions > 0 && contentions >= hotAccountContentions) {
+        account.stripeBalance(hotAccountStripes);
+      }
+    }
+    if (!hotAccounts.isEmpty() && hotAccounts.contains(account.getAccountId())) {
+      account.stripeBalance(hotAccountStripes);
+    }
+  }
+
+  private static void apply(AccountDeltas deltas) {
+    Delta[] values = deltas.values().toArray(Delta[]::new);
+
+    // Validate everything before the first balance is written
+    long[] balances = new long[values.length];
+    for (int i = 0; i < values.length; i++) {
+      Delta delta = values[i];
+      delta.balance = delta.account.balanceMinorUnits();
+      if (delta.account.stripedBalance() == null) {
+        if (delta.balance + delta.drawdown < 0) {
+          throw insufficientFunds(delta.account);
+        }
+        balances[i] = Money.add(delta.balance, delta.net);
+      }
+    }
+
+    // Striped balances are not locked, so they reserve their drawdown instead and get it back if any reservation fails
+    int[] stripes = new int[values.length];
+    int reserved = 0;
+    try {
+      for (; reserved < values.length; reserved++) {
+        stripes[reserved] = reserve(values[reserved]);
+      }
+    } catch (RuntimeException e) {
+      for (int i = 0; i < reserved; i++) {
+        refund(values[i], stripes[i]);
+      }
+      throw e;
+    }
+
+    for (int i = 0; i < values.length; i++) {
+      if (values[i].account.stripedBalance() == null) {
+        values[i].account.beginUpdate();
+      }
+    }
+    int[] credited = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      Delta delta = values[i];
+      StripedBalance striped = delta.account.stripedBalance();
+      if (striped == null) {
+        delta.account.storeBalance(balances[i]);
+      } else {
+        credited[i] = delta.net > delta.drawdown ? striped.credit(delta.net - delta.drawdown) : -1;
+      }
+    }
+    for (int i = 0; i < values.length; i++) {
+      StripedBalance striped = values[i].account.stripedBalance();
+      if (striped == null) {
+        values[i].account.endUpdate();
+        continue;
+      }
+      if (stripes[i] >= 0) {
+        striped.settle(stripes[i]);
+      }
+      if (credited[i] >= 0) {
+        striped.settle(credited[i]);
+      }
+    }
+  }
+
+  // Takes the drawdown of a striped account, returning the stripe to settle or -1 if there was nothing to take
+  private static int reserve(Delta delta) {
+    StripedBalance striped = delta.account.stripedBalance();
+    if (striped == null || delta.drawdown == 0) {
+      return -1;
+    }
+    int stripe = striped.debit(-delta.drawdown);
+    if (stripe < 0) {
+      throw insufficientFunds(delta.account);
+    }
+    return stripe;
+  }
+
+  private static void refund(Delta delta, int stripe) {
+    if (stripe >= 0) {
+      StripedBalance striped = delta.account.stripedBalance();
+      striped.settle(striped.credit(-delta.drawdown));
+      striped.settle(stripe);
+    }
+  }
+
+  private static TransferRejectedException insufficientFunds(Account account) {
+    return new TransferRejectedException(Reason.INSUFFICIENT_FUNDS,
+      "Insufficient funds in account " + account.getAccountId());
+  }
+}
@@ -0,0 +1,47 @@
+package com.dws.challenge.service;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unbounded multi-producer single-consumer queue after Dmitry Vyukov's design: producers publish with one atomic
+ * swap of the tail, the consumer polls without any atomic operation. {@link #poll()} may briefly return null while
+ * a producer is between its swap and linking its node, the element shows up on one of the next polls.
+ */
+final class MpscQueue<E> {
+
+  private final AtomicReference<Node<E>> tail;
+  // Only touched by the consumer
+  private Node<E> head;
+
+  MpscQueue() {
+    Node<E> stub = new Node<>(null);
+    this.head = stub;
+    this.tail = new AtomicReference<>(stub);
+  }
+
+  void offer(E element) {
+    Node<E> node = new Node<>(element);
+    Node<E> previous = tail.getAndSet(node);
+    previous.next = node;
+  }
+
+  E poll() {
+    Node<E> next = head.next;
+    if (next == null) {
+      return null;
+    }
+    E element = next.element;
+    next.element = null;
+    head = next;
+    return element;
+  }
+
+  private static final class Node<E> {
+    E element;
+    volatile Node<E> next;
+
+    Node(E element) {
+      this.element = element;
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.exception.TransferRejectedException.Reason;
+import com.dws.challenge.repository.TransferListener;
+import com.dws.challenge.service.AccountDeltas.Delta;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(prefix = "dws.transfer", name = "strategy", havingValue = "optimistic")
+public class OptimisticTransferStrategy implements TransferStrategy {
+
+  private final TransferListener transferListener;
+  private TransferMetrics transferMetrics = TransferMetrics.NONE;
+
+  public OptimisticTransferStrategy() {
+    this(TransferListener.NONE);
+  }
+
+  @Autowired
+  public OptimisticTransferStrategy(ObjectProvider<TransferListener> transferListeners) {
+    this(TransferListener.of(transferListeners.orderedStream().toList()));
+  }
+
+  public OptimisticTransferStrategy(TransferListener transferListener) {
+    this.transferListener = transferListener;
+  }
+
+  @Autowired
+  public void setTransferMetrics(TransferMetrics transferMetrics) {
+    this.transferMetrics = transferMetrics;
+  }
+
+  @Override
+  public void transfer(Account accountFrom, Account accountTo, long amount) {
+    // The money is in flight between the two phases, snapshots wait until both are done
+    accountFrom.beginUpdate();
+    accountTo.beginUpdate();
+    long fromBalance;
+    long toBalance;
+    try {
+      // Phase 1: take the money out of the source account, re-checking the funds on every attempt
+      fromBalance = debit(accountFrom, amount) - amount;
+
+      // Phase 2: a credit only fails on overflow, in which case the debit is undone
+      try {
+        toBalance = credit(accountTo, amount) + amount;
+      } catch (IllegalArgumentException e) {
+        credit(accountFrom, amount);
+        throw e;
+      }
+    } finally {
+      accountFrom.endUpdate();
+      accountTo.endUpdate();
+    }
+    transferListener.onTransfer(accountFrom, accountTo, amount, fromBalance, toBalance);
+  }
+
+  @Override
+  public void withdraw(Account account, long amount) {
+    account.beginUpdate();
+    try {
+      debit(account, amount);
+    } finally {
+      account.endUpdate();
+    }
+  }
+
+  @Override
+  public void deposit(Account account, long amount) {
+    account.beginUpdate();
+    try {
+      credit(account, amount);
+    } finally {
+      account.endUpdate();
+    }
+  }
+
+  @Override
+  public void transferAll(List<Transfer> transfers) {
+    AccountDeltas deltas = new AccountDeltas(transfers);
+    for (Delta delta : deltas.values()) {
+      delta.account.beginUpdate();
+    }
+    try {
+      apply(deltas);
+    } finally {
+      for (Delta delta : deltas.values()) {
+        delta.account.endUpdate();
+      }
+    }
+
+    // There is no single moment the batch was applied at, balances are reported as of each account's first update
+    deltas.publish(transfers, transferListener);
+  }
+
+  private void apply(AccountDeltas deltas) {
+    // Phase 1: reserve the largest running outflow of every paying account, all or nothing
+    List<Delta> reserved = new ArrayList<>();
+    for (Delta delta : deltas.values()) {
+      if (delta.drawdown == 0) {
+        continue;
+      }
+      try {
+        delta.balance = debit(delta.account, -delta.drawdown);
+        reserved.add(delta);
+      } catch (IllegalArgumentException e) {
+        for (Delta undo : reserved) {
+          credit(undo.account, -undo.drawdown);
+        }
+        throw e;
+      }
+    }
+
+    // Phase 2: give back what was reserved beyond the net outflow and pay the receiving accounts
+    for (Delta delta : deltas.values()) {
+      long remainder = delta.net - delta.drawdown;
+      if (remainder > 0) {
+        long previous = credit(delta.account, remainder);
+        if (delta.drawdown == 0) {
+          delta.balance = previous;
+        }
+      }
+    }
+  }
+
+  // Returns the balance before the debit
+  private long debit(Account account, long amount) {
+    while (true) {
+      long current = account.balanceMinorUnits();
+      if (current < amount) {
+        throw new TransferRejectedException(Reason.INSUFFICIENT_FUNDS,
+          "Insufficient funds in account " + account.getAccountId());
+      }
+      if (account.compareAndSetBalance(current, current - amount)) {
+        return current;
+      }
+      transferMetrics.casRetried(account);
+      Thread.onSpinWait();
+    }
+  }
+
+  // Returns the balance before the credit
+  private long credit(Account account, long amount) {
+    while (true) {
+      long current = account.balanceMinorUnits();
+      if (account.compareAndSetBalance(current, Money.add(current, amount))) {
+        return current;
+      }
+      transferMetrics.casRetried(account);
+      Thread.onSpinWait();
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package com.dws.challenge.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The single consumer of an {@link MpscQueue}, on a thread of its own, for state only that thread may touch. It
+ * spins a little when the queue runs dry, then parks until the next offer. Once stopped it still takes whatever was
+ * queued before, then ends.
+ * <p>
+ * Whatever {@link #process} throws, errors included, is logged and the worker goes on with the next element, so
+ * nothing queued after a failure is stranded; implementations holding futures must fail those themselves.
+ */
+@Slf4j
+abstract class QueueWorker<E> implements Runnable {
+
+  private static final int SPINS_BEFORE_PARKING = 100;
+
+  private final MpscQueue<E> queue = new MpscQueue<>();
+  private final Thread thread;
+  private volatile boolean parked;
+  private volatile boolean running = true;
+
+  QueueWorker(String name) {
+    this.thread = new Thread(this, name);
+    this.thread.setDaemon(true);
+  }
+
+  // Not done by the constructor, so the thread never sees a subclass that is still being constructed
+  void start() {
+    thread.start();
+  }
+
+  void offer(E element) {
+    queue.offer(element);
+    if (parked) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  void stop() {
+    running = false;
+    LockSupport.unpark(thread);
+  }
+
+  void join() throws InterruptedException {
+    thread.join();
+  }
+
+  abstract void process(E element);
+
+  // For process only, to take elements that queued up meanwhile; null if there are none right now
+  E poll() {
+    return queue.poll();
+  }
+
+  @Override
+  public final void run() {
+    while (true) {
+      E element = queue.poll();
+      for (int spin = 0; element == null && spin < SPINS_BEFORE_PARKING; spin++) {
+        Thread.onSpinWait();
+        element = queue.poll();
+      }
+      if (element == null) {
+        if (!running) {
+          return;
+        }
+        // Producers unpark after publishing, so polling once more after raising the flag cannot miss one
+        parked = true;
+        element = queue.poll();
+        if (element == null && running) {
+          LockSupport.park(this);
+        }
+        parked = false;
+        if (element == null) {
+          continue;
+        }
+      }
+      try {
+        process(element);
+      } catch (Throwable e) {
+        log.error("{} failed to process an element", thread.getName(), e);
+      }
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.ReactiveProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountBalances;
+import com.dws.challenge.domain.BatchMode;
+import com.dws.challenge.domain.BatchTransferResponse;
+import com.dws.challenge.domain.Transaction;
+import com.dws.challenge.domain.TransactionPage;
+import com.dws.challenge.domain.TransferRequest;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * {@link AccountsService} for the WebFlux stack. Reads are served on the calling thread since they never wait;
+ * everything that may wait for an account lock or the journal runs on a bounded scheduler, which refuses work with
+ * a {@link java.util.concurrent.RejectedExecutionException} once its queue is full.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveAccountsService {
+
+  private final AccountsService accountsService;
+  private final Scheduler transferScheduler;
+
+  @Autowired
+  public ReactiveAccountsService(AccountsService accountsService, ReactiveProperties properties) {
+    this(accountsService, Schedulers.newBoundedElastic(properties.getTransferThreads(),
+      properties.getTransferQueueCapacity(), "transfer"));
+  }
+
+  public ReactiveAccountsService(AccountsService accountsService, Scheduler transferScheduler) {
+    this.accountsService = accountsService;
+    this.transferScheduler = transferScheduler;
+  }
+
+  public Mono<Void> createAccount(Account account) {
+    // The journaled repository waits for the account to be durable
+    return Mono.fromRunnable(() -> accountsService.createAccount(account))
+      .subscribeOn(transferScheduler)
+      .then();
+  }
+
+  public Mono<Account> getAccount(String accountId) {
+    return Mono.fromSupplier(() -> accountsService.getAccount(accountId));
+  }
+
+  public Mono<AccountBalances> getAccounts(List<String> accountIds) {
+    return Mono.fromSupplier(() -> accountsService.getAccounts(accountIds));
+  }
+
+  // May wait for transfers to settle, so it is kept off the event loop as well
+  public Mono<AccountBalances> getAccountsSnapshot(List<String> accountIds, Duration maxWait) {
+    return Mono.fromCallable(() -> accountsService.getAccountsSnapshot(accountIds, maxWait))
+      .subscribeOn(transferScheduler);
+  }
+
+  public Mono<TransactionPage> getTransactions(String accountId, Long cursor, int limit) {
+    return Mono.fromSupplier(() -> accountsService.getTransactions(accountId, cursor, limit));
+  }
+
+  public Flux<Transaction> streamTransactions(String accountId, Long cursor) {
+    return Flux.fromStream(() -> accountsService.streamTransactions(accountId, cursor));
+  }
+
+  /**
+   * Completes once the transfer was applied and journaled, or with the {@link IllegalArgumentException} that
+   * refused it. Notifications are sent after completion as they are in {@link AccountsService}.
+   */
+  public Mono<Void> transferMoney(String accountFromId, String accountToId, long amount) {
+    // The sharded strategy hands the transfer to its shards right away, the others apply it on the scheduler
+    return Mono.fromFuture(() -> accountsService.transferMoneyAsync(accountFromId, accountToId, amount))
+      .subscribeOn(transferScheduler);
+  }
+
+  public Mono<BatchTransferResponse> transferBatch(List<TransferRequest> requests, BatchMode mode) {
+    return Mono.fromCallable(() -> accountsService.transferBatch(requests, mode))
+      .subscribeOn(transferScheduler);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    transferScheduler.dispose();
+  }
+}
@@ -0,0 +1,307 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.exception.TransferRejectedException.Reason;
+import com.dws.challenge.repository.TransferListener;
+import com.dws.challenge.service.AccountDeltas.Delta;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Accounts are hash-partitioned over single-threaded shards, and only the shard owning an account ever writes its
+ * balance. Operations reach a shard through its MPSC queue, so a transfer between two accounts of the same shard
+ * needs no synchronization at all. A transfer across shards first reserves the amount on the paying shard, then
+ * commits it on the receiving one, and refunds the reservation if the commit fails.
+ * <p>
+ * While a cross-shard transfer is between its two steps the amount is in neither account. Listeners are called by
+ * the shard that finishes a transfer, so two shards may report transfers of the same account out of order.
+ */
+@Component
+@ConditionalOnProperty(prefix = "dws.transfer", name = "strategy", havingValue = "sharded")
+public class ShardedTransferStrategy implements TransferStrategy {
+
+  private final TransferListener transferListener;
+  private final Shard[] shards;
+
+  public ShardedTransferStrategy(int shardCount) {
+    this(shardCount, TransferListener.NONE);
+  }
+
+  @Autowired
+  public ShardedTransferStrategy(TransferProperties properties, ObjectProvider<TransferListener> transferListeners) {
+    this(properties.getShards(), TransferListener.of(transferListeners.orderedStream().toList()));
+  }
+
+  public ShardedTransferStrategy(int shardCount, TransferListener transferListener) {
+    this.transferListener = transferListener;
+    this.shards = new Shard[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new Shard("transfer-shard-" + i);
+      shards[i].start();
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    for (Shard shard : shards) {
+      shard.stop();
+    }
+    for (Shard shard : shards) {
+      shard.join();
+    }
+  }
+
+  @Override
+  public void transfer(Account accountFrom, Account accountTo, long amount) {
+    join(transferAsync(accountFrom, accountTo, amount));
+  }
+
+  @Override
+  public CompletableFuture<Void> transferAsync(Account accountFrom, Account accountTo, long amount) {
+    CompletableFuture<Void> result = new CompletableFuture<>();
+    Shard fromShard = shardOf(accountFrom);
+    Shard toShard = shardOf(accountTo);
+
+    if (fromShard == toShard) {
+      fromShard.execute(result, () -> {
+        long fromBalance = accountFrom.balanceMinorUnits();
+        if (fromBalance < amount) {
+          result.completeExceptionally(insufficientFunds(accountFrom));
+          return;
+        }
+        if (accountFrom.equals(accountTo)) {
+          result.complete(null);
+          return;
+        }
+        long toBalance;
+        try {
+          toBalance = Money.add(accountTo.balanceMinorUnits(), amount);
+        } catch (IllegalArgumentException e) {
+          result.completeExceptionally(e);
+          return;
+        }
+        accountFrom.beginUpdate();
+        accountTo.beginUpdate();
+        accountFrom.storeBalance(fromBalance - amount);
+        accountTo.storeBalance(toBalance);
+        accountFrom.endUpdate();
+        accountTo.endUpdate();
+        transferListener.onTransfer(accountFrom, accountTo, amount, fromBalance - amount, toBalance);
+        result.complete(null);
+      });
+      return result;
+    }
+
+    fromShard.execute(result, () -> {
+      // Step 1, on the paying shard: reserve the amount
+      long fromBalance = accountFrom.balanceMinorUnits();
+      if (fromBalance < amount) {
+        result.completeExceptionally(insufficientFunds(accountFrom));
+        return;
+      }
+      // The money is in flight until the receiving shard commits, snapshots wait for it
+      accountFrom.beginUpdate();
+      accountTo.beginUpdate();
+      accountFrom.storeBalance(fromBalance - amount);
+
+      // Step 2, on the receiving shard: commit, or hand the reservation back
+      toShard.execute(result, () -> {
+        long toBalance;
+        try {
+          toBalance = Money.add(accountTo.balanceMinorUnits(), amount);
+        } catch (IllegalArgumentException e) {
+          fromShard.execute(() -> {
+            accountFrom.storeBalance(accountFrom.balanceMinorUnits() + amount);
+            accountFrom.endUpdate();
+            accountTo.endUpdate();
+          });
+          result.completeExceptionally(e);
+          return;
+        }
+        accountTo.storeBalance(toBalance);
+        accountFrom.endUpdate();
+        accountTo.endUpdate();
+        transferListener.onTransfer(accountFrom, accountTo, amount, fromBalance - amount, toBalance);
+        result.complete(null);
+      });
+    });
+    return result;
+  }
+
+  @Override
+  public void withdraw(Account account, long amount) {
+    join(shardOf(account).submit(() -> {
+      long balance = account.balanceMinorUnits();
+      if (balance < amount) {
+        throw insufficientFunds(account);
+      }
+      account.beginUpdate();
+      account.storeBalance(balance - amount);
+      account.endUpdate();
+    }));
+  }
+
+  @Override
+  public void deposit(Account account, long amount) {
+    join(shardOf(account).submit(() -> {
+      long balance = Money.add(account.balanceMinorUnits(), amount);
+      account.beginUpdate();
+      account.storeBalance(balance);
+      account.endUpdate();
+    }));
+  }
+
+  @Override
+  public void transferAll(List<Transfer> transfers) {
+    AccountDeltas deltas = new AccountDeltas(transfers);
+    Map<Shard, List<Delta>> byShard = new LinkedHashMap<>();
+    for (Delta delta : deltas.values()) {
+      byShard.computeIfAbsent(shardOf(delta.account), shard -> new ArrayList<>()).add(delta);
+    }
+
+    for (Delta delta : deltas.values()) {
+      delta.account.beginUpdate();
+    }
+    try {
+      apply(byShard);
+    } finally {
+      for (Delta delta : deltas.values()) {
+        delta.account.endUpdate();
+      }
+    }
+
+    deltas.publish(transfers, transferListener);
+  }
+
+  private void apply(Map<Shard, List<Delta>> byShard) {
+    // Phase 1: every shard validates its accounts and reserves their drawdown, all or nothing per shard
+    Map<Shard, CompletableFuture<Void>> reservations = new LinkedHashMap<>();
+    byShard.forEach((shard, shardDeltas) -> reservations.put(shard, shard.submit(() -> reserve(shardDeltas))));
+    IllegalArgumentException failure = null;
+    List<Shard> reserved = new ArrayList<>();
+    for (Map.Entry<Shard, CompletableFuture<Void>> reservation : reservations.entrySet()) {
+      try {
+        join(reservation.getValue());
+        reserved.add(reservation.getKey());
+      } catch (IllegalArgumentException e) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+    if (failure != null) {
+      List<CompletableFuture<Void>> releases = new ArrayList<>();
+      for (Shard shard : reserved) {
+        releases.add(shard.submit(() -> release(byShard.get(shard))));
+      }
+      join(CompletableFuture.allOf(releases.toArray(CompletableFuture[]::new)));
+      throw failure;
+    }
+
+    // Phase 2: hand back what was reserved beyond the net outflow and pay the receiving accounts
+    List<CompletableFuture<Void>> commits = new ArrayList<>();
+    byShard.forEach((shard, shardDeltas) -> commits.add(shard.submit(() -> commit(shardDeltas))));
+    join(CompletableFuture.allOf(commits.toArray(CompletableFuture[]::new)));
+  }
+
+  private static void reserve(List<Delta> deltas) {
+    // Validate everything first, so a shard either reserves all of its accounts or none
+    for (Delta delta : deltas) {
+      long balance = delta.account.balanceMinorUnits();
+      if (balance + delta.drawdown < 0) {
+        throw insufficientFunds(delta.account);
+      }
+      Money.add(balance, delta.net);
+    }
+    for (Delta delta : deltas) {
+      delta.balance = delta.account.balanceMinorUnits();
+      delta.account.storeBalance(delta.balance + delta.drawdown);
+    }
+  }
+
+  private static void release(List<Delta> deltas) {
+    for (Delta delta : deltas) {
+      delta.account.storeBalance(delta.account.balanceMinorUnits() - delta.drawdown);
+    }
+  }
+
+  private static void commit(List<Delta> deltas) {
+    for (Delta delta : deltas) {
+      delta.account.storeBalance(delta.account.balanceMinorUnits() + delta.net - delta.drawdown);
+    }
+  }
+
+  private Shard shardOf(Account account) {
+    int hash = account.getAccountId().hashCode();
+    return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+  }
+
+  private static TransferRejectedException insufficientFunds(Account account) {
+    return new TransferRejectedException(Reason.INSUFFICIENT_FUNDS,
+      "Insufficient funds in account " + account.getAccountId());
+  }
+
+  private static void join(CompletableFuture<?> future) {
+    try {
+      future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  private static final class Shard extends QueueWorker<Runnable> {
+
+    Shard(String name) {
+      super(name);
+    }
+
+    void execute(Runnable operation) {
+      offer(operation);
+    }
+
+    // Fails the result if the operation throws, errors included, so no caller waits for it forever
+    void execute(CompletableFuture<?> result, Runnable operation) {
+      offer(() -> {
+        try {
+          operation.run();
+        } catch (Throwable e) {
+          result.completeExceptionally(e);
+          // Rejections are the caller's to handle, errors are logged by the worker as well
+          if (e instanceof Error) {
+            throw e;
+          }
+        }
+      });
+    }
+
+    CompletableFuture<Void> submit(Runnable operation) {
+      CompletableFuture<Void> result = new CompletableFuture<>();
+      execute(result, () -> {
+        operation.run();
+        result.complete(null);
+      });
+      return result;
+    }
+
+    @Override
+    void process(Runnable operation) {
+      operation.run();
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package com.dws.challenge.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel over ticks. Level 0 has a slot per tick for the next 64 ticks, every level above covers
+ * 64 times the span of the one below with slots as wide as that whole level. A node due within 64 ticks sits in the
+ * slot of its own tick; one further out sits in the slot of a higher level and is moved down, cascaded, when the
+ * wheel reaches that slot. Nodes are linked into their slot intrusively, so adding and cancelling are constant time
+ * and allocate nothing, and advancing by a tick only touches the slots that come due.
+ * <p>
+ * Six levels cover 2^36 ticks; a node due even later waits in the top level and is placed again each time it
+ * cascades. Not thread-safe.
+ */
+final class TimerWheel<T extends TimerWheel.Node> {
+
+  private static final int SLOT_BITS = 6;
+  private static final int SLOTS = 1 << SLOT_BITS;
+  private static final int LEVELS = 6;
+  private static final long SPAN = 1L << (SLOT_BITS * LEVELS);
+
+  private final Node[] slots = new Node[LEVELS * SLOTS];
+  // Nodes per level, so empty stretches of the lower levels are skipped instead of walked tick by tick
+  private final int[] counts = new int[LEVELS];
+  private long currentTick;
+  private int size;
+
+  TimerWheel(long currentTick) {
+    this.currentTick = currentTick;
+  }
+
+  long currentTick() {
+    return currentTick;
+  }
+
+  int size() {
+    return size;
+  }
+
+  // A node due at or before the current tick comes due with the next one
+  void add(T node, long deadline) {
+    node.deadline = Math.max(deadline, currentTick + 1);
+    place(node);
+    size++;
+  }
+
+  boolean cancel(T node) {
+    if (node.slot < 0) {
+      return false;
+    }
+    unlink(node);
+    size--;
+    return true;
+  }
+
+  // Hands every node due up to and including the tick to expired, tick by tick
+  @SuppressWarnings("unchecked")
+  void advance(long tick, Consumer<? super T> expired) {
+    while (currentTick < tick) {
+      if (size == 0) {
+        currentTick = tick;
+        return;
+      }
+      // While the lowest levels are empty nothing expires or cascades until the next tick that wraps them all around
+      int empty = 0;
+      while (counts[empty] == 0) {
+        empty++;
+      }
+      long now = ((currentTick >>> (SLOT_BITS * empty)) + 1) << (SLOT_BITS * empty);
+      if (now > tick) {
+        currentTick = tick;
+        return;
+      }
+      currentTick = now;
+
+      // Each level cascades when every level below it wrapped around
+      for (int level = 1; level < LEVELS && (now & ((1L << (SLOT_BITS * level)) - 1)) == 0; level++) {
+        for (Node node = detach(level, index(now, level)); node != null; ) {
+          Node next = node.next;
+          place(node);
+          node = next;
+        }
+      }
+      for (Node node = detach(0, index(now, 0)); node != null; ) {
+        Node next = node.next;
+        node.slot = -1;
+        node.prev = null;
+        node.next = null;
+        size--;
+        expired.accept((T) node);
+        node = next;
+      }
+    }
+  }
+
+  private void place(Node node) {
+    long delta = node.deadline - currentTick;
+    // Beyond the top level the node waits in its last slot, and is placed again from there
+    long deadline = delta < SPAN ? node.deadline : currentTick + SPAN - 1;
+    int level = 0;
+    while (level < LEVELS - 1 && deadline - currentTick >= 1L << (SLOT_BITS * (level + 1))) {
+      level++;
+    }
+    link(node, level * SLOTS + index(deadline, level));
+  }
+
+  private static int index(long tick, int level) {
+    return (int) (tick >>> (SLOT_BITS * level)) & (SLOTS - 1);
+  }
+
+  private void link(Node node, int slot) {
+    Node head = slots[slot];
+    node.slot = slot;
+    node.prev = null;
+    node.next = head;
+    counts[slot / SLOTS]++;
+    if (head != null) {
+      head.prev = node;
+    }
+    slots[slot] = node;
+  }
+
+  private void unlink(Node node) {
+    if (node.prev == null) {
+      slots[node.slot] = node.next;
+    } else {
+      node.prev.next = node.next;
+    }
+    if (node.next != null) {
+      node.next.prev = node.prev;
+    }
+    counts[node.slot / SLOTS]--;
+    node.slot = -1;
+    node.prev = null;
+    node.next = null;
+  }
+
+  private Node detach(int level, int index) {
+    Node head = slots[level * SLOTS + index];
+    slots[level * SLOTS + index] = null;
+    for (Node node = head; node != null; node = node.next) {
+      counts[level]--;
+    }
+    return head;
+  }
+
+  static class Node {
+
+    // Guarded by whoever guards the wheel; the slot is -1 while the node is not in the wheel
+    long deadline;
+    int slot = -1;
+    Node prev;
+    Node next;
+  }
+}
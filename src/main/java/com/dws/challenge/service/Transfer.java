@@ -0,0 +1,9 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+
+/**
+ * A validated transfer between two existing accounts, with the amount in minor units.
+ */
+public record Transfer(Account accountFrom, Account accountTo, long amount) {
+}
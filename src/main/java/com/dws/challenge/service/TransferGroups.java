@@ -0,0 +1,81 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.TransferRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits a batch into groups of transfers that share no account with any other group, keeping the
+ * submission order within each group. Groups can then be applied in parallel.
+ */
+final class TransferGroups {
+
+  private final Map<String, Integer> accountIndexes = new HashMap<>();
+  private int[] parents = new int[16];
+
+  private TransferGroups() {
+  }
+
+  static Collection<List<Integer>> of(List<TransferRequest> requests) {
+    return new TransferGroups().group(requests);
+  }
+
+  private Collection<List<Integer>> group(List<TransferRequest> requests) {
+    int[] roots = new int[requests.size()];
+    for (int i = 0; i < requests.size(); i++) {
+      TransferRequest request = requests.get(i);
+      int from = indexOf(request.accountFromId());
+      int to = indexOf(request.accountToId());
+      roots[i] = from;
+      if (from >= 0 && to >= 0) {
+        union(from, to);
+      } else {
+        // Invalid items fail on their own, they need no ordering with anything else
+        roots[i] = -1 - i;
+      }
+    }
+
+    Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+    for (int i = 0; i < roots.length; i++) {
+      int key = roots[i] >= 0 ? find(roots[i]) : roots[i];
+      groups.computeIfAbsent(key, root -> new ArrayList<>()).add(i);
+    }
+    return groups.values();
+  }
+
+  private int indexOf(String accountId) {
+    if (accountId == null) {
+      return -1;
+    }
+    return accountIndexes.computeIfAbsent(accountId, id -> {
+      int index = accountIndexes.size();
+      if (index == parents.length) {
+        parents = Arrays.copyOf(parents, index * 2);
+      }
+      parents[index] = index;
+      return index;
+    });
+  }
+
+  private int find(int index) {
+    while (parents[index] != index) {
+      parents[index] = parents[parents[index]];
+      index = parents[index];
+    }
+    return index;
+  }
+
+  private void union(int a, int b) {
+    int rootA = find(a);
+    int rootB = find(b);
+    if (rootA != rootB) {
+      parents[rootB] = rootA;
+    }
+  }
+}
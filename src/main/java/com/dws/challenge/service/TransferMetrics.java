@@ -0,0 +1,139 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.MetricsProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.exception.TransferRejectedException.Reason;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters shared by the service and the transfer strategies. Everything recorded on every transfer is a lock-free
+ * timer update; lock hold times are sampled and lock waits are only measured when a lock was actually contended.
+ */
+@Component
+public class TransferMetrics {
+
+  // Records into no-op meters, for services and strategies created outside of Spring
+  public static final TransferMetrics NONE = new TransferMetrics(new CompositeMeterRegistry(), new MetricsProperties());
+
+  private final Timer completed;
+  private final Timer rejected;
+  private final Map<Reason, Counter> rejectedByReason = new EnumMap<>(Reason.class);
+  private final Counter rejectedOther;
+  private final Timer lockWait;
+  private final Timer lockHold;
+  private final Counter casRetries;
+  private final int holdSampleMask;
+  private final int hotAccountsReported;
+  private final HotAccountTracker hotAccounts;
+
+  @Autowired
+  public TransferMetrics(MeterRegistry meterRegistry, MetricsProperties properties) {
+    this.completed = latency(meterRegistry, "completed");
+    this.rejected = latency(meterRegistry, "rejected");
+    for (Reason reason : Reason.values()) {
+      rejectedByReason.put(reason, rejections(meterRegistry, reason.name().toLowerCase()));
+    }
+    this.rejectedOther = rejections(meterRegistry, "other");
+    this.lockWait = Timer.builder("transfers.lock.wait")
+      .description("Time spent waiting for an account lock, contended acquisitions only")
+      .publishPercentiles(0.5, 0.99)
+      .register(meterRegistry);
+    this.lockHold = Timer.builder("transfers.lock.hold")
+      .description("Time the account locks of a transfer are held, sampled")
+      .publishPercentiles(0.5, 0.99)
+      .register(meterRegistry);
+    this.casRetries = Counter.builder("transfers.cas.retries")
+      .description("Balance compare-and-sets that lost a race and had to retry")
+      .register(meterRegistry);
+
+    int sampleRate = properties.getLockHoldSampleRate();
+    this.holdSampleMask = sampleRate <= 1 ? 0 : (Integer.highestOneBit(sampleRate - 1) << 1) - 1;
+    this.hotAccountsReported = properties.getHotAccountsReported();
+    this.hotAccounts = new HotAccountTracker(properties.getHotAccountsCapacity(),
+      properties.getHotAccountsWindow().toNanos(), System::nanoTime);
+  }
+
+  public void completed(long startNanos) {
+    completed.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+
+  // For transfers that all finished together, as those of an atomic batch
+  public void completed(long startNanos, int transfers) {
+    long nanos = System.nanoTime() - startNanos;
+    for (int i = 0; i < transfers; i++) {
+      completed.record(nanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  public void rejected(long startNanos, IllegalArgumentException e) {
+    rejected.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    rejected(e);
+  }
+
+  public void rejected(IllegalArgumentException e) {
+    if (e instanceof TransferRejectedException rejection) {
+      rejected(rejection.getReason());
+    } else {
+      rejectedOther.increment();
+    }
+  }
+
+  public void rejected(Reason reason) {
+    rejectedByReason.get(reason).increment();
+  }
+
+  public boolean sampleLockHold() {
+    return (ThreadLocalRandom.current().nextInt() & holdSampleMask) == 0;
+  }
+
+  public void lockHeld(long nanos) {
+    lockHold.record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  // Returns the account's contentions so far as tracked for the hot accounts report, 0 if not known
+  public long lockContended(Account account, long waitNanos) {
+    lockWait.record(waitNanos, TimeUnit.NANOSECONDS);
+    return hotAccounts.record(account.getAccountId(), waitNanos);
+  }
+
+  public void casRetried(Account account) {
+    casRetries.increment();
+    hotAccounts.record(account.getAccountId(), 0);
+  }
+
+  public List<HotAccountTracker.HotAccount> hotAccounts() {
+    return hotAccounts.top(hotAccountsReported);
+  }
+
+  public void resetHotAccounts() {
+    hotAccounts.reset();
+  }
+
+  private static Timer latency(MeterRegistry meterRegistry, String outcome) {
+    return Timer.builder("transfers.latency")
+      .description("Time to apply a transfer, from lookup until the notifications are handed off")
+      .tag("outcome", outcome)
+      .publishPercentiles(0.5, 0.95, 0.99)
+      .publishPercentileHistogram()
+      .register(meterRegistry);
+  }
+
+  private static Counter rejections(MeterRegistry meterRegistry, String reason) {
+    return Counter.builder("transfers.rejected")
+      .description("Transfers refused, by reason")
+      .tag("reason", reason)
+      .register(meterRegistry);
+  }
+}
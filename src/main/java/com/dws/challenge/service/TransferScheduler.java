@@ -0,0 +1,378 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.SchedulerProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BatchMode;
+import com.dws.challenge.domain.BatchTransferResponse;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.exception.TransferRejectedException.Reason;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Transfers that run at a later time, such as standing orders and salary runs. Pending transfers wait in a
+ * {@link TimerWheel} instead of as a task each. A single thread advances the wheel every tick and runs whatever came
+ * due through {@link AccountsService#transferBatch} in best-effort batches, ordered by execution time and then by
+ * when they were scheduled. A transfer rejected when it comes due, say for insufficient funds, is logged and counted
+ * but not retried.
+ * <p>
+ * Each pending transfer is one object linked into the wheel and into the list of its paying account, plus a slot in
+ * an open-addressed index by id, so millions of them cost little more than their fields. They are kept in memory
+ * only and are lost on restart.
+ */
+@Slf4j
+@Service
+public class TransferScheduler {
+
+  private static final int INITIAL_INDEX_CAPACITY = 1024;
+  private static final Comparator<Scheduled> EXECUTION_ORDER = Comparator.<Scheduled>comparingLong(
+    scheduled -> scheduled.executeAt).thenComparingLong(scheduled -> scheduled.id);
+
+  private final AccountsService accountsService;
+  private final long tickMillis;
+  private final int batchSize;
+  private final LongSupplier currentMillis;
+
+  // Guards the wheel, the account lists and the index
+  private final ReentrantLock lock = new ReentrantLock();
+  // Held while due transfers run, so runDue only returns once everything due when it was called has run
+  private final ReentrantLock runLock = new ReentrantLock();
+  private final TimerWheel<Scheduled> wheel;
+  // Paying account id -> the most recently scheduled of its pending transfers
+  private final Map<String, Scheduled> byAccount = new HashMap<>();
+  private Scheduled[] byId = new Scheduled[INITIAL_INDEX_CAPACITY];
+  private int indexed;
+  private long lastId;
+
+  private final Timer lag;
+  private final Counter completed;
+  private final Counter failed;
+
+  private final Thread ticker;
+  private volatile boolean running = true;
+
+  @Autowired
+  public TransferScheduler(AccountsService accountsService, SchedulerProperties properties,
+    MeterRegistry meterRegistry) {
+    this(accountsService, properties.getTick(), properties.getBatchSize(), System::currentTimeMillis,
+      meterRegistry);
+  }
+
+  public TransferScheduler(AccountsService accountsService, Duration tick, int batchSize,
+    LongSupplier currentMillis, MeterRegistry meterRegistry) {
+    this.accountsService = accountsService;
+    this.tickMillis = Math.max(1, tick.toMillis());
+    this.batchSize = Math.max(1, batchSize);
+    this.currentMillis = currentMillis;
+    this.wheel = new TimerWheel<>(Math.floorDiv(currentMillis.getAsLong(), tickMillis));
+
+    Gauge.builder("transfers.scheduled.pending", this, TransferScheduler::pendingCount)
+      .register(meterRegistry);
+    this.lag = Timer.builder("transfers.scheduled.lag")
+      .description("Time from the execution time of a scheduled transfer until it ran")
+      .publishPercentiles(0.5, 0.99)
+      .register(meterRegistry);
+    this.completed = executed(meterRegistry, "completed");
+    this.failed = executed(meterRegistry, "failed");
+
+    this.ticker = new Thread(this::tickLoop, "transfer-scheduler");
+    this.ticker.setDaemon(true);
+    this.ticker.start();
+  }
+
+  private static Counter executed(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("transfers.scheduled.executed")
+      .tag("result", result)
+      .register(meterRegistry);
+  }
+
+  /**
+   * Schedules a transfer to run at {@code executeAt}, or with the next tick if that has passed. Both accounts must
+   * exist now; whether there are funds is only checked when it runs.
+   */
+  public ScheduledTransfer schedule(String accountFromId, String accountToId, long amount, Instant executeAt) {
+    if (amount <= 0) {
+      throw new TransferRejectedException(Reason.INVALID_AMOUNT, "Transfer amount must be positive.");
+    }
+    long executeAtMillis;
+    try {
+      executeAtMillis = executeAt.toEpochMilli();
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Invalid execution time.");
+    }
+    // It runs in a batch of this node, which only takes its own accounts
+    accountsService.requireLocal(accountFromId);
+    accountsService.requireLocal(accountToId);
+    Account accountFrom = accountsService.getAccount(accountFromId);
+    Account accountTo = accountsService.getAccount(accountToId);
+    if (accountFrom == null || accountTo == null) {
+      throw new TransferRejectedException(Reason.ACCOUNT_NOT_FOUND, "Both accounts must exist.");
+    }
+
+    // The ids of the accounts are shared rather than the ones from the request
+    Scheduled scheduled = new Scheduled(accountFrom.getAccountId(), accountTo.getAccountId(), amount,
+      executeAtMillis);
+    lock.lock();
+    try {
+      scheduled.id = ++lastId;
+      wheel.add(scheduled, -Math.floorDiv(-executeAtMillis, tickMillis));
+      index(scheduled);
+      Scheduled head = byAccount.put(scheduled.accountFromId, scheduled);
+      scheduled.accountNext = head;
+      if (head != null) {
+        head.accountPrev = scheduled;
+      }
+    } finally {
+      lock.unlock();
+    }
+    return scheduled.toScheduledTransfer();
+  }
+
+  // Only the paying account can cancel; false if the transfer is not pending for it (any more)
+  public boolean cancel(String accountId, long id) {
+    lock.lock();
+    try {
+      Scheduled scheduled = find(id);
+      if (scheduled == null || !scheduled.accountFromId.equals(accountId)) {
+        return false;
+      }
+      wheel.cancel(scheduled);
+      remove(scheduled);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // The pending transfers paid from the account, the earliest first
+  public List<ScheduledTransfer> pending(String accountId, int limit) {
+    List<Scheduled> pending = new ArrayList<>();
+    lock.lock();
+    try {
+      for (Scheduled scheduled = byAccount.get(accountId); scheduled != null; scheduled = scheduled.accountNext) {
+        pending.add(scheduled);
+      }
+    } finally {
+      lock.unlock();
+    }
+    pending.sort(EXECUTION_ORDER);
+
+    List<ScheduledTransfer> transfers = new ArrayList<>(Math.min(limit, pending.size()));
+    for (int i = 0; i < limit && i < pending.size(); i++) {
+      transfers.add(pending.get(i).toScheduledTransfer());
+    }
+    return transfers;
+  }
+
+  public int pendingCount() {
+    lock.lock();
+    try {
+      return wheel.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Runs every transfer due by now. Called by the scheduler's own thread every tick, and safe to call from others.
+   */
+  public void runDue() {
+    runLock.lock();
+    try {
+      List<Scheduled> due = new ArrayList<>();
+      lock.lock();
+      try {
+        wheel.advance(Math.floorDiv(currentMillis.getAsLong(), tickMillis), due::add);
+        for (Scheduled scheduled : due) {
+          remove(scheduled);
+        }
+      } finally {
+        lock.unlock();
+      }
+
+      // Transfers due within the same tick may sit in its slot in any order
+      due.sort(EXECUTION_ORDER);
+      for (int from = 0; from < due.size(); from += batchSize) {
+        execute(due.subList(from, Math.min(from + batchSize, due.size())));
+      }
+    } finally {
+      runLock.unlock();
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    running = false;
+    LockSupport.unpark(ticker);
+    ticker.join();
+  }
+
+  private void tickLoop() {
+    while (running) {
+      long now = currentMillis.getAsLong();
+      long nextTick = (Math.floorDiv(now, tickMillis) + 1) * tickMillis;
+      LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(nextTick - now));
+      try {
+        runDue();
+      } catch (RuntimeException e) {
+        log.error("Running scheduled transfers failed", e);
+      }
+    }
+  }
+
+  private void execute(List<Scheduled> batch) {
+    List<TransferRequest> requests = new ArrayList<>(batch.size());
+    for (Scheduled scheduled : batch) {
+      requests.add(new TransferRequest(scheduled.accountFromId, scheduled.accountToId,
+        Money.toBigDecimal(scheduled.amount)));
+    }
+
+    BatchTransferResponse response;
+    try {
+      response = accountsService.transferBatch(requests, BatchMode.BEST_EFFORT);
+    } catch (RuntimeException e) {
+      log.error("Running a batch of {} scheduled transfers failed", batch.size(), e);
+      failed.increment(batch.size());
+      return;
+    }
+
+    long now = currentMillis.getAsLong();
+    for (TransferResult result : response.results()) {
+      Scheduled scheduled = batch.get(result.index());
+      lag.record(Math.max(0, now - scheduled.executeAt), TimeUnit.MILLISECONDS);
+      if (result.status() == TransferResult.Status.COMPLETED) {
+        completed.increment();
+      } else {
+        failed.increment();
+        log.warn("Scheduled transfer {} from account {} to account {} failed: {}", scheduled.id,
+          scheduled.accountFromId, scheduled.accountToId, result.error());
+      }
+    }
+  }
+
+  // Takes a transfer that left the wheel out of its account's list and the index
+  private void remove(Scheduled scheduled) {
+    if (scheduled.accountPrev != null) {
+      scheduled.accountPrev.accountNext = scheduled.accountNext;
+    } else if (scheduled.accountNext != null) {
+      byAccount.put(scheduled.accountFromId, scheduled.accountNext);
+    } else {
+      byAccount.remove(scheduled.accountFromId);
+    }
+    if (scheduled.accountNext != null) {
+      scheduled.accountNext.accountPrev = scheduled.accountPrev;
+    }
+    scheduled.accountPrev = null;
+    scheduled.accountNext = null;
+    unindex(scheduled);
+  }
+
+  // Linear probing; grows at half full and shrinks below an eighth, so a finished salary run gives its room back
+  private void index(Scheduled scheduled) {
+    if (++indexed * 2 > byId.length) {
+      rehash(byId.length * 2);
+    }
+    insert(byId, scheduled);
+  }
+
+  private Scheduled find(long id) {
+    int mask = byId.length - 1;
+    for (int i = home(id, mask); byId[i] != null; i = (i + 1) & mask) {
+      if (byId[i].id == id) {
+        return byId[i];
+      }
+    }
+    return null;
+  }
+
+  private void unindex(Scheduled scheduled) {
+    int mask = byId.length - 1;
+    int gap = home(scheduled.id, mask);
+    while (byId[gap] != scheduled) {
+      gap = (gap + 1) & mask;
+    }
+    // Entries further along the probe sequence move back into the gap, unless that would put them before their home
+    for (int i = (gap + 1) & mask; byId[i] != null; i = (i + 1) & mask) {
+      if (((i - home(byId[i].id, mask)) & mask) >= ((i - gap) & mask)) {
+        byId[gap] = byId[i];
+        byId[i] = null;
+        gap = i;
+      }
+    }
+    byId[gap] = null;
+    if (--indexed * 8 < byId.length && byId.length > INITIAL_INDEX_CAPACITY) {
+      rehash(byId.length / 2);
+    }
+  }
+
+  private void rehash(int capacity) {
+    Scheduled[] table = new Scheduled[capacity];
+    for (Scheduled scheduled : byId) {
+      if (scheduled != null) {
+        insert(table, scheduled);
+      }
+    }
+    byId = table;
+  }
+
+  private static void insert(Scheduled[] table, Scheduled scheduled) {
+    int mask = table.length - 1;
+    int i = home(scheduled.id, mask);
+    while (table[i] != null) {
+      i = (i + 1) & mask;
+    }
+    table[i] = scheduled;
+  }
+
+  // Ids are sequential, so they are spread before masking
+  private static int home(long id, int mask) {
+    return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+  }
+
+  private static final class Scheduled extends TimerWheel.Node {
+
+    final String accountFromId;
+    final String accountToId;
+    final long amount;
+    final long executeAt;
+
+    // Guarded by the scheduler's lock
+    long id;
+    Scheduled accountPrev;
+    Scheduled accountNext;
+
+    Scheduled(String accountFromId, String accountToId, long amount, long executeAt) {
+      this.accountFromId = accountFromId;
+      this.accountToId = accountToId;
+      this.amount = amount;
+      this.executeAt = executeAt;
+    }
+
+    ScheduledTransfer toScheduledTransfer() {
+      return new ScheduledTransfer(id, accountFromId, accountToId, Money.toBigDecimal(amount),
+        Instant.ofEpochMilli(executeAt));
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface TransferStrategy {
+
+  /**
+   * Moves {@code amount} minor units from {@code accountFrom} to {@code accountTo} atomically with
+   * respect to any other transfer touching either account.
+   *
+   * @throws IllegalArgumentException if {@code accountFrom} does not hold enough funds
+   */
+  void transfer(Account accountFrom, Account accountTo, long amount);
+
+  /**
+   * Same as {@link #transfer} but completes the returned future once the transfer was applied, or exceptionally if
+   * it was refused. Strategies that run transfers on their own threads override this; by default the transfer
+   * runs on the calling thread.
+   */
+  default CompletableFuture<Void> transferAsync(Account accountFrom, Account accountTo, long amount) {
+    try {
+      transfer(accountFrom, accountTo, amount);
+      return CompletableFuture.completedFuture(null);
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  /**
+   * Applies all transfers in order, or none of them if any account would run out of funds.
+   *
+   * @throws IllegalArgumentException if an account does not hold enough funds
+   */
+  void transferAll(List<Transfer> transfers);
+
+  /**
+   * Takes {@code amount} minor units out of {@code account} alone: the paying leg of a transfer whose receiving
+   * account lives on another node. Listeners are not called, the cluster journals both legs itself.
+   *
+   * @throws IllegalArgumentException if {@code account} does not hold enough funds
+   */
+  void withdraw(Account account, long amount);
+
+  /**
+   * Pays {@code amount} minor units into {@code account} alone, the receiving leg of a transfer from another node.
+   */
+  void deposit(Account account, long amount);
+}
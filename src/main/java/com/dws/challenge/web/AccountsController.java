@@ -1,40 +1,89 @@
 package com.dws.challenge.web;
 
+import com.dws.challenge.config.SnapshotProperties;
+import com.dws.challenge.config.TransferProperties;
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountBalances;
+import com.dws.challenge.domain.BatchMode;
+import com.dws.challenge.domain.BatchTransferResponse;
+import com.dws.challenge.domain.ImportFormat;
+import com.dws.challenge.domain.Transaction;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.exception.AccountNotLocalException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.NodeUnavailableException;
+import com.dws.challenge.exception.SnapshotUnavailableException;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.service.AccountImportService;
 import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.TransferMetrics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 
-import java.math.BigDecimal;
-import java.util.Map;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/v1/accounts")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @Slf4j
 public class AccountsController {
 
   private final AccountsService accountsService;
+  private final ObjectMapper objectMapper;
+  private final TransferProperties transferProperties;
+  private final IdempotencyCache idempotencyCache;
+  private final TransferMetrics transferMetrics;
+  private final AccountImportService accountImportService;
+  private final SnapshotProperties snapshotProperties;
+
+  private static final int MAX_TRANSACTIONS_PAGE_SIZE = 1000;
+  private static final String TEXT_CSV_VALUE = "text/csv";
 
   @Autowired
-  public AccountsController(AccountsService accountsService) {
+  public AccountsController(AccountsService accountsService, ObjectMapper objectMapper,
+    TransferProperties transferProperties, IdempotencyCache idempotencyCache, TransferMetrics transferMetrics,
+    AccountImportService accountImportService, SnapshotProperties snapshotProperties) {
     this.accountsService = accountsService;
+    this.objectMapper = objectMapper;
+    this.transferProperties = transferProperties;
+    this.idempotencyCache = idempotencyCache;
+    this.transferMetrics = transferMetrics;
+    this.accountImportService = accountImportService;
+    this.snapshotProperties = snapshotProperties;
   }
 
   @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
   public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account) {
-    log.info("Creating account {}", account);
+    log.info("Creating account {}", account.getAccountId());
 
     try {
     this.accountsService.createAccount(account);
@@ -45,46 +94,133 @@ public class AccountsController {
     return new ResponseEntity<>(HttpStatus.CREATED);
   }
 
+  // Streams NDJSON or CSV rows; a rejected row is reported in the summary and does not stop the import
+  @PostMapping(path = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE})
+  public ResponseEntity<Object> importAccounts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+    InputStream body) throws IOException {
+    ImportFormat format = MediaType.APPLICATION_NDJSON.isCompatibleWith(MediaType.parseMediaType(contentType))
+      ? ImportFormat.NDJSON : ImportFormat.CSV;
+    log.info("Importing accounts from {}", format);
+
+    return new ResponseEntity<>(this.accountImportService.importAccounts(body, format), HttpStatus.OK);
+  }
+
   @GetMapping(path = "/{accountId}")
   public Account getAccount(@PathVariable String accountId) {
     log.info("Retrieving account for id {}", accountId);
     return this.accountsService.getAccount(accountId);
   }
 
-  @PostMapping(path = "/transfer", consumes = MediaType.APPLICATION_JSON_VALUE)
-  public ResponseEntity<Object> transferMoney(@RequestBody Map<String, Object> transferDetails) {
-    // Validate each parameter
-    String accountFromId = (String) transferDetails.get("accountFromId");
-    String accountToId = (String) transferDetails.get("accountToId");
-    BigDecimal amount;
+  // With snapshot=true the balances are as of one moment, so money moving between the accounts is never missed
+  @GetMapping(params = "ids")
+  public ResponseEntity<Object> getAccounts(@RequestParam List<String> ids,
+    @RequestParam(defaultValue = "false") boolean snapshot) {
+    if (ids.isEmpty() || ids.size() > snapshotProperties.getMaxAccounts()) {
+      return new ResponseEntity<>("Between 1 and " + snapshotProperties.getMaxAccounts()
+        + " account ids must be given.", HttpStatus.BAD_REQUEST);
+    }
 
-    // Check for empty accountFromId
-    if (accountFromId == null || accountFromId.trim().isEmpty()) {
-      return new ResponseEntity<>("AccountFromId cannot be empty or null.", HttpStatus.BAD_REQUEST);
+    try {
+      AccountBalances balances = snapshot
+        ? this.accountsService.getAccountsSnapshot(ids, snapshotProperties.getMaxWait())
+        : this.accountsService.getAccounts(ids);
+      return new ResponseEntity<>(balances, HttpStatus.OK);
+    } catch (SnapshotUnavailableException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
     }
+  }
 
-    // Check for empty accountToId
-    if (accountToId == null || accountToId.trim().isEmpty()) {
-      return new ResponseEntity<>("AccountToId cannot be empty or null.", HttpStatus.BAD_REQUEST);
+  @GetMapping(path = "/{accountId}/transactions", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> getTransactions(@PathVariable String accountId,
+    @RequestParam(required = false) String cursor, @RequestParam(defaultValue = "50") int limit) {
+    if (limit < 1 || limit > MAX_TRANSACTIONS_PAGE_SIZE) {
+      return new ResponseEntity<>("Limit must be between 1 and " + MAX_TRANSACTIONS_PAGE_SIZE + ".",
+        HttpStatus.BAD_REQUEST);
+    }
+    Long before;
+    try {
+      before = parseCursor(cursor);
+    } catch (NumberFormatException e) {
+      return new ResponseEntity<>("Invalid cursor.", HttpStatus.BAD_REQUEST);
+    }
+    this.accountsService.requireLocal(accountId);
+    if (this.accountsService.getAccount(accountId) == null) {
+      return new ResponseEntity<>("Account " + accountId + " does not exist.", HttpStatus.NOT_FOUND);
     }
 
-    // Check for empty amount
+    return new ResponseEntity<>(this.accountsService.getTransactions(accountId, before, limit), HttpStatus.OK);
+  }
+
+  // Same history as newline-delimited JSON, written entry by entry as the ledger is walked
+  @GetMapping(path = "/{accountId}/transactions:stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> streamTransactions(@PathVariable String accountId,
+    @RequestParam(required = false) String cursor) {
+    Long before;
     try {
-      amount = new BigDecimal(transferDetails.get("amount").toString());
-    } catch (NumberFormatException | NullPointerException e) {
-      return new ResponseEntity<>("Invalid transfer amount.", HttpStatus.BAD_REQUEST);
+      before = parseCursor(cursor);
+    } catch (NumberFormatException e) {
+      return error("Invalid cursor.", HttpStatus.BAD_REQUEST);
+    }
+    // Checked before the body is written, so it is not lost behind a 200
+    this.accountsService.requireLocal(accountId);
+    if (this.accountsService.getAccount(accountId) == null) {
+      return error("Account " + accountId + " does not exist.", HttpStatus.NOT_FOUND);
     }
 
-    // Check for non-positive amount
-    if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-      return new ResponseEntity<>("Transfer amount must be positive.", HttpStatus.BAD_REQUEST);
+    ObjectWriter writer = objectMapper.writerFor(Transaction.class);
+    StreamingResponseBody body = out -> {
+      try (Stream<Transaction> transactions = this.accountsService.streamTransactions(accountId, before)) {
+        Iterator<Transaction> iterator = transactions.iterator();
+        while (iterator.hasNext()) {
+          out.write(writer.writeValueAsBytes(iterator.next()));
+          out.write('\n');
+        }
+      }
+    };
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+  }
+
+  private static Long parseCursor(String cursor) {
+    return cursor == null ? null : Long.parseLong(cursor);
+  }
+
+  private static ResponseEntity<StreamingResponseBody> error(String message, HttpStatus status) {
+    return ResponseEntity.status(status).contentType(MediaType.TEXT_PLAIN)
+      .body(out -> out.write(message.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @PostMapping(path = "/transfer", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> transferMoney(
+    @RequestHeader(name = IdempotencyCache.KEY_HEADER, required = false) String idempotencyKey,
+    @RequestBody TransferBody transferBody) {
+    if (idempotencyKey == null) {
+      return transfer(transferBody);
+    }
+    if (!IdempotencyCache.isValidKey(idempotencyKey)) {
+      return new ResponseEntity<>(IdempotencyCache.INVALID_KEY_MESSAGE, HttpStatus.BAD_REQUEST);
+    }
+
+    // A retry with the same key gets the first response back without reaching the service
+    return idempotencyCache.execute(idempotencyKey, TransferCommand.fingerprint(transferBody),
+      () -> transfer(transferBody));
+  }
+
+  private ResponseEntity<Object> transfer(TransferBody transferBody) {
+    // Validate each parameter
+    TransferCommand command;
+    try {
+      command = TransferCommand.of(transferBody);
+    } catch (TransferRejectedException e) {
+      transferMetrics.rejected(e.getReason());
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
     // If all validations pass, proceed with the transfer
-    log.info("Transferring {} from account {} to account {}", amount, accountFromId, accountToId);
+    log.info("Transferring {} from account {} to account {}", command.amount(), command.accountFromId(),
+      command.accountToId());
 
     try {
-      this.accountsService.transferMoney(accountFromId, accountToId, amount);
+      this.accountsService.transferMoney(command.accountFromId(), command.accountToId(), command.amountMinorUnits());
     } catch (IllegalArgumentException e) {
       return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
     }
@@ -92,4 +228,67 @@ public class AccountsController {
     return new ResponseEntity<>(HttpStatus.OK);
   }
 
+  @PostMapping(path = "/transfers:batch",
+    consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+  public ResponseEntity<Object> transferMoneyBatch(@RequestParam(defaultValue = "best-effort") String mode,
+    InputStream body) throws IOException {
+    BatchMode batchMode;
+    try {
+      batchMode = BatchMode.fromParameter(mode);
+    } catch (IllegalArgumentException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    // Accepts a JSON array as well as newline-delimited JSON objects
+    List<TransferRequest> transfers = new ArrayList<>();
+    try (MappingIterator<TransferRequest> items = objectMapper.readerFor(TransferRequest.class).readValues(body)) {
+      while (items.hasNextValue()) {
+        if (transfers.size() == transferProperties.getBatchMaxSize()) {
+          return new ResponseEntity<>("Batch exceeds the maximum of " + transferProperties.getBatchMaxSize()
+            + " transfers.", HttpStatus.BAD_REQUEST);
+        }
+        TransferRequest transfer = items.nextValue();
+        if (transfer == null) {
+          return new ResponseEntity<>("Malformed transfer batch.", HttpStatus.BAD_REQUEST);
+        }
+        transfers.add(transfer);
+      }
+    } catch (JsonProcessingException e) {
+      return new ResponseEntity<>("Malformed transfer batch.", HttpStatus.BAD_REQUEST);
+    }
+
+    if (transfers.isEmpty()) {
+      return new ResponseEntity<>("Transfer batch cannot be empty.", HttpStatus.BAD_REQUEST);
+    }
+
+    if (batchMode == BatchMode.ATOMIC) {
+      Set<String> accountIds = new HashSet<>();
+      for (TransferRequest transfer : transfers) {
+        accountIds.add(transfer.accountFromId());
+        accountIds.add(transfer.accountToId());
+      }
+      if (accountIds.size() > transferProperties.getAtomicBatchMaxAccounts()) {
+        return new ResponseEntity<>("Atomic batch cannot involve more than "
+          + transferProperties.getAtomicBatchMaxAccounts() + " accounts.", HttpStatus.BAD_REQUEST);
+      }
+    }
+
+    log.info("Transferring batch of {} transfers in {} mode", transfers.size(), batchMode);
+
+    BatchTransferResponse response = this.accountsService.transferBatch(transfers, batchMode);
+    HttpStatus status = response.applied() || batchMode == BatchMode.BEST_EFFORT ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
+    return new ResponseEntity<>(response, status);
+  }
+
+  // Cluster mode only: the node owning an account did not answer, the request may or may not have been applied
+  @ExceptionHandler(NodeUnavailableException.class)
+  public ResponseEntity<Object> nodeUnavailable(NodeUnavailableException e) {
+    return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+  }
+
+  // Cluster mode only: histories and snapshots are served by the node owning the accounts
+  @ExceptionHandler(AccountNotLocalException.class)
+  public ResponseEntity<Object> accountNotLocal(AccountNotLocalException e) {
+    return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+  }
 }
@@ -0,0 +1,179 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.config.ChangeStreamProperties;
+import com.dws.challenge.domain.BalanceChange;
+import com.dws.challenge.exception.ChangesUnavailableException;
+import com.dws.challenge.service.BalanceChangeStream;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Balance changes as server-sent events, see {@link BalanceChangeStream}. Each event carries the stream's epoch and
+ * its sequence as id, {@code epoch:sequence}, so a client reconnecting with {@code Last-Event-ID}, or {@code from}
+ * set to the next one, resumes where it left off. Without either the stream starts with the next change. Sequences
+ * restart with every run of the service, so one of an earlier run is answered with 410 Gone; a plain sequence is
+ * taken as one of the current run.
+ * <p>
+ * Every stream is written by a thread of its own, so a slow client only holds up itself; one falling a whole ring
+ * behind gets an {@code overrun} event with the oldest id still available, and the stream ends.
+ * <p>
+ * Served by the servlet stack only, the reactive one has no counterpart yet.
+ */
+@RestController
+@RequestMapping("/v1/accounts")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Slf4j
+public class BalanceChangesController {
+
+  private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+
+  private final BalanceChangeStream balanceChangeStream;
+  private final ObjectWriter writer;
+  private final int batchSize;
+  private final long heartbeatNanos;
+  private final ExecutorService writers;
+
+  @Autowired
+  public BalanceChangesController(BalanceChangeStream balanceChangeStream, ObjectMapper objectMapper,
+    ChangeStreamProperties properties) {
+    this.balanceChangeStream = balanceChangeStream;
+    this.writer = objectMapper.writerFor(BalanceChange.class);
+    this.batchSize = properties.getBatchSize();
+    this.heartbeatNanos = properties.getHeartbeat().toNanos();
+    AtomicInteger threads = new AtomicInteger();
+    this.writers = new ThreadPoolExecutor(0, properties.getMaxSubscribers(), 60, TimeUnit.SECONDS,
+      new SynchronousQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "balance-changes-" + threads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+  }
+
+  @GetMapping("/changes:stream")
+  public ResponseEntity<ResponseBodyEmitter> streamChanges(
+    @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId,
+    @RequestParam(required = false) String from, @RequestParam(required = false) String accountId) {
+    long start;
+    BalanceChangeStream.Subscription subscription;
+    try {
+      start = lastEventId != null ? sequence(lastEventId.trim()) + 1
+        : from != null ? sequence(from) : balanceChangeStream.committed();
+      if (start < 0) {
+        return error("Invalid sequence.", HttpStatus.BAD_REQUEST);
+      }
+      subscription = balanceChangeStream.subscribe(start, accountId);
+    } catch (NumberFormatException e) {
+      return error("Invalid sequence.", HttpStatus.BAD_REQUEST);
+    } catch (ChangesUnavailableException e) {
+      return error(e.getMessage(), HttpStatus.GONE);
+    }
+
+    // No timeout, the stream lasts until either side closes it
+    ResponseBodyEmitter emitter = new ResponseBodyEmitter(0L);
+    emitter.onCompletion(subscription::close);
+    emitter.onError(failure -> subscription.close());
+    try {
+      writers.execute(() -> write(subscription, emitter));
+    } catch (RejectedExecutionException e) {
+      subscription.close();
+      return error("Too many open streams.", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+    log.info("Streaming balance changes from sequence {}{}", start,
+      accountId == null ? "" : " of account " + accountId);
+    return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(emitter);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    writers.shutdownNow();
+  }
+
+  private void write(BalanceChangeStream.Subscription subscription, ResponseBodyEmitter emitter) {
+    try (subscription) {
+      while (true) {
+        List<BalanceChange> changes;
+        try {
+          changes = subscription.poll(batchSize, heartbeatNanos);
+        } catch (ChangesUnavailableException e) {
+          send(emitter, ("event: overrun\ndata: " + balanceChangeStream.epoch() + ":" + e.getOldestSequence() + "\n\n")
+            .getBytes(StandardCharsets.UTF_8));
+          emitter.complete();
+          return;
+        }
+        if (subscription.isClosed()) {
+          return;
+        }
+        send(emitter, changes.isEmpty() ? HEARTBEAT : events(changes));
+      }
+    } catch (InterruptedException e) {
+      emitter.complete();
+      Thread.currentThread().interrupt();
+    } catch (IOException | IllegalStateException e) {
+      // The client went away, or the emitter was completed meanwhile
+      log.debug("Balance change stream closed: {}", e.getMessage());
+    }
+  }
+
+  private long sequence(String eventId) {
+    int separator = eventId.indexOf(':');
+    if (separator < 0) {
+      return Long.parseLong(eventId);
+    }
+    if (!eventId.substring(0, separator).equals(balanceChangeStream.epoch())) {
+      throw new ChangesUnavailableException("Event " + eventId + " is from an earlier run of the service, "
+        + "sequences started over at 0.", balanceChangeStream.oldestSequence());
+    }
+    return Long.parseLong(eventId.substring(separator + 1));
+  }
+
+  // One write and flush for the whole batch
+  private byte[] events(List<BalanceChange> changes) throws IOException {
+    String epoch = balanceChangeStream.epoch();
+    StringBuilder events = new StringBuilder(changes.size() * 200);
+    for (BalanceChange change : changes) {
+      events.append("id: ").append(epoch).append(':').append(change.sequence()).append("\nevent: change\ndata: ")
+        .append(writer.writeValueAsString(change)).append("\n\n");
+    }
+    return events.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static void send(ResponseBodyEmitter emitter, byte[] bytes) throws IOException {
+    emitter.send(bytes, MediaType.TEXT_EVENT_STREAM);
+  }
+
+  private static ResponseEntity<ResponseBodyEmitter> error(String message, HttpStatus status) {
+    ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+    try {
+      // Held until the response is set up, nothing is written yet
+      emitter.send(message.getBytes(StandardCharsets.UTF_8), MediaType.TEXT_PLAIN);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    emitter.complete();
+    return ResponseEntity.status(status).contentType(MediaType.TEXT_PLAIN).body(emitter);
+  }
+}
@@ -0,0 +1,32 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.service.HotAccountTracker.HotAccount;
+import com.dws.challenge.service.TransferMetrics;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// /actuator/hotaccounts lists the accounts transfers wait for most, DELETE starts a new observation window
+@Component
+@Endpoint(id = "hotaccounts")
+public class HotAccountsEndpoint {
+
+  private final TransferMetrics transferMetrics;
+
+  public HotAccountsEndpoint(TransferMetrics transferMetrics) {
+    this.transferMetrics = transferMetrics;
+  }
+
+  @ReadOperation
+  public List<HotAccount> hotAccounts() {
+    return transferMetrics.hotAccounts();
+  }
+
+  @DeleteOperation
+  public void reset() {
+    transferMetrics.resetHotAccounts();
+  }
+}
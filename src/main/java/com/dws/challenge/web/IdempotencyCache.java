@@ -0,0 +1,270 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.config.IdempotencyProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the response to every request carrying an {@code Idempotency-Key} and replays it for retries, so a
+ * retried transfer never reaches the service again.
+ * <p>
+ * Keys are spread over independently locked shards, each an access-ordered map that drops its least recently used
+ * completed key once full. Keys of requests still running are never dropped, a retry would run them a second time,
+ * so a shard may hold more keys than its share while many requests are in flight. Outcomes expire {@code ttl} after
+ * they were produced; expired keys are removed when they are looked up or reach the LRU end of their shard.
+ */
+@Component
+public class IdempotencyCache {
+
+  public static final String KEY_HEADER = "Idempotency-Key";
+  public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+  private static final int MAX_KEY_LENGTH = 255;
+  static final String INVALID_KEY_MESSAGE = KEY_HEADER + " must have between 1 and " + MAX_KEY_LENGTH
+    + " characters.";
+
+  private final Shard[] shards;
+  private final long ttlNanos;
+  private final long inFlightTimeoutNanos;
+  private final LongSupplier nanoTime;
+
+  @Autowired
+  public IdempotencyCache(IdempotencyProperties properties) {
+    this(properties, System::nanoTime);
+  }
+
+  public IdempotencyCache(IdempotencyProperties properties, LongSupplier nanoTime) {
+    int shardCount = properties.getShards() <= 1 ? 1 : Integer.highestOneBit(properties.getShards() - 1) << 1;
+    int shardCapacity = Math.max(1, properties.getMaxEntries() / shardCount);
+    this.shards = new Shard[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new Shard(shardCapacity);
+    }
+    this.ttlNanos = properties.getTtl().toNanos();
+    this.inFlightTimeoutNanos = properties.getInFlightTimeout().toNanos();
+    this.nanoTime = nanoTime;
+  }
+
+  /**
+   * Runs the action unless the key was seen before. A retry gets the original response, or waits for it while the
+   * original is still running. Reusing a key for a different request, as told by the fingerprint, is rejected.
+   */
+  public ResponseEntity<Object> execute(String key, String fingerprint, Supplier<ResponseEntity<Object>> action) {
+    Shard shard = shard(key);
+    Entry entry = new Entry(fingerprint);
+    Entry existing = shard.putIfAbsent(key, entry, nanoTime.getAsLong());
+    if (existing != null) {
+      return replay(existing, fingerprint);
+    }
+
+    ResponseEntity<Object> response;
+    try {
+      response = action.get();
+    } catch (RuntimeException e) {
+      // Nothing to replay, the client may retry for real
+      shard.remove(key, entry);
+      entry.outcome.completeExceptionally(e);
+      throw e;
+    }
+    entry.expiresAt = nanoTime.getAsLong() + ttlNanos;
+    entry.outcome.complete(response);
+    return response;
+  }
+
+  /**
+   * Same as {@link #execute} for actions that complete later. A retry of an in-flight request waits for the
+   * original without blocking the calling thread.
+   */
+  public CompletableFuture<ResponseEntity<Object>> executeAsync(String key, String fingerprint,
+    Supplier<CompletableFuture<ResponseEntity<Object>>> action) {
+    Shard shard = shard(key);
+    Entry entry = new Entry(fingerprint);
+    Entry existing = shard.putIfAbsent(key, entry, nanoTime.getAsLong());
+    if (existing != null) {
+      return replayAsync(existing, fingerprint);
+    }
+
+    CompletableFuture<ResponseEntity<Object>> response;
+    try {
+      response = action.get();
+    } catch (RuntimeException e) {
+      response = CompletableFuture.failedFuture(e);
+    }
+    return response.whenComplete((result, failure) -> {
+      if (failure != null) {
+        shard.remove(key, entry);
+        entry.outcome.completeExceptionally(failure);
+      } else {
+        entry.expiresAt = nanoTime.getAsLong() + ttlNanos;
+        entry.outcome.complete(result);
+      }
+    });
+  }
+
+  static boolean isValidKey(String key) {
+    return !key.isBlank() && key.length() <= MAX_KEY_LENGTH;
+  }
+
+  public int size() {
+    int size = 0;
+    for (Shard shard : shards) {
+      size += shard.size();
+    }
+    return size;
+  }
+
+  private ResponseEntity<Object> replay(Entry entry, String fingerprint) {
+    if (!entry.fingerprint.equals(fingerprint)) {
+      return fingerprintMismatch();
+    }
+
+    ResponseEntity<Object> original;
+    try {
+      original = entry.outcome.get(inFlightTimeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      return stillInProgress();
+    } catch (ExecutionException e) {
+      return originalFailed();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return stillInProgress();
+    }
+    return replayed(original);
+  }
+
+  private CompletableFuture<ResponseEntity<Object>> replayAsync(Entry entry, String fingerprint) {
+    if (!entry.fingerprint.equals(fingerprint)) {
+      return CompletableFuture.completedFuture(fingerprintMismatch());
+    }
+
+    // Times out a copy, the entry itself still completes when the original does
+    return entry.outcome.copy().orTimeout(inFlightTimeoutNanos, TimeUnit.NANOSECONDS)
+      .handle((original, failure) -> {
+        if (failure == null) {
+          return replayed(original);
+        }
+        Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+        return cause instanceof TimeoutException ? stillInProgress() : originalFailed();
+      });
+  }
+
+  private static ResponseEntity<Object> replayed(ResponseEntity<Object> original) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.addAll(original.getHeaders());
+    headers.set(REPLAYED_HEADER, "true");
+    return new ResponseEntity<>(original.getBody(), headers, original.getStatusCode());
+  }
+
+  private static ResponseEntity<Object> fingerprintMismatch() {
+    return new ResponseEntity<>("Idempotency-Key was already used for a different request.",
+      HttpStatus.UNPROCESSABLE_ENTITY);
+  }
+
+  private static ResponseEntity<Object> stillInProgress() {
+    return new ResponseEntity<>("A request with this Idempotency-Key is still in progress.", HttpStatus.CONFLICT);
+  }
+
+  private static ResponseEntity<Object> originalFailed() {
+    return new ResponseEntity<>("The original request with this Idempotency-Key failed, please retry.",
+      HttpStatus.CONFLICT);
+  }
+
+  private Shard shard(String key) {
+    return shards[spread(key.hashCode()) & (shards.length - 1)];
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private static final class Entry {
+    final String fingerprint;
+    final CompletableFuture<ResponseEntity<Object>> outcome = new CompletableFuture<>();
+    // Written once the outcome is known, in-flight entries never expire
+    volatile long expiresAt = Long.MAX_VALUE;
+
+    Entry(String fingerprint) {
+      this.fingerprint = fingerprint;
+    }
+
+    boolean isExpired(long now) {
+      return expiresAt != Long.MAX_VALUE && now - expiresAt >= 0;
+    }
+  }
+
+  private static final class Shard {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final int capacity;
+
+    Shard(int capacity) {
+      this.capacity = capacity;
+    }
+
+    Entry putIfAbsent(String key, Entry entry, long now) {
+      lock.lock();
+      try {
+        Entry existing = entries.get(key);
+        if (existing != null && !existing.isExpired(now)) {
+          return existing;
+        }
+        evictExpired(now);
+        entries.put(key, entry);
+        evictCompleted();
+        return null;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void remove(String key, Entry entry) {
+      lock.lock();
+      try {
+        entries.remove(key, entry);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    int size() {
+      lock.lock();
+      try {
+        return entries.size();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    // Least recently used first, skipping the in-flight ones
+    private void evictCompleted() {
+      Iterator<Entry> iterator = entries.values().iterator();
+      while (entries.size() > capacity && iterator.hasNext()) {
+        if (iterator.next().outcome.isDone()) {
+          iterator.remove();
+        }
+      }
+    }
+
+    // Expired entries collect at the LRU end since nobody reads them any more
+    private void evictExpired(long now) {
+      Iterator<Entry> iterator = entries.values().iterator();
+      while (iterator.hasNext() && iterator.next().isExpired(now)) {
+        iterator.remove();
+      }
+    }
+  }
+}
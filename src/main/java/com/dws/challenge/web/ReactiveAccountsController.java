@@ -0,0 +1,274 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.config.SnapshotProperties;
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountBalances;
+import com.dws.challenge.domain.BatchMode;
+import com.dws.challenge.domain.Transaction;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.SnapshotUnavailableException;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.service.ReactiveAccountsService;
+import com.dws.challenge.service.TransferMetrics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import jakarta.validation.Valid;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The {@link AccountsController} API on WebFlux, active with the reactive profile. Requests and responses are the
+ * same; in addition a transfer is refused with 503 when too many are already waiting to run.
+ * <p>
+ * Not every endpoint is served here yet, these are on the servlet stack only: {@code POST /import}, the
+ * {@link ScheduledTransfersController} endpoints {@code POST /transfers:schedule},
+ * {@code GET /{accountId}/scheduled-transfers} and {@code DELETE /{accountId}/scheduled-transfers/{id}}, and
+ * {@code GET /changes:stream} of the {@link BalanceChangesController}.
+ */
+@RestController
+@RequestMapping("/v1/accounts")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Slf4j
+public class ReactiveAccountsController {
+
+  private final ReactiveAccountsService accountsService;
+  private final ObjectMapper objectMapper;
+  private final TransferProperties transferProperties;
+  private final IdempotencyCache idempotencyCache;
+  private final TransferMetrics transferMetrics;
+  private final SnapshotProperties snapshotProperties;
+
+  private static final int MAX_TRANSACTIONS_PAGE_SIZE = 1000;
+
+  @Autowired
+  public ReactiveAccountsController(ReactiveAccountsService accountsService, ObjectMapper objectMapper,
+    TransferProperties transferProperties, IdempotencyCache idempotencyCache, TransferMetrics transferMetrics,
+    SnapshotProperties snapshotProperties) {
+    this.accountsService = accountsService;
+    this.objectMapper = objectMapper;
+    this.transferProperties = transferProperties;
+    this.idempotencyCache = idempotencyCache;
+    this.transferMetrics = transferMetrics;
+    this.snapshotProperties = snapshotProperties;
+  }
+
+  @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<ResponseEntity<Object>> createAccount(@RequestBody @Valid Account account) {
+    log.info("Creating account {}", account.getAccountId());
+
+    return this.accountsService.createAccount(account)
+      .thenReturn(new ResponseEntity<>(HttpStatus.CREATED))
+      .onErrorResume(DuplicateAccountIdException.class,
+        daie -> Mono.just(new ResponseEntity<>(daie.getMessage(), HttpStatus.BAD_REQUEST)));
+  }
+
+  @GetMapping(path = "/{accountId}")
+  public Mono<Account> getAccount(@PathVariable String accountId) {
+    log.info("Retrieving account for id {}", accountId);
+    return this.accountsService.getAccount(accountId);
+  }
+
+  @GetMapping(params = "ids")
+  public Mono<ResponseEntity<Object>> getAccounts(@RequestParam List<String> ids,
+    @RequestParam(defaultValue = "false") boolean snapshot) {
+    if (ids.isEmpty() || ids.size() > snapshotProperties.getMaxAccounts()) {
+      return Mono.just(new ResponseEntity<>("Between 1 and " + snapshotProperties.getMaxAccounts()
+        + " account ids must be given.", HttpStatus.BAD_REQUEST));
+    }
+
+    Mono<AccountBalances> balances = snapshot
+      ? this.accountsService.getAccountsSnapshot(ids, snapshotProperties.getMaxWait())
+      : this.accountsService.getAccounts(ids);
+    return balances
+      .map(result -> new ResponseEntity<Object>(result, HttpStatus.OK))
+      .onErrorResume(SnapshotUnavailableException.class,
+        e -> Mono.just(new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE)))
+      .onErrorResume(RejectedExecutionException.class,
+        e -> Mono.just(new ResponseEntity<>("Too many requests in progress, please retry.",
+          HttpStatus.SERVICE_UNAVAILABLE)));
+  }
+
+  @GetMapping(path = "/{accountId}/transactions", produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<ResponseEntity<Object>> getTransactions(@PathVariable String accountId,
+    @RequestParam(required = false) String cursor, @RequestParam(defaultValue = "50") int limit) {
+    if (limit < 1 || limit > MAX_TRANSACTIONS_PAGE_SIZE) {
+      return Mono.just(new ResponseEntity<>("Limit must be between 1 and " + MAX_TRANSACTIONS_PAGE_SIZE + ".",
+        HttpStatus.BAD_REQUEST));
+    }
+    Long before;
+    try {
+      before = parseCursor(cursor);
+    } catch (NumberFormatException e) {
+      return Mono.just(new ResponseEntity<>("Invalid cursor.", HttpStatus.BAD_REQUEST));
+    }
+
+    return this.accountsService.getAccount(accountId)
+      .flatMap(account -> this.accountsService.getTransactions(accountId, before, limit))
+      .map(page -> new ResponseEntity<Object>(page, HttpStatus.OK))
+      .defaultIfEmpty(new ResponseEntity<>("Account " + accountId + " does not exist.", HttpStatus.NOT_FOUND));
+  }
+
+  // Written as buffers rather than a Flux<Transaction>, so that errors can still be plain text
+  @GetMapping(path = "/{accountId}/transactions:stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public Mono<ResponseEntity<Flux<DataBuffer>>> streamTransactions(@PathVariable String accountId,
+    @RequestParam(required = false) String cursor) {
+    Long before;
+    try {
+      before = parseCursor(cursor);
+    } catch (NumberFormatException e) {
+      return Mono.just(error("Invalid cursor.", HttpStatus.BAD_REQUEST));
+    }
+
+    ObjectWriter writer = objectMapper.writerFor(Transaction.class);
+    return this.accountsService.getAccount(accountId)
+      .map(account -> ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON)
+        .body(this.accountsService.streamTransactions(accountId, before)
+          .map(transaction -> line(writer, transaction))))
+      .defaultIfEmpty(error("Account " + accountId + " does not exist.", HttpStatus.NOT_FOUND));
+  }
+
+  private static Long parseCursor(String cursor) {
+    return cursor == null ? null : Long.parseLong(cursor);
+  }
+
+  private static DataBuffer line(ObjectWriter writer, Transaction transaction) {
+    try {
+      byte[] json = writer.writeValueAsBytes(transaction);
+      byte[] line = Arrays.copyOf(json, json.length + 1);
+      line[json.length] = '\n';
+      return DefaultDataBufferFactory.sharedInstance.wrap(line);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static ResponseEntity<Flux<DataBuffer>> error(String message, HttpStatus status) {
+    return ResponseEntity.status(status).contentType(MediaType.TEXT_PLAIN)
+      .body(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(message.getBytes(StandardCharsets.UTF_8))));
+  }
+
+  @PostMapping(path = "/transfer", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<ResponseEntity<Object>> transferMoney(
+    @RequestHeader(name = IdempotencyCache.KEY_HEADER, required = false) String idempotencyKey,
+    @RequestBody TransferBody transferBody) {
+    Mono<ResponseEntity<Object>> response;
+    if (idempotencyKey == null) {
+      response = transfer(transferBody);
+    } else if (!IdempotencyCache.isValidKey(idempotencyKey)) {
+      return Mono.just(new ResponseEntity<>(IdempotencyCache.INVALID_KEY_MESSAGE, HttpStatus.BAD_REQUEST));
+    } else {
+      // A retry with the same key gets the first response back without reaching the service
+      response = Mono.fromFuture(() -> idempotencyCache.executeAsync(idempotencyKey,
+        TransferCommand.fingerprint(transferBody), () -> transfer(transferBody).toFuture()));
+    }
+
+    // Not a response to the transfer, so it is never remembered for the Idempotency-Key
+    return response.onErrorResume(RejectedExecutionException.class,
+      e -> Mono.just(new ResponseEntity<>("Too many transfers in progress, please retry.",
+        HttpStatus.SERVICE_UNAVAILABLE)));
+  }
+
+  private Mono<ResponseEntity<Object>> transfer(TransferBody transferBody) {
+    // Validate each parameter
+    TransferCommand command;
+    try {
+      command = TransferCommand.of(transferBody);
+    } catch (TransferRejectedException e) {
+      transferMetrics.rejected(e.getReason());
+      return Mono.just(new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST));
+    }
+
+    // If all validations pass, proceed with the transfer
+    log.info("Transferring {} from account {} to account {}", command.amount(), command.accountFromId(),
+      command.accountToId());
+
+    return this.accountsService.transferMoney(command.accountFromId(), command.accountToId(),
+        command.amountMinorUnits())
+      .thenReturn(new ResponseEntity<>(HttpStatus.OK))
+      .onErrorResume(IllegalArgumentException.class,
+        e -> Mono.just(new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST)));
+  }
+
+  @PostMapping(path = "/transfers:batch",
+    consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+  public Mono<ResponseEntity<Object>> transferMoneyBatch(@RequestParam(defaultValue = "best-effort") String mode,
+    @RequestBody(required = false) Flux<TransferRequest> body) {
+    BatchMode batchMode;
+    try {
+      batchMode = BatchMode.fromParameter(mode);
+    } catch (IllegalArgumentException e) {
+      return Mono.just(new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST));
+    }
+
+    // Accepts a JSON array as well as newline-delimited JSON objects, one more than allowed tells it is too long
+    int maxSize = transferProperties.getBatchMaxSize();
+    return body.take(maxSize + 1L)
+      .collectList()
+      .flatMap(transfers -> transferBatch(transfers, batchMode))
+      .onErrorResume(error -> error instanceof DecodingException || error instanceof ServerWebInputException,
+        e -> Mono.just(new ResponseEntity<>("Malformed transfer batch.", HttpStatus.BAD_REQUEST)));
+  }
+
+  private Mono<ResponseEntity<Object>> transferBatch(List<TransferRequest> transfers, BatchMode batchMode) {
+    if (transfers.size() > transferProperties.getBatchMaxSize()) {
+      return Mono.just(new ResponseEntity<>("Batch exceeds the maximum of " + transferProperties.getBatchMaxSize()
+        + " transfers.", HttpStatus.BAD_REQUEST));
+    }
+    if (transfers.isEmpty()) {
+      return Mono.just(new ResponseEntity<>("Transfer batch cannot be empty.", HttpStatus.BAD_REQUEST));
+    }
+
+    if (batchMode == BatchMode.ATOMIC) {
+      Set<String> accountIds = new HashSet<>();
+      for (TransferRequest transfer : transfers) {
+        accountIds.add(transfer.accountFromId());
+        accountIds.add(transfer.accountToId());
+      }
+      if (accountIds.size() > transferProperties.getAtomicBatchMaxAccounts()) {
+        return Mono.just(new ResponseEntity<>("Atomic batch cannot involve more than "
+          + transferProperties.getAtomicBatchMaxAccounts() + " accounts.", HttpStatus.BAD_REQUEST));
+      }
+    }
+
+    log.info("Transferring batch of {} transfers in {} mode", transfers.size(), batchMode);
+
+    return this.accountsService.transferBatch(transfers, batchMode)
+      .map(response -> {
+        HttpStatus status = response.applied() || batchMode == BatchMode.BEST_EFFORT
+          ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
+        return new ResponseEntity<Object>(response, status);
+      })
+      .onErrorResume(RejectedExecutionException.class,
+        e -> Mono.just(new ResponseEntity<>("Too many transfers in progress, please retry.",
+          HttpStatus.SERVICE_UNAVAILABLE)));
+  }
+}
@@ -0,0 +1,7 @@
+package com.dws.challenge.web;
+
+import java.time.Instant;
+
+// The body of POST /v1/accounts/transfers:schedule, a transfer body plus when to run it
+record ScheduledTransferBody(String accountFromId, String accountToId, String amount, Instant executeAt) {
+}
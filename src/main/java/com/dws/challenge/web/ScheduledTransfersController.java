@@ -0,0 +1,98 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.exception.AccountNotLocalException;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.TransferScheduler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+// Transfers submitted now to run at a later time, see TransferScheduler; not served by the reactive stack yet
+@RestController
+@RequestMapping("/v1/accounts")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Slf4j
+public class ScheduledTransfersController {
+
+  private static final int MAX_PAGE_SIZE = 1000;
+
+  private final AccountsService accountsService;
+  private final TransferScheduler transferScheduler;
+
+  @Autowired
+  public ScheduledTransfersController(AccountsService accountsService, TransferScheduler transferScheduler) {
+    this.accountsService = accountsService;
+    this.transferScheduler = transferScheduler;
+  }
+
+  @PostMapping(path = "/transfers:schedule", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> scheduleTransfer(@RequestBody ScheduledTransferBody body) {
+    TransferCommand command;
+    try {
+      command = TransferCommand.of(new TransferBody(body.accountFromId(), body.accountToId(), body.amount()));
+    } catch (TransferRejectedException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+    if (body.executeAt() == null) {
+      return new ResponseEntity<>("ExecuteAt cannot be null.", HttpStatus.BAD_REQUEST);
+    }
+
+    log.info("Scheduling transfer of {} from account {} to account {} at {}", command.amount(),
+      command.accountFromId(), command.accountToId(), body.executeAt());
+
+    try {
+      ScheduledTransfer scheduled = this.transferScheduler.schedule(command.accountFromId(), command.accountToId(),
+        command.amountMinorUnits(), body.executeAt());
+      return new ResponseEntity<>(scheduled, HttpStatus.CREATED);
+    } catch (IllegalArgumentException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  // The earliest first, up to the limit
+  @GetMapping(path = "/{accountId}/scheduled-transfers", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> getScheduledTransfers(@PathVariable String accountId,
+    @RequestParam(defaultValue = "50") int limit) {
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      return new ResponseEntity<>("Limit must be between 1 and " + MAX_PAGE_SIZE + ".", HttpStatus.BAD_REQUEST);
+    }
+    this.accountsService.requireLocal(accountId);
+    if (this.accountsService.getAccount(accountId) == null) {
+      return new ResponseEntity<>("Account " + accountId + " does not exist.", HttpStatus.NOT_FOUND);
+    }
+
+    return new ResponseEntity<>(this.transferScheduler.pending(accountId, limit), HttpStatus.OK);
+  }
+
+  @DeleteMapping(path = "/{accountId}/scheduled-transfers/{id}")
+  public ResponseEntity<Object> cancelScheduledTransfer(@PathVariable String accountId, @PathVariable long id) {
+    log.info("Cancelling scheduled transfer {} of account {}", id, accountId);
+    this.accountsService.requireLocal(accountId);
+
+    if (!this.transferScheduler.cancel(accountId, id)) {
+      return new ResponseEntity<>("Scheduled transfer " + id + " is not pending for account " + accountId + ".",
+        HttpStatus.NOT_FOUND);
+    }
+    return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+  }
+
+  // Cluster mode only: transfers are scheduled on, and kept by, the node owning their accounts
+  @ExceptionHandler(AccountNotLocalException.class)
+  public ResponseEntity<Object> accountNotLocal(AccountNotLocalException e) {
+    return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+  }
+}
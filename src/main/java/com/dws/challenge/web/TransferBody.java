@@ -0,0 +1,51 @@
+package com.dws.challenge.web;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * The body of POST /v1/accounts/transfer as sent, before TransferCommand validates it. Any JSON scalar binds to
+ * these fields as its text, so an amount keeps its exact digits and a malformed one gets the same message as a
+ * missing one.
+ */
+record TransferBody(String accountFromId, String accountToId, String amount) {
+
+  /**
+   * Reads the fixed schema token by token, ignoring unknown fields like data binding does, without an intermediate
+   * tree or map.
+   */
+  static TransferBody read(JsonParser parser) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new JsonParseException(parser, "Transfer request must be a JSON object");
+    }
+    String accountFromId = null;
+    String accountToId = null;
+    String amount = null;
+    for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+      JsonToken value = parser.nextToken();
+      switch (field) {
+        case "accountFromId" -> accountFromId = scalar(parser, value);
+        case "accountToId" -> accountToId = scalar(parser, value);
+        case "amount" -> amount = scalar(parser, value);
+        default -> parser.skipChildren();
+      }
+    }
+    if (parser.currentToken() != JsonToken.END_OBJECT) {
+      throw new JsonParseException(parser, "Unexpected end of transfer request");
+    }
+    return new TransferBody(accountFromId, accountToId, amount);
+  }
+
+  private static String scalar(JsonParser parser, JsonToken value) throws IOException {
+    if (value == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    if (value == null || !value.isScalarValue()) {
+      throw new JsonParseException(parser, "Field " + parser.currentName() + " must be a JSON scalar");
+    }
+    return parser.getText();
+  }
+}
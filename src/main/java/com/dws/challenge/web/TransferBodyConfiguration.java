@@ -0,0 +1,31 @@
+package com.dws.challenge.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+// Without it transfer bodies are bound by the regular Jackson converter, with the same results
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "dws.transfer", name = "streaming-request-parser", havingValue = "true",
+  matchIfMissing = true)
+public class TransferBodyConfiguration implements WebMvcConfigurer {
+
+  private final ObjectMapper objectMapper;
+
+  @Autowired
+  public TransferBodyConfiguration(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
+  @Override
+  public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+    converters.add(0, new TransferBodyHttpMessageConverter(objectMapper.getFactory()));
+  }
+}
@@ -0,0 +1,56 @@
+package com.dws.challenge.web;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.IOException;
+import java.util.List;
+
+// Reads TransferBody with Jackson's streaming parser; everything else, and all writing, is left to the other converters
+final class TransferBodyHttpMessageConverter implements HttpMessageConverter<TransferBody> {
+
+  private static final List<MediaType> SUPPORTED_MEDIA_TYPES = List.of(MediaType.APPLICATION_JSON);
+
+  private final JsonFactory jsonFactory;
+
+  TransferBodyHttpMessageConverter(JsonFactory jsonFactory) {
+    this.jsonFactory = jsonFactory;
+  }
+
+  @Override
+  public boolean canRead(Class<?> clazz, MediaType mediaType) {
+    return clazz == TransferBody.class && (mediaType == null || MediaType.APPLICATION_JSON.includes(mediaType));
+  }
+
+  @Override
+  public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+    return false;
+  }
+
+  @Override
+  public List<MediaType> getSupportedMediaTypes() {
+    return SUPPORTED_MEDIA_TYPES;
+  }
+
+  @Override
+  public TransferBody read(Class<? extends TransferBody> clazz, HttpInputMessage inputMessage) throws IOException {
+    try (JsonParser parser = jsonFactory.createParser(inputMessage.getBody())) {
+      return TransferBody.read(parser);
+    } catch (JsonProcessingException e) {
+      throw new HttpMessageNotReadableException("JSON parse error: " + e.getOriginalMessage(), e, inputMessage);
+    }
+  }
+
+  // Spring only writes with converters whose canWrite accepted the type, which this one never does
+  @Override
+  public void write(TransferBody transferBody, MediaType contentType, HttpOutputMessage outputMessage) {
+    throw new HttpMessageNotWritableException("TransferBody is only ever read by this converter");
+  }
+}
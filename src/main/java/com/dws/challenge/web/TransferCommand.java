@@ -0,0 +1,51 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.exception.TransferRejectedException.Reason;
+
+import java.math.BigDecimal;
+
+// The body of a single transfer request, validated field by field the same way by both controllers
+record TransferCommand(String accountFromId, String accountToId, BigDecimal amount, long amountMinorUnits) {
+
+  static TransferCommand of(TransferBody body) {
+    String accountFromId = body.accountFromId();
+    String accountToId = body.accountToId();
+    BigDecimal amount;
+
+    // Check for empty accountFromId
+    if (accountFromId == null || accountFromId.trim().isEmpty()) {
+      throw new TransferRejectedException(Reason.INVALID_ACCOUNT_ID, "AccountFromId cannot be empty or null.");
+    }
+
+    // Check for empty accountToId
+    if (accountToId == null || accountToId.trim().isEmpty()) {
+      throw new TransferRejectedException(Reason.INVALID_ACCOUNT_ID, "AccountToId cannot be empty or null.");
+    }
+
+    // Check for empty amount
+    try {
+      amount = new BigDecimal(body.amount());
+    } catch (NumberFormatException | NullPointerException e) {
+      throw new TransferRejectedException(Reason.INVALID_AMOUNT, "Invalid transfer amount.");
+    }
+
+    // Check for non-positive amount
+    if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+      throw new TransferRejectedException(Reason.INVALID_AMOUNT, "Transfer amount must be positive.");
+    }
+
+    // Check the amount fits the currency, from here on it is handled as minor units
+    try {
+      return new TransferCommand(accountFromId, accountToId, amount, Money.toMinorUnits(amount));
+    } catch (IllegalArgumentException e) {
+      throw new TransferRejectedException(Reason.INVALID_AMOUNT, "Invalid transfer amount.");
+    }
+  }
+
+  // Identifies the request behind an Idempotency-Key, a retry must send the same one
+  static String fingerprint(TransferBody body) {
+    return body.accountFromId() + "\n" + body.accountToId() + "\n" + body.amount();
+  }
+}
@@ -0,0 +1,133 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.dws.challenge.config.ImportProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ImportFormat;
+import com.dws.challenge.domain.ImportSummary;
+import com.dws.challenge.domain.ImportSummary.RowError;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountImportService;
+import com.dws.challenge.service.AccountsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class AccountImportServiceTest {
+
+    private final AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    private final AccountImportService importService = new AccountImportService(repository, new ObjectMapper(),
+            properties(3, 2, 10));
+
+    @AfterEach
+    void shutdown() {
+        importService.shutdown();
+    }
+
+    @Test
+    void importAccounts_Csv() throws IOException {
+        ImportSummary summary = importService.importAccounts(body("""
+                accountId,balance
+                Id-1,100.50
+                "Id-2", 0
+
+                Id-3,abc
+                Id-4
+                Id-5,-1
+                ,10
+                Id-6,1.001
+                """), ImportFormat.CSV);
+
+        assertThat(summary.rows()).isEqualTo(7);
+        assertThat(summary.created()).isEqualTo(2);
+        assertThat(summary.invalid()).isEqualTo(5);
+        assertThat(summary.errors()).extracting(RowError::row).containsExactly(5L, 6L, 7L, 8L, 9L);
+        assertThat(summary.errors().get(2).error()).isEqualTo("Initial balance must be positive.");
+        assertThat(summary.errors().get(2).accountId()).isEqualTo("Id-5");
+        assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("100.50");
+        assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("0");
+        assertThat(repository.getAccount("Id-6")).isNull();
+    }
+
+    @Test
+    void importAccounts_NdjsonReportsDuplicatesPerRow() throws IOException {
+        repository.createAccount(new Account("Id-2"));
+
+        // The first three rows share a chunk, so the first Id-1 is the one created
+        ImportSummary summary = importService.importAccounts(body("""
+                {"accountId":"Id-1","balance":10}
+                {"accountId":"Id-2","balance":20}
+                {"accountId":"Id-1","balance":40}
+                {"accountId":"Id-3","balance":30}
+                {"accountId":"Id-4"
+                {"accountId":"Id-5","balance":50}
+                """), ImportFormat.NDJSON);
+
+        assertThat(summary.rows()).isEqualTo(6);
+        assertThat(summary.created()).isEqualTo(3);
+        assertThat(summary.duplicates()).isEqualTo(2);
+        assertThat(summary.invalid()).isEqualTo(1);
+        assertThat(summary.errors()).extracting(RowError::row, RowError::error).containsExactly(
+                tuple(2L, "Account id Id-2 already exists!"),
+                tuple(3L, "Account id Id-1 already exists!"),
+                tuple(5L, "Malformed row."));
+        assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("10");
+        assertThat(repository.getAccount("Id-5").getBalance()).isEqualByComparingTo("50");
+    }
+
+    @Test
+    void importAccounts_CountsEveryErrorButReportsOnlyTheFirst() throws IOException {
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            rows.append("Id-").append(i % 5_000).append(",1\n");
+        }
+
+        ImportSummary summary = importService.importAccounts(body(rows.toString()), ImportFormat.CSV);
+
+        assertThat(summary.created()).isEqualTo(5_000);
+        assertThat(summary.duplicates()).isEqualTo(5_000);
+        assertThat(summary.errors()).hasSize(10);
+    }
+
+    @Test
+    void importAccounts_RejectsRowsOfAccountsOnOtherNodes() throws IOException {
+        // As a node of a cluster that owns only the accounts starting with A
+        importService.setAccountsService(new AccountsService(repository, (account, description) -> {
+        }) {
+            @Override
+            public String remoteOwner(String accountId) {
+                return accountId.startsWith("A") ? null : "node-b";
+            }
+        });
+
+        ImportSummary summary = importService.importAccounts(body("""
+                A-1,10
+                B-1,20
+                A-2,30
+                """), ImportFormat.CSV);
+
+        assertThat(summary.created()).isEqualTo(2);
+        assertThat(summary.invalid()).isEqualTo(1);
+        assertThat(summary.errors()).extracting(RowError::row, RowError::accountId, RowError::error).containsExactly(
+                tuple(2L, "B-1", "Account lives on node node-b, import it there."));
+        assertThat(repository.getAccount("B-1")).isNull();
+    }
+
+    private static ImportProperties properties(int chunkSize, int parallelism, int maxReportedErrors) {
+        ImportProperties properties = new ImportProperties();
+        properties.setChunkSize(chunkSize);
+        properties.setParallelism(parallelism);
+        properties.setMaxReportedErrors(maxReportedErrors);
+        return properties;
+    }
+
+    private static ByteArrayInputStream body(String rows) {
+        return new ByteArrayInputStream(rows.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,15 +1,20 @@
 package com.dws.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.service.AccountsService;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -19,6 +24,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
@@ -43,7 +49,7 @@ class AccountsControllerTest {
         this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
 
         // Reset the existing accounts before each test.
-        accountsService.getAccountsRepository().clearAccounts();
+        accountsService.clearAccounts();
     }
 
     @Test
@@ -220,6 +226,33 @@ class AccountsControllerTest {
                 .andExpect(content().string(containsString("AccountToId cannot be empty or null.")));
     }
 
+    @Test
+    void transferMoney_AmountAsTextAndUnknownFields() throws Exception {
+        accountsService.createAccount(new Account("Id-123", new BigDecimal("1000.00")));
+        accountsService.createAccount(new Account("Id-456", new BigDecimal("500.00")));
+
+        mockMvc.perform(post("/v1/accounts/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"reference\":{\"lines\":[1,2]},\"accountFromId\":\"Id-123\","
+                                + "\"accountToId\":\"Id-456\",\"amount\":\"0.10\"}"))
+                .andExpect(status().isOk());
+
+        assertThat(accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("999.90");
+        assertThat(accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("500.10");
+    }
+
+    @Test
+    void transferMoney_MalformedBody() throws Exception {
+        mockMvc.perform(post("/v1/accounts/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"accountFromId\":\"Id-123\",\"amount\":"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/v1/accounts/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-456\",\"amount\":{}}"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void transferMoney_AmountEmpty() throws Exception {
         // Perform transfer request with missing amount
@@ -273,4 +306,229 @@ class AccountsControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.balance").value("600.0"));
     }
+
+    @Test
+    void transferMoneyBatch_BestEffortReportsEachTransfer() throws Exception {
+        accountsService.createAccount(new Account("Id-1", new BigDecimal("100.00")));
+        accountsService.createAccount(new Account("Id-2", new BigDecimal("100.00")));
+        accountsService.createAccount(new Account("Id-3", new BigDecimal("100.00")));
+        accountsService.createAccount(new Account("Id-4", new BigDecimal("100.00")));
+
+        mockMvc.perform(post("/v1/accounts/transfers:batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":60.00},"
+                                + "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":60.00},"
+                                + "{\"accountFromId\":\"Id-3\",\"accountToId\":\"Id-4\",\"amount\":25.00},"
+                                + "{\"accountFromId\":\"Id-3\",\"accountToId\":\"Id-9\",\"amount\":1.00}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.completed").value(2))
+                .andExpect(jsonPath("$.failed").value(2))
+                .andExpect(jsonPath("$.results[0].status").value("COMPLETED"))
+                .andExpect(jsonPath("$.results[1].error").value("Insufficient funds in account Id-1"))
+                .andExpect(jsonPath("$.results[2].status").value("COMPLETED"))
+                .andExpect(jsonPath("$.results[3].error").value("Both accounts must exist."));
+
+        assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("40.00");
+        assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("160.00");
+        assertThat(accountsService.getAccount("Id-3").getBalance()).isEqualByComparingTo("75.00");
+        assertThat(accountsService.getAccount("Id-4").getBalance()).isEqualByComparingTo("125.00");
+    }
+
+    @Test
+    void transferMoneyBatch_AtomicAppliesAllTransfers() throws Exception {
+        accountsService.createAccount(new Account("Id-1", new BigDecimal("100.00")));
+        accountsService.createAccount(new Account("Id-2", new BigDecimal("0.00")));
+        accountsService.createAccount(new Account("Id-3", new BigDecimal("0.00")));
+
+        // Id-2 can only pay Id-3 because it is credited earlier in the same batch
+        mockMvc.perform(post("/v1/accounts/transfers:batch?mode=atomic")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":80.00}\n"
+                                + "{\"accountFromId\":\"Id-2\",\"accountToId\":\"Id-3\",\"amount\":50.00}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied").value(true))
+                .andExpect(jsonPath("$.completed").value(2));
+
+        assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("20.00");
+        assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("30.00");
+        assertThat(accountsService.getAccount("Id-3").getBalance()).isEqualByComparingTo("50.00");
+    }
+
+    @Test
+    void transferMoneyBatch_AtomicRejectsWholeBatch() throws Exception {
+        accountsService.createAccount(new Account("Id-1", new BigDecimal("100.00")));
+        accountsService.createAccount(new Account("Id-2", new BigDecimal("0.00")));
+
+        mockMvc.perform(post("/v1/accounts/transfers:batch?mode=atomic")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"amount\":80.00},"
+                                + "{\"accountFromId\":\"Id-2\",\"accountToId\":\"Id-1\",\"amount\":90.00}]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.applied").value(false))
+                .andExpect(jsonPath("$.error").value("Insufficient funds in account Id-2"));
+
+        assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("100.00");
+        assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("0.00");
+    }
+
+    @Test
+    void transferMoneyBatch_UnknownMode() throws Exception {
+        mockMvc.perform(post("/v1/accounts/transfers:batch?mode=eventually")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getTransactions_PagesNewestFirst() throws Exception {
+        accountsService.createAccount(new Account("Id-History-1", new BigDecimal("100.00")));
+        accountsService.createAccount(new Account("Id-History-2", new BigDecimal("0.00")));
+        for (int i = 1; i <= 3; i++) {
+            accountsService.transferMoney("Id-History-1", "Id-History-2", new BigDecimal(i));
+        }
+
+        MvcResult firstPage = mockMvc.perform(get("/v1/accounts/Id-History-2/transactions?limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions.length()").value(2))
+                .andExpect(jsonPath("$.transactions[0].amount").value(3.00))
+                .andExpect(jsonPath("$.transactions[0].accountFromId").value("Id-History-1"))
+                .andExpect(jsonPath("$.transactions[0].accountFromBalance").value(94.00))
+                .andExpect(jsonPath("$.transactions[0].accountToBalance").value(6.00))
+                .andExpect(jsonPath("$.transactions[1].amount").value(2.00))
+                .andReturn();
+        String cursor = JsonPath.read(firstPage.getResponse().getContentAsString(), "$.nextCursor");
+
+        mockMvc.perform(get("/v1/accounts/Id-History-2/transactions?limit=2&cursor=" + cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions.length()").value(1))
+                .andExpect(jsonPath("$.transactions[0].amount").value(1.00))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        mockMvc.perform(get("/v1/accounts/Id-Unknown/transactions"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void streamTransactions_WritesNdjson() throws Exception {
+        accountsService.createAccount(new Account("Id-Stream-1", new BigDecimal("100.00")));
+        accountsService.createAccount(new Account("Id-Stream-2", new BigDecimal("0.00")));
+        accountsService.transferMoney("Id-Stream-1", "Id-Stream-2", new BigDecimal("10.00"));
+        accountsService.transferMoney("Id-Stream-2", "Id-Stream-1", new BigDecimal("4.00"));
+
+        MvcResult result = mockMvc.perform(get("/v1/accounts/Id-Stream-1/transactions:stream")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String[] lines = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString().split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).contains("\"accountFromId\":\"Id-Stream-2\"", "\"amount\":4.00");
+        assertThat(lines[1]).contains("\"accountFromId\":\"Id-Stream-1\"", "\"amount\":10.00");
+    }
+
+    @Test
+    void transferMoney_IdempotencyKeyReplaysFirstOutcome() throws Exception {
+        accountsService.createAccount(new Account("Id-123", new BigDecimal("1000.00")));
+        accountsService.createAccount(new Account("Id-456", new BigDecimal("500.00")));
+        String transfer = "{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-456\",\"amount\":300.00}";
+
+        mockMvc.perform(post("/v1/accounts/transfer").header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON).content(transfer))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+        mockMvc.perform(post("/v1/accounts/transfer").header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON).content(transfer))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"));
+
+        assertThat(accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("700.00");
+        assertThat(accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("800.00");
+
+        mockMvc.perform(post("/v1/accounts/transfer").header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-456\",\"amount\":1.00}"))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    void importAccounts_ReportsRejectedRows() throws Exception {
+        accountsService.createAccount(new Account("Id-456", BigDecimal.ONE));
+
+        mockMvc.perform(post("/v1/accounts/import").contentType("text/csv")
+                        .content("accountId,balance\nId-123,100.00\nId-456,5\nId-789,-1\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows").value(3))
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.duplicates").value(1))
+                .andExpect(jsonPath("$.invalid").value(1))
+                .andExpect(jsonPath("$.errors[0].row").value(3))
+                .andExpect(jsonPath("$.errors[1].error").value("Initial balance must be positive."));
+
+        assertThat(accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("100.00");
+        assertThat(accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("1");
+    }
+
+    @Test
+    void getAccounts_SnapshotOfSeveralAccounts() throws Exception {
+        accountsService.createAccount(new Account("Id-123", new BigDecimal("1000.00")));
+        accountsService.createAccount(new Account("Id-456", new BigDecimal("500.00")));
+
+        mockMvc.perform(get("/v1/accounts").param("ids", "Id-456,Id-123,Id-789").param("snapshot", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"accounts\":[{\"accountId\":\"Id-456\",\"balance\":500.00},"
+                        + "{\"accountId\":\"Id-123\",\"balance\":1000.00}],\"missing\":[\"Id-789\"]}"));
+    }
+
+    @Test
+    void scheduleTransfer_ListAndCancel() throws Exception {
+        accountsService.createAccount(new Account("Id-123", new BigDecimal("1000.00")));
+        accountsService.createAccount(new Account("Id-456", new BigDecimal("500.00")));
+        String executeAt = Instant.now().plus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.SECONDS).toString();
+
+        MvcResult scheduled = mockMvc.perform(post("/v1/accounts/transfers:schedule")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-456\",\"amount\":250.50,"
+                                + "\"executeAt\":\"" + executeAt + "\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.amount").value(250.50))
+                .andExpect(jsonPath("$.executeAt").value(executeAt))
+                .andReturn();
+        long id = ((Number) JsonPath.read(scheduled.getResponse().getContentAsString(), "$.id")).longValue();
+
+        mockMvc.perform(get("/v1/accounts/Id-123/scheduled-transfers"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(id))
+                .andExpect(jsonPath("$[0].accountToId").value("Id-456"));
+        mockMvc.perform(delete("/v1/accounts/Id-456/scheduled-transfers/" + id))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/v1/accounts/Id-123/scheduled-transfers/" + id))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/v1/accounts/Id-123/scheduled-transfers"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+
+        mockMvc.perform(post("/v1/accounts/transfers:schedule").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-456\",\"amount\":1}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("ExecuteAt cannot be null."));
+        assertThat(accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("1000.00");
+    }
+
+    @Test
+    void streamChanges_RejectsSequencesOutsideTheRing() throws Exception {
+        mockMvc.perform(get("/v1/accounts/changes:stream").param("from", Long.toString(Long.MAX_VALUE - 1)))
+                .andExpect(status().isGone())
+                .andExpect(content().string(containsString("was not reached")));
+        mockMvc.perform(get("/v1/accounts/changes:stream").header("Last-Event-ID", "abc"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid sequence."));
+        mockMvc.perform(get("/v1/accounts/changes:stream").param("from", "-1"))
+                .andExpect(status().isBadRequest());
+        // Sequences restart with every run, one handed out by an earlier run would resume at another change
+        mockMvc.perform(get("/v1/accounts/changes:stream").header("Last-Event-ID", "earlier:5"))
+                .andExpect(status().isGone())
+                .andExpect(content().string(containsString("earlier run")));
+    }
 }
@@ -0,0 +1,121 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dws.challenge.config.NotificationProperties;
+import com.dws.challenge.config.NotificationProperties.OverflowPolicy;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AsyncNotificationService;
+import com.dws.challenge.service.NotificationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+class AsyncNotificationServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void notifyAboutTransfer_DeliversToSinkInOrder() throws Exception {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        NotificationService sink = (account, description) -> sent.add(account.getAccountId() + ":" + description);
+        AsyncNotificationService service = new AsyncNotificationService(sink, new NotificationProperties(), meterRegistry);
+
+        Account account = new Account("Id-123");
+        for (int i = 0; i < 100; i++) {
+            service.notifyAboutTransfer(account, "Transfer " + i);
+        }
+        service.shutdown();
+
+        assertThat(sent).hasSize(100);
+        assertThat(sent.get(0)).isEqualTo("Id-123:Transfer 0");
+        assertThat(sent.get(99)).isEqualTo("Id-123:Transfer 99");
+        assertThat(meterRegistry.get("notifications.send.latency").timer().count()).isEqualTo(100);
+    }
+
+    @Test
+    void notifyAboutTransfer_DropsNewestWhenQueueIsFull() throws Exception {
+        CountDownLatch sinkEntered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger sent = new AtomicInteger();
+        NotificationService sink = (account, description) -> {
+            sinkEntered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sent.incrementAndGet();
+        };
+
+        NotificationProperties properties = new NotificationProperties();
+        properties.setQueueCapacity(1);
+        properties.setOverflowPolicy(OverflowPolicy.DROP_NEWEST);
+        AsyncNotificationService service = new AsyncNotificationService(sink, properties, meterRegistry);
+
+        Account account = new Account("Id-123");
+        service.notifyAboutTransfer(account, "first");
+        assertThat(sinkEntered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // The dispatcher is stuck in the sink: one notification fits in the queue, the next one is dropped
+        service.notifyAboutTransfer(account, "second");
+        service.notifyAboutTransfer(account, "third");
+        assertThat(meterRegistry.get("notifications.dropped").counter().count()).isEqualTo(1);
+
+        release.countDown();
+        service.shutdown();
+        assertThat(sent.get()).isEqualTo(2);
+    }
+
+    @Test
+    void notifyAboutTransfer_RetriesFailingSink() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        NotificationService sink = (account, description) -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("Mail server unavailable");
+            }
+        };
+
+        NotificationProperties properties = new NotificationProperties();
+        properties.setRetryBackoff(Duration.ofMillis(1));
+        AsyncNotificationService service = new AsyncNotificationService(sink, properties, meterRegistry);
+
+        service.notifyAboutTransfer(new Account("Id-123"), "retry me");
+        service.shutdown();
+
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(meterRegistry.get("notifications.failed").counter().count()).isZero();
+    }
+
+    @Test
+    void notifyAboutTransfer_RetryWaitsWithoutHoldingUpOtherAccounts() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch delivered = new CountDownLatch(1);
+        NotificationService sink = (account, description) -> {
+            if (account.getAccountId().equals("Id-1")) {
+                attempts.incrementAndGet();
+                throw new IllegalStateException("Mail server unavailable");
+            }
+            delivered.countDown();
+        };
+
+        NotificationProperties properties = new NotificationProperties();
+        properties.setRetryBackoff(Duration.ofMinutes(1));
+        properties.setShutdownTimeout(Duration.ofMillis(100));
+        AsyncNotificationService service = new AsyncNotificationService(sink, properties, meterRegistry);
+
+        service.notifyAboutTransfer(new Account("Id-1"), "retry me");
+        service.notifyAboutTransfer(new Account("Id-2"), "send me");
+
+        // Delivered long before the first account's retry is due
+        assertThat(delivered.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(attempts.get()).isEqualTo(1);
+        service.shutdown();
+    }
+}
@@ -0,0 +1,198 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BalanceChange;
+import com.dws.challenge.exception.ChangesUnavailableException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.BalanceChangeStream;
+import com.dws.challenge.service.LockingTransferStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+class BalanceChangeStreamTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BalanceChangeStream stream = new BalanceChangeStream(1024, Clock.fixed(NOW, ZoneOffset.UTC),
+            meterRegistry);
+    private final AccountsService accountsService = new AccountsService(new AccountsRepositoryInMemory(),
+            (account, description) -> {
+            });
+
+    BalanceChangeStreamTest() {
+        accountsService.setTransferStrategy(new LockingTransferStrategy(stream));
+        accountsService.setBalanceChangeStream(stream);
+    }
+
+    @Test
+    void createsAndTransfers_AreStreamedInOrder() throws Exception {
+        account("Id-1", "100.00");
+        account("Id-2", "0.00");
+        accountsService.transferMoney("Id-1", "Id-2", 30_00);
+        accountsService.transferMoney("Id-1", "Id-1", 10_00);
+
+        try (BalanceChangeStream.Subscription subscription = stream.subscribe(0, null)) {
+            List<BalanceChange> changes = subscription.poll(100, 0);
+
+            assertThat(changes).extracting(BalanceChange::sequence).containsExactly(0L, 1L, 2L, 3L);
+            assertThat(changes.get(0)).isEqualTo(new BalanceChange(0, BalanceChange.Type.CREATED, "Id-1", null,
+                    new BigDecimal("100.00"), new BigDecimal("100.00"), NOW));
+            assertThat(changes.get(2)).isEqualTo(new BalanceChange(2, BalanceChange.Type.TRANSFER, "Id-1", "Id-2",
+                    new BigDecimal("-30.00"), new BigDecimal("70.00"), NOW));
+            assertThat(changes.get(3)).isEqualTo(new BalanceChange(3, BalanceChange.Type.TRANSFER, "Id-2", "Id-1",
+                    new BigDecimal("30.00"), new BigDecimal("30.00"), NOW));
+            assertThat(subscription.nextSequence()).isEqualTo(4);
+        }
+        assertThat(meterRegistry.get("balance.changes.published").functionCounter().count()).isEqualTo(4);
+        assertThat(meterRegistry.get("balance.changes.delivery").timer().count()).isEqualTo(4);
+    }
+
+    @Test
+    void subscribe_ResumesFromASequenceAndFiltersByAccount() throws Exception {
+        account("Id-1", "100.00");
+        account("Id-2", "0.00");
+        account("Id-3", "0.00");
+        accountsService.transferMoney("Id-1", "Id-2", 10_00);
+        accountsService.transferMoney("Id-1", "Id-3", 20_00);
+
+        try (BalanceChangeStream.Subscription subscription = stream.subscribe(4, null)) {
+            assertThat(subscription.poll(100, 0)).extracting(BalanceChange::sequence).containsExactly(4L, 5L, 6L);
+        }
+        try (BalanceChangeStream.Subscription subscription = stream.subscribe(0, "Id-3")) {
+            assertThat(subscription.poll(100, 0)).extracting(BalanceChange::sequence).containsExactly(2L, 6L);
+            assertThat(subscription.nextSequence()).isEqualTo(7);
+        }
+        try (BalanceChangeStream.Subscription subscription = stream.subscribe(0, null)) {
+            assertThat(subscription.poll(2, 0)).extracting(BalanceChange::sequence).containsExactly(0L, 1L);
+            assertThat(subscription.poll(100, 0)).hasSize(5);
+            assertThat(subscription.poll(100, 0)).isEmpty();
+        }
+    }
+
+    @Test
+    void changes_AreOnlyReadableOnceCommitted() throws Exception {
+        Account account1 = new Account("Id-1", new BigDecimal("100.00"));
+        Account account2 = new Account("Id-2", new BigDecimal("0.00"));
+        stream.onTransfer(account1, account2, 10_00, 90_00, 10_00);
+
+        try (BalanceChangeStream.Subscription subscription = stream.subscribe(0, null)) {
+            assertThat(subscription.poll(100, 0)).isEmpty();
+            stream.commit(stream.claimed());
+            assertThat(subscription.poll(100, 0)).hasSize(2);
+        }
+    }
+
+    @Test
+    void consumerFallingARingBehind_IsOverrunWithoutHoldingUpTransfers() throws Exception {
+        BalanceChangeStream small = new BalanceChangeStream(8, Clock.systemUTC(), meterRegistry);
+        Account account1 = new Account("Id-1", new BigDecimal("1000.00"));
+        Account account2 = new Account("Id-2", new BigDecimal("0.00"));
+
+        try (BalanceChangeStream.Subscription subscription = small.subscribe(0, null)) {
+            for (int i = 1; i <= 10; i++) {
+                small.onTransfer(account1, account2, 1_00, 1000_00 - i * 1_00, i * 1_00);
+            }
+            small.commit(small.claimed());
+
+            assertThatThrownBy(() -> subscription.poll(100, 0))
+                    .isInstanceOf(ChangesUnavailableException.class)
+                    .hasMessage("Changes from sequence 0 were overwritten, the oldest is 12.")
+                    .extracting(e -> ((ChangesUnavailableException) e).getOldestSequence()).isEqualTo(12L);
+        }
+        assertThat(meterRegistry.get("balance.changes.overruns").counter().count()).isEqualTo(1);
+
+        assertThatThrownBy(() -> small.subscribe(11, null)).isInstanceOf(ChangesUnavailableException.class);
+        assertThatThrownBy(() -> small.subscribe(21, null))
+                .isInstanceOf(ChangesUnavailableException.class)
+                .hasMessage("Sequence 21 was not reached, the next is 20.");
+        try (BalanceChangeStream.Subscription subscription = small.subscribe(12, null)) {
+            assertThat(subscription.poll(100, 0)).extracting(BalanceChange::sequence)
+                    .containsExactly(12L, 13L, 14L, 15L, 16L, 17L, 18L, 19L);
+        }
+    }
+
+    @Test
+    void waitingSubscriber_IsWokenByTheNextCommit() throws Exception {
+        account("Id-1", "100.00");
+        account("Id-2", "0.00");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (BalanceChangeStream.Subscription subscription = stream.subscribe(stream.committed(), null)) {
+            Future<List<BalanceChange>> polled = executor.submit(
+                    () -> subscription.poll(100, TimeUnit.SECONDS.toNanos(30)));
+            Thread.sleep(50);
+            assertThat(polled).isNotDone();
+
+            accountsService.transferMoney("Id-1", "Id-2", 5_00);
+            assertThat(polled.get(5, TimeUnit.SECONDS)).extracting(BalanceChange::sequence).containsExactly(2L, 3L);
+
+            // Closing releases a waiting reader too
+            Future<List<BalanceChange>> closed = executor.submit(
+                    () -> subscription.poll(100, TimeUnit.SECONDS.toNanos(30)));
+            Thread.sleep(50);
+            subscription.close();
+            assertThat(closed.get(5, TimeUnit.SECONDS)).isEmpty();
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(meterRegistry.get("balance.changes.subscribers").gauge().value()).isZero();
+    }
+
+    @Test
+    void concurrentTransfers_AreAllStreamedOnce() throws Exception {
+        int accounts = 16;
+        for (int i = 0; i < accounts; i++) {
+            account("Id-" + i, "1000.00");
+        }
+        long start = stream.committed();
+        int threads = 8;
+        int transfersPerThread = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (BalanceChangeStream.Subscription subscription = stream.subscribe(start, null)) {
+            List<CompletableFuture<Void>> producers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                producers.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < transfersPerThread; i++) {
+                        accountsService.transferMoney("Id-" + (offset + i) % accounts,
+                                "Id-" + (offset + i + 1) % accounts, 1);
+                    }
+                }, executor));
+            }
+
+            List<BalanceChange> changes = new ArrayList<>();
+            while (changes.size() < 2 * threads * transfersPerThread) {
+                changes.addAll(subscription.poll(1_000, TimeUnit.SECONDS.toNanos(5)));
+            }
+            CompletableFuture.allOf(producers.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+            for (int i = 0; i < changes.size(); i++) {
+                assertThat(changes.get(i).sequence()).isEqualTo(start + i);
+            }
+            BigDecimal total = changes.stream().map(BalanceChange::change).reduce(BigDecimal.ZERO, BigDecimal::add);
+            assertThat(total).isEqualByComparingTo("0");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void account(String accountId, String balance) {
+        accountsService.createAccount(new Account(accountId, new BigDecimal(balance)));
+    }
+}
@@ -0,0 +1,135 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountBalances;
+import com.dws.challenge.exception.SnapshotUnavailableException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.LockingTransferStrategy;
+import com.dws.challenge.service.OptimisticTransferStrategy;
+import com.dws.challenge.service.ShardedTransferStrategy;
+import com.dws.challenge.service.TransferStrategy;
+import org.junit.jupiter.api.Test;
+
+class BalanceSnapshotTest {
+
+    private static final int ACCOUNTS = 16;
+
+    @Test
+    void snapshot_NeverSeesMoneyInFlight_Locking() throws Exception {
+        assertSnapshotsConserveMoney(new LockingTransferStrategy());
+    }
+
+    @Test
+    void snapshot_NeverSeesMoneyInFlight_StripedHotAccounts() throws Exception {
+        TransferProperties properties = new TransferProperties();
+        properties.setHotAccounts(List.of("Id-0", "Id-1"));
+        properties.setHotAccountStripes(4);
+        LockingTransferStrategy locking = new LockingTransferStrategy();
+        locking.setHotAccounts(properties);
+        assertSnapshotsConserveMoney(locking);
+    }
+
+    @Test
+    void snapshot_NeverSeesMoneyInFlight_Optimistic() throws Exception {
+        assertSnapshotsConserveMoney(new OptimisticTransferStrategy());
+    }
+
+    @Test
+    void snapshot_NeverSeesMoneyInFlight_Sharded() throws Exception {
+        ShardedTransferStrategy sharded = new ShardedTransferStrategy(4);
+        try {
+            assertSnapshotsConserveMoney(sharded);
+        } finally {
+            sharded.shutdown();
+        }
+    }
+
+    @Test
+    void snapshot_GivesUpWhileAnAccountIsBeingUpdated() {
+        AccountsService accountsService = accountsService(new LockingTransferStrategy());
+        accountsService.getAccountsSnapshot(ids(), Duration.ZERO);
+
+        Account account = accountsService.getAccount("Id-0");
+        account.beginUpdate();
+        assertThatThrownBy(() -> accountsService.getAccountsSnapshot(ids(), Duration.ofMillis(20)))
+                .isInstanceOf(SnapshotUnavailableException.class);
+        account.endUpdate();
+
+        AccountBalances balances = accountsService.getAccountsSnapshot(List.of("Id-0", "Id-404", "Id-0"),
+                Duration.ZERO);
+        assertThat(balances.accounts()).extracting(Account::getAccountId).containsExactly("Id-0");
+        assertThat(balances.missing()).containsExactly("Id-404");
+    }
+
+    private static void assertSnapshotsConserveMoney(TransferStrategy transferStrategy) throws Exception {
+        AccountsService accountsService = accountsService(transferStrategy);
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            writers.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    try {
+                        accountsService.transferMoney("Id-" + random.nextInt(ACCOUNTS),
+                                "Id-" + random.nextInt(ACCOUNTS), random.nextLong(1, 5_000));
+                    } catch (IllegalArgumentException e) {
+                        // Insufficient funds
+                    }
+                    // Readers only get through when no transfer touches their accounts, leave them some gaps
+                    LockSupport.parkNanos(20_000);
+                }
+            }));
+        }
+
+        try {
+            for (int i = 0; i < 2_000; i++) {
+                AccountBalances snapshot = accountsService.getAccountsSnapshot(ids(), Duration.ofSeconds(5));
+                BigDecimal total = snapshot.accounts().stream()
+                        .map(Account::getBalance)
+                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+                assertThat(total).isEqualByComparingTo(BigDecimal.valueOf(100L * ACCOUNTS));
+            }
+        } finally {
+            running.set(false);
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            executor.shutdown();
+        }
+    }
+
+    private static AccountsService accountsService(TransferStrategy transferStrategy) {
+        AccountsService accountsService = new AccountsService(new AccountsRepositoryInMemory(),
+                (account, description) -> { });
+        accountsService.setTransferStrategy(transferStrategy);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountsService.createAccount(new Account("Id-" + i, new BigDecimal("100")));
+        }
+        return accountsService;
+    }
+
+    private static List<String> ids() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            ids.add("Id-" + i);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,233 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.dws.challenge.config.AccountCacheProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.repository.CachingAccountsRepository;
+import com.dws.challenge.repository.JdbcAccountsRepository;
+import com.dws.challenge.service.LockingTransferStrategy;
+import com.dws.challenge.service.OptimisticTransferStrategy;
+import com.dws.challenge.service.TransferStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+class CachingAccountsRepositoryTest {
+
+    private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .build();
+    private final JdbcAccountsRepository jdbcRepository = new JdbcAccountsRepository(new JdbcTemplate(database));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void createAccount_WritesThroughAndRejectsDuplicates() {
+        CachingAccountsRepository repository = cache(10);
+        repository.createAccount(new Account("Id-123", new BigDecimal("1000.50")));
+
+        assertThat(jdbcRepository.getAccount("Id-123").balanceMinorUnits()).isEqualTo(1000_50);
+        assertThatThrownBy(() -> repository.createAccount(new Account("Id-123", BigDecimal.TEN)))
+                .isInstanceOf(DuplicateAccountIdException.class)
+                .hasMessage("Account id Id-123 already exists!");
+        // Only the database knows it once it left the cache
+        repository.invalidate("Id-123");
+        assertThatThrownBy(() -> repository.createAccount(new Account("Id-123", BigDecimal.TEN)))
+                .isInstanceOf(DuplicateAccountIdException.class)
+                .hasMessage("Account id Id-123 already exists!");
+    }
+
+    @Test
+    void getAccount_LoadsOnceAndRecordsHitsAndMisses() {
+        jdbcRepository.createAccount(new Account("Id-123", new BigDecimal("10.00")));
+        CachingAccountsRepository repository = cache(10);
+
+        Account account = repository.getAccount("Id-123");
+        assertThat(account.balanceMinorUnits()).isEqualTo(10_00);
+        assertThat(repository.getAccount("Id-123")).isSameAs(account);
+        assertThat(repository.getAccount("Id-404")).isNull();
+
+        assertThat(meterRegistry.get("accounts.cache.gets").tag("result", "hit").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("accounts.cache.gets").tag("result", "miss").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("accounts.cache.loads").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("accounts.cache.hit.ratio").gauge().value()).isEqualTo(1.0 / 3);
+    }
+
+    @Test
+    void transfers_AreWrittenThrough() {
+        CachingAccountsRepository repository = cache(10);
+        repository.createAccount(new Account("Id-1", new BigDecimal("100.00")));
+        repository.createAccount(new Account("Id-2", new BigDecimal("100.00")));
+
+        new LockingTransferStrategy(repository).transfer(repository.getAccount("Id-1"), repository.getAccount("Id-2"),
+                30_00);
+
+        CachingAccountsRepository restarted = new CachingAccountsRepository(jdbcRepository,
+                new AccountCacheProperties(), new SimpleMeterRegistry());
+        assertThat(restarted.getAccount("Id-1").balanceMinorUnits()).isEqualTo(70_00);
+        assertThat(restarted.getAccount("Id-2").balanceMinorUnits()).isEqualTo(130_00);
+    }
+
+    @Test
+    void transferTheDatabaseRejects_IsUndoneInMemory() {
+        CachingAccountsRepository repository = cache(10);
+        repository.createAccount(new Account("Id-1", new BigDecimal("100.00")));
+        repository.createAccount(new Account("Id-2", new BigDecimal("100.00")));
+        new JdbcTemplate(database).execute("ALTER TABLE accounts ADD CONSTRAINT capped CHECK (balance <= 10000)");
+        Account account1 = repository.getAccount("Id-1");
+        Account account2 = repository.getAccount("Id-2");
+
+        assertThatThrownBy(() -> new LockingTransferStrategy(repository).transfer(account1, account2, 30_00))
+                .isInstanceOf(DataAccessException.class);
+
+        assertThat(account1.balanceMinorUnits()).isEqualTo(100_00);
+        assertThat(account2.balanceMinorUnits()).isEqualTo(100_00);
+        assertThat(Account.isSettled(account1.updateStamp())).isTrue();
+        assertThat(jdbcRepository.getAccount("Id-2").balanceMinorUnits()).isEqualTo(100_00);
+        // Both were invalidated, the objects still held here are the ones lookups revive
+        assertThat(repository.estimatedSize()).isZero();
+        assertThat(repository.getAccount("Id-2")).isSameAs(account2);
+    }
+
+    @Test
+    void eviction_KeepsFrequentlyUsedAccountsThroughAScan() {
+        CachingAccountsRepository repository = cache(100);
+        for (int i = 0; i < 20; i++) {
+            repository.createAccount(new Account("Hot-" + i, BigDecimal.ONE));
+        }
+        for (int i = 0; i < 5_000; i++) {
+            jdbcRepository.createAccount(new Account("Cold-" + i, BigDecimal.ONE));
+        }
+
+        // Every cold account is read once, a hot one in between each of them
+        for (int i = 0; i < 5_000; i++) {
+            repository.getAccount("Cold-" + i);
+            repository.getAccount("Hot-" + i % 20);
+        }
+        long loads = meterRegistry.get("accounts.cache.loads").timer().count();
+        for (int i = 0; i < 20; i++) {
+            repository.getAccount("Hot-" + i);
+        }
+
+        assertThat(meterRegistry.get("accounts.cache.loads").timer().count()).isEqualTo(loads);
+        assertThat(repository.estimatedSize()).isEqualTo(100);
+        assertThat(meterRegistry.get("accounts.cache.evictions").counter().count()).isEqualTo(5_000 + 20 - 100);
+    }
+
+    @Test
+    void evictedAccount_StaysTheSameObjectUntilReleased() throws Exception {
+        CachingAccountsRepository repository = cache(10);
+        repository.createAccount(new Account("Id-1", new BigDecimal("100.00")));
+        repository.createAccount(new Account("Id-2", new BigDecimal("100.00")));
+
+        Account held = repository.getAccount("Id-1");
+        repository.invalidate("Id-1");
+        assertThat(repository.getAccount("Id-1")).isSameAs(held);
+        assertThat(meterRegistry.get("accounts.cache.revivals").counter().count()).isEqualTo(1);
+
+        new LockingTransferStrategy(repository).transfer(held, repository.getAccount("Id-2"), 30_00);
+        WeakReference<Account> released = new WeakReference<>(held);
+        held = null;
+        repository.invalidate("Id-1");
+        for (int i = 0; i < 100 && released.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        Account reloaded = repository.getAccount("Id-1");
+        assertThat(reloaded).isNotSameAs(released.get());
+        assertThat(reloaded.balanceMinorUnits()).isEqualTo(70_00);
+    }
+
+    @Test
+    void concurrentTransfers_ThroughConstantEvictionAndCollection() throws Exception {
+        for (String strategy : List.of("locking", "optimistic")) {
+            jdbcRepository.clearAccounts();
+            CachingAccountsRepository repository = cache(4);
+            TransferStrategy transferStrategy = strategy.equals("locking") ? new LockingTransferStrategy(repository)
+                    : new OptimisticTransferStrategy(repository);
+            int accounts = 50;
+            for (int i = 0; i < accounts; i++) {
+                repository.createAccount(new Account("Id-" + i, new BigDecimal("100.00")));
+            }
+
+            AtomicBoolean running = new AtomicBoolean(true);
+            Thread collector = new Thread(() -> {
+                while (running.get()) {
+                    System.gc();
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            collector.start();
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                workers.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 5_000; i++) {
+                        Account from = repository.getAccount("Id-" + random.nextInt(accounts));
+                        Account to = repository.getAccount("Id-" + random.nextInt(accounts));
+                        try {
+                            transferStrategy.transfer(from, to, random.nextLong(1, 200_00));
+                        } catch (TransferRejectedException e) {
+                            // Insufficient funds
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            executor.shutdown();
+            running.set(false);
+            collector.join();
+
+            // A second copy of an account would have let transfers overdraw it
+            long total = 0;
+            for (int i = 0; i < accounts; i++) {
+                long balance = repository.getAccount("Id-" + i).balanceMinorUnits();
+                assertThat(jdbcRepository.getAccount("Id-" + i).balanceMinorUnits())
+                        .as("%s: stored balance of Id-%d", strategy, i)
+                        .isEqualTo(balance);
+                assertThat(balance).as("%s: balance of Id-%d", strategy, i).isNotNegative();
+                total += balance;
+            }
+            assertThat(total).isEqualTo(accounts * 100_00L);
+        }
+    }
+
+    private CachingAccountsRepository cache(int maximumSize) {
+        AccountCacheProperties properties = new AccountCacheProperties();
+        properties.setMaximumSize(maximumSize);
+        return new CachingAccountsRepository(jdbcRepository, properties, meterRegistry);
+    }
+}
@@ -0,0 +1,289 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.dws.challenge.cluster.ClusterClient;
+import com.dws.challenge.cluster.ClusterTransactions;
+import com.dws.challenge.cluster.ClusterTransactions.Outcome;
+import com.dws.challenge.cluster.CrossNodeTransfer;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.NodeUnavailableException;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Two nodes, a and b, wired to each other in process. Restarting a node means building its ClusterTransactions
+ * again over the same journal and a repository holding the accounts as created, which is what a journaled
+ * repository recovers since it never sees the legs of cross-node transfers.
+ */
+class ClusterTransactionsTest {
+
+    @TempDir
+    Path directory;
+
+    private final InProcessCluster cluster = new InProcessCluster();
+    private final Map<String, AccountsRepository> repositories = new HashMap<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (ClusterTransactions node : cluster.nodes.values()) {
+            node.close();
+        }
+    }
+
+    @Test
+    void transfer_MovesMoneyBetweenNodes() throws Exception {
+        ClusterTransactions a = start("a", "A-1");
+        ClusterTransactions b = start("b", "B-1");
+
+        a.transfer(account("a", "A-1"), "B-1", "b", 30_00);
+
+        assertThat(balance("a", "A-1")).isEqualTo(70_00);
+        assertThat(balance("b", "B-1")).isEqualTo(130_00);
+        assertThat(a.pendingCount()).isZero();
+        assertThat(b.pendingCount()).isZero();
+    }
+
+    @Test
+    void transfer_RefundsWhenTheParticipantRefuses() throws Exception {
+        ClusterTransactions a = start("a", "A-1");
+        start("b", "B-1");
+
+        assertThatThrownBy(() -> a.transfer(account("a", "A-1"), "B-404", "b", 30_00))
+                .isInstanceOf(TransferRejectedException.class)
+                .hasMessage("Both accounts must exist.");
+        assertThatThrownBy(() -> a.transfer(account("a", "A-1"), "B-1", "b", 100_01))
+                .isInstanceOf(TransferRejectedException.class);
+
+        assertThat(balance("a", "A-1")).isEqualTo(100_00);
+        assertThat(balance("b", "B-1")).isEqualTo(100_00);
+        assertThat(a.pendingCount()).isZero();
+    }
+
+    @Test
+    void transfer_ResendsCommitsTheParticipantMissed() throws Exception {
+        ClusterTransactions a = start("a", "A-1");
+        ClusterTransactions b = start("b", "B-1");
+
+        cluster.unreachable = "b";
+        cluster.reachableForPrepare = true;
+        a.transfer(account("a", "A-1"), "B-1", "b", 30_00);
+        assertThat(balance("b", "B-1")).isEqualTo(100_00);
+        assertThat(a.pendingCount()).isEqualTo(1);
+        assertThat(b.pendingCount()).isEqualTo(1);
+
+        cluster.unreachable = null;
+        a.resolvePending();
+        assertThat(balance("a", "A-1")).isEqualTo(70_00);
+        assertThat(balance("b", "B-1")).isEqualTo(130_00);
+        assertThat(a.pendingCount()).isZero();
+        assertThat(b.pendingCount()).isZero();
+    }
+
+    @Test
+    void participantInDoubt_AsksTheCoordinator() throws Exception {
+        ClusterTransactions a = start("a", "A-1");
+        ClusterTransactions b = start("b", "B-1");
+
+        cluster.unreachable = "b";
+        cluster.reachableForPrepare = true;
+        a.transfer(account("a", "A-1"), "B-1", "b", 30_00);
+
+        // b restarts before the commit reaches it and settles the transfer on its own
+        b = restart("b", "B-1");
+        cluster.unreachable = null;
+        b.resolvePending();
+        assertThat(balance("b", "B-1")).isEqualTo(130_00);
+        assertThat(b.pendingCount()).isZero();
+
+        // The commit a resends now finds nothing left to do
+        a.resolvePending();
+        assertThat(a.pendingCount()).isZero();
+        assertThat(balance("b", "B-1")).isEqualTo(130_00);
+    }
+
+    @Test
+    void coordinatorCrashBeforeDeciding_AbortsTheTransfer() throws Exception {
+        ClusterTransactions a = start("a", "A-1");
+        ClusterTransactions b = start("b", "B-1");
+
+        cluster.crashAfterPrepare = true;
+        assertThatThrownBy(() -> a.transfer(account("a", "A-1"), "B-1", "b", 30_00))
+                .isInstanceOf(Crash.class);
+        cluster.crashAfterPrepare = false;
+        assertThat(b.pendingCount()).isEqualTo(1);
+
+        ClusterTransactions recovered = restart("a", "A-1");
+        assertThat(recovered.pendingCount()).isZero();
+        b.resolvePending();
+
+        assertThat(balance("a", "A-1")).isEqualTo(100_00);
+        assertThat(balance("b", "B-1")).isEqualTo(100_00);
+        assertThat(b.pendingCount()).isZero();
+    }
+
+    @Test
+    void restart_ReappliesCommittedTransfers() throws Exception {
+        ClusterTransactions a = start("a", "A-1", "A-2");
+        ClusterTransactions b = start("b", "B-1");
+        a.transfer(account("a", "A-1"), "B-1", "b", 30_00);
+        a.transfer(account("a", "A-2"), "B-1", "b", 5_00);
+        b.transfer(account("b", "B-1"), "A-1", "a", 1_00);
+
+        // Twice, the first restart compacts the journals into adjustments
+        for (int i = 0; i < 2; i++) {
+            restart("a", "A-1", "A-2");
+            restart("b", "B-1");
+            assertThat(balance("a", "A-1")).isEqualTo(71_00);
+            assertThat(balance("a", "A-2")).isEqualTo(95_00);
+            assertThat(balance("b", "B-1")).isEqualTo(134_00);
+        }
+    }
+
+    @Test
+    void concurrentTransfers_ConserveMoney() throws Exception {
+        List<String> aIds = List.of("A-1", "A-2", "A-3");
+        List<String> bIds = List.of("B-1", "B-2", "B-3");
+        ClusterTransactions a = start("a", aIds.toArray(String[]::new));
+        ClusterTransactions b = start("b", bIds.toArray(String[]::new));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            workers.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 2_000; i++) {
+                    boolean fromA = random.nextBoolean();
+                    String from = (fromA ? aIds : bIds).get(random.nextInt(3));
+                    String to = (fromA ? bIds : aIds).get(random.nextInt(3));
+                    try {
+                        (fromA ? a : b).transfer(account(fromA ? "a" : "b", from), to, fromA ? "b" : "a",
+                                random.nextLong(1, 50_00));
+                    } catch (TransferRejectedException e) {
+                        // Insufficient funds
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        executor.shutdown();
+
+        long total = 0;
+        for (String id : aIds) {
+            total += balance("a", id);
+        }
+        for (String id : bIds) {
+            total += balance("b", id);
+        }
+        assertThat(total).isEqualTo(600_00);
+        assertThat(a.pendingCount()).isZero();
+        assertThat(b.pendingCount()).isZero();
+    }
+
+    private ClusterTransactions start(String nodeId, String... accountIds) throws Exception {
+        AccountsRepository repository = new AccountsRepositoryInMemory();
+        for (String accountId : accountIds) {
+            repository.createAccount(new Account(accountId, new BigDecimal("100.00")));
+        }
+        repositories.put(nodeId, repository);
+        ClusterTransactions node = new ClusterTransactions(nodeId, repository, cluster, directory.resolve(nodeId),
+                false, Duration.ZERO);
+        cluster.nodes.put(nodeId, node);
+        return node;
+    }
+
+    private ClusterTransactions restart(String nodeId, String... accountIds) throws Exception {
+        cluster.nodes.remove(nodeId).close();
+        return start(nodeId, accountIds);
+    }
+
+    private Account account(String nodeId, String accountId) {
+        return repositories.get(nodeId).getAccount(accountId);
+    }
+
+    private long balance(String nodeId, String accountId) {
+        return account(nodeId, accountId).balanceMinorUnits();
+    }
+
+    // Stands for a process dying in the middle of a call
+    private static final class Crash extends Error {
+    }
+
+    private static final class InProcessCluster implements ClusterClient {
+
+        final Map<String, ClusterTransactions> nodes = new HashMap<>();
+        volatile String unreachable;
+        volatile boolean reachableForPrepare;
+        volatile boolean crashAfterPrepare;
+
+        @Override
+        public void createAccount(String nodeId, Account account) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Account getAccount(String nodeId, String accountId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void transfer(String nodeId, String accountFromId, String accountToId, long amount) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void prepare(String nodeId, CrossNodeTransfer transfer) {
+            if (!reachableForPrepare) {
+                checkReachable(nodeId);
+            }
+            nodes.get(nodeId).prepare(transfer);
+            if (crashAfterPrepare) {
+                throw new Crash();
+            }
+        }
+
+        @Override
+        public void commit(String nodeId, String transferId) {
+            checkReachable(nodeId);
+            nodes.get(nodeId).commit(transferId);
+        }
+
+        @Override
+        public void abort(String nodeId, String transferId) {
+            checkReachable(nodeId);
+            nodes.get(nodeId).abort(transferId);
+        }
+
+        @Override
+        public Outcome outcome(String nodeId, String transferId) {
+            checkReachable(nodeId);
+            return nodes.get(nodeId).outcome(transferId);
+        }
+
+        private void checkReachable(String nodeId) {
+            if (nodeId.equals(unreachable)) {
+                throw new NodeUnavailableException("Node " + nodeId + " is unavailable.", null);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dws.challenge.config.IdempotencyProperties;
+import com.dws.challenge.web.IdempotencyCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+class IdempotencyCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    void execute_ReplaysOutcomeUntilItExpires() {
+        IdempotencyProperties properties = new IdempotencyProperties();
+        properties.setTtl(Duration.ofMinutes(10));
+        IdempotencyCache cache = new IdempotencyCache(properties, now::get);
+
+        ResponseEntity<Object> first = cache.execute("key-1", "a", this::transfer);
+        ResponseEntity<Object> retry = cache.execute("key-1", "a", this::transfer);
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(first.getHeaders().containsKey(IdempotencyCache.REPLAYED_HEADER)).isFalse();
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(retry.getHeaders().getFirst(IdempotencyCache.REPLAYED_HEADER)).isEqualTo("true");
+
+        now.addAndGet(Duration.ofMinutes(10).toNanos());
+        cache.execute("key-1", "a", this::transfer);
+        assertThat(executions.get()).isEqualTo(2);
+    }
+
+    @Test
+    void execute_RejectsKeyReusedForDifferentRequest() {
+        IdempotencyCache cache = new IdempotencyCache(new IdempotencyProperties(), now::get);
+
+        cache.execute("key-1", "a", this::transfer);
+        ResponseEntity<Object> reused = cache.execute("key-1", "b", this::transfer);
+
+        assertThat(reused.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_EvictsLeastRecentlyUsedKeys() {
+        IdempotencyProperties properties = new IdempotencyProperties();
+        properties.setShards(1);
+        properties.setMaxEntries(2);
+        IdempotencyCache cache = new IdempotencyCache(properties, now::get);
+
+        cache.execute("key-1", "a", this::transfer);
+        cache.execute("key-2", "a", this::transfer);
+        cache.execute("key-1", "a", this::transfer);
+        cache.execute("key-3", "a", this::transfer);
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(executions.get()).isEqualTo(3);
+
+        // key-1 was used more recently than key-2, so key-2 is the one that had to go
+        cache.execute("key-1", "a", this::transfer);
+        assertThat(executions.get()).isEqualTo(3);
+        cache.execute("key-2", "a", this::transfer);
+        assertThat(executions.get()).isEqualTo(4);
+    }
+
+    @Test
+    void executeAsync_NeverEvictsInFlightKeys() {
+        IdempotencyProperties properties = new IdempotencyProperties();
+        properties.setShards(1);
+        properties.setMaxEntries(1);
+        IdempotencyCache cache = new IdempotencyCache(properties, now::get);
+        CompletableFuture<ResponseEntity<Object>> original = new CompletableFuture<>();
+
+        cache.executeAsync("key-1", "a", () -> original);
+        cache.execute("key-2", "a", this::transfer);
+        cache.execute("key-3", "a", this::transfer);
+        assertThat(cache.size()).isEqualTo(2);
+
+        // Evicting key-1 would have let its retry run the transfer again
+        CompletableFuture<ResponseEntity<Object>> retry = cache.executeAsync("key-1", "a",
+                () -> CompletableFuture.completedFuture(transfer()));
+        assertThat(retry).isNotDone();
+        original.complete(transfer());
+        assertThat(retry.join().getHeaders().getFirst(IdempotencyCache.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(executions.get()).isEqualTo(3);
+    }
+
+    @Test
+    void executeAsync_RetryWaitsForInFlightOriginal() {
+        IdempotencyCache cache = new IdempotencyCache(new IdempotencyProperties(), now::get);
+        CompletableFuture<ResponseEntity<Object>> original = new CompletableFuture<>();
+
+        CompletableFuture<ResponseEntity<Object>> first = cache.executeAsync("key-1", "a", () -> original);
+        CompletableFuture<ResponseEntity<Object>> retry = cache.executeAsync("key-1", "a",
+                () -> CompletableFuture.completedFuture(transfer()));
+        assertThat(retry).isNotDone();
+
+        original.complete(new ResponseEntity<>(HttpStatus.OK));
+        assertThat(first.join().getHeaders().containsKey(IdempotencyCache.REPLAYED_HEADER)).isFalse();
+        assertThat(retry.join().getHeaders().getFirst(IdempotencyCache.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(executions.get()).isZero();
+    }
+
+    @Test
+    void executeAsync_ForgetsFailedOriginal() {
+        IdempotencyCache cache = new IdempotencyCache(new IdempotencyProperties(), now::get);
+
+        CompletableFuture<ResponseEntity<Object>> failed = cache.executeAsync("key-1", "a",
+                () -> CompletableFuture.failedFuture(new RejectedExecutionException()));
+        assertThat(failed).isCompletedExceptionally();
+
+        cache.executeAsync("key-1", "a", () -> CompletableFuture.completedFuture(transfer())).join();
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    private ResponseEntity<Object> transfer() {
+        executions.incrementAndGet();
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+}
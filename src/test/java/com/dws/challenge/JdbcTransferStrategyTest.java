@@ -0,0 +1,208 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dws.challenge.config.AccountCacheProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.repository.CachingAccountsRepository;
+import com.dws.challenge.repository.JdbcAccountsRepository;
+import com.dws.challenge.service.JdbcTransferStrategy;
+import com.dws.challenge.service.Transfer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+class JdbcTransferStrategyTest {
+
+    private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .build();
+    private final JdbcAccountsRepository jdbcRepository = new JdbcAccountsRepository(new JdbcTemplate(database));
+    private final CachingAccountsRepository repository = cache();
+    private final AtomicInteger published = new AtomicInteger();
+    private final JdbcTransferStrategy transferStrategy = new JdbcTransferStrategy(jdbcRepository, 2, 1_000,
+            (accountFrom, accountTo, amount, fromBalance, toBalance) -> published.incrementAndGet());
+
+    @AfterEach
+    void tearDown() throws Exception {
+        transferStrategy.shutdown();
+        database.shutdown();
+    }
+
+    @Test
+    void transfer_CommitsToTheDatabaseAndTheAccounts() {
+        Account accountFrom = account("Id-1", "100.00");
+        Account accountTo = account("Id-2", "100.00");
+
+        transferStrategy.transfer(accountFrom, accountTo, 30_00);
+
+        assertThat(accountFrom.balanceMinorUnits()).isEqualTo(70_00);
+        assertThat(accountTo.balanceMinorUnits()).isEqualTo(130_00);
+        assertThat(jdbcRepository.getAccount("Id-1").balanceMinorUnits()).isEqualTo(70_00);
+        assertThat(jdbcRepository.getAccount("Id-2").balanceMinorUnits()).isEqualTo(130_00);
+        assertThat(published).hasValue(1);
+    }
+
+    @Test
+    void queuedTransfers_AreRefusedOneByOne() {
+        Account accountFrom = account("Id-1", "100.00");
+        Account accountTo = account("Id-2", "0.00");
+
+        // Queued together, most likely into one batch; either way they are applied in this order
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (long amount : new long[] {40_00, 40_00, 40_00, 20_00}) {
+            results.add(transferStrategy.transferAsync(accountFrom, accountTo, amount));
+        }
+
+        assertThat(results.get(0)).succeedsWithin(Duration.ofSeconds(10));
+        assertThat(results.get(1)).succeedsWithin(Duration.ofSeconds(10));
+        assertThatThrownBy(results.get(2)::join)
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(TransferRejectedException.class)
+                .hasRootCauseMessage("Insufficient funds in account Id-1");
+        assertThat(results.get(3)).succeedsWithin(Duration.ofSeconds(10));
+        assertThat(accountFrom.balanceMinorUnits()).isZero();
+        assertThat(jdbcRepository.getAccount("Id-2").balanceMinorUnits()).isEqualTo(100_00);
+    }
+
+    @Test
+    void transferAll_IsAllOrNothing() {
+        Account accountA = account("Id-A", "100.00");
+        Account accountB = account("Id-B", "0.00");
+        Account accountC = account("Id-C", "0.00");
+
+        assertThatThrownBy(() -> transferStrategy.transferAll(List.of(
+                new Transfer(accountA, accountB, 60_00),
+                new Transfer(accountB, accountC, 70_00))))
+                .isInstanceOf(TransferRejectedException.class)
+                .hasMessage("Insufficient funds in account Id-B");
+        assertThat(jdbcRepository.getAccount("Id-A").balanceMinorUnits()).isEqualTo(100_00);
+        assertThat(accountB.balanceMinorUnits()).isZero();
+
+        transferStrategy.transferAll(List.of(
+                new Transfer(accountA, accountB, 60_00),
+                new Transfer(accountB, accountC, 50_00)));
+        assertThat(jdbcRepository.getAccount("Id-A").balanceMinorUnits()).isEqualTo(40_00);
+        assertThat(jdbcRepository.getAccount("Id-B").balanceMinorUnits()).isEqualTo(10_00);
+        assertThat(jdbcRepository.getAccount("Id-C").balanceMinorUnits()).isEqualTo(50_00);
+        assertThat(accountC.balanceMinorUnits()).isEqualTo(50_00);
+    }
+
+    @Test
+    void withdrawAndDeposit_TouchOneAccount() {
+        Account account = account("Id-1", "100.00");
+
+        transferStrategy.withdraw(account, 30_00);
+        assertThatThrownBy(() -> transferStrategy.withdraw(account, 70_01))
+                .isInstanceOf(TransferRejectedException.class);
+        transferStrategy.deposit(account, 5_00);
+
+        assertThat(account.balanceMinorUnits()).isEqualTo(75_00);
+        assertThat(jdbcRepository.getAccount("Id-1").balanceMinorUnits()).isEqualTo(75_00);
+        assertThat(published).hasValue(0);
+    }
+
+    @Test
+    void committer_SurvivesAnErrorAndFailsItsBatch() throws Exception {
+        AtomicBoolean failNext = new AtomicBoolean(true);
+        JdbcTransferStrategy failing = new JdbcTransferStrategy(jdbcRepository, 1, 1_000,
+                (accountFrom, accountTo, amount, fromBalance, toBalance) -> {
+                    if (failNext.getAndSet(false)) {
+                        throw new StackOverflowError("listener");
+                    }
+                });
+        try {
+            Account accountFrom = account("Id-1", "100.00");
+            Account accountTo = account("Id-2", "0.00");
+
+            assertThatThrownBy(() -> failing.transferAsync(accountFrom, accountTo, 10_00)
+                    .get(10, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(StackOverflowError.class);
+            assertThat(failing.transferAsync(accountFrom, accountTo, 10_00)).succeedsWithin(Duration.ofSeconds(10));
+            assertThat(jdbcRepository.getAccount("Id-2").balanceMinorUnits()).isEqualTo(20_00);
+        } finally {
+            failing.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentTransfers_MatchTheDatabase() throws Exception {
+        int accounts = 40;
+        for (int i = 0; i < accounts; i++) {
+            account("Id-" + i, "100.00");
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<long[]>> workers = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            workers.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long[] net = new long[accounts];
+                for (int i = 0; i < 1_000; i++) {
+                    int from = random.nextInt(accounts);
+                    int to = random.nextInt(accounts);
+                    long amount = random.nextLong(1, 100_00);
+                    try {
+                        transferStrategy.transfer(repository.getAccount("Id-" + from),
+                                repository.getAccount("Id-" + to), amount);
+                        net[from] -= amount;
+                        net[to] += amount;
+                    } catch (TransferRejectedException e) {
+                        // Insufficient funds
+                    }
+                }
+                return net;
+            }));
+        }
+        long[] expected = new long[accounts];
+        for (Future<long[]> worker : workers) {
+            long[] net = worker.get();
+            for (int i = 0; i < accounts; i++) {
+                expected[i] += net[i];
+            }
+        }
+        executor.shutdown();
+
+        for (int i = 0; i < accounts; i++) {
+            long balance = repository.getAccount("Id-" + i).balanceMinorUnits();
+            assertThat(balance).as("balance of Id-%d", i).isEqualTo(100_00 + expected[i]);
+            assertThat(jdbcRepository.getAccount("Id-" + i).balanceMinorUnits()).as("stored balance of Id-%d", i)
+                    .isEqualTo(balance);
+        }
+    }
+
+    private Account account(String accountId, String balance) {
+        repository.createAccount(new Account(accountId, new BigDecimal(balance)));
+        return repository.getAccount(accountId);
+    }
+
+    // Small enough that transfers keep meeting evicted accounts
+    private CachingAccountsRepository cache() {
+        AccountCacheProperties properties = new AccountCacheProperties();
+        properties.setMaximumSize(8);
+        return new CachingAccountsRepository(jdbcRepository, properties, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,149 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.repository.JournaledAccountsRepository;
+import com.dws.challenge.service.LockingTransferStrategy;
+import com.dws.challenge.service.TransferStrategy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JournaledAccountsRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recover_RestoresAccountsAndTransfers() throws Exception {
+        JournaledAccountsRepository repository = open(64 << 20);
+        TransferStrategy transferStrategy = new LockingTransferStrategy(repository);
+        repository.createAccount(new Account("Id-123", new BigDecimal("1000.00")));
+        repository.createAccount(new Account("Id-456", new BigDecimal("500.00")));
+        transferStrategy.transfer(repository.getAccount("Id-123"), repository.getAccount("Id-456"), 30_000);
+        repository.sync();
+        repository.close();
+
+        JournaledAccountsRepository recovered = open(64 << 20);
+        assertThat(recovered.getAccount("Id-123").getBalance()).isEqualByComparingTo("700.00");
+        assertThat(recovered.getAccount("Id-456").getBalance()).isEqualByComparingTo("800.00");
+        assertThatThrownBy(() -> recovered.createAccount(new Account("Id-123")))
+                .isInstanceOf(DuplicateAccountIdException.class);
+        recovered.close();
+    }
+
+    @Test
+    void recover_FromSnapshotAfterConcurrentTransfers() throws Exception {
+        // Tiny segments force many roll-overs, so most of the history ends up in snapshots
+        JournaledAccountsRepository repository = open(4096);
+        TransferStrategy transferStrategy = new LockingTransferStrategy(repository);
+        int accounts = 50;
+        for (int i = 0; i < accounts; i++) {
+            repository.createAccount(new Account("Id-" + i, new BigDecimal("100.00")));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 2_000; i++) {
+                    try {
+                        transferStrategy.transfer(repository.getAccount("Id-" + random.nextInt(accounts)),
+                                repository.getAccount("Id-" + random.nextInt(accounts)), random.nextInt(1, 500));
+                        repository.sync();
+                    } catch (IllegalArgumentException insufficientFunds) {
+                        // Expected once an account runs dry
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+
+        long[] expected = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            expected[i] = repository.getAccount("Id-" + i).balanceMinorUnits();
+        }
+        repository.close();
+
+        try (var files = Files.list(directory)) {
+            assertThat(files.anyMatch(path -> path.getFileName().toString().startsWith("snapshot-"))).isTrue();
+        }
+
+        JournaledAccountsRepository recovered = open(4096);
+        for (int i = 0; i < accounts; i++) {
+            assertThat(recovered.getAccount("Id-" + i).balanceMinorUnits()).isEqualTo(expected[i]);
+        }
+        recovered.close();
+    }
+
+    @Test
+    void recover_AfterClearAccounts() throws Exception {
+        JournaledAccountsRepository repository = open(64 << 20);
+        repository.createAccount(new Account("Id-123", new BigDecimal("1000.00")));
+        repository.clearAccounts();
+        repository.createAccount(new Account("Id-456", new BigDecimal("5.00")));
+        repository.close();
+
+        JournaledAccountsRepository recovered = open(64 << 20);
+        assertThat(recovered.getAccount("Id-123")).isNull();
+        assertThat(recovered.getAccount("Id-456").getBalance()).isEqualByComparingTo("5.00");
+        recovered.close();
+    }
+
+    @Test
+    void createAccount_RefusesAnIdTooLongForATransferRecord() throws Exception {
+        // A creation record of this id fits in the buffer, a transfer between two of them would not
+        JournaledAccountsRepository repository = new JournaledAccountsRepository(directory, false, 64 << 20, 64);
+        String accountId = "Id-" + "1".repeat(22);
+
+        assertThatThrownBy(() -> repository.createAccount(new Account(accountId, new BigDecimal("100.00"))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Account id is too long to be journaled.");
+        assertThat(repository.getAccount(accountId)).isNull();
+        repository.close();
+    }
+
+    @Test
+    void transferThatCannotBeJournaled_StopsFurtherChanges() throws Exception {
+        String from = "Id-" + "1".repeat(22);
+        String to = "Id-" + "2".repeat(22);
+        JournaledAccountsRepository repository = open(64 << 20);
+        repository.createAccount(new Account(from, new BigDecimal("100.00")));
+        repository.createAccount(new Account(to, new BigDecimal("0.00")));
+        repository.close();
+
+        // Reopened with a buffer too small for a transfer between the accounts created before
+        JournaledAccountsRepository reopened = new JournaledAccountsRepository(directory, false, 64 << 20, 64);
+        TransferStrategy transferStrategy = new LockingTransferStrategy(reopened);
+        Account accountFrom = reopened.getAccount(from);
+        Account accountTo = reopened.getAccount(to);
+        assertThatThrownBy(() -> transferStrategy.transfer(accountFrom, accountTo, 10_00))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("The transfer was applied but could not be journaled");
+        assertThatThrownBy(reopened::sync).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> reopened.createAccount(new Account("Id-3")))
+                .isInstanceOf(IllegalStateException.class);
+        reopened.close();
+
+        JournaledAccountsRepository recovered = open(64 << 20);
+        assertThat(recovered.getAccount(from).getBalance()).isEqualByComparingTo("100.00");
+        assertThat(recovered.getAccount(to).getBalance()).isEqualByComparingTo("0.00");
+        assertThat(recovered.getAccount("Id-3")).isNull();
+        recovered.close();
+    }
+
+    private JournaledAccountsRepository open(long segmentSize) throws Exception {
+        return new JournaledAccountsRepository(directory, false, segmentSize, 1 << 16);
+    }
+}
@@ -0,0 +1,245 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Three nodes, each its own JVM on localhost running the application in cluster mode with a journaled repository.
+ * Requests go to random nodes, so most of them are forwarded and most transfers cross nodes. One node is killed
+ * and restarted at the end, after which every balance must still be what the accepted transfers left.
+ */
+class LocalClusterTest {
+
+    private static final int NODES = 3;
+    private static final int ACCOUNTS = 60;
+    private static final long INITIAL_BALANCE = 100_00;
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(90);
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final Map<String, Integer> ports = new LinkedHashMap<>();
+    private final Map<String, Process> processes = new LinkedHashMap<>();
+
+    @AfterEach
+    void tearDown() {
+        processes.values().forEach(Process::destroyForcibly);
+    }
+
+    @Test
+    void transfersAcrossNodes_SurviveANodeRestart() throws Exception {
+        for (int i = 0; i < NODES; i++) {
+            ports.put("node-" + i, freePort());
+        }
+        for (String nodeId : ports.keySet()) {
+            start(nodeId);
+        }
+        for (String nodeId : ports.keySet()) {
+            awaitHealthy(nodeId);
+        }
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            HttpResponse<String> response = post(randomNode(), "/v1/accounts",
+                    "{\"accountId\":\"Id-" + i + "\",\"balance\":" + BigDecimal.valueOf(INITIAL_BALANCE, 2) + "}");
+            assertThat(response.statusCode()).isEqualTo(201);
+        }
+        assertThat(post(randomNode(), "/v1/accounts", "{\"accountId\":\"Id-0\",\"balance\":1}").statusCode())
+                .isEqualTo(400);
+        assertImportCreatesOnlyOwnAccounts();
+
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        List<Future<long[]>> workers = new ArrayList<>();
+        for (int t = 0; t < 6; t++) {
+            workers.add(executor.submit(this::transfer));
+        }
+        long[] expected = new long[ACCOUNTS];
+        for (Future<long[]> worker : workers) {
+            long[] net = worker.get();
+            for (int i = 0; i < ACCOUNTS; i++) {
+                expected[i] += net[i];
+            }
+        }
+        executor.shutdown();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            expected[i] += INITIAL_BALANCE;
+        }
+        assertBalances(expected);
+
+        // Killed without a chance to flush anything, its journals are all it comes back with
+        processes.remove("node-1").destroyForcibly().waitFor();
+        start("node-1");
+        awaitHealthy("node-1");
+        assertBalances(expected);
+    }
+
+    // Rows of accounts owned by other nodes are refused, so no account ends up on a node the others do not ask
+    private void assertImportCreatesOnlyOwnAccounts() throws Exception {
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            rows.append("{\"accountId\":\"Imported-").append(i).append("\",\"balance\":1}\n");
+        }
+        HttpResponse<String> response = post("node-0", "/v1/accounts/import", "application/x-ndjson",
+                rows.toString());
+        assertThat(response.statusCode()).isEqualTo(200);
+        JsonNode summary = objectMapper.readTree(response.body());
+        assertThat(summary.get("created").asLong() + summary.get("invalid").asLong()).isEqualTo(30);
+        assertThat(summary.get("invalid").asLong()).isPositive();
+
+        Set<String> rejected = new HashSet<>();
+        summary.get("errors").forEach(error -> rejected.add(error.get("accountId").asText()));
+        for (int i = 0; i < 30; i++) {
+            String accountId = "Imported-" + i;
+            assertThat(get("node-1", "/v1/accounts/" + accountId).body().isEmpty())
+                    .as(accountId).isEqualTo(rejected.contains(accountId));
+        }
+
+        // A snapshot cannot span nodes, accounts of other nodes are refused rather than reported missing
+        StringBuilder ids = new StringBuilder("Id-0");
+        for (int i = 1; i < ACCOUNTS; i++) {
+            ids.append(",Id-").append(i);
+        }
+        assertThat(get("node-0", "/v1/accounts?snapshot=true&ids=" + ids).statusCode()).isEqualTo(400);
+    }
+
+    private long[] transfer() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] net = new long[ACCOUNTS];
+        for (int i = 0; i < 150; i++) {
+            int from = random.nextInt(ACCOUNTS);
+            int to = random.nextInt(ACCOUNTS);
+            long amount = random.nextLong(1, INITIAL_BALANCE / 2);
+            HttpResponse<String> response = post(randomNode(), "/v1/accounts/transfer",
+                    "{\"accountFromId\":\"Id-" + from + "\",\"accountToId\":\"Id-" + to + "\",\"amount\":\""
+                            + BigDecimal.valueOf(amount, 2) + "\"}");
+            if (response.statusCode() == 200) {
+                net[from] -= amount;
+                net[to] += amount;
+            } else {
+                assertThat(response.statusCode()).as(response.body()).isEqualTo(400);
+                assertThat(response.body()).startsWith("Insufficient funds");
+            }
+        }
+        return net;
+    }
+
+    // Every node answers for every account, most of them by asking the owner
+    private void assertBalances(long[] expected) throws Exception {
+        for (String nodeId : ports.keySet()) {
+            long total = 0;
+            for (int i = 0; i < ACCOUNTS; i++) {
+                HttpResponse<String> response = get(nodeId, "/v1/accounts/Id-" + i);
+                assertThat(response.statusCode()).isEqualTo(200);
+                BigDecimal balance = objectMapper.readTree(response.body()).get("balance").decimalValue();
+                assertThat(balance.movePointRight(2).longValueExact()).as("balance of Id-%d on %s", i, nodeId)
+                        .isEqualTo(expected[i]);
+                total += expected[i];
+            }
+            assertThat(total).isEqualTo(INITIAL_BALANCE * ACCOUNTS);
+        }
+    }
+
+    private void start(String nodeId) throws IOException {
+        Path nodeDirectory = Files.createDirectories(directory.resolve(nodeId));
+        List<String> command = new ArrayList<>(List.of(
+                ProcessHandle.current().info().command().orElse("java"),
+                "-Xmx256m",
+                "-cp", System.getProperty("java.class.path"),
+                ChallengeApplication.class.getName(),
+                "--server.port=" + ports.get(nodeId),
+                "--logging.level.root=warn",
+                "--dws.repository.type=journaled",
+                "--dws.repository.journal.directory=" + nodeDirectory.resolve("journal"),
+                "--dws.repository.journal.fsync=false",
+                "--dws.cluster.enabled=true",
+                "--dws.cluster.node-id=" + nodeId,
+                "--dws.cluster.journal-directory=" + nodeDirectory.resolve("cluster"),
+                "--dws.cluster.fsync=false",
+                "--dws.cluster.rpc-timeout=10s"));
+        ports.forEach((id, port) -> command.add("--dws.cluster.nodes." + id + "=http://localhost:" + port));
+
+        processes.put(nodeId, new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(nodeDirectory.resolve("output.log").toFile()))
+                .start());
+    }
+
+    private void awaitHealthy(String nodeId) throws Exception {
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() - deadline < 0) {
+            if (!processes.get(nodeId).isAlive()) {
+                fail(nodeId + " exited:\n" + Files.readString(directory.resolve(nodeId).resolve("output.log")));
+            }
+            try {
+                if (get(nodeId, "/actuator/health").statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(200);
+        }
+        fail(nodeId + " did not start within " + STARTUP_TIMEOUT);
+    }
+
+    private String randomNode() {
+        return "node-" + ThreadLocalRandom.current().nextInt(NODES);
+    }
+
+    private HttpResponse<String> post(String nodeId, String path, String json) throws Exception {
+        return post(nodeId, path, "application/json", json);
+    }
+
+    private HttpResponse<String> post(String nodeId, String path, String contentType, String body) throws Exception {
+        return httpClient.send(HttpRequest.newBuilder(uri(nodeId, path))
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String nodeId, String path) throws Exception {
+        return httpClient.send(HttpRequest.newBuilder(uri(nodeId, path)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String nodeId, String path) {
+        return URI.create("http://localhost:" + ports.get(nodeId) + path);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.service.LockingTransferStrategy;
+import com.dws.challenge.service.Transfer;
+import com.dws.challenge.service.TransferStrategy;
+import org.junit.jupiter.api.Test;
+
+class LockingTransferStrategyTest {
+
+    private final TransferStrategy transferStrategy = new LockingTransferStrategy();
+
+    @Test
+    void transfer_DoesNotBlockOnUnrelatedAccounts() throws Exception {
+        Account busy = new Account("Id-1", new BigDecimal("100"));
+        Account accountFrom = new Account("Id-2", new BigDecimal("100"));
+        Account accountTo = new Account("Id-3", new BigDecimal("100"));
+
+        CountDownLatch done = new CountDownLatch(1);
+        busy.lock().lock();
+        try {
+            // A transfer on two other accounts must complete while Id-1 is held by someone else
+            Thread transfer = new Thread(() -> {
+                transferStrategy.transfer(accountFrom, accountTo, 1000);
+                done.countDown();
+            });
+            transfer.start();
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            busy.lock().unlock();
+        }
+
+        assertThat(accountFrom.getBalance()).isEqualByComparingTo("90");
+        assertThat(accountTo.getBalance()).isEqualByComparingTo("110");
+    }
+
+    @Test
+    void transfer_OppositeDirectionsDoNotDeadlock() throws Exception {
+        Account account1 = new Account("Id-123", new BigDecimal("1000"));
+        Account account2 = new Account("Id-456", new BigDecimal("1000"));
+        int iterations = 100_000;
+
+        // Every worker sends the money straight back, so neither account can run dry however the two interleave
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> forth = executor.submit(() -> {
+            for (int i = 0; i < iterations; i++) {
+                transferStrategy.transfer(account1, account2, 100);
+                transferStrategy.transfer(account2, account1, 100);
+            }
+        });
+        Future<?> back = executor.submit(() -> {
+            for (int i = 0; i < iterations; i++) {
+                transferStrategy.transfer(account2, account1, 100);
+                transferStrategy.transfer(account1, account2, 100);
+            }
+        });
+        executor.shutdown();
+
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        // Rethrows whatever stopped a worker early
+        forth.get();
+        back.get();
+        assertThat(account1.getBalance()).isEqualByComparingTo("1000");
+        assertThat(account2.getBalance()).isEqualByComparingTo("1000");
+    }
+
+    // Throughput is measured by TransferBenchmark, a timing assertion here would only be flaky
+    @Test
+    void transfer_ManyThreadsOnRandomAccountsKeepTheTotal() throws Exception {
+        Account[] accounts = new Account[10_000];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = new Account("Id-" + i, new BigDecimal("1000000"));
+        }
+
+        assertThat(runTransfers(accounts, Math.max(4, Runtime.getRuntime().availableProcessors()))).isPositive();
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (Account account : accounts) {
+            total = total.add(account.getBalance());
+        }
+        assertThat(total).isEqualByComparingTo(new BigDecimal(1000000L * accounts.length));
+    }
+
+    @Test
+    void transfer_HotAccountsNeitherLoseMoneyNorOverdraw() throws Exception {
+        TransferProperties properties = new TransferProperties();
+        properties.setHotAccounts(List.of("Id-house", "Id-fees"));
+        properties.setHotAccountStripes(8);
+        LockingTransferStrategy hotStrategy = new LockingTransferStrategy();
+        hotStrategy.setHotAccounts(properties);
+
+        Account house = new Account("Id-house", new BigDecimal("1000"));
+        Account fees = new Account("Id-fees", BigDecimal.ZERO);
+        Account[] accounts = new Account[20];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = new Account("Id-" + i, new BigDecimal("1000"));
+        }
+        long initial = 1000_00L * (accounts.length + 1);
+
+        // Every transfer touches a hot account; amounts are large enough that debits often need consolidation
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Future<Long> lowest = executor.submit(() -> {
+            long min = Long.MAX_VALUE;
+            while (running.get()) {
+                min = Math.min(min, Math.min(house.balanceMinorUnits(), fees.balanceMinorUnits()));
+                for (Account account : accounts) {
+                    min = Math.min(min, account.balanceMinorUnits());
+                }
+            }
+            return min;
+        });
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 50_000; i++) {
+                    Account account = accounts[random.nextInt(accounts.length)];
+                    long amount = random.nextLong(1, 20_000);
+                    try {
+                        switch (random.nextInt(5)) {
+                            case 0 -> hotStrategy.transfer(account, house, amount);
+                            case 1 -> hotStrategy.transfer(house, account, amount);
+                            case 2 -> hotStrategy.transfer(house, fees, amount);
+                            case 3 -> hotStrategy.transfer(fees, house, amount);
+                            default -> hotStrategy.transferAll(List.of(
+                                new Transfer(account, house, amount), new Transfer(house, fees, amount / 10),
+                                new Transfer(fees, account, amount / 5)));
+                        }
+                    } catch (TransferRejectedException e) {
+                        // Running out of funds is expected now and then
+                    }
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get(60, TimeUnit.SECONDS);
+        }
+        running.set(false);
+        executor.shutdown();
+
+        assertThat(house.stripedBalance()).isNotNull();
+        assertThat(fees.stripedBalance()).isNotNull();
+        assertThat(lowest.get()).isNotNegative();
+        long total = house.balanceMinorUnits() + fees.balanceMinorUnits();
+        for (Account account : accounts) {
+            total += account.balanceMinorUnits();
+            assertThat(account.stripedBalance()).isNull();
+        }
+        assertThat(total).isEqualTo(initial);
+        assertThat(Account.isSettled(house.updateStamp())).isTrue();
+    }
+
+    @Test
+    void transfer_StripesAccountsThatKeepBeingWaitedFor() throws Exception {
+        assumeTrue(Runtime.getRuntime().availableProcessors() >= 2, "Needs threads running in parallel to contend");
+        TransferProperties properties = new TransferProperties();
+        properties.setHotAccountContentions(100);
+        LockingTransferStrategy hotStrategy = new LockingTransferStrategy();
+        hotStrategy.setHotAccounts(properties);
+
+        Account hot = new Account("Id-hot", new BigDecimal("1000000"));
+        Account[] accounts = new Account[8];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = new Account("Id-" + i, new BigDecimal("1000000"));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(accounts.length);
+        for (Account account : accounts) {
+            executor.submit(() -> {
+                for (int i = 0; i < 200_000 && hot.stripedBalance() == null; i++) {
+                    hotStrategy.transfer(account, hot, 1);
+                    hotStrategy.transfer(hot, account, 1);
+                }
+                for (int i = 0; i < 10_000; i++) {
+                    hotStrategy.transfer(account, hot, 1);
+                    hotStrategy.transfer(hot, account, 1);
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(hot.stripedBalance()).isNotNull();
+        long total = hot.balanceMinorUnits();
+        for (Account account : accounts) {
+            total += account.balanceMinorUnits();
+        }
+        assertThat(total).isEqualTo(1000000_00L * (accounts.length + 1));
+    }
+
+    private long runTransfers(Account[] accounts, int threads) throws InterruptedException {
+        long durationNanos = TimeUnit.MILLISECONDS.toNanos(300);
+        LongAdder completed = new LongAdder();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() - start < durationNanos) {
+                    Account accountFrom = accounts[random.nextInt(accounts.length)];
+                    Account accountTo = accounts[random.nextInt(accounts.length)];
+                    transferStrategy.transfer(accountFrom, accountTo, 100);
+                    completed.increment();
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        return completed.sum();
+    }
+}
@@ -0,0 +1,44 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+
+import com.dws.challenge.domain.Money;
+import org.junit.jupiter.api.Test;
+
+class MoneyTest {
+
+    @Test
+    void toMinorUnits_ConvertsUsingCurrencyScale() {
+        assertThat(Money.toMinorUnits(new BigDecimal("123.45"))).isEqualTo(12_345);
+        assertThat(Money.toMinorUnits(new BigDecimal("300.0"))).isEqualTo(30_000);
+        assertThat(Money.toMinorUnits(new BigDecimal("1E+3"))).isEqualTo(100_000);
+    }
+
+    @Test
+    void toMinorUnits_RejectsTooManyDecimals() {
+        assertThatThrownBy(() -> Money.toMinorUnits(new BigDecimal("0.001")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void toMinorUnits_RejectsAmountsOutOfRange() {
+        assertThatThrownBy(() -> Money.toMinorUnits(new BigDecimal("1E+20")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void toBigDecimal_KeepsCurrencyScale() {
+        assertThat(Money.toBigDecimal(12_345)).hasToString("123.45");
+        assertThat(Money.toBigDecimal(70_000)).hasToString("700.00");
+    }
+
+    @Test
+    void add_DetectsOverflow() {
+        assertThat(Money.add(1, 2)).isEqualTo(3);
+        assertThatThrownBy(() -> Money.add(Long.MAX_VALUE, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Money.subtract(Long.MIN_VALUE, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,129 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.repository.OffHeapAccountsRepository;
+import com.dws.challenge.service.LockingTransferStrategy;
+import org.junit.jupiter.api.Test;
+
+class OffHeapAccountsRepositoryTest {
+
+    private final OffHeapAccountsRepository repository = new OffHeapAccountsRepository(16);
+
+    @Test
+    void createAccount_StoresIdAndBalance() {
+        repository.createAccount(new Account("Id-123", new BigDecimal("1000.50")));
+
+        Account account = repository.getAccount("Id-123");
+        assertThat(account.getAccountId()).isEqualTo("Id-123");
+        assertThat(account.getBalance()).isEqualByComparingTo("1000.50");
+        assertThat(repository.getAccount("Id-124")).isNull();
+    }
+
+    @Test
+    void createAccount_RejectsDuplicateId() {
+        repository.createAccount(new Account("Id-123", BigDecimal.ONE));
+
+        assertThatThrownBy(() -> repository.createAccount(new Account("Id-123", BigDecimal.TEN)))
+                .isInstanceOf(DuplicateAccountIdException.class)
+                .hasMessage("Account id Id-123 already exists!");
+        assertThat(repository.getAccount("Id-123").getBalance()).isEqualByComparingTo("1");
+    }
+
+    @Test
+    void createAccount_GrowsPastExpectedAccounts() {
+        for (int i = 0; i < 100_000; i++) {
+            repository.createAccount(new Account("Id-" + i, BigDecimal.valueOf(i)));
+        }
+
+        assertThat(repository.size()).isEqualTo(100_000);
+        for (int i = 0; i < 100_000; i += 997) {
+            assertThat(repository.getAccount("Id-" + i).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(i));
+        }
+    }
+
+    @Test
+    void createAccount_KeepsNonLatinIds() {
+        repository.createAccount(new Account("Konto-\u00c6r\u00f8", BigDecimal.ONE));
+        repository.createAccount(new Account("\u0421\u0447\u0451\u0442-1", BigDecimal.TEN));
+
+        assertThat(repository.getAccount("Konto-\u00c6r\u00f8").getBalance()).isEqualByComparingTo("1");
+        assertThat(repository.getAccount("\u0421\u0447\u0451\u0442-1").getBalance()).isEqualByComparingTo("10");
+        assertThat(repository.getAccount("\u0421\u0447\u0451\u0442-2")).isNull();
+    }
+
+    @Test
+    void getAccount_ViewsShareTheStoredBalance() {
+        repository.createAccount(new Account("Id-123", BigDecimal.TEN));
+
+        Account first = repository.getAccount("Id-123");
+        Account second = repository.getAccount("Id-123");
+        first.setBalance(new BigDecimal("42.00"));
+
+        assertThat(second.getBalance()).isEqualByComparingTo("42.00");
+        assertThat(second).isEqualTo(first);
+        assertThat(second.lock()).isSameAs(first.lock());
+    }
+
+    @Test
+    void clearAccounts_RemovesEverything() {
+        repository.createAccount(new Account("Id-123", BigDecimal.TEN));
+
+        repository.clearAccounts();
+
+        assertThat(repository.getAccount("Id-123")).isNull();
+        assertThat(repository.size()).isZero();
+        repository.createAccount(new Account("Id-123", BigDecimal.ONE));
+        assertThat(repository.getAccount("Id-123").getBalance()).isEqualByComparingTo("1");
+    }
+
+    @Test
+    void lockingTransfers_ConserveMoneyOnStripedLocks() throws Exception {
+        int accounts = 10_000;
+        for (int i = 0; i < accounts; i++) {
+            repository.createAccount(new Account("Id-" + i, new BigDecimal("100")));
+        }
+        LockingTransferStrategy transferStrategy = new LockingTransferStrategy();
+
+        // Ids are looked up on every transfer, so both sides are fresh views over the same slots
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            workers.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 50_000; i++) {
+                    Account from = repository.getAccount("Id-" + random.nextInt(accounts));
+                    Account to = repository.getAccount("Id-" + random.nextInt(accounts));
+                    try {
+                        transferStrategy.transfer(from, to, random.nextInt(1, 5_000));
+                    } catch (IllegalArgumentException e) {
+                        // Insufficient funds
+                    }
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        executor.shutdown();
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < accounts; i++) {
+            BigDecimal balance = repository.getAccount("Id-" + i).getBalance();
+            assertThat(balance).isNotNegative();
+            total = total.add(balance);
+        }
+        assertThat(total).isEqualByComparingTo(BigDecimal.valueOf(100L * accounts));
+    }
+}
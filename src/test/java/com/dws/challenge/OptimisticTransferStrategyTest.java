@@ -0,0 +1,83 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.OptimisticTransferStrategy;
+import com.dws.challenge.service.TransferStrategy;
+import org.junit.jupiter.api.Test;
+
+class OptimisticTransferStrategyTest {
+
+    private final TransferStrategy transferStrategy = new OptimisticTransferStrategy();
+
+    @Test
+    void transfer_UpdatesBalances() {
+        Account accountFrom = new Account("Id-123", new BigDecimal("1000.00"));
+        Account accountTo = new Account("Id-456", new BigDecimal("500.00"));
+
+        transferStrategy.transfer(accountFrom, accountTo, 30_000);
+
+        assertThat(accountFrom.getBalance()).isEqualByComparingTo("700.00");
+        assertThat(accountTo.getBalance()).isEqualByComparingTo("800.00");
+    }
+
+    @Test
+    void transfer_InsufficientFundsLeavesBalancesUntouched() {
+        Account accountFrom = new Account("Id-123", new BigDecimal("100.00"));
+        Account accountTo = new Account("Id-456", new BigDecimal("500.00"));
+
+        assertThatThrownBy(() -> transferStrategy.transfer(accountFrom, accountTo, 20_000))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Insufficient funds in account Id-123");
+
+        assertThat(accountFrom.getBalance()).isEqualByComparingTo("100.00");
+        assertThat(accountTo.getBalance()).isEqualByComparingTo("500.00");
+    }
+
+    @Test
+    void transfer_HotAccountConservesMoney() throws Exception {
+        // Every transfer touches the hot account, either paying into it or out of it
+        Account hot = new Account("Id-hot", new BigDecimal("1000"));
+        Account[] accounts = new Account[16];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = new Account("Id-" + i, new BigDecimal("1000"));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 50_000; i++) {
+                    Account other = accounts[random.nextInt(accounts.length)];
+                    try {
+                        if (random.nextBoolean()) {
+                            transferStrategy.transfer(other, hot, 100);
+                        } else {
+                            transferStrategy.transfer(hot, other, 100);
+                        }
+                    } catch (IllegalArgumentException insufficientFunds) {
+                        // Expected once an account runs dry
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+
+        BigDecimal total = hot.getBalance();
+        for (Account account : accounts) {
+            assertThat(account.getBalance()).isNotNegative();
+            total = total.add(account.getBalance());
+        }
+        assertThat(hot.getBalance()).isNotNegative();
+        assertThat(total).isEqualByComparingTo(new BigDecimal(17_000));
+    }
+}
@@ -0,0 +1,137 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+class ReactiveAccountsControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private AccountsService accountsService;
+
+    @BeforeEach
+    void clearAccounts() {
+        accountsService.clearAccounts();
+    }
+
+    @Test
+    void createAccount() {
+        webTestClient.post().uri("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"accountId\":\"Id-123\",\"balance\":1000}")
+                .exchange()
+                .expectStatus().isCreated();
+        webTestClient.post().uri("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"accountId\":\"Id-123\",\"balance\":1000}")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Account id Id-123 already exists!");
+
+        webTestClient.get().uri("/v1/accounts/Id-123")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("{\"accountId\":\"Id-123\",\"balance\":1000.00}");
+    }
+
+    @Test
+    void createAccountNegativeBalance() {
+        webTestClient.post().uri("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"accountId\":\"Id-123\",\"balance\":-1000}")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void transferMoney() {
+        accountsService.createAccount(new Account("Id-123", new BigDecimal("1000.00")));
+        accountsService.createAccount(new Account("Id-456", new BigDecimal("500.00")));
+
+        webTestClient.post().uri("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-456\",\"amount\":300.00}")
+                .exchange()
+                .expectStatus().isOk();
+
+        assertThat(accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("700.00");
+        assertThat(accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("800.00");
+    }
+
+    @Test
+    void transferMoney_RejectionsMatchTheServletApi() {
+        accountsService.createAccount(new Account("Id-123", new BigDecimal("100.00")));
+        accountsService.createAccount(new Account("Id-456", new BigDecimal("500.00")));
+
+        webTestClient.post().uri("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-456\",\"amount\":\"abc\"}")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Invalid transfer amount.");
+        webTestClient.post().uri("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-456\",\"amount\":200.00}")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Insufficient funds in account Id-123");
+        webTestClient.post().uri("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-999\",\"amount\":1.00}")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("Both accounts must exist.");
+
+        assertThat(accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    void transferMoney_IdempotencyKeyReplaysFirstOutcome() {
+        accountsService.createAccount(new Account("Id-123", new BigDecimal("1000.00")));
+        accountsService.createAccount(new Account("Id-456", new BigDecimal("500.00")));
+        String transfer = "{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-456\",\"amount\":300.00}";
+
+        webTestClient.post().uri("/v1/accounts/transfer").header("Idempotency-Key", "reactive-retry-1")
+                .contentType(MediaType.APPLICATION_JSON).bodyValue(transfer)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist("Idempotent-Replayed");
+        webTestClient.post().uri("/v1/accounts/transfer").header("Idempotency-Key", "reactive-retry-1")
+                .contentType(MediaType.APPLICATION_JSON).bodyValue(transfer)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("Idempotent-Replayed", "true");
+
+        assertThat(accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("700.00");
+    }
+
+    @Test
+    void streamTransactions() {
+        accountsService.createAccount(new Account("Id-Reactive-1", new BigDecimal("100.00")));
+        accountsService.createAccount(new Account("Id-Reactive-2", new BigDecimal("100.00")));
+        accountsService.transferMoney("Id-Reactive-1", "Id-Reactive-2", new BigDecimal("10.00"));
+        accountsService.transferMoney("Id-Reactive-2", "Id-Reactive-1", new BigDecimal("4.00"));
+
+        String body = webTestClient.get().uri("/v1/accounts/Id-Reactive-1/transactions:stream")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class).returnResult().getResponseBody();
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).contains("\"accountFromId\":\"Id-Reactive-2\"", "\"amount\":4.00");
+        assertThat(lines[1]).contains("\"accountFromId\":\"Id-Reactive-1\"", "\"amount\":10.00");
+
+        webTestClient.get().uri("/v1/accounts/Id-Reactive-9/transactions:stream")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody(String.class).isEqualTo("Account Id-Reactive-9 does not exist.");
+    }
+}
@@ -0,0 +1,124 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.ShardedTransferStrategy;
+import com.dws.challenge.service.Transfer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ShardedTransferStrategyTest {
+
+    private final ShardedTransferStrategy transferStrategy = new ShardedTransferStrategy(4);
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        transferStrategy.shutdown();
+    }
+
+    @Test
+    void transfer_InsufficientFundsLeavesBalancesUntouched() {
+        Account accountFrom = new Account("Id-123", new BigDecimal("100.00"));
+        Account accountTo = new Account("Id-456", new BigDecimal("500.00"));
+
+        assertThatThrownBy(() -> transferStrategy.transfer(accountFrom, accountTo, 20_000))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Insufficient funds in account Id-123");
+        transferStrategy.transfer(accountFrom, accountTo, 10_000);
+
+        assertThat(accountFrom.getBalance()).isEqualByComparingTo("0.00");
+        assertThat(accountTo.getBalance()).isEqualByComparingTo("600.00");
+    }
+
+    @Test
+    void transferAsync_ConservesMoneyAcrossShards() {
+        Account[] accounts = new Account[64];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = new Account("Id-" + i, new BigDecimal("100"));
+        }
+
+        // Fire everything at once, many transfers will be refused for lack of funds
+        List<CompletableFuture<Void>> transfers = new ArrayList<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 200_000; i++) {
+            Account from = accounts[random.nextInt(accounts.length)];
+            Account to = accounts[random.nextInt(accounts.length)];
+            transfers.add(transferStrategy.transferAsync(from, to, random.nextInt(1, 5_000)));
+        }
+        long refused = transfers.stream().filter(transfer -> {
+            try {
+                transfer.join();
+                return false;
+            } catch (CompletionException e) {
+                return true;
+            }
+        }).count();
+
+        long total = 0;
+        for (Account account : accounts) {
+            assertThat(account.balanceMinorUnits()).isNotNegative();
+            total += account.balanceMinorUnits();
+        }
+        assertThat(total).isEqualTo(accounts.length * 10_000L);
+        assertThat(refused).isLessThan(transfers.size());
+    }
+
+    @Test
+    void shard_SurvivesAnErrorAndFailsOnlyItsTransfer() throws InterruptedException {
+        AtomicBoolean failNext = new AtomicBoolean(true);
+        ShardedTransferStrategy failing = new ShardedTransferStrategy(1,
+                (accountFrom, accountTo, amount, fromBalance, toBalance) -> {
+                    if (failNext.getAndSet(false)) {
+                        throw new StackOverflowError("listener");
+                    }
+                });
+        try {
+            Account accountFrom = new Account("Id-123", new BigDecimal("100.00"));
+            Account accountTo = new Account("Id-456", new BigDecimal("0.00"));
+
+            assertThat(failing.transferAsync(accountFrom, accountTo, 10_00))
+                    .failsWithin(5, TimeUnit.SECONDS)
+                    .withThrowableOfType(ExecutionException.class)
+                    .withCauseInstanceOf(StackOverflowError.class);
+            assertThat(failing.transferAsync(accountFrom, accountTo, 10_00)).succeedsWithin(5, TimeUnit.SECONDS);
+            assertThat(accountTo.getBalance()).isEqualByComparingTo("20.00");
+        } finally {
+            failing.shutdown();
+        }
+    }
+
+    @Test
+    void transferAll_RejectsWholeBatchAcrossShards() {
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            accounts.add(new Account("Id-" + i, new BigDecimal("10.00")));
+        }
+        // Everybody pays the next account, the last transfer asks for more than Id-7 will have
+        List<Transfer> transfers = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            transfers.add(new Transfer(accounts.get(i), accounts.get(i + 1), 500));
+        }
+        transfers.add(new Transfer(accounts.get(7), accounts.get(0), 2_000));
+
+        assertThatThrownBy(() -> transferStrategy.transferAll(transfers))
+                .hasMessage("Insufficient funds in account Id-7");
+        assertThat(accounts).allSatisfy(account -> assertThat(account.getBalance()).isEqualByComparingTo("10.00"));
+
+        transfers.set(7, new Transfer(accounts.get(7), accounts.get(0), 1_500));
+        transferStrategy.transferAll(transfers);
+        assertThat(accounts.get(0).getBalance()).isEqualByComparingTo("20.00");
+        assertThat(accounts.get(7).getBalance()).isEqualByComparingTo("0.00");
+    }
+}
@@ -0,0 +1,121 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.StripedBalance;
+import org.junit.jupiter.api.Test;
+
+class StripedBalanceTest {
+
+    @Test
+    void stripeBalance_KeepsTheBalance() {
+        Account account = new Account("Id-123", new BigDecimal("100.25"));
+        account.stripeBalance(6);
+
+        StripedBalance stripes = account.stripedBalance();
+        assertThat(stripes.count()).isEqualTo(8);
+        assertThat(account.getBalance()).isEqualByComparingTo("100.25");
+        assertThat(Account.isSettled(account.updateStamp())).isTrue();
+    }
+
+    @Test
+    void storeBalance_CollapsesTheStripes() {
+        Account account = new Account("Id-123", new BigDecimal("100.25"));
+        account.stripeBalance(4);
+        account.stripedBalance().settle(account.stripedBalance().credit(75));
+
+        account.storeBalance(account.balanceMinorUnits() + 1_00);
+
+        assertThat(account.stripedBalance()).isNull();
+        assertThat(account.getBalance()).isEqualByComparingTo("102.00");
+    }
+
+    @Test
+    void debit_ConsolidatesWhenNoStripeHoldsEnough() throws Exception {
+        Account account = new Account("Id-123", BigDecimal.ZERO);
+        account.stripeBalance(4);
+        StripedBalance stripes = account.stripedBalance();
+
+        // Credits from several threads land on several stripes
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> credits = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            credits.add(executor.submit(() -> stripes.settle(stripes.credit(100))));
+        }
+        for (Future<?> credit : credits) {
+            credit.get();
+        }
+        executor.shutdown();
+
+        int stripe = stripes.debit(700);
+        assertThat(stripe).isNotNegative();
+        assertThat(Account.isSettled(account.updateStamp())).isFalse();
+        stripes.settle(stripe);
+        assertThat(stripes.sum()).isEqualTo(100);
+
+        assertThat(stripes.debit(101)).isEqualTo(-1);
+        assertThat(stripes.sum()).isEqualTo(100);
+        assertThat(Account.isSettled(account.updateStamp())).isTrue();
+    }
+
+    @Test
+    void debit_NeverOverdrawsUnderConcurrency() throws Exception {
+        Account account = new Account("Id-123", new BigDecimal("100"));
+        account.stripeBalance(8);
+        StripedBalance stripes = account.stripedBalance();
+        long initial = stripes.sum();
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Future<Long> lowest = executor.submit(() -> {
+            long min = Long.MAX_VALUE;
+            while (running.get()) {
+                min = Math.min(min, stripes.sum());
+            }
+            return min;
+        });
+        List<Future<Long>> nets = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            nets.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long net = 0;
+                for (int i = 0; i < 100_000; i++) {
+                    long amount = random.nextLong(1, 2_000);
+                    if (random.nextBoolean()) {
+                        stripes.settle(stripes.credit(amount));
+                        net += amount;
+                    } else {
+                        int stripe = stripes.debit(amount);
+                        if (stripe >= 0) {
+                            stripes.settle(stripe);
+                            net -= amount;
+                        }
+                    }
+                }
+                return net;
+            }));
+        }
+        long total = initial;
+        for (Future<Long> net : nets) {
+            total += net.get(30, TimeUnit.SECONDS);
+        }
+        running.set(false);
+        executor.shutdown();
+
+        assertThat(lowest.get()).isNotNegative();
+        assertThat(stripes.sum()).isEqualTo(total);
+        assertThat(Account.isSettled(account.updateStamp())).isTrue();
+    }
+}
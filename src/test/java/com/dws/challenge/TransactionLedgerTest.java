@@ -0,0 +1,117 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Transaction;
+import com.dws.challenge.repository.TransactionLedger;
+import com.dws.challenge.service.LockingTransferStrategy;
+import com.dws.challenge.service.OptimisticTransferStrategy;
+import com.dws.challenge.service.TransferStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+class TransactionLedgerTest {
+
+    private final TransactionLedger ledger = new TransactionLedger();
+
+    @Test
+    void transactions_PagesBackwardsFromCursor() {
+        TransferStrategy transferStrategy = new LockingTransferStrategy(ledger);
+        Account account1 = new Account("Id-123", new BigDecimal("1000"));
+        Account account2 = new Account("Id-456", new BigDecimal("1000"));
+        Account account3 = new Account("Id-789", new BigDecimal("1000"));
+        for (int i = 1; i <= 10; i++) {
+            transferStrategy.transfer(account1, i % 2 == 0 ? account2 : account3, i * 100L);
+        }
+
+        List<Transaction> newest = ledger.transactions("Id-456", Long.MAX_VALUE, 3);
+        assertThat(newest).extracting(Transaction::id).containsExactly(10L, 8L, 6L);
+        assertThat(newest.get(0).amount()).isEqualByComparingTo("10.00");
+        assertThat(newest.get(0).accountFromBalance()).isEqualByComparingTo("945.00");
+        assertThat(newest.get(0).accountToBalance()).isEqualByComparingTo("1030.00");
+
+        assertThat(ledger.transactions("Id-456", 6L, 3)).extracting(Transaction::id).containsExactly(4L, 2L);
+        assertThat(ledger.transactions("Id-123", Long.MAX_VALUE, 100)).hasSize(10);
+        assertThat(ledger.stream("Id-789", Long.MAX_VALUE)).extracting(Transaction::id)
+                .containsExactly(9L, 7L, 5L, 3L, 1L);
+        assertThat(ledger.transactions("Id-000", Long.MAX_VALUE, 10)).isEmpty();
+    }
+
+    @Test
+    void clear_StartsRecreatedAccountsWithAnEmptyHistory() {
+        TransferStrategy transferStrategy = new LockingTransferStrategy(ledger);
+        transferStrategy.transfer(new Account("Id-123", new BigDecimal("1000")),
+                new Account("Id-456", new BigDecimal("1000")), 100L);
+
+        ledger.clear();
+        assertThat(ledger.transactions("Id-123", Long.MAX_VALUE, 10)).isEmpty();
+
+        transferStrategy.transfer(new Account("Id-456", new BigDecimal("1000")),
+                new Account("Id-123", new BigDecimal("1000")), 200L);
+        assertThat(ledger.transactions("Id-123", Long.MAX_VALUE, 10)).extracting(Transaction::id)
+                .containsExactly(2L);
+        assertThat(ledger.stream("Id-456", Long.MAX_VALUE).findFirst().orElseThrow().accountFromId())
+                .isEqualTo("Id-456");
+    }
+
+    @Test
+    void oldestChunk_DropsOutOnceTheRingIsFull() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // Rounded up to the smallest ring, two chunks of 65536
+        TransactionLedger small = new TransactionLedger(1, Clock.systemUTC(), meterRegistry);
+        Account account1 = new Account("Id-123", new BigDecimal("1000"));
+        Account account2 = new Account("Id-456", new BigDecimal("1000"));
+        int transfers = 3 * 65536 + 10;
+        for (int i = 0; i < transfers; i++) {
+            small.onTransfer(account1, account2, 1, 1000, 1000);
+        }
+
+        // The third and fourth chunks replaced the first two
+        long[] ids = small.stream("Id-123", Long.MAX_VALUE).mapToLong(Transaction::id).toArray();
+        assertThat(ids).hasSize(65536 + 10);
+        assertThat(ids[0]).isEqualTo(transfers);
+        assertThat(ids[ids.length - 1]).isEqualTo(2 * 65536 + 1);
+        assertThat(small.transactions("Id-456", 2 * 65536 + 3, 10)).extracting(Transaction::id)
+                .containsExactly(2 * 65536 + 2L, 2 * 65536 + 1L);
+        assertThat(small.transactions("Id-456", 65536 + 100, 10)).isEmpty();
+        assertThat(small.size()).isEqualTo(transfers);
+        assertThat(meterRegistry.get("ledger.transactions.dropped").functionCounter().count()).isZero();
+    }
+
+    @Test
+    void stream_CoversConcurrentHistoryInOrder() throws Exception {
+        TransferStrategy transferStrategy = new OptimisticTransferStrategy(ledger);
+        Account hot = new Account("Id-Hot", new BigDecimal("1000000"));
+        int threads = 8;
+        int transfersPerThread = 5_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            Account other = new Account("Id-" + t, new BigDecimal("1000000"));
+            executor.submit(() -> {
+                for (int i = 0; i < transfersPerThread; i++) {
+                    transferStrategy.transfer(hot, other, 1);
+                    transferStrategy.transfer(other, hot, 1);
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        // Pages of the stream are stitched together by id, nothing may be skipped or repeated
+        long[] ids = ledger.stream("Id-Hot", Long.MAX_VALUE).mapToLong(Transaction::id).toArray();
+        assertThat(ids).hasSize(threads * transfersPerThread * 2);
+        for (int i = 1; i < ids.length; i++) {
+            assertThat(ids[i]).isLessThan(ids[i - 1]);
+        }
+        assertThat(ledger.size()).isEqualTo(ids.length);
+    }
+}
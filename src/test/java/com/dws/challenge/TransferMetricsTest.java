@@ -0,0 +1,135 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dws.challenge.config.MetricsProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BatchMode;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.HotAccountTracker;
+import com.dws.challenge.service.HotAccountTracker.HotAccount;
+import com.dws.challenge.service.LockingTransferStrategy;
+import com.dws.challenge.service.TransferMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+class TransferMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TransferMetrics transferMetrics = new TransferMetrics(meterRegistry, new MetricsProperties());
+
+    @Test
+    void transferMoney_RecordsLatencyAndRejectionReasons() {
+        AccountsService accountsService = new AccountsService(new AccountsRepositoryInMemory(), (account, description) -> {
+        });
+        accountsService.setTransferMetrics(transferMetrics);
+        accountsService.createAccount(new Account("Id-123", new BigDecimal("100")));
+        accountsService.createAccount(new Account("Id-456", new BigDecimal("100")));
+
+        accountsService.transferMoney("Id-123", "Id-456", new BigDecimal("10"));
+        assertThatThrownBy(() -> accountsService.transferMoney("Id-123", "Id-456", new BigDecimal("1000")))
+                .hasMessage("Insufficient funds in account Id-123");
+        assertThatThrownBy(() -> accountsService.transferMoney("Id-123", "Id-000", new BigDecimal("10")))
+                .hasMessage("Both accounts must exist.");
+        assertThatThrownBy(() -> accountsService.transferMoney("Id-123", "Id-456", new BigDecimal("-1")))
+                .hasMessage("Transfer amount must be positive.");
+        assertThatThrownBy(() -> accountsService.transferMoney("Id-123", "Id-456", new BigDecimal("0.001")))
+                .hasMessage("Invalid transfer amount.");
+
+        assertThat(meterRegistry.get("transfers.latency").tag("outcome", "completed").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("transfers.latency").tag("outcome", "rejected").timer().count()).isEqualTo(2);
+        assertThat(rejections("insufficient_funds")).isEqualTo(1);
+        assertThat(rejections("account_not_found")).isEqualTo(1);
+        assertThat(rejections("invalid_amount")).isEqualTo(2);
+    }
+
+    @Test
+    void transferBatch_RecordsLatencyOfEveryTransfer() {
+        AccountsService accountsService = new AccountsService(new AccountsRepositoryInMemory(), (account, description) -> {
+        });
+        accountsService.setTransferMetrics(transferMetrics);
+        accountsService.createAccount(new Account("Id-123", new BigDecimal("100")));
+        accountsService.createAccount(new Account("Id-456", new BigDecimal("100")));
+        accountsService.createAccount(new Account("Id-789", new BigDecimal("100")));
+
+        accountsService.transferBatch(List.of(
+                new TransferRequest("Id-123", "Id-456", new BigDecimal("10")),
+                new TransferRequest("Id-789", "Id-000", new BigDecimal("10")),
+                new TransferRequest("Id-456", "Id-789", new BigDecimal("10"))), BatchMode.BEST_EFFORT);
+        accountsService.transferBatch(List.of(
+                new TransferRequest("Id-123", "Id-456", new BigDecimal("10")),
+                new TransferRequest("Id-456", "Id-789", new BigDecimal("10"))), BatchMode.ATOMIC);
+
+        assertThat(meterRegistry.get("transfers.latency").tag("outcome", "completed").timer().count()).isEqualTo(4);
+        assertThat(meterRegistry.get("transfers.latency").tag("outcome", "rejected").timer().count()).isEqualTo(1);
+        assertThat(rejections("account_not_found")).isEqualTo(1);
+    }
+
+    @Test
+    void transfer_RecordsContendedLockWait() throws Exception {
+        LockingTransferStrategy transferStrategy = new LockingTransferStrategy();
+        transferStrategy.setTransferMetrics(transferMetrics);
+        Account hot = new Account("Id-Hot", new BigDecimal("100"));
+        Account other = new Account("Id-Other", new BigDecimal("100"));
+
+        hot.lock().lock();
+        Thread transfer = new Thread(() -> transferStrategy.transfer(other, hot, 100));
+        try {
+            transfer.start();
+            while (!hot.lock().hasQueuedThreads()) {
+                Thread.onSpinWait();
+            }
+        } finally {
+            hot.lock().unlock();
+        }
+        transfer.join();
+
+        assertThat(meterRegistry.get("transfers.lock.wait").timer().count()).isEqualTo(1);
+        assertThat(transferMetrics.hotAccounts()).extracting(HotAccount::accountId).containsExactly("Id-Hot");
+    }
+
+    @Test
+    void hotAccountTracker_KeepsHeavyHittersWhenFull() {
+        // 2500 records over 10 counters: anything seen more than 250 times is guaranteed to be kept
+        HotAccountTracker tracker = new HotAccountTracker(10);
+        for (int i = 0; i < 1000; i++) {
+            tracker.record("Id-Hot", 1);
+            if (i % 2 == 0) {
+                tracker.record("Id-Warm", 1);
+            }
+            tracker.record("Id-Cold-" + i, 1);
+        }
+
+        assertThat(tracker.top(2)).extracting(HotAccount::accountId).containsExactly("Id-Hot", "Id-Warm");
+        assertThat(tracker.top(1).get(0).contentions()).isEqualTo(1000);
+    }
+
+    @Test
+    void hotAccountTracker_HalvesCountsEveryWindow() {
+        AtomicLong now = new AtomicLong();
+        HotAccountTracker tracker = new HotAccountTracker(10, 1_000, now::get);
+        for (int i = 0; i < 100; i++) {
+            tracker.record("Id-Hot", 1);
+        }
+        tracker.record("Id-Once", 1);
+
+        now.set(1_000);
+        assertThat(tracker.top(10)).extracting(HotAccount::accountId).containsExactly("Id-Hot");
+        assertThat(tracker.record("Id-Hot", 1)).isEqualTo(51);
+
+        // Counts of accounts no longer waited for fade out
+        now.set(10_000);
+        assertThat(tracker.top(10)).isEmpty();
+    }
+
+    private double rejections(String reason) {
+        return meterRegistry.get("transfers.rejected").tag("reason", reason).counter().count();
+    }
+}
@@ -0,0 +1,211 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.TransferScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class TransferSchedulerTest {
+
+    private final AtomicLong now = new AtomicLong(Instant.parse("2026-01-01T00:00:00Z").toEpochMilli());
+    private final AccountsService accountsService = new AccountsService(new AccountsRepositoryInMemory(),
+            (account, description) -> {
+            });
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TransferScheduler scheduler = new TransferScheduler(accountsService, Duration.ofMillis(10), 1_000,
+            now::get, meterRegistry);
+
+    @AfterEach
+    void tearDown() throws Exception {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void scheduledTransfer_RunsAtItsTimeAndNotBefore() {
+        account("Id-1", "100.00");
+        account("Id-2", "0.00");
+
+        scheduler.schedule("Id-1", "Id-2", 30_00, at(1_000));
+        advance(995);
+        assertThat(balance("Id-1")).isEqualTo(100_00);
+        assertThat(scheduler.pendingCount()).isEqualTo(1);
+
+        advance(5);
+        assertThat(balance("Id-1")).isEqualTo(70_00);
+        assertThat(balance("Id-2")).isEqualTo(30_00);
+        assertThat(scheduler.pendingCount()).isZero();
+        assertThat(executed("completed")).isEqualTo(1);
+    }
+
+    @Test
+    void transferDueInThePast_RunsWithTheNextTick() {
+        account("Id-1", "100.00");
+        account("Id-2", "0.00");
+
+        scheduler.schedule("Id-1", "Id-2", 30_00, at(-60_000));
+        advance(10);
+
+        assertThat(balance("Id-2")).isEqualTo(30_00);
+    }
+
+    @Test
+    void farFutureTransfers_CascadeDownToTheirTick() {
+        account("Id-1", "100.00");
+        account("Id-2", "0.00");
+        // From the lowest level of the wheel to beyond its top one
+        long[] delays = {20, 1_000, Duration.ofHours(1).toMillis(), Duration.ofDays(40).toMillis(),
+                Duration.ofDays(365L * 30).toMillis()};
+        for (long delay : delays) {
+            scheduler.schedule("Id-1", "Id-2", 1_00, at(delay));
+        }
+
+        long elapsed = 0;
+        for (int i = 0; i < delays.length; i++) {
+            advance(delays[i] - 10 - elapsed);
+            assertThat(balance("Id-2")).as("before %d ms", delays[i]).isEqualTo(i * 1_00L);
+            advance(10);
+            assertThat(balance("Id-2")).as("at %d ms", delays[i]).isEqualTo((i + 1) * 1_00L);
+            elapsed = delays[i];
+        }
+    }
+
+    @Test
+    void transfersDueTogether_RunInTheOrderTheyWereScheduled() {
+        account("Id-1", "100.00");
+        account("Id-2", "0.00");
+        account("Id-3", "0.00");
+
+        scheduler.schedule("Id-1", "Id-2", 60_00, at(1_001));
+        scheduler.schedule("Id-1", "Id-3", 60_00, at(1_001));
+        scheduler.schedule("Id-1", "Id-3", 40_00, at(1_000));
+        advance(1_010);
+
+        // The earlier execution time goes first, then the first one scheduled; the second 60.00 is refused
+        assertThat(balance("Id-2")).isEqualTo(60_00);
+        assertThat(balance("Id-3")).isEqualTo(40_00);
+        assertThat(executed("completed")).isEqualTo(2);
+        assertThat(executed("failed")).isEqualTo(1);
+
+        // Refused transfers are not retried
+        accountsService.getAccount("Id-1").storeBalance(100_00);
+        advance(1_000);
+        assertThat(balance("Id-3")).isEqualTo(40_00);
+    }
+
+    @Test
+    void cancel_OnlyByThePayingAccountAndWhilePending() {
+        account("Id-1", "100.00");
+        account("Id-2", "0.00");
+
+        ScheduledTransfer scheduled = scheduler.schedule("Id-1", "Id-2", 30_00, at(1_000));
+        assertThat(scheduler.cancel("Id-2", scheduled.id())).isFalse();
+        assertThat(scheduler.cancel("Id-1", scheduled.id())).isTrue();
+        assertThat(scheduler.cancel("Id-1", scheduled.id())).isFalse();
+
+        ScheduledTransfer executed = scheduler.schedule("Id-1", "Id-2", 30_00, at(1_000));
+        advance(1_000);
+        assertThat(scheduler.cancel("Id-1", executed.id())).isFalse();
+        assertThat(balance("Id-2")).isEqualTo(30_00);
+    }
+
+    @Test
+    void pending_ListsThePayingAccountsTransfersEarliestFirst() {
+        account("Id-1", "100.00");
+        account("Id-2", "0.00");
+
+        ScheduledTransfer later = scheduler.schedule("Id-1", "Id-2", 2_00, at(2_000));
+        ScheduledTransfer earlier = scheduler.schedule("Id-1", "Id-2", 1_50, at(1_000));
+        scheduler.schedule("Id-2", "Id-1", 1_00, at(1_000));
+
+        assertThat(scheduler.pending("Id-1", 10)).containsExactly(earlier, later);
+        assertThat(earlier.amount()).isEqualByComparingTo("1.50");
+        assertThat(earlier.executeAt()).isEqualTo(at(1_000));
+        assertThat(scheduler.pending("Id-1", 1)).containsExactly(earlier);
+        assertThat(scheduler.pending("Id-3", 10)).isEmpty();
+
+        advance(1_000);
+        assertThat(scheduler.pending("Id-1", 10)).containsExactly(later);
+        assertThat(scheduler.pending("Id-2", 10)).isEmpty();
+    }
+
+    @Test
+    void schedule_RejectsUnknownAccountsAndNonPositiveAmounts() {
+        account("Id-1", "100.00");
+
+        assertThatThrownBy(() -> scheduler.schedule("Id-1", "Id-404", 1_00, at(1_000)))
+                .isInstanceOf(TransferRejectedException.class)
+                .hasMessage("Both accounts must exist.");
+        assertThatThrownBy(() -> scheduler.schedule("Id-1", "Id-1", 0, at(1_000)))
+                .isInstanceOf(TransferRejectedException.class)
+                .hasMessage("Transfer amount must be positive.");
+        assertThat(scheduler.pendingCount()).isZero();
+    }
+
+    @Test
+    void manyPendingTransfers_RunInBatches() {
+        int accounts = 100;
+        for (int i = 0; i < accounts; i++) {
+            account("Id-" + i, "1000.00");
+        }
+
+        // A salary run: one payer, transfers spread over a few seconds, every third one cancelled again
+        account("Payer", "1000000.00");
+        List<ScheduledTransfer> scheduled = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            scheduled.add(scheduler.schedule("Payer", "Id-" + i % accounts, 1, at(1 + i % 5_000)));
+        }
+        for (int i = 0; i < scheduled.size(); i += 3) {
+            assertThat(scheduler.cancel("Payer", scheduled.get(i).id())).isTrue();
+        }
+        int remaining = 100_000 - 33_334;
+        assertThat(scheduler.pendingCount()).isEqualTo(remaining);
+
+        advance(5_000);
+
+        assertThat(scheduler.pendingCount()).isZero();
+        assertThat(executed("completed")).isEqualTo(remaining);
+        assertThat(balance("Payer")).isEqualTo(1_000_000_00L - remaining);
+        long received = 0;
+        for (int i = 0; i < accounts; i++) {
+            received += balance("Id-" + i) - 1_000_00;
+        }
+        assertThat(received).isEqualTo(remaining);
+    }
+
+    private void account(String accountId, String balance) {
+        accountsService.createAccount(new Account(accountId, new BigDecimal(balance)));
+    }
+
+    private long balance(String accountId) {
+        return accountsService.getAccount(accountId).balanceMinorUnits();
+    }
+
+    private Instant at(long delayMillis) {
+        return Instant.ofEpochMilli(now.get() + delayMillis);
+    }
+
+    // Moves the clock and runs what came due, whether or not the scheduler's own thread got to it first
+    private void advance(long millis) {
+        now.addAndGet(millis);
+        scheduler.runDue();
+    }
+
+    private double executed(String result) {
+        return meterRegistry.get("transfers.scheduled.executed").tag("result", result).counter().count();
+    }
+}
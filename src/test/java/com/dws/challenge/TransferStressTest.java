@@ -0,0 +1,326 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import com.dws.challenge.config.AccountCacheProperties;
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountBalances;
+import com.dws.challenge.domain.BatchMode;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.exception.SnapshotUnavailableException;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.CachingAccountsRepository;
+import com.dws.challenge.repository.JdbcAccountsRepository;
+import com.dws.challenge.repository.JournaledAccountsRepository;
+import com.dws.challenge.repository.OffHeapAccountsRepository;
+import com.dws.challenge.repository.TransferListener;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.LockingTransferStrategy;
+import com.dws.challenge.service.OptimisticTransferStrategy;
+import com.dws.challenge.service.ShardedTransferStrategy;
+import com.dws.challenge.service.TransferStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * Random transfers from many threads against every repository and transfer strategy: uniform pairs, one pair of
+ * accounts paid back and forth in opposite directions, self-transfers, a hot account and atomic batches. Checks that
+ * <ul>
+ *   <li>every final balance is the initial one plus exactly the transfers reported as done, so no update was lost
+ *   or applied by a rejected transfer, and the total is conserved</li>
+ *   <li>no balance is ever seen negative, and snapshots taken during the run add up to the total</li>
+ *   <li>the journal replays to the same balances, and the database behind the account cache holds them</li>
+ *   <li>the run finishes before a watchdog, which otherwise fails with a dump of the deadlocked threads</li>
+ * </ul>
+ * Sized by the stress.transfers, stress.accounts, stress.threads and stress.timeout-seconds system properties;
+ * the test task runs a short version, {@code ./gradlew stressTest} millions of transfers per combination.
+ */
+class TransferStressTest {
+
+    private static final int TRANSFERS = Integer.getInteger("stress.transfers", 50_000);
+    private static final int THREADS = Integer.getInteger("stress.threads",
+            Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+    private static final long TIMEOUT_SECONDS = Long.getLong("stress.timeout-seconds", 120);
+    private static final long INITIAL_BALANCE = 1_000_00;
+
+    @TempDir
+    Path directory;
+
+    private EmbeddedDatabase database;
+
+    @AfterEach
+    void tearDown() {
+        if (database != null) {
+            database.shutdown();
+        }
+    }
+
+    static Stream<Arguments> setups() {
+        int[] accountCounts = Arrays.stream(System.getProperty("stress.accounts", "2,64,5000").split(","))
+                .mapToInt(count -> Integer.parseInt(count.trim()))
+                .toArray();
+        List<Arguments> setups = new ArrayList<>();
+        for (String repository : List.of("memory", "journaled", "offheap", "jdbc")) {
+            for (String strategy : List.of("locking", "striped", "optimistic", "sharded")) {
+                for (int accounts : accountCounts) {
+                    setups.add(Arguments.of(repository, strategy, accounts));
+                }
+            }
+        }
+        return setups.stream();
+    }
+
+    @ParameterizedTest(name = "{0} repository, {1} strategy, {2} accounts")
+    @MethodSource("setups")
+    void transfers_KeepInvariants(String repositoryType, String strategyType, int accounts) throws Exception {
+        AccountsRepository repository = repository(repositoryType, accounts);
+        TransferStrategy transferStrategy = transferStrategy(strategyType,
+                repository instanceof TransferListener listener ? listener : TransferListener.NONE);
+        AccountsService accountsService = new AccountsService(repository, (account, description) -> { });
+        accountsService.setTransferStrategy(transferStrategy);
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            ids.add("Id-" + i);
+            accountsService.createAccount(new Account("Id-" + i, Money.toBigDecimal(INITIAL_BALANCE)));
+        }
+        long total = INITIAL_BALANCE * accounts;
+
+        AtomicInteger workerIds = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1,
+                task -> new Thread(task, "stress-worker-" + workerIds.getAndIncrement()));
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<long[]>> workers = new ArrayList<>();
+        try {
+            Future<Observations> observer = executor.submit(() -> observe(accountsService, ids, total, running));
+            for (int t = 0; t < THREADS; t++) {
+                int worker = t;
+                workers.add(executor.submit(() -> transfer(accountsService, accounts, worker)));
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+            long[] net = new long[accounts];
+            for (Future<long[]> worker : workers) {
+                long remaining = deadline - System.nanoTime();
+                if (!awaitDone(worker, remaining)) {
+                    fail("Transfers did not finish within " + TIMEOUT_SECONDS + "s\n" + threadDump());
+                }
+                long[] workerNet = worker.get();
+                for (int i = 0; i < accounts; i++) {
+                    net[i] += workerNet[i];
+                }
+            }
+            running.set(false);
+            Observations observations = observer.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertThat(observations.lowest).isNotNegative();
+            long sum = 0;
+            for (int i = 0; i < accounts; i++) {
+                long balance = repository.getAccount(ids.get(i)).balanceMinorUnits();
+                assertThat(balance).as("balance of %s", ids.get(i)).isEqualTo(INITIAL_BALANCE + net[i]);
+                sum += balance;
+            }
+            assertThat(sum).isEqualTo(total);
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+            if (transferStrategy instanceof ShardedTransferStrategy sharded) {
+                sharded.shutdown();
+            }
+        }
+
+        if (repository instanceof JournaledAccountsRepository journaled) {
+            journaled.close();
+            JournaledAccountsRepository recovered = new JournaledAccountsRepository(directory, false, 64 << 20, 1 << 16);
+            for (String id : ids) {
+                assertThat(recovered.getAccount(id).balanceMinorUnits()).as("recovered balance of %s", id)
+                        .isEqualTo(repository.getAccount(id).balanceMinorUnits());
+            }
+            recovered.close();
+        }
+        if (repository instanceof CachingAccountsRepository) {
+            JdbcAccountsRepository stored = new JdbcAccountsRepository(new JdbcTemplate(database));
+            for (String id : ids) {
+                assertThat(stored.getAccount(id).balanceMinorUnits()).as("stored balance of %s", id)
+                        .isEqualTo(repository.getAccount(id).balanceMinorUnits());
+            }
+        }
+    }
+
+    // Returns the balance change of every account from the transfers that were reported as done
+    private static long[] transfer(AccountsService accountsService, int accounts, int worker) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] net = new long[accounts];
+        for (int i = 0; i < TRANSFERS / THREADS; i++) {
+            int from = random.nextInt(accounts);
+            int to = random.nextInt(accounts);
+            switch (random.nextInt(10)) {
+                case 5, 6 -> {
+                    // Ids 0 and 1, paid in opposite directions by odd and even workers
+                    from = worker & 1;
+                    to = 1 - from;
+                }
+                case 7 -> to = from;
+                case 8 -> {
+                    if (random.nextBoolean()) {
+                        from = 0;
+                    } else {
+                        to = 0;
+                    }
+                }
+                case 9 -> {
+                    transferBatch(accountsService, accounts, random, net);
+                    continue;
+                }
+                default -> {
+                }
+            }
+
+            long amount = random.nextLong(1, INITIAL_BALANCE / 2);
+            try {
+                accountsService.transferMoney("Id-" + from, "Id-" + to, amount);
+                net[from] -= amount;
+                net[to] += amount;
+            } catch (TransferRejectedException e) {
+                assertThat(e.getReason()).isEqualTo(TransferRejectedException.Reason.INSUFFICIENT_FUNDS);
+            }
+        }
+        return net;
+    }
+
+    private static void transferBatch(AccountsService accountsService, int accounts, ThreadLocalRandom random,
+            long[] net) {
+        int[] from = new int[3];
+        int[] to = new int[3];
+        long[] amounts = new long[3];
+        List<TransferRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            from[i] = random.nextInt(accounts);
+            to[i] = random.nextInt(accounts);
+            amounts[i] = random.nextLong(1, INITIAL_BALANCE / 4);
+            requests.add(new TransferRequest("Id-" + from[i], "Id-" + to[i], Money.toBigDecimal(amounts[i])));
+        }
+        if (accountsService.transferBatch(requests, BatchMode.ATOMIC).applied()) {
+            for (int i = 0; i < 3; i++) {
+                net[from[i]] -= amounts[i];
+                net[to[i]] += amounts[i];
+            }
+        }
+    }
+
+    private static Observations observe(AccountsService accountsService, List<String> ids, long total,
+            AtomicBoolean running) {
+        Observations observations = new Observations();
+        List<Account> accounts = accountsService.getAccounts(ids).accounts();
+        while (running.get()) {
+            for (Account account : accounts) {
+                observations.lowest = Math.min(observations.lowest, account.balanceMinorUnits());
+            }
+            try {
+                AccountBalances snapshot = accountsService.getAccountsSnapshot(ids, Duration.ofMillis(20));
+                long sum = 0;
+                for (Account account : snapshot.accounts()) {
+                    sum += account.balanceMinorUnits();
+                }
+                assertThat(sum).as("snapshot total").isEqualTo(total);
+            } catch (SnapshotUnavailableException e) {
+                // Timing out under this load is allowed, a snapshot that is taken must add up
+            }
+        }
+        return observations;
+    }
+
+    private static boolean awaitDone(Future<?> future, long nanos) throws InterruptedException {
+        long deadline = System.nanoTime() + nanos;
+        while (!future.isDone()) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static String threadDump() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long[] deadlocked = threads.findDeadlockedThreads();
+        StringBuilder dump = new StringBuilder(deadlocked == null ? "No deadlock found\n"
+                : "Deadlocked threads: " + Arrays.toString(deadlocked) + "\n");
+        for (ThreadInfo info : threads.dumpAllThreads(true, true)) {
+            if (info.getThreadName().startsWith("stress-worker-")) {
+                dump.append(info);
+            }
+        }
+        return dump.toString();
+    }
+
+    private AccountsRepository repository(String type, int accounts) throws Exception {
+        return switch (type) {
+            case "journaled" -> new JournaledAccountsRepository(directory, false, 64 << 20, 1 << 16);
+            case "offheap" -> new OffHeapAccountsRepository(accounts);
+            case "jdbc" -> {
+                // A cache of a quarter of the accounts, so transfers keep running into evicted ones
+                database = new EmbeddedDatabaseBuilder()
+                        .setType(EmbeddedDatabaseType.H2)
+                        .generateUniqueName(true)
+                        .build();
+                AccountCacheProperties properties = new AccountCacheProperties();
+                properties.setMaximumSize(Math.max(1, accounts / 4));
+                yield new CachingAccountsRepository(new JdbcAccountsRepository(new JdbcTemplate(database)), properties,
+                        new SimpleMeterRegistry());
+            }
+            default -> new AccountsRepositoryInMemory();
+        };
+    }
+
+    private static TransferStrategy transferStrategy(String type, TransferListener listener) {
+        return switch (type) {
+            case "optimistic" -> new OptimisticTransferStrategy(listener);
+            case "sharded" -> new ShardedTransferStrategy(4, listener);
+            case "striped" -> {
+                // Id-0 is striped from the start, any other account once it keeps being waited for
+                TransferProperties properties = new TransferProperties();
+                properties.setHotAccounts(List.of("Id-0"));
+                properties.setHotAccountContentions(1_000);
+                properties.setHotAccountStripes(4);
+                LockingTransferStrategy locking = new LockingTransferStrategy(listener);
+                locking.setHotAccounts(properties);
+                yield locking;
+            }
+            default -> new LockingTransferStrategy(listener);
+        };
+    }
+
+    private static final class Observations {
+        long lowest = Long.MAX_VALUE;
+    }
+}